@@ -1,12 +1,15 @@
 package org.antlr.works;
 
 import org.antlr.Tool;
+import org.antlr.tool.Message;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngineDelegate;
 import org.antlr.works.grammar.engine.GrammarEngineImpl;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 import org.antlr.works.utils.ConsoleHelper;
+import org.antlr.works.utils.ErrorListener;
 import org.antlr.works.visualization.SDGenerator;
 import org.antlr.works.visualization.serializable.SEncoder;
 import org.antlr.works.visualization.serializable.SXMLEncoder;
@@ -14,6 +17,9 @@ import org.antlr.xjlib.foundation.XJUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
 /*
 
@@ -48,9 +54,13 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 public class Console {
 
-    private String file;
+    /** Stack size of the threads rendering the rules (the NFA of a rule is walked recursively) */
+    private static final long STACK_SIZE = 16*1024*1024;
+
+    private List<String> files = new ArrayList<String>();
     private String outputDirectory;
     private String outputFile;
+    private int jobs = 1;
     private boolean verbose;
 
     public static void main(String[] args) throws Exception {
@@ -68,10 +78,12 @@ public class Console {
     private static void printUsage() {
         StringBuilder sb = new StringBuilder();
         sb.append("Usage: java -cp antlrworks.jar org.antlr.works.Console [args]\n");
-        sb.append(" -f grammarFile : ").append("specify the input grammar file (*.g)\n");
+        sb.append(" -f grammarFile : ").append("specify the input grammar file (*.g). Can be repeated to process several grammars\n");
+        sb.append(" -check : ").append("check the grammar and print its errors and warnings\n");
         sb.append(" -sd format : ").append("specify the format of the syntax diagram output file. For EPS, use 'eps'. For bitmap, use either 'png' or any available extensions\n");
         sb.append(" -serialize outputFile : ").append("serialize all the syntax diagram of the specified files");
-        sb.append(" -o outputDir : ").append("specify the output directory\n");
+        sb.append(" -o outputDir : ").append("specify the output directory. With several grammars, the diagrams of each grammar are generated in a sub-directory named after the grammar\n");
+        sb.append(" -j count : ").append("specify the number of threads used to generate the syntax diagrams (default is 1)\n");
         sb.append(" -verbose : ").append("prints the operations\n");
         System.out.println(sb.toString());
     }
@@ -81,7 +93,13 @@ public class Console {
     }
 
     private void process(String args[]) throws Exception {
-        readArguments(args);
+        if(!readArguments(args))
+            return;
+
+        if(hasArgument(args, "-check")) {
+            if(verbose) System.out.println("Checking grammar");
+            checkGrammar();
+        }
 
         String sdFormat = getArgumentValue(args, "-sd");
         if(sdFormat != null) {
@@ -94,29 +112,75 @@ public class Console {
         }
     }
 
-    private void readArguments(String args[]) {
-        file = getArgumentValue(args, "-f");
-        if(file == null) {
+    private boolean readArguments(String args[]) {
+        for(String file : getArgumentValues(args, "-f")) {
+            files.add(new File(file).getAbsolutePath());
+        }
+        if(files.isEmpty()) {
             System.err.println("File not specified (-f)");
-            return;
+            return false;
         }
-        file = new File(file).getAbsolutePath();
 
         outputDirectory = getArgumentValue(args, "-o");
         if(outputDirectory == null && hasArgument(args, "-sd")) {
             System.err.println("Output directory not specified (-o)");
-            return;
+            return false;
         }
 
         outputFile = getArgumentValue(args, "-serialize");
         if(outputFile == null && hasArgument(args, "-serialize")) {
             System.err.println("Output file not specified (-serialize)");
-            return;
+            return false;
         }
+
+        String j = getArgumentValue(args, "-j");
+        if(j != null) {
+            try {
+                jobs = Integer.parseInt(j);
+            } catch (NumberFormatException e) {
+                jobs = 0;
+            }
+            if(jobs < 1) {
+                System.err.println("Invalid number of threads (-j)");
+                return false;
+            }
+        }
+
         String v = getArgumentValue(args, "-verbose");
         if(v != null) {
             verbose = true;
         }
+        return true;
+    }
+
+    private void checkGrammar() throws Exception {
+        for(String file : files) {
+            if(verbose && files.size() > 1) System.out.println("Checking "+file);
+            checkGrammar(file);
+        }
+    }
+
+    private void checkGrammar(String file) throws Exception {
+        GrammarEngine engine = createEngine(file);
+
+        // the messages are printed from the result because a result
+        // restored from the analysis cache is not reported to the listener
+        ErrorListener el = ErrorListener.getThreadInstance();
+        el.setPrintToConsole(false);
+        GrammarResult result;
+        try {
+            result = engine.analyze();
+        } finally {
+            el.setPrintToConsole(true);
+        }
+
+        for(Message error : result.getErrors()) {
+            System.err.println(error);
+        }
+        for(Message warning : result.getWarnings()) {
+            System.err.println(warning);
+        }
+        if(verbose) System.out.println(result.getErrorCount()+" error(s), "+result.getWarningCount()+" warning(s)");
     }
 
     private void generateSyntaxDiagrams(String format) throws Exception {
@@ -127,22 +191,99 @@ public class Console {
         processSyntaxDiagram(new SerializePSDDelegate());
     }
 
-    private void processSyntaxDiagram(ProcessSyntaxDiagramDelegate delegate) throws Exception {
-        GrammarEngine engine = new GrammarEngineImpl(new EngineDelegate());
+    private GrammarEngine createEngine(String file) {
+        GrammarEngine engine = new GrammarEngineImpl(new EngineDelegate(file));
         GrammarSyntaxEngine syntaxEngine = engine.getSyntaxEngine();
 
-        syntaxEngine.setDelegate(new SyntaxDelegate());
+        syntaxEngine.setDelegate(new SyntaxDelegate(file));
         syntaxEngine.processSyntax();
 
         engine.parserCompleted();
-        
-        SDGenerator gen = new SDGenerator(engine);
+        return engine;
+    }
+
+    /** Processes the rules of all the grammars. With more than one thread, the rules are
+     * processed concurrently: the grammar engine is shared read-only between the threads
+     * and each thread renders with its own generator. The results are always passed back
+     * to the delegate in the order of the grammars and of their rules.
+     */
+    private void processSyntaxDiagram(ProcessSyntaxDiagramDelegate delegate) throws Exception {
+        ExecutorService executor = null;
+        if(jobs > 1) {
+            executor = Executors.newFixedThreadPool(jobs, new ThreadFactory() {
+
+                private int count;
 
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(null, r, "Syntax Diagram #"+(++count), STACK_SIZE);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        long start = System.currentTimeMillis();
+        int count = 0;
         delegate.beginProcess();
-        for(String name : engine.getRuleNames()) {
-            delegate.processRule(name, gen);
+        try {
+            List<Future<RuleResult>> results = new ArrayList<Future<RuleResult>>();
+            for(String file : files) {
+                GrammarEngine engine = createEngine(file);
+
+                // create the ANTLR grammars now so the threads only read them
+                final SDGenerator gen = new SDGenerator(engine);
+                gen.createGrammars();
+                ThreadLocal<SDGenerator> generators = new ThreadLocal<SDGenerator>() {
+                    @Override
+                    protected SDGenerator initialValue() {
+                        return new SDGenerator(gen);
+                    }
+                };
+
+                delegate.beginGrammar(file);
+                for(String name : engine.getRuleNames()) {
+                    RuleTask task = new RuleTask(delegate, file, name, generators);
+                    if(executor == null) {
+                        ruleProcessed(delegate, task.call());
+                    } else {
+                        results.add(executor.submit(task));
+                    }
+                    count++;
+                }
+            }
+
+            for(Future<RuleResult> result : results) {
+                try {
+                    ruleProcessed(delegate, result.get());
+                } catch (ExecutionException e) {
+                    if(e.getCause() instanceof Exception) {
+                        throw (Exception)e.getCause();
+                    } else {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            if(executor != null) {
+                executor.shutdownNow();
+            }
         }
         delegate.endProcess();
+
+        if(verbose) System.out.println(count+" rule(s) in "+(System.currentTimeMillis()-start)+" ms");
+    }
+
+    private void ruleProcessed(ProcessSyntaxDiagramDelegate delegate, RuleResult result) {
+        if(verbose) System.out.println("Generate rule "+result.name+" ("+result.time+" ms)");
+        delegate.ruleProcessed(result.file, result.name, result.result);
+    }
+
+    private String getOutputDirectory(String file) {
+        if(files.size() > 1) {
+            return XJUtils.concatPath(outputDirectory, XJUtils.getLastPathComponent(file).replaceFirst("\\.g$", ""));
+        } else {
+            return outputDirectory;
+        }
     }
 
     private interface ProcessSyntaxDiagramDelegate {
@@ -150,8 +291,50 @@ public class Console {
         void beginProcess();
         void endProcess() throws Exception;
 
-        void processRule(String name, SDGenerator gen) throws Exception;
+        void beginGrammar(String file);
+
+        /** Called by the worker threads: must not modify the state of the delegate */
+        String processRule(String file, String name, SDGenerator gen) throws Exception;
+
+        /** Called by the main thread with the result of processRule(), in the order of the rules */
+        void ruleProcessed(String file, String name, String result);
+
+    }
+
+    private static class RuleResult {
+
+        public final String file;
+        public final String name;
+        public final String result;
+        public final long time;
+
+        public RuleResult(String file, String name, String result, long time) {
+            this.file = file;
+            this.name = name;
+            this.result = result;
+            this.time = time;
+        }
+    }
+
+    private static class RuleTask implements Callable<RuleResult> {
+
+        private final ProcessSyntaxDiagramDelegate delegate;
+        private final String file;
+        private final String name;
+        private final ThreadLocal<SDGenerator> generators;
 
+        public RuleTask(ProcessSyntaxDiagramDelegate delegate, String file, String name, ThreadLocal<SDGenerator> generators) {
+            this.delegate = delegate;
+            this.file = file;
+            this.name = name;
+            this.generators = generators;
+        }
+
+        public RuleResult call() throws Exception {
+            long start = System.currentTimeMillis();
+            String result = delegate.processRule(file, name, generators.get());
+            return new RuleResult(file, name, result, System.currentTimeMillis()-start);
+        }
     }
 
     private class GeneratePSDDelegate implements ProcessSyntaxDiagramDelegate {
@@ -171,21 +354,29 @@ public class Console {
             if(verbose) System.out.println("Done");
         }
 
-        public void processRule(String name, SDGenerator gen) throws Exception {
-            if(verbose) System.out.println("Generate rule "+name);
+        public void beginGrammar(String file) {
+            new File(getOutputDirectory(file)).mkdirs();
+        }
 
-            String file = XJUtils.concatPath(outputDirectory, name+"."+format);
+        public String processRule(String grammarFile, String name, SDGenerator gen) throws Exception {
+            String file = XJUtils.concatPath(getOutputDirectory(grammarFile), name+"."+format);
             if(format.equals("eps")) {
                 gen.renderRuleToEPSFile(name, file);
             } else {
                 gen.renderRuleToBitmapFile(name, format, file);
             }
+            return null;
+        }
+
+        public void ruleProcessed(String file, String name, String result) {
+            // the file is already written
         }
     }
 
     private class SerializePSDDelegate implements ProcessSyntaxDiagramDelegate {
 
         private StringBuilder content;
+        private String lastFile;
 
         public void beginProcess() {
             if(verbose) System.out.println("Begin");
@@ -198,12 +389,23 @@ public class Console {
             if(verbose) System.out.println("Done");
         }
 
-        public void processRule(String name, SDGenerator gen) throws Exception {
-            if(verbose) System.out.println("Generate rule "+name);
+        public void beginGrammar(String file) {
+            // nothing to prepare
+        }
+
+        public String processRule(String file, String name, SDGenerator gen) throws Exception {
             SEncoder encoder = new SXMLEncoder();
             gen.serializeRule(name, encoder);
+            return encoder.toString();
+        }
+
+        public void ruleProcessed(String file, String name, String result) {
+            if(files.size() > 1 && !file.equals(lastFile)) {
+                content.append("\n\n======").append(XJUtils.getLastPathComponent(file)).append("======\n\n");
+            }
+            lastFile = file;
             content.append("\n\n------").append(name).append("------\n\n");
-            content.append(encoder.toString());
+            content.append(result);
         }
     }
 
@@ -221,6 +423,16 @@ public class Console {
         return null;
     }
 
+    private static List<String> getArgumentValues(String[] args, String name) {
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < args.length-1; i++) {
+            if (args[i].equals(name)) {
+                values.add(args[++i]);
+            }
+        }
+        return values;
+    }
+
     private static boolean hasArgument(String[] args, String name) {
         for (String a : args) {
             if (a.equals(name)) {
@@ -230,7 +442,7 @@ public class Console {
         return false;
     }
 
-    private String getGrammarText() {
+    private static String getGrammarText(String file) {
         try {
             return XJUtils.getStringFromFile(file);
         } catch (IOException e) {
@@ -241,9 +453,14 @@ public class Console {
 
     public class SyntaxDelegate implements ATESyntaxEngineDelegate {
 
+        private final String file;
+
+        public SyntaxDelegate(String file) {
+            this.file = file;
+        }
 
         public String getText() {
-            return getGrammarText();
+            return getGrammarText(file);
         }
 
         public void ateEngineBeforeParsing() {
@@ -256,7 +473,13 @@ public class Console {
     }
 
     private class EngineDelegate implements GrammarEngineDelegate {
-        
+
+        private final String file;
+
+        public EngineDelegate(String file) {
+            this.file = file;
+        }
+
         public void engineAnalyzeCompleted() {
             // ignored
         }
@@ -276,7 +499,7 @@ public class Console {
         }
 
         public String getGrammarText() {
-            return Console.this.getGrammarText();
+            return Console.getGrammarText(file);
         }
 
         public String getTokenVocabFile(String name) {
@@ -9,6 +9,8 @@ import org.antlr.works.ate.swing.ATEKeyBindings;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngine;
 import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
 import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATEScheduler;
+import org.antlr.works.ate.syntax.misc.ATEThread;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.xjlib.appkit.frame.XJFrame;
 import org.antlr.xjlib.appkit.undo.XJUndo;
@@ -76,6 +78,7 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     protected ATEAnalysisManager analysisManager;
 
     protected ATESyntaxEngine engine;
+    protected ParseOperation parseOperation;
     protected ATEAutoIndentation autoIndent;
 
     protected TextPaneListener textPaneListener;
@@ -119,6 +122,23 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         return engine;
     }
 
+    /** Parses the text in the background after each edit instead of parsing it
+     * in the event thread. The delegate must then read the result of the parser
+     * only after it has been notified or by holding the process lock of the engine.
+     */
+    public void setParseInBackground(boolean flag) {
+        if(flag && parseOperation == null) {
+            parseOperation = new ParseOperation();
+        } else if(!flag && parseOperation != null) {
+            parseOperation.stop();
+            parseOperation = null;
+        }
+    }
+
+    public boolean isParseInBackground() {
+        return parseOperation != null;
+    }
+
     public void setDelegate(ATEPanelDelegate delegate) {
         this.delegate = delegate;
     }
@@ -258,6 +278,8 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
 
     public void setEditorKit(StyledEditorKit editorKit) {
         textPane.setEditorKit(editorKit);
+        if(engine != null)
+            engine.invalidateTokens();
         textPane.getDocument().addDocumentListener(textPaneListener = new TextPaneListener());
         // Set by default the end of line property in order to always use the Unix style
         textPane.getDocument().putProperty(DefaultEditorKit.EndOfLineStringProperty, unixEndOfLine);
@@ -305,7 +327,13 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public List<ATEToken> getTokens() {
-        return engine==null?null:engine.getTokens();
+        if(engine == null)
+            return null;
+
+        // Do not wait for the background parsing: the tokens must match the current text
+        if(parseOperation != null)
+            engine.processIfModified();
+        return engine.getTokens();
     }
 
     public List<ATELine> getLines() {
@@ -334,17 +362,7 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public int getLineIndexAtTextPosition(int pos) {
-        List<ATELine> lines = getLines();
-        if(lines == null)
-            return -1;
-
-        for(int i=0; i<lines.size(); i++) {
-            ATELine line = lines.get(i);
-            if(line.position > pos) {
-                return i-1;
-            }
-        }
-        return lines.size()-1;
+        return engine==null?-1:engine.getLineIndexAtPosition(pos);
     }
 
     public Point getLineTextPositionsAtTextPosition(int pos) {
@@ -352,17 +370,14 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public Point getLineTextPositionsAtLineIndex(int lineIndex) {
-        List<ATELine> lines = getLines();
-        if(lineIndex == -1 || lines == null)
+        if(lineIndex == -1 || engine == null)
             return null;
 
-        ATELine startLine = lines.get(lineIndex);
-        int start = startLine.position;
-        if(lineIndex+1 >= lines.size()) {
+        int start = engine.getLineStartPosition(lineIndex);
+        if(lineIndex+1 >= engine.getLineCount()) {
             return new Point(start, getTextPane().getDocument().getLength()-1);
         } else {
-            ATELine endLine = lines.get(lineIndex+1);
-            int end = endLine.position;
+            int end = engine.getLineStartPosition(lineIndex+1);
             return new Point(start, end-1);
         }
     }
@@ -509,12 +524,29 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public void parse() {
-        if(engine != null)
+        if(engine == null)
+            return;
+
+        if(parseOperation != null)
+            parseOperation.awakeThread(0);
+        else
             engine.process();
     }
 
     public String getText() {
-        return getTextPane().getText();
+        // Read the document with its lock: the text may be parsed in the background
+        final Document doc = getTextPane().getDocument();
+        final String[] text = new String[1];
+        doc.render(new Runnable() {
+            public void run() {
+                try {
+                    text[0] = doc.getText(0, doc.getLength());
+                } catch (BadLocationException e) {
+                    text[0] = "";
+                }
+            }
+        });
+        return text[0];
     }
 
     public void ateEngineBeforeParsing() {
@@ -563,6 +595,7 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
     }
 
     public void close() {
+        setParseInBackground(false);
         textPane.removeCaretListener(cl);
         textPane.removeMouseListener(ml);
         textPane.removeMouseMotionListener(mml);
@@ -587,6 +620,41 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
         }
     }
 
+    /** This class is used to lex and parse the text in another thread than
+     * the main event thread. A burst of edits results in a single parsing.
+     */
+    protected class ParseOperation extends ATEThread {
+
+        public ParseOperation() {
+            start();
+        }
+
+        @Override
+        protected int getPriority() {
+            // The text being edited needs its tokens to be colorized
+            return textPane.hasFocus() ? ATEScheduler.PRIORITY_HIGH : ATEScheduler.PRIORITY_NORMAL;
+        }
+
+        protected void threadRun() throws Exception {
+            ATESyntaxEngine engine = ATEPanel.this.engine;
+            if(engine == null)
+                return;
+
+            engine.processIfModified();
+
+            // The text has been modified again: the next parsing will notify the delegate
+            if(cancel())
+                return;
+
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    ateEngineAfterParsing();
+                    textPane.repaint();
+                }
+            });
+        }
+    }
+
     protected class TextPaneListener implements DocumentListener {
 
         protected int enable = 0;
@@ -603,7 +671,12 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
             return enable == 0;
         }
 
-        public void changeUpdate(int offset, int length, boolean insert) {
+        public void changeUpdate(int offset, int length, String insertedText, boolean insert) {
+            // Always report the edit to the engine, even when the change is not
+            // recorded, so it can tokenize the text incrementally
+            if(engine != null)
+                engine.textChanged(offset, length, insertedText);
+
             if(isEnable()) {
                 if(delegate != null)
                     delegate.ateChangeUpdate(offset, length, insert);
@@ -622,11 +695,17 @@ public class ATEPanel extends JPanel implements XJSmoothScrolling.ScrollingDeleg
 
         /** Key press comes here */
         public void insertUpdate(DocumentEvent e) {
-            changeUpdate(e.getOffset(), e.getLength(), true);
+            String insertedText;
+            try {
+                insertedText = e.getDocument().getText(e.getOffset(), e.getLength());
+            } catch (BadLocationException ble) {
+                insertedText = "";
+            }
+            changeUpdate(e.getOffset(), e.getLength(), insertedText, true);
         }
 
         public void removeUpdate(DocumentEvent e) {
-            changeUpdate(e.getOffset(), -e.getLength(), false);
+            changeUpdate(e.getOffset(), -e.getLength(), null, false);
         }
 
         public void changedUpdate(DocumentEvent e) {
@@ -279,21 +279,25 @@ public class ATERenderingView extends PlainView {
         final int start = findStartingTokenIndex(p0, 0, tokens.size(), 0);
         for (int i = start; i < tokens.size(); i++) {
             ATEToken t = tokens.get(i);
-            AttributeSet attribute = engine.getAttributeForToken(t);
-            if(t.start >= p0 && t.start <= p1) {
-                // Fill any non-contiguous token with default color
-                if(t.start > p) {
-                    x = action.renderTextPortion(g, x, y, p, t.start, p1, doc, null);
-                }
-
-                x = action.renderTextPortion(g, x, y, t.start, t.end, p1, doc, attribute);
-                p = t.end;
-            } else if(t.end >= p0 && t.start < p0) {
-                x = action.renderTextPortion(g, x, y, p0, t.end, p1, doc, attribute);
-                p = t.end;
-            } else if(t.start > p1) {
+            if(t.start > p1) {
                 break;
             }
+
+            // The tokens may not match the text yet if it is being parsed in the background:
+            // render each character of the text only once
+            int tokenStart = Math.max(t.start, p);
+            int tokenEnd = Math.min(t.end, p1);
+            if(tokenEnd <= tokenStart) {
+                continue;
+            }
+
+            // Fill any non-contiguous token with default color
+            if(tokenStart > p) {
+                x = action.renderTextPortion(g, x, y, p, tokenStart, p1, doc, null);
+            }
+
+            x = action.renderTextPortion(g, x, y, tokenStart, tokenEnd, p1, doc, engine.getAttributeForToken(t));
+            p = tokenEnd;
         }
 
         // Fill any remaining range with default color
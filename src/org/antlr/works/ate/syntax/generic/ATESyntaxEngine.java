@@ -54,6 +54,23 @@ public abstract class ATESyntaxEngine {
     protected SimpleAttributeSet stringAttr;
     protected SimpleAttributeSet keywordAttr;
 
+    /** Edit reported since the last processing (used to tokenize incrementally) */
+    protected int editOffset;
+    protected int editLength;
+    protected int editCount;
+    protected boolean editInvalid;
+    protected int editVersion;
+    protected int processedVersion = -1;
+
+    /** Held while the text is processed. Lock it to read the result of the parser
+     * from another thread than the one processing the text.
+     */
+    protected final Object processLock = new Object();
+
+    /** Start position of each line, kept up to date after each edit */
+    protected int[] lineStarts = new int[] { 0 };
+    protected int lineCount = 1;
+
     public ATESyntaxEngine() {
         lexer = createLexer();
         parser = createParser();
@@ -63,14 +80,16 @@ public abstract class ATESyntaxEngine {
     }
 
     public void close() {
-        parser.close();
-        parser = null;
-        lexer.close();
-        lexer = null;
-        delegate = null;
+        synchronized(processLock) {
+            parser.close();
+            parser = null;
+            lexer.close();
+            lexer = null;
+            setDelegate(null);
+        }
     }
 
-    public void setDelegate(ATESyntaxEngineDelegate delegate) {
+    public synchronized void setDelegate(ATESyntaxEngineDelegate delegate) {
         this.delegate = delegate;
     }
 
@@ -82,10 +101,46 @@ public abstract class ATESyntaxEngine {
         return lexer.getLines();
     }
 
+    /** Returns the index of the line containing the specified text position
+     * or -1 if the position is before the first line.
+     */
+    public synchronized int getLineIndexAtPosition(int position) {
+        int low = 0;
+        int high = lineCount-1;
+        while(low <= high) {
+            int middle = (low+high) >>> 1;
+            if(lineStarts[middle] > position) {
+                high = middle-1;
+            } else {
+                low = middle+1;
+            }
+        }
+        return high;
+    }
+
+    /** Returns the number of lines of the text as of the last edit */
+    public synchronized int getLineCount() {
+        return lineCount;
+    }
+
+    /** Returns the start position of the specified line as of the last edit */
+    public synchronized int getLineStartPosition(int lineIndex) {
+        return lineStarts[lineIndex];
+    }
+
     public synchronized int getMaxLines() {
         return lexer.getLineNumber();
     }
 
+    /** Returns the version of the text, incremented at each edit */
+    public synchronized int getTextVersion() {
+        return editVersion;
+    }
+
+    public Object getProcessLock() {
+        return processLock;
+    }
+
     public ATESyntaxLexer getLexer() {
         return lexer;
     }
@@ -123,23 +178,144 @@ public abstract class ATESyntaxEngine {
         return attr;
     }
 
-    public void processSyntax() {
-        // First run the lexer
-        lexer.tokenize(delegate.getText());
-        tokens = new ArrayList<ATEToken>(lexer.getTokens());
+    /** Notifies the engine that the text has been modified. If only one edit
+     * is reported before the next processing, the lexer tokenizes only the
+     * portion of the text affected by the edit.
+     *
+     * @param offset The offset of the edit
+     * @param length The length of the edit (negative for a removal)
+     * @param insertedText The inserted text (ignored for a removal)
+     */
+    public synchronized void textChanged(int offset, int length, String insertedText) {
+        editOffset = offset;
+        editLength = length;
+        editCount++;
+        editVersion++;
 
-        // And then the parser if it exists
-        if(parser != null) {
-            parser.parse(tokens);
+        // Move the start of the lines located after the edit so the lines can be
+        // looked up before the text is processed again
+        int first = getLineIndexAtPosition(offset)+1;
+        if(length < 0) {
+            int last = first;
+            while(last < lineCount && lineStarts[last] <= offset-length) {
+                last++;
+            }
+            System.arraycopy(lineStarts, last, lineStarts, first, lineCount-last);
+            lineCount -= last-first;
+            for(int i=first; i<lineCount; i++) {
+                lineStarts[i] += length;
+            }
+        } else {
+            int added = 0;
+            for(int i=0; i<insertedText.length(); i++) {
+                if(insertedText.charAt(i) == '\n') added++;
+            }
+            if(lineCount+added > lineStarts.length) {
+                int[] starts = new int[Math.max(lineCount+added, lineStarts.length*2)];
+                System.arraycopy(lineStarts, 0, starts, 0, lineCount);
+                lineStarts = starts;
+            }
+            System.arraycopy(lineStarts, first, lineStarts, first+added, lineCount-first);
+            lineCount += added;
+            for(int i=first+added; i<lineCount; i++) {
+                lineStarts[i] += length;
+            }
+            for(int i=0; i<insertedText.length(); i++) {
+                if(insertedText.charAt(i) == '\n') {
+                    lineStarts[first++] = offset+i+1;
+                }
+            }
         }
     }
 
+    /** Forces the next processing to tokenize the whole text */
+    public synchronized void invalidateTokens() {
+        editInvalid = true;
+    }
+
+    public void processSyntax() {
+        processText(false);
+    }
+
     public void process() {
-        delegate.ateEngineBeforeParsing();
+        synchronized(processLock) {
+            delegate.ateEngineBeforeParsing();
+        }
         processSyntax();
         delegate.ateEngineAfterParsing();
     }
 
+    /** Processes the text if it has been modified since the last processing. This method
+     * does not notify the delegate that the parsing completed.
+     *
+     * @return true if the text has been processed
+     */
+    public boolean processIfModified() {
+        synchronized(processLock) {
+            if(lexer == null || getTextVersion() == processedVersion)
+                return false;
+
+            delegate.ateEngineBeforeParsing();
+        }
+        return processText(true);
+    }
+
+    private boolean processText(boolean ifModified) {
+        // The text is read before locking: the thread owning the document may be waiting for the lock
+        int version;
+        ATESyntaxEngineDelegate delegate;
+        synchronized(this) {
+            version = editVersion;
+            delegate = this.delegate;
+        }
+        if(delegate == null)
+            return false;
+
+        String text = delegate.getText();
+        synchronized(processLock) {
+            // Never replace the result of a more recent text
+            if(lexer == null || version < processedVersion || ifModified && version == processedVersion)
+                return false;
+
+            // First run the lexer
+            boolean incremental;
+            synchronized(this) {
+                // An edit reported after the text was read is not part of the text
+                boolean current = version == editVersion;
+                incremental = current && editCount == 1 && !editInvalid;
+                if(incremental)
+                    incremental = lexer.tokenize(text, editOffset, editLength);
+                else
+                    lexer.tokenize(text);
+                editCount = 0;
+                editInvalid = !current;
+                processedVersion = version;
+                tokens = new ArrayList<ATEToken>(lexer.getTokens());
+
+                // Use the lines of the lexer unless the text has been modified in the meantime
+                if(current) {
+                    List<ATELine> lines = lexer.getLines();
+                    if(lines.size() > lineStarts.length) {
+                        lineStarts = new int[lines.size()];
+                    }
+                    for(int i=0; i<lines.size(); i++) {
+                        lineStarts[i] = lines.get(i).position;
+                    }
+                    lineCount = lines.size();
+                }
+            }
+
+            // And then the parser if it exists
+            if(parser != null) {
+                if(incremental)
+                    parser.parse(tokens, lexer.getModifiedTokensStart(), lexer.getModifiedTokensEnd());
+                else
+                    parser.parse(tokens);
+            }
+            return true;
+        }
+    }
+
     public void applyCommentAttribute(SimpleAttributeSet commentAttr) {
         StyleConstants.setForeground(commentAttr, Color.lightGray);
         StyleConstants.setItalic(commentAttr, true);
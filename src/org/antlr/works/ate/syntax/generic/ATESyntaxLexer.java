@@ -59,6 +59,12 @@ public class ATESyntaxLexer {
     protected String text;
     protected int position;
 
+    /** Range of the tokens created by the last tokenization: the tokens outside
+     * this range have been reused from the previous tokenization.
+     */
+    protected int modifiedTokensStart;
+    protected int modifiedTokensEnd;
+
     protected int lineNumber;
     protected int lineIndex;    // position of the line in characters
     protected List<ATELine> lines;
@@ -94,55 +100,214 @@ public class ATESyntaxLexer {
         return lineNumber;
     }
 
+    public int getModifiedTokensStart() {
+        return modifiedTokensStart;
+    }
+
+    public int getModifiedTokensEnd() {
+        return modifiedTokensEnd;
+    }
+
     public void tokenize(String text) {
         this.text = text;
 
         position = -1;
         lineNumber = 0;
+        lineIndex = 0;
         lines.clear();
         lines.add(new ATELine(0));
 
         tokens.clear();
         tokenize();
+
+        modifiedTokensStart = 0;
+        modifiedTokensEnd = tokens.size();
     }
 
     protected void tokenize() {
         while(nextCharacter()) {
-            ATEToken token = customMatch();
-
-            if(token != null) {
-                // custom match matched something
-            } else if(c0 == '\'')
-                token = matchSingleQuoteString();
-            else if(c0 == '\"')
-                token = matchDoubleQuoteString();
-            else if(c0 == '/' && c1 == '/')
-                token = matchSingleComment();
-            else if(c0 == '/' && c1 == '*')
-                token = matchComplexComment();
-            else if(isLetter())
-                token = matchID();
-            else if(c0 == '(')
-                token = createNewToken(TOKEN_LPAREN);
-            else if(c0 == ')')
-                token = createNewToken(TOKEN_RPAREN);
-            else if(c0 == '{')
-                token = createNewToken(TOKEN_LCURLY);
-            else if(c0 == '}')
-                token = createNewToken(TOKEN_RCURLY);
-            else if(c0 == '[')
-                token = createNewToken(TOKEN_LBRACK);
-            else if(c0 == ']')
-                token = createNewToken(TOKEN_RBRACK);
-            else if(c0 == ':')
-                token = createNewToken(TOKEN_COLON);
-            else if(c0 == ';')
-                token = createNewToken(TOKEN_SEMI);
-            else if(!isWhitespace())
-                token = createNewToken(TOKEN_CHAR);
+            addToken(matchToken());
+        }
+    }
+
+    /** Tokenizes the text after a single edit, reusing the tokens of the previous
+     * tokenization that are not affected by the edit. The lexer restarts at the token
+     * boundary preceding the edit and stops as soon as the token stream is again
+     * identical to the previous one: the remaining tokens (and lines) are then
+     * simply shifted by the length of the edit.
+     *
+     * @param text The new text
+     * @param offset The offset of the edit
+     * @param length The length of the edit (positive for an insertion, negative for a removal)
+     * @return true if the text was tokenized incrementally, false if a complete
+     * tokenization was performed instead
+     */
+    public boolean tokenize(String text, int offset, int length) {
+        if(this.text == null || tokens.isEmpty() || this.text.length()+length != text.length()) {
+            tokenize(text);
+            return false;
+        }
+
+        List<ATEToken> oldTokens = tokens;
+        List<ATELine> oldLines = lines;
+
+        // Restart at the token preceding the first token affected by the edit. Avoid
+        // restarting right after a control character because it belongs to the token.
+        int restart = Math.max(0, indexOfFirstTokenEndingAfter(oldTokens, offset)-1);
+        while(restart > 0 && oldTokens.get(restart).start > 0
+                && this.text.charAt(oldTokens.get(restart).start-1) == '\\') {
+            restart--;
+        }
+        int restartPosition = restart == 0 ? 0 : oldTokens.get(restart).start;
+
+        tokens = new ArrayList<ATEToken>(oldTokens.size()+Math.max(length, 0));
+        for(int i=0; i<restart; i++) {
+            ATEToken t = oldTokens.get(i);
+            t.reuse(text, 0);
+            tokens.add(t);
+        }
+
+        lines = new ArrayList<ATELine>(oldLines.size());
+        for(ATELine line : oldLines) {
+            if(line.position > restartPosition) break;
+            lines.add(line);
+        }
+        lineNumber = lines.size()-1;
+        lineIndex = lines.get(lineNumber).position;
+
+        this.text = text;
+        position = restartPosition-1;
+        modifiedTokensStart = restart;
+
+        // First old token located after the edit
+        final int editEnd = offset+Math.max(length, 0);
+        int candidate = indexOfFirstTokenStartingAfter(oldTokens, offset-Math.min(length, 0));
+        while(nextCharacter()) {
+            ATEToken token = matchToken();
+            if(token == null) continue;
+
+            if(token.start >= editEnd) {
+                while(candidate < oldTokens.size() && oldTokens.get(candidate).start+length < token.start) {
+                    candidate++;
+                }
+                if(candidate < oldTokens.size() && isSameToken(oldTokens.get(candidate), token, length)) {
+                    resynchronize(oldTokens, oldLines, candidate, length);
+                    return true;
+                }
+            }
 
             addToken(token);
         }
+        modifiedTokensEnd = tokens.size();
+        return true;
+    }
+
+    /** Appends the old tokens and lines starting at the specified token index
+     * once the lexer produced a token identical to the old one.
+     */
+    private void resynchronize(List<ATEToken> oldTokens, List<ATELine> oldLines, int from, int length) {
+        // The lexer already processed the new lines up to the current position: the old
+        // lines located after this position in the old text are reused.
+        int firstOldLine = oldLines.size();
+        for(int i=0; i<oldLines.size(); i++) {
+            if(oldLines.get(i).position > position-length+1) {
+                firstOldLine = i;
+                break;
+            }
+        }
+        int lineDelta = lines.size()-firstOldLine;
+        modifiedTokensEnd = tokens.size();
+
+        for(int i=from; i<oldTokens.size(); i++) {
+            ATEToken t = oldTokens.get(i);
+            if(t.startLineNumber >= firstOldLine) {
+                t.setLine(t.startLineNumber+lineDelta, t.startLineIndex+length);
+            } else {
+                // The token is on the line the lexer is currently on
+                t.setLine(lineNumber, lineIndex);
+            }
+            t.reuse(text, length);
+            addToken(t);
+        }
+
+        for(int i=firstOldLine; i<oldLines.size(); i++) {
+            ATELine line = oldLines.get(i);
+            line.position += length;
+            lines.add(line);
+        }
+
+        lineNumber = lines.size()-1;
+        lineIndex = lines.get(lineNumber).position;
+        position = text.length();
+    }
+
+    private static boolean isSameToken(ATEToken oldToken, ATEToken newToken, int delta) {
+        return oldToken.lexerType == newToken.type
+                && oldToken.start+delta == newToken.start
+                && oldToken.end+delta == newToken.end;
+    }
+
+    private static int indexOfFirstTokenEndingAfter(List<ATEToken> tokens, int position) {
+        int low = 0;
+        int high = tokens.size();
+        while(low < high) {
+            int mid = (low+high) >>> 1;
+            if(tokens.get(mid).end < position)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static int indexOfFirstTokenStartingAfter(List<ATEToken> tokens, int position) {
+        int low = 0;
+        int high = tokens.size();
+        while(low < high) {
+            int mid = (low+high) >>> 1;
+            if(tokens.get(mid).start < position)
+                low = mid+1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    protected ATEToken matchToken() {
+        ATEToken token = customMatch();
+
+        if(token != null) {
+            // custom match matched something
+        } else if(c0 == '\'')
+            token = matchSingleQuoteString();
+        else if(c0 == '\"')
+            token = matchDoubleQuoteString();
+        else if(c0 == '/' && c1 == '/')
+            token = matchSingleComment();
+        else if(c0 == '/' && c1 == '*')
+            token = matchComplexComment();
+        else if(isLetter())
+            token = matchID();
+        else if(c0 == '(')
+            token = createNewToken(TOKEN_LPAREN);
+        else if(c0 == ')')
+            token = createNewToken(TOKEN_RPAREN);
+        else if(c0 == '{')
+            token = createNewToken(TOKEN_LCURLY);
+        else if(c0 == '}')
+            token = createNewToken(TOKEN_RCURLY);
+        else if(c0 == '[')
+            token = createNewToken(TOKEN_LBRACK);
+        else if(c0 == ']')
+            token = createNewToken(TOKEN_RBRACK);
+        else if(c0 == ':')
+            token = createNewToken(TOKEN_COLON);
+        else if(c0 == ';')
+            token = createNewToken(TOKEN_SEMI);
+        else if(!isWhitespace())
+            token = createNewToken(TOKEN_CHAR);
+
+        return token;
     }
 
     protected ATEToken customMatch() {
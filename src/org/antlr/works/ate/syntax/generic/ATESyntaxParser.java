@@ -40,6 +40,7 @@ public abstract class ATESyntaxParser {
     private List<ATEToken> tokens;
     private Stack<Integer> marks = new Stack<Integer>();
     private int position;
+    private int lookahead;
 
     private ATEToken t0;
     private ATEToken t1;
@@ -55,11 +56,33 @@ public abstract class ATESyntaxParser {
     }
 
     public void parse(List<ATEToken> tokens) {
+        setTokens(tokens, 0);
+        resetTokens(0, tokens.size());
+        parseTokens();
+    }
+
+    /** Parses the tokens after a modification of the tokens located in
+     * [modifiedStart, modifiedEnd[. The other tokens are the ones of the
+     * previous parsing. The default implementation parses all the tokens.
+     */
+    public void parse(List<ATEToken> tokens, int modifiedStart, int modifiedEnd) {
+        parse(tokens);
+    }
+
+    /** Prepares the parser to parse the tokens starting at the specified index */
+    protected void setTokens(List<ATEToken> tokens, int index) {
         this.tokens = tokens;
         marks.clear();
-        position = -1;
+        position = index-1;
+        lookahead = -1;
         clearTokenCache();
-        parseTokens();
+    }
+
+    /** Clears the information added to the tokens by a previous parsing */
+    protected void resetTokens(int from, int to) {
+        for(int index=from; index<to; index++) {
+            tokens.get(index).reset();
+        }
     }
 
     public abstract void parseTokens();
@@ -76,7 +99,17 @@ public abstract class ATESyntaxParser {
         marks.push(position);
     }
 
+    /** Returns the farthest position from which the parser had to rewind */
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
     public void rewind() {
+        lookahead = Math.max(lookahead, position);
         position = marks.pop();
         clearTokenCache();
     }
@@ -161,7 +194,7 @@ public abstract class ATESyntaxParser {
     }
 
     public boolean isChar(int index, String c) {
-        return isTokenType(index, ATESyntaxLexer.TOKEN_CHAR) && T(index).getAttribute().equals(c);
+        return isTokenType(index, ATESyntaxLexer.TOKEN_CHAR) && T(index).attributeEquals(c);
     }
 
     public boolean isSingleComment(int index) {
@@ -177,7 +210,7 @@ public abstract class ATESyntaxParser {
     }
 
     public boolean isID(int index, String attribute) {
-        return isTokenType(index, ATESyntaxLexer.TOKEN_ID) && T(index).getAttribute().equals(attribute);
+        return isTokenType(index, ATESyntaxLexer.TOKEN_ID) && T(index).attributeEquals(attribute);
     }
 
     public boolean isTokenType(int index, int type) {
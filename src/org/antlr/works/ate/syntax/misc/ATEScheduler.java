@@ -0,0 +1,257 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.ate.syntax.misc;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Shared scheduler running the background tasks (ATEThread) of all the windows
+ * on a bounded pool of worker threads.
+ *
+ * Each task has at most one pending request: requesting a task that is already
+ * pending only moves its due time, so a burst of edits results in a single run.
+ * When several tasks are due, the one with the highest priority runs first.
+ * A task never runs concurrently with itself.
+ */
+public class ATEScheduler {
+
+    public static final int PRIORITY_LOW = -1;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_HIGH = 1;
+
+    private static ATEScheduler shared;
+
+    private final Map<ATEThread,Entry> entries = new IdentityHashMap<ATEThread, Entry>();
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private final int poolSize;
+
+    private int runCount;
+    private long totalQueueDelay;
+    private long maxQueueDelay;
+    private long totalRunTime;
+    private long maxRunTime;
+
+    public static synchronized ATEScheduler shared() {
+        if(shared == null) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            // At least two workers so a long task (i.e. a syntax diagram) never delays the parser
+            shared = new ATEScheduler(Math.max(2, Math.min(4, processors)));
+        }
+        return shared;
+    }
+
+    public ATEScheduler(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /** Registers a task. If period is greater than 0, the task is run every period ms. */
+    public synchronized void register(ATEThread task, int period) {
+        Entry entry = entries.get(task);
+        if(entry == null) {
+            entry = new Entry(task);
+            entries.put(task, entry);
+        }
+        entry.period = period;
+        if(period > 0) {
+            request(entry, period, PRIORITY_NORMAL);
+        }
+    }
+
+    public synchronized void unregister(ATEThread task) {
+        entries.remove(task);
+    }
+
+    /** Requests the task to run after delay ms. A pending request is coalesced with
+     * this one and the priority is updated.
+     */
+    public synchronized void schedule(ATEThread task, int delay, int priority) {
+        Entry entry = entries.get(task);
+        if(entry != null) {
+            request(entry, delay, priority);
+        }
+    }
+
+    /** Discards the pending request of the task, if any */
+    public synchronized void unschedule(ATEThread task) {
+        Entry entry = entries.get(task);
+        if(entry != null) {
+            entry.pending = false;
+        }
+    }
+
+    public synchronized boolean isPending(ATEThread task) {
+        Entry entry = entries.get(task);
+        return entry != null && entry.pending;
+    }
+
+    public synchronized boolean isExecuting(ATEThread task) {
+        Entry entry = entries.get(task);
+        return entry != null && entry.executing;
+    }
+
+    public synchronized int getRunCount() {
+        return runCount;
+    }
+
+    /** Returns the average time (in ms) a due task waited for a free worker */
+    public synchronized long getAverageQueueDelay() {
+        return runCount == 0 ? 0 : totalQueueDelay/runCount;
+    }
+
+    public synchronized long getMaxQueueDelay() {
+        return maxQueueDelay;
+    }
+
+    public synchronized long getAverageRunTime() {
+        return runCount == 0 ? 0 : totalRunTime/runCount;
+    }
+
+    public synchronized long getMaxRunTime() {
+        return maxRunTime;
+    }
+
+    public synchronized String getStatistics() {
+        return String.format("%d background runs, queue delay %d ms (max %d ms), run time %d ms (max %d ms)",
+                runCount, getAverageQueueDelay(), maxQueueDelay, getAverageRunTime(), maxRunTime);
+    }
+
+    private void request(Entry entry, int delay, int priority) {
+        entry.due = System.currentTimeMillis()+Math.max(0, delay);
+        entry.priority = priority;
+        entry.pending = true;
+        if(workers.size() < poolSize) {
+            Worker worker = new Worker(workers.size());
+            workers.add(worker);
+            worker.start();
+        }
+        notifyAll();
+    }
+
+    private synchronized Entry next() throws InterruptedException {
+        while(true) {
+            long now = System.currentTimeMillis();
+            Entry best = null;
+            long nextDue = Long.MAX_VALUE;
+            for(Entry entry : entries.values()) {
+                if(!entry.pending || entry.executing)
+                    continue;
+
+                if(entry.due > now) {
+                    nextDue = Math.min(nextDue, entry.due);
+                } else if(best == null || entry.priority > best.priority
+                        || entry.priority == best.priority && entry.due < best.due) {
+                    best = entry;
+                }
+            }
+
+            if(best != null) {
+                best.pending = false;
+                best.executing = true;
+                best.started = now;
+                best.queueDelay = now-best.due;
+                return best;
+            }
+
+            if(nextDue == Long.MAX_VALUE) {
+                wait();
+            } else {
+                wait(nextDue-now);
+            }
+        }
+    }
+
+    private synchronized void completed(Entry entry) {
+        long runTime = System.currentTimeMillis()-entry.started;
+        runCount++;
+        totalQueueDelay += entry.queueDelay;
+        maxQueueDelay = Math.max(maxQueueDelay, entry.queueDelay);
+        totalRunTime += runTime;
+        maxRunTime = Math.max(maxRunTime, runTime);
+
+        entry.executing = false;
+        if(entry.period > 0 && !entry.pending && entries.get(entry.task) == entry) {
+            request(entry, entry.period, entry.priority);
+        }
+        // A request may have arrived while the task was executing
+        notifyAll();
+    }
+
+    private static class Entry {
+        public final ATEThread task;
+        public int period;
+        public int priority;
+        public long due;
+        public long started;
+        public long queueDelay;
+        public boolean pending;
+        public boolean executing;
+
+        public Entry(ATEThread task) {
+            this.task = task;
+        }
+    }
+
+    private class Worker extends Thread {
+
+        public Worker(int index) {
+            setName("ATEScheduler-"+index);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while(true) {
+                Entry entry;
+                try {
+                    entry = next();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    entry.task.run();
+                } catch(Throwable t) {
+                    // Keep the worker alive: an error in a task (i.e. a stack overflow
+                    // on a deep grammar) must not shrink the shared pool
+                    t.printStackTrace();
+                } finally {
+                    completed(entry);
+                }
+            }
+        }
+    }
+}
@@ -31,16 +31,18 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.ate.syntax.misc;
 
+/** Background task run by the shared ATEScheduler. Each call to awakeThread() bumps
+ * the version of the task: a run can find out with cancel() if it has been superseded
+ * by a newer request and stop early.
+ */
 public abstract class ATEThread implements Runnable {
 
-    protected int threadSleep = 100;
-    protected int threshold = 0;
+    protected int threadSleep = 0;
     protected int default_threshold = 250;
-    protected boolean running = false;
     protected boolean run = false;
-    protected Thread thread = null;
-    protected boolean asleep = false;
-    protected boolean skip = false;
+
+    private int version = 0;
+    private int runVersion = 0;
 
     public ATEThread() {
     }
@@ -49,48 +51,45 @@ public abstract class ATEThread implements Runnable {
         this.default_threshold = threshold;
     }
 
-    public synchronized void setRunning(boolean flag) {
-        running = flag;
+    public boolean isRunning() {
+        return getScheduler().isExecuting(this);
+    }
+
+    protected ATEScheduler getScheduler() {
+        return ATEScheduler.shared();
     }
 
-    public synchronized boolean isRunning() {
-        return running;
+    /** Returns the priority of the next request (see ATEScheduler.PRIORITY_*) */
+    protected int getPriority() {
+        return ATEScheduler.PRIORITY_NORMAL;
     }
 
     protected synchronized void start() {
-        this.threadSleep = Integer.MAX_VALUE;
-        start_();
+        start(0);
     }
 
+    /** Starts the task. If threadSleep is greater than 0, the task
+     * is also run every threadSleep ms.
+     */
     protected synchronized void start(int threadSleep) {
         this.threadSleep = threadSleep;
-        start_();
-    }
-
-    private void start_() {
         if(!run) {
             run = true;
-            thread = new Thread(this);
-            thread.setName(getClass().toString());
-            thread.start();
+            getScheduler().register(this, threadSleep);
         }
     }
 
+    /** Discards the pending request, if any */
     public synchronized void skip() {
-        skip = true;
-    }
-
-    private synchronized void resetSkip() {
-        skip = false;
+        getScheduler().unschedule(this);
     }
 
     public synchronized void stop() {
-        threshold = 0;
         run = false;
-        thread.interrupt();
+        getScheduler().unregister(this);
     }
 
-    /** Interrupt the thread if it is sleeping. If threshold > 0, the thread will sleep an
+    /** Requests the task to run. If threshold > 0, the task will wait an
      * additionnal 'threshold' ms until no other awakeThread() is called
      * before trying to compute something.
      */
@@ -99,14 +98,18 @@ public abstract class ATEThread implements Runnable {
     }
 
     public synchronized void awakeThread(int threshold) {
-        resetSkip();
-        this.threshold = threshold;
-        if(asleep)
-            thread.interrupt();
+        if(!run)
+            return;
+
+        version++;
+        getScheduler().schedule(this, threshold, getPriority());
     }
 
-    public boolean cancel() {
-        return !run;
+    /** Returns true if the task has been stopped or if a newer request
+     * has been made since the current run started.
+     */
+    public synchronized boolean cancel() {
+        return !run || version != runVersion;
     }
 
     protected abstract void threadRun() throws Exception;
@@ -115,46 +118,18 @@ public abstract class ATEThread implements Runnable {
         e.printStackTrace();
     }
 
-    public boolean threadSleep(int ms) {
-        boolean interrupted = false;
-        asleep = true;
-        try {
-            Thread.sleep(ms);
-        } catch (InterruptedException e) {
-            interrupted = true;
-        }
-        asleep = false;
-        return interrupted;
-    }
-
     public void run() {
-        setRunning(true);
-        while(run) {
-            if(threadSleep(threadSleep)) {
-                // Sleep interrupted. If threshold is > 0, then wait
-                // this amount of time and loop until the thread is not
-                // anymore interrupted.
-                if(threshold>0) {
-                    while(threadSleep(threshold)) {
-                    }
-                }
-            }
-
+        synchronized(this) {
             if(!run)
-                break;
-
-            if(skip) {
-                resetSkip();
-                continue;
-            }
-
-            try {
-                threadRun();
-            } catch(Exception e) {
-                threadReportException(e);
-            }
+                return;
+            runVersion = version;
+        }
+
+        try {
+            threadRun();
+        } catch(Exception e) {
+            threadReportException(e);
         }
-        setRunning(false);
     }
 
 }
@@ -34,6 +34,7 @@ package org.antlr.works.ate.syntax.misc;
 public class ATEToken implements Comparable {
 
     public int type;
+    public int lexerType; // type assigned by the lexer (the parser may refine the type later)
 
     public int startLineNumber; // starting line number
     public int endLineNumber; // ending line number
@@ -48,18 +49,27 @@ public class ATEToken implements Comparable {
     public int start;
     public int end;
 
-    protected String attribute; // the portion of text covered by this token (subset of text)
+    protected String attribute; // the portion of text covered by this token (computed on demand)
 
     public int index;   // index inside the tokens list
-    public boolean modified;    // true if the token has been modified in the text window
     public ATEScope scope;
 
+    /** Attributes of the single character tokens, shared by all the tokens */
+    private static final String[] CHAR_ATTRIBUTES = new String[128];
+
+    static {
+        for(int c=0; c<CHAR_ATTRIBUTES.length; c++) {
+            CHAR_ATTRIBUTES[c] = String.valueOf((char)c);
+        }
+    }
+
     public ATEToken(int type, int start, int end,
                     int startLineNumber, int endLineNumber,
                     int startLineIndex, int endLineIndex,
                     String text)
     {
         this.type = type;
+        this.lexerType = type;
 
         this.start = start;
         this.end = end;
@@ -70,7 +80,6 @@ public class ATEToken implements Comparable {
         this.endLineIndex = endLineIndex;
 
         this.text = text;
-        this.attribute = text.substring(start, end);
     }
 
     public String getText() {
@@ -78,9 +87,28 @@ public class ATEToken implements Comparable {
     }
 
     public String getAttribute() {
+        // Most of the tokens are never queried: create the string only when needed
+        if(attribute == null) {
+            if(end-start == 1 && text.charAt(start) < CHAR_ATTRIBUTES.length) {
+                attribute = CHAR_ATTRIBUTES[text.charAt(start)];
+            } else {
+                attribute = text.substring(start, end);
+            }
+        }
         return attribute;
     }
 
+    /** Returns true if the attribute of this token is equal to the specified string.
+     * This method does not need to create the attribute.
+     */
+    public boolean attributeEquals(String s) {
+        if(attribute != null) {
+            return attribute.equals(s);
+        } else {
+            return end-start == s.length() && text.regionMatches(start, s, 0, s.length());
+        }
+    }
+
     public int getStartLineIndex() {
         return startLineIndex;
     }
@@ -93,6 +121,26 @@ public class ATEToken implements Comparable {
         return end;
     }
 
+    /** Called by the lexer when this token is reused after an incremental
+     * tokenization: moves the token by the specified delta.
+     */
+    public void reuse(String text, int delta) {
+        this.text = text;
+        this.start += delta;
+        this.end += delta;
+    }
+
+    /** Clears any information added by the parser */
+    public void reset() {
+        this.type = lexerType;
+        this.scope = null;
+    }
+
+    public void setLine(int lineNumber, int lineIndex) {
+        this.startLineNumber = this.endLineNumber = lineNumber;
+        this.startLineIndex = this.endLineIndex = lineIndex;
+    }
+
     public boolean containsIndex(int index) {
         return index >= getStartIndex() && index <= getEndIndex();
     }
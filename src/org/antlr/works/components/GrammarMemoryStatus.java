@@ -1,5 +1,6 @@
 package org.antlr.works.components;
 
+import org.antlr.works.ate.syntax.misc.ATEScheduler;
 import org.antlr.xjlib.appkit.swing.XJRollOverButton;
 
 import javax.swing.*;
@@ -42,6 +43,7 @@ public class GrammarMemoryStatus extends JPanel {
     private final JButton gcButton = XJRollOverButton.createTextButton("");
 
     private Timer timer;
+    private int tokenCount;
 
     public GrammarMemoryStatus() {
         super(new BorderLayout());
@@ -76,6 +78,11 @@ public class GrammarMemoryStatus extends JPanel {
         timer = null;
     }
 
+    /** Sets the number of tokens of the grammar (displayed in the tooltip) */
+    public void setTokenCount(int count) {
+        this.tokenCount = count;
+    }
+
     public void refresh() {
         /*System.out.println("Free: "+displayableMemory(Runtime.getRuntime().freeMemory()));
         System.out.println("Max: "+displayableMemory(Runtime.getRuntime().maxMemory()));
@@ -84,6 +91,8 @@ public class GrammarMemoryStatus extends JPanel {
         String usedMemory = displayableMemory(Runtime.getRuntime().totalMemory()-Runtime.getRuntime().freeMemory());
         String maxMemory = displayableMemory(Runtime.getRuntime().maxMemory());
         gcButton.setText(String.format("%s of %s", usedMemory, maxMemory));
+        gcButton.setToolTipText(String.format("<html>%d tokens - click to run the garbage collector<br>%s</html>",
+                tokenCount, ATEScheduler.shared().getStatistics()));
     }
 
     private String displayableMemory(long bytes) {
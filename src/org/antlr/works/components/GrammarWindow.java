@@ -5,6 +5,7 @@ import org.antlr.works.ate.ATEPanel;
 import org.antlr.works.ate.ATEPanelDelegate;
 import org.antlr.works.ate.ATETextPane;
 import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATEScheduler;
 import org.antlr.works.ate.syntax.misc.ATEThread;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.debugger.DebuggerTab;
@@ -198,6 +199,8 @@ public class GrammarWindow
         editorRules = new EditorRules(this);
 
         textEditor.setParserEngine(grammarEngine.getSyntaxEngine());
+        // The window reads the result of the parser once copied by parserCompleted()
+        textEditor.setParseInBackground(true);
         editorRules.setKeyBindings(textEditor.getKeyBindings());
     }
 
@@ -720,7 +723,7 @@ public class GrammarWindow
     }
 
     public synchronized String getText() {
-        return getTextPane().getText();
+        return textEditor.getText();
     }
 
     public String getGrammarFileName() {
@@ -771,11 +774,11 @@ public class GrammarWindow
      * to update the syntax diagram and the rule information to reflect any error detected.
      */
     public void engineAnalyzeCompleted() {
-        // Clear graphic cache because we have to redraw each rule again
-        syntaxDiagramTab.clearCacheGraphs();
+        // The errors of a rule are part of the key of its graphs in cache: only the rules
+        // whose errors have changed are drawn again
         editorRules.refreshRules();
 
-        // Try to update the graph first and if they cannot be updated (i.e. the cache is empty), draw them again.
+        // Try to update the graph first and if they cannot be updated (i.e. not in cache), draw them again.
         if(!syntaxDiagramTab.update()) {
             updateVisualization(true);
         }
@@ -1150,12 +1153,20 @@ public class GrammarWindow
     }
 
     public void ateEngineAfterParsing() {
+        if(memoryStatus != null && getTokens() != null) {
+            memoryStatus.setTokenCount(getTokens().size());
+        }
         updateInformation();
         updateCursorInfo();
 
         if(windowFirstDisplay) {
             windowFirstDisplay = false;
             afterParseOperations();
+            // Show the diagnostics of the last analysis if the grammar did not change since
+            if(grammarEngine.restoreAnalysis()) {
+                textEditor.damage();
+                textEditor.repaint();
+            }
             SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
                     updateVisualization(true);
@@ -1168,13 +1179,27 @@ public class GrammarWindow
     }
 
     private void afterParseOperations() {
-        editorPersistence.restore();
+        // Each stage is skipped if the text has been parsed again in the meantime:
+        // the operations requested by the new parsing will take over
+        if(afterParserOp.cancel()) return;
 
         grammarEngine.parserCompleted();
+
+        if(grammarEngine.getSyntaxDiff().isComplete()) {
+            // The parser created new rules and actions: restore their state
+            editorPersistence.restore();
+        } else {
+            // The incremental parsing kept the state of the rules and actions
+            editorPersistence.discard();
+        }
         grammarEngine.updateAll();
 
+        // The diff of the parser is consumed: the rules must be updated before cancelling
         interpreterTab.setRules(getNaturalRules());
         editorRules.parserDidParse();
+
+        if(afterParserOp.cancel()) return;
+
         decisionDFAEngine.reset();
         decisionDFAEngine.refreshMenu();
 
@@ -1183,7 +1208,12 @@ public class GrammarWindow
         // be done inside rules.parserDidParse())
         editorIdeas.display(getCaretPosition());
 
+        if(afterParserOp.cancel()) return;
+
         syntaxDiagramTab.setText(getText(), getFileName());
+
+        if(afterParserOp.cancel()) return;
+
         updateVisualization(false);
 
         // Damage the window and repaint it
@@ -1549,6 +1579,14 @@ public class GrammarWindow
             start();
         }
 
+        @Override
+        protected int getPriority() {
+            // The window being edited gets its results before the ones in the background
+            if(getTextPane().hasFocus())
+                return ATEScheduler.PRIORITY_HIGH;
+            return textEditor.isShowing() ? ATEScheduler.PRIORITY_NORMAL : ATEScheduler.PRIORITY_LOW;
+        }
+
         protected void threadRun() throws Exception {
             afterParseOperations();
         }
@@ -109,8 +109,10 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
     public static final int MI_DEBUG = 82;
     public static final int MI_DEBUG_AGAIN = 83;
     public static final int MI_DEBUG_REMOTE = 84;
+    public static final int MI_DEBUG_TRACE = 85;
     public static final int MI_DEBUG_SHOW_INPUT_TOKENS = 86;
     public static final int MI_EDIT_TEST_RIG = 87;
+    public static final int MI_PROFILE = 88;
 
     // Help
     public static final int MI_SUBMIT_STATS = 100;
@@ -124,6 +126,10 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
     public static final int MI_EXPORT_ALL_AS_EPS = 113;
     public static final int MI_EXPORT_AS_DOT = 114;
     public static final int MI_EXPORT_EVENT = 115;
+    public static final int MI_EXPORT_EVENT_TRACE = 116;
+    public static final int MI_EXPORT_PROFILE = 117;
+    public static final int MI_EXPORT_PARSE_TREE = 118;
+    public static final int MI_EXPORT_AST = 119;
 
     public static final int MI_PRIVATE_UNREGISTER = 200;
     public static final int MI_SERIALIZE_SD = 201;
@@ -173,6 +179,15 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
         XJMenu exportMenu = new XJMenu();
         exportMenu.setTitle(resourceBundle.getString("menu.title.exportEvents"));
         exportMenu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.asText"), MI_EXPORT_EVENT, this));
+        exportMenu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.asTrace"), MI_EXPORT_EVENT_TRACE, this));
+        exportMenu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.profileAsCSV"), MI_EXPORT_PROFILE, this));
+
+        menu.insertItemAfter(exportMenu, XJMainMenuBar.MI_SAVEAS);
+
+        exportMenu = new XJMenu();
+        exportMenu.setTitle(resourceBundle.getString("menu.title.exportTree"));
+        exportMenu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.parseTree"), MI_EXPORT_PARSE_TREE, this));
+        exportMenu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.ast"), MI_EXPORT_AST, this));
 
         menu.insertItemAfter(exportMenu, XJMainMenuBar.MI_SAVEAS);
 
@@ -224,6 +239,8 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debug"), KeyEvent.VK_D, MI_DEBUG, this));
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugAgain"), KeyEvent.VK_D, XJMenuItem.getKeyModifier() | Event.SHIFT_MASK, MI_DEBUG_AGAIN, this));
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugRemote"), MI_DEBUG_REMOTE, this));
+        menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.debugTrace"), MI_DEBUG_TRACE, this));
+        menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.profile"), MI_PROFILE, this));
         menu.addSeparator();
         menu.addItem(new XJMenuItem(resourceBundle.getString("menu.item.showInputTokens"), MI_DEBUG_SHOW_INPUT_TOKENS, this));
         menu.addSeparator();
@@ -536,6 +553,15 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
             case MI_RUN:
             case MI_DEBUG:
             case MI_DEBUG_REMOTE:
+            case MI_DEBUG_TRACE:
+            case MI_PROFILE:
+                item.setEnabled(!isDebuggerRunning());
+                break;
+
+            case MI_EXPORT_EVENT:
+            case MI_EXPORT_PARSE_TREE:
+            case MI_EXPORT_AST:
+                // the models are exported on a background thread: they must not change meanwhile
                 item.setEnabled(!isDebuggerRunning());
                 break;
 
@@ -783,6 +809,14 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
                 debugMenu.debugRemote();
                 break;
 
+            case MI_DEBUG_TRACE:
+                debugMenu.debugTrace();
+                break;
+
+            case MI_PROFILE:
+                debugMenu.profile();
+                break;
+
             case MI_DEBUG_SHOW_INPUT_TOKENS:
                 debugMenu.toggleInputTokens();
                 window.refreshMainMenuBar();
@@ -830,6 +864,22 @@ public class GrammarWindowMenu implements XJMenuItemDelegate {
             case MI_EXPORT_EVENT:
                 actionExport.exportEventsAsTextFile();
                 break;
+
+            case MI_EXPORT_EVENT_TRACE:
+                actionExport.exportEventsAsTrace();
+                break;
+
+            case MI_EXPORT_PROFILE:
+                actionExport.exportProfileAsCSV();
+                break;
+
+            case MI_EXPORT_PARSE_TREE:
+                actionExport.exportParseTree();
+                break;
+
+            case MI_EXPORT_AST:
+                actionExport.exportAST();
+                break;
         }
     }
 
@@ -0,0 +1,191 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger;
+
+import org.antlr.works.utils.StreamWatcherDelegate;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/** Compiles the generated files in the running virtual machine using the javax.tools API.
+ * The compiler and its file manager are shared by all the debugging sessions so the
+ * archives of the classpath are only opened once. The classes are written to the output
+ * directory and kept in memory as well.
+ */
+
+public class DebuggerCompiler {
+
+    private static DebuggerCompiler shared;
+
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager standardFileManager;
+    private final MemoryFileManager fileManager;
+
+    /** Bytecode of the compiled classes for each output directory */
+    private final Map<String, Map<String, byte[]>> classes = new HashMap<String, Map<String, byte[]>>();
+
+    public static synchronized DebuggerCompiler shared() {
+        if(shared == null) {
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            if(compiler == null)
+                return null;
+            shared = new DebuggerCompiler(compiler);
+        }
+        return shared;
+    }
+
+    public DebuggerCompiler(JavaCompiler compiler) {
+        this.compiler = compiler;
+        this.standardFileManager = compiler.getStandardFileManager(null, null, null);
+        this.fileManager = new MemoryFileManager(standardFileManager);
+    }
+
+    /** Compiles the files in one task. Returns null if the compilation succeeded
+     * or the error message otherwise.
+     */
+    public synchronized String compile(String[] files, String outputFileDir, String classPath, StreamWatcherDelegate delegate) {
+        List<File> sources = new ArrayList<File>();
+        for (String file : files) {
+            sources.add(new File(file));
+        }
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        try {
+            standardFileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(new File(outputFileDir)));
+            fileManager.setClasses(getClasses(outputFileDir));
+
+            List<String> options = Arrays.asList("-classpath", classPath);
+            Iterable<? extends JavaFileObject> units = standardFileManager.getJavaFileObjectsFromFiles(sources);
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+
+            int errors = 0;
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if(diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                    errors++;
+                if(delegate != null)
+                    delegate.streamWatcherDidReceiveString("Compiler["+getKindName(diagnostic.getKind())+"]: "+diagnostic+"\n");
+            }
+
+            if(!success)
+                return "Compiler failed with "+errors+" error(s)";
+        } catch (IOException e) {
+            return "Compiler exception:\n"+e.toString();
+        } catch (RuntimeException e) {
+            return "Compiler exception:\n"+e.toString();
+        } finally {
+            fileManager.setClasses(null);
+            try {
+                standardFileManager.flush();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        return null;
+    }
+
+    private static String getKindName(Diagnostic.Kind kind) {
+        switch(kind) {
+            case ERROR: return "error";
+            case WARNING:
+            case MANDATORY_WARNING: return "warning";
+            case NOTE: return "note";
+            default: return "output";
+        }
+    }
+
+    /** Returns the bytecode of the classes compiled into the output directory
+     * indexed by their binary name.
+     */
+    public synchronized Map<String, byte[]> getCompiledClasses(String outputFileDir) {
+        return new HashMap<String, byte[]>(getClasses(outputFileDir));
+    }
+
+    /** Forgets the classes compiled into the output directory (when it is deleted) */
+    public synchronized void clearCompiledClasses(String outputFileDir) {
+        classes.remove(new File(outputFileDir).getAbsolutePath());
+    }
+
+    private Map<String, byte[]> getClasses(String outputFileDir) {
+        String key = new File(outputFileDir).getAbsolutePath();
+        Map<String, byte[]> map = classes.get(key);
+        if(map == null) {
+            map = new HashMap<String, byte[]>();
+            classes.put(key, map);
+        }
+        return map;
+    }
+
+    /** File manager keeping a copy of each class written by the compiler */
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private Map<String, byte[]> classes;
+
+        public MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        public void setClasses(Map<String, byte[]> classes) {
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, final String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) throws IOException
+        {
+            JavaFileObject file = super.getJavaFileForOutput(location, className, kind, sibling);
+            if(kind != JavaFileObject.Kind.CLASS || classes == null)
+                return file;
+
+            final Map<String, byte[]> target = classes;
+            return new ForwardingJavaFileObject<JavaFileObject>(file) {
+                @Override
+                public OutputStream openOutputStream() throws IOException {
+                    final OutputStream os = super.openOutputStream();
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() throws IOException {
+                            super.close();
+                            os.write(buf, 0, count);
+                            os.close();
+                            target.put(className, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+}
@@ -231,6 +231,13 @@ public class DebuggerEngine {
                 Object r = m.invoke(javac.newInstance(), a);
                 result = (Integer) r;
                 //result = com.sun.tools.javac.Main.compile(args);
+            } else if(compiler.equalsIgnoreCase(AWPrefs.COMPILER_JAVAX_TOOLS)) {
+                DebuggerCompiler javaxCompiler = DebuggerCompiler.shared();
+                if(javaxCompiler == null)
+                    return "No Java compiler is available in the running Java runtime (a JDK is required).\nChoose javac or jikes in the preferences.";
+
+                IDE.debugVerbose(console, DebuggerEngine.class, "Compile in-process: "+Utils.toString(files));
+                error = javaxCompiler.compile(files, outputFileDir, Utils.unquotePath(classPath), delegate);
             }
 
         } catch(Error e) {
@@ -0,0 +1,244 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger;
+
+import org.antlr.works.debugger.events.DBEvent;
+import org.antlr.works.debugger.panels.DBEventsPanel;
+
+import javax.swing.tree.TreeNode;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+
+/** Writes the debugger events and trees row by row to a writer so the export never
+ * builds the whole content in memory. The export can run on a background thread:
+ * every CHUNK_SIZE rows, the monitor is notified of the progress and asked if the
+ * export has been cancelled.
+ */
+public class DebuggerExporter {
+
+    public static final int FORMAT_TEXT = 0;
+    public static final int FORMAT_CSV = 1;
+    public static final int FORMAT_JSON = 2;
+
+    public static final List<String> EXTENSIONS = Arrays.asList("txt", "csv", "jsonl");
+    public static final List<String> DESCRIPTIONS = Arrays.asList("Text file", "CSV file", "JSON lines file");
+
+    public static final int CHUNK_SIZE = 1000;
+
+    protected static final String[] CONTEXT_NAMES = { "subrule", "decision", "mark", "backtrack" };
+
+    public interface Monitor {
+        public boolean isCancelled();
+        public void progress(int done, int total);
+    }
+
+    public static int getFormat(String extension) {
+        int index = EXTENSIONS.indexOf(extension);
+        return index == -1?FORMAT_TEXT:index;
+    }
+
+    /** Returns false if the export has been cancelled */
+    public static boolean exportEvents(DBEventsPanel.EventTableDataModel model, int format, Writer writer, Monitor monitor) throws IOException {
+        int count = model.getRowCount();
+        switch(format) {
+            case FORMAT_TEXT:
+                writer.write(model.getHeadersAsString());
+                writer.write("\n");
+                break;
+            case FORMAT_CSV:
+                writer.write("#,Event,Subrule,Decision,Mark,Backtrack\n");
+                break;
+        }
+
+        for(int i=0; i<count; i++) {
+            if(i % CHUNK_SIZE == 0 && !checkMonitor(monitor, i, count))
+                return false;
+
+            switch(format) {
+                case FORMAT_TEXT:
+                    writer.write(String.valueOf(i));
+                    writer.write(":\t");
+                    writer.write(model.getRowAsString(i));
+                    break;
+
+                case FORMAT_CSV:
+                    writer.write(String.valueOf(i));
+                    writer.write(",");
+                    writer.write(quoteCSV(String.valueOf(model.getEvent(i))));
+                    for(int c=0; c<CONTEXT_NAMES.length; c++) {
+                        writer.write(",");
+                        int value = model.getContext(i, c);
+                        if(value != -1)
+                            writer.write(String.valueOf(value));
+                    }
+                    break;
+
+                case FORMAT_JSON: {
+                    DBEvent event = model.getEvent(i);
+                    writer.write("{\"index\":");
+                    writer.write(String.valueOf(i));
+                    if(event != null) {
+                        writer.write(",\"type\":");
+                        writer.write(quoteJSON(DBEvent.getEventName(event.getEventType())));
+                        writer.write(",\"event\":");
+                        writer.write(quoteJSON(event.toString()));
+                    }
+                    for(int c=0; c<CONTEXT_NAMES.length; c++) {
+                        int value = model.getContext(i, c);
+                        if(value == -1) continue;
+
+                        writer.write(",\"");
+                        writer.write(CONTEXT_NAMES[c]);
+                        writer.write("\":");
+                        writer.write(String.valueOf(value));
+                    }
+                    writer.write("}");
+                    break;
+                }
+            }
+            writer.write("\n");
+        }
+        return checkMonitor(monitor, count, count);
+    }
+
+    /** Writes the trees in pre-order, one node per row. Returns false if the export has been cancelled. */
+    public static boolean exportTrees(List<TreeNode> roots, int format, Writer writer, Monitor monitor) throws IOException {
+        int count = 0;
+        for(TreeNode root : roots) {
+            count += getNodeCount(root);
+        }
+
+        if(format == FORMAT_CSV)
+            writer.write("Depth,Node\n");
+
+        /* Use an explicit stack because the trees can be deeper than the thread stack */
+        Stack<TreeNode> nodes = new Stack<TreeNode>();
+        Stack<Integer> depths = new Stack<Integer>();
+        int done = 0;
+        for(TreeNode root : roots) {
+            nodes.push(root);
+            depths.push(0);
+            while(!nodes.isEmpty()) {
+                if(done % CHUNK_SIZE == 0 && !checkMonitor(monitor, done, count))
+                    return false;
+
+                TreeNode node = nodes.pop();
+                int depth = depths.pop();
+                writeNode(node, depth, format, writer);
+                done++;
+
+                for(int i=node.getChildCount()-1; i>=0; i--) {
+                    nodes.push(node.getChildAt(i));
+                    depths.push(depth+1);
+                }
+            }
+        }
+        return checkMonitor(monitor, count, count);
+    }
+
+    protected static void writeNode(TreeNode node, int depth, int format, Writer writer) throws IOException {
+        String text = String.valueOf(node);
+        switch(format) {
+            case FORMAT_TEXT:
+                for(int i=0; i<depth; i++)
+                    writer.write("  ");
+                writer.write(text);
+                break;
+
+            case FORMAT_CSV:
+                writer.write(String.valueOf(depth));
+                writer.write(",");
+                writer.write(quoteCSV(text));
+                break;
+
+            case FORMAT_JSON:
+                writer.write("{\"depth\":");
+                writer.write(String.valueOf(depth));
+                writer.write(",\"node\":");
+                writer.write(quoteJSON(text));
+                writer.write("}");
+                break;
+        }
+        writer.write("\n");
+    }
+
+    public static int getNodeCount(TreeNode root) {
+        int count = 0;
+        Stack<TreeNode> nodes = new Stack<TreeNode>();
+        nodes.push(root);
+        while(!nodes.isEmpty()) {
+            TreeNode node = nodes.pop();
+            count++;
+            for(int i=0; i<node.getChildCount(); i++)
+                nodes.push(node.getChildAt(i));
+        }
+        return count;
+    }
+
+    protected static boolean checkMonitor(Monitor monitor, int done, int total) {
+        if(monitor == null) return true;
+        if(monitor.isCancelled()) return false;
+
+        monitor.progress(done, total);
+        return true;
+    }
+
+    public static String quoteCSV(String s) {
+        if(s.indexOf(',') == -1 && s.indexOf('"') == -1 && s.indexOf('\n') == -1) return s;
+        return "\""+s.replace("\"", "\"\"")+"\"";
+    }
+
+    public static String quoteJSON(String s) {
+        StringBuilder sb = new StringBuilder(s.length()+2);
+        sb.append('"');
+        for(int i=0; i<s.length(); i++) {
+            char c = s.charAt(i);
+            switch(c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c < 0x20)
+                        sb.append(String.format("\\u%04x", (int)c));
+                    else
+                        sb.append(c);
+            }
+        }
+        sb.append('"');
+        return sb.toString();
+    }
+}
@@ -40,10 +40,12 @@ import org.antlr.works.debugger.events.DBEventEnterRule;
 import org.antlr.works.debugger.events.DBEventExitRule;
 import org.antlr.works.debugger.events.DBEventLocation;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
+import org.antlr.works.debugger.local.DBInProcessParser;
 import org.antlr.works.debugger.local.DBLocal;
 import org.antlr.works.debugger.panels.*;
 import org.antlr.works.debugger.remote.DBRemoteConnectDialog;
 import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
 import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
 import org.antlr.works.debugger.tivo.DBRecorder;
 import org.antlr.works.debugger.tree.DBASTModel;
@@ -65,9 +67,15 @@ import org.antlr.xjlib.appkit.utils.XJAlert;
 import org.antlr.xjlib.foundation.notification.XJNotificationCenter;
 
 import javax.swing.*;
+import javax.swing.tree.TreeNode;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -84,6 +92,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     public static final int OPTION_AGAIN = 1;
     public static final int OPTION_BUILD = 2;
     public static final int OPTION_RUN = 4;
+    public static final int OPTION_PROFILE = 8;
 
     public static final float PERCENT_WIDTH_LEFT = 0.2f;
     public static final float PERCENT_WIDTH_MIDDLE = 0.5f;
@@ -99,6 +108,8 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     protected DBASTPanel astPanel;
     protected DBASTModel astModel;
 
+    protected DBProfilerPanel profilerPanel;
+
     protected DBStackPanel stackPanel;
     protected DBEventsPanel eventsPanel;
 
@@ -147,6 +158,9 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         astPanel.setTag(CustomSplitPanel.MIDDLE_INDEX);
         astModel = astPanel.getModel();
 
+        profilerPanel = new DBProfilerPanel(this);
+        profilerPanel.setTag(CustomSplitPanel.MIDDLE_INDEX);
+
         stackPanel = new DBStackPanel(this);
         stackPanel.setTag(CustomSplitPanel.RIGHT_INDEX);
         eventsPanel = new DBEventsPanel(this);
@@ -176,6 +190,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
 
         parseTreePanel.close();
         astPanel.close();
+        profilerPanel.close();
         stackPanel.close();
         eventsPanel.close();
 
@@ -203,6 +218,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     public static final int TOGGLE_AST = 3;
     public static final int TOGGLE_STACK = 4;
     public static final int TOGGLE_EVENTS = 5;
+    public static final int TOGGLE_PROFILE = 6;
 
     public Box createToggleButtons() {
         Box b = Box.createHorizontalBox();
@@ -211,6 +227,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         b.add(Box.createHorizontalStrut(15));
         b.add(createToggleButton("Parse Tree", TOGGLE_PTREE, parseTreePanel));
         b.add(createToggleButton("AST", TOGGLE_AST, astPanel));
+        b.add(createToggleButton("Profile", TOGGLE_PROFILE, profilerPanel));
         b.add(Box.createHorizontalStrut(15));
         b.add(createToggleButton("Stack", TOGGLE_STACK, stackPanel));
         b.add(createToggleButton("Events", TOGGLE_EVENTS, eventsPanel));
@@ -237,6 +254,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
 
         setComponentVisible(parseTreePanel, true);
         setComponentVisible(astPanel, false);
+        setComponentVisible(profilerPanel, false);
 
         setComponentVisible(stackPanel, true);
         setComponentVisible(eventsPanel, false);
@@ -246,6 +264,7 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
 
         splitPanel.setComponentWidth(parseTreePanel, width*PERCENT_WIDTH_MIDDLE);
         splitPanel.setComponentWidth(astPanel, width*PERCENT_WIDTH_MIDDLE);
+        splitPanel.setComponentWidth(profilerPanel, width*PERCENT_WIDTH_MIDDLE);
 
         splitPanel.setComponents(inputPanel, parseTreePanel, stackPanel);
     }
@@ -259,43 +278,62 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     public void performToggleButtonAction(int tag) {
         switch(tag) {
             case TOGGLE_INPUT:
-                toggleComponents(inputPanel, outputPanel, CustomSplitPanel.LEFT_INDEX);
+                toggleComponents(inputPanel, CustomSplitPanel.LEFT_INDEX, outputPanel);
                 break;
             case TOGGLE_OUTPUT:
-                toggleComponents(outputPanel, inputPanel, CustomSplitPanel.LEFT_INDEX);
+                toggleComponents(outputPanel, CustomSplitPanel.LEFT_INDEX, inputPanel);
                 break;
 
             case TOGGLE_PTREE:
-                toggleComponents(parseTreePanel, astPanel, CustomSplitPanel.MIDDLE_INDEX);
+                toggleComponents(parseTreePanel, CustomSplitPanel.MIDDLE_INDEX, astPanel, profilerPanel);
                 break;
             case TOGGLE_AST:
-                toggleComponents(astPanel, parseTreePanel, CustomSplitPanel.MIDDLE_INDEX);
+                toggleComponents(astPanel, CustomSplitPanel.MIDDLE_INDEX, parseTreePanel, profilerPanel);
+                break;
+            case TOGGLE_PROFILE:
+                toggleComponents(profilerPanel, CustomSplitPanel.MIDDLE_INDEX, parseTreePanel, astPanel);
                 break;
 
             case TOGGLE_STACK:
-                toggleComponents(stackPanel, eventsPanel, CustomSplitPanel.RIGHT_INDEX);
+                toggleComponents(stackPanel, CustomSplitPanel.RIGHT_INDEX, eventsPanel);
                 break;
             case TOGGLE_EVENTS:
-                toggleComponents(eventsPanel, stackPanel, CustomSplitPanel.RIGHT_INDEX);
+                toggleComponents(eventsPanel, CustomSplitPanel.RIGHT_INDEX, stackPanel);
                 break;
         }
     }
 
-    public void toggleComponents(DetachablePanel c, DetachablePanel other, int index) {
+    /** Toggles the visibility of the panel: the other panels sharing the same index
+     * are hidden when it is shown and the first visible one replaces it when it is hidden.
+     */
+    public void toggleComponents(DetachablePanel c, int index, DetachablePanel... others) {
         c.setVisible(!c.isVisible());
         if(c.isVisible()) {
-            if(!other.isDetached())
-                setComponentVisible(other, false);
+            for(DetachablePanel other : others) {
+                if(!other.isDetached())
+                    setComponentVisible(other, false);
+            }
             if(!c.isDetached())
                 splitPanel.setComponent(c, index);
         } else {
-            if(other.isVisible() && !other.isDetached())
-                splitPanel.setComponent(other, index);
-            else
-                splitPanel.setComponent(null, index);
+            DetachablePanel visible = null;
+            for(DetachablePanel other : others) {
+                if(other.isVisible() && !other.isDetached()) {
+                    visible = other;
+                    break;
+                }
+            }
+            splitPanel.setComponent(visible, index);
         }
     }
 
+    public void showProfilerPanel() {
+        if(profilerPanel.isVisible()) return;
+
+        performToggleButtonAction(TOGGLE_PROFILE);
+        components2toggle.get(profilerPanel).setSelected(true);
+    }
+
     public void toggleInputTokensBox() {
         inputPanel.toggleInputTokensBox();
     }
@@ -432,8 +470,20 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         return startRule;
     }
 
-    public String getEventsAsString() {
-        return eventsPanel.getEventsAsString();
+    public DBEventsPanel.EventTableDataModel getEventsModel() {
+        return eventsPanel.getModel();
+    }
+
+    public List<TreeNode> getParseTreeRoots() {
+        return Collections.singletonList(parseTreeModel.getRootRule());
+    }
+
+    public List<TreeNode> getASTRoots() {
+        List<TreeNode> roots = new ArrayList<TreeNode>();
+        for(int i=0; i<astModel.getRuleCount(); i++) {
+            roots.addAll(astModel.getRuleAtIndex(i).getRoots());
+        }
+        return roots;
     }
 
     public int getNumberOfEvents() {
@@ -441,6 +491,8 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     }
 
     public void launchLocalDebugger(int options) {
+        recorder.setProfiling((options & OPTION_PROFILE) > 0);
+
         if(needsToGenerateGrammar()) {
             if(AWPrefs.getDebuggerAskGen()) {
                 int result = XJAlert.createInstance().displayCustomAlert(getWindowContainer(), "Generate and compile",
@@ -472,37 +524,99 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
     }
 
     public boolean debuggerLocalDidRun(boolean build) {
-        if(build)
+        if(recorder.isProfiling())
+            StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_LOCAL_PROFILER);
+        else if(build)
             StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_LOCAL_DEBUGGER_BUILD);
         else
             StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_LOCAL_DEBUGGER);
-        return debuggerLaunch(DEFAULT_LOCAL_ADDRESS, AWPrefs.getDebugDefaultLocalPort(), false);
+
+        DBInProcessParser parser = local.getInProcessParser();
+        if(parser != null) {
+            debuggerPrepare();
+            recorder.connectInProcess(parser);
+            return true;
+        }
+        return debuggerLaunch(DEFAULT_LOCAL_ADDRESS, AWPrefs.getDebugDefaultLocalPort(), false, local.usesBinaryProtocol());
     }
 
     public void launchRemoteDebugger() {
         StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_REMOTE_DEBUGGER);
+        recorder.setProfiling(false);
         DBRemoteConnectDialog dialog = new DBRemoteConnectDialog(getWindowContainer());
         if(dialog.runModal() == XJDialog.BUTTON_OK) {
-            debuggerLaunch(dialog.getAddress(), dialog.getPort(), true);
+            debuggerLaunch(dialog.getAddress(), dialog.getPort(), true, false);
         }
     }
 
-    public boolean debuggerLaunch(String address, int port, boolean remote) {
+    public boolean debuggerLaunch(String address, int port, boolean remote, boolean binary) {
         if(remote && !debuggerLaunchGrammar()) {
             XJAlert.display(getWindowContainer(), "Error",
                     "Cannot launch the debuggerTab.\nException while parsing grammar.");
             return false;
         }
 
+        debuggerPrepare();
+        recorder.connect(address, port, binary);
+        return true;
+    }
+
+    protected void debuggerPrepare() {
         queryGrammarBreakpoints();
         rootGrammarName = delegate.getGrammarName();
         inputPanel.prepareForGrammar(delegate.getGrammarEngine());
         player.setInputBuffer(inputPanel.getInputBuffer());
+    }
+
+    /** Opens a trace file saved by a previous session and replays its events
+     * without launching the parser.
+     */
+    public boolean launchTraceDebugger(File file) {
+        StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_DEBUGGER_OPEN_TRACE);
+        recorder.setProfiling(false);
 
-        recorder.connect(address, port);
+        debuggerPrepare();
+
+        String traceGrammarFileName;
+        try {
+            traceGrammarFileName = recorder.openTrace(file);
+        } catch (IOException e) {
+            XJAlert.display(getWindowContainer(), "Error", "Cannot open the trace file: "+file+"\nError: "+e);
+            return false;
+        }
+
+        String grammarFileName = delegate.getGrammarEngine().getGrammarFileName();
+        if(traceGrammarFileName != null && !traceGrammarFileName.equals(grammarFileName)) {
+            XJAlert.display(getWindowContainer(), "Grammar Mismatch",
+                    "Warning: the trace has been recorded with another grammar ("+traceGrammarFileName+").");
+        }
+
+        connectionSuccess();
+        recorder.goToStart();
         return true;
     }
 
+    public void saveTrace(File file) throws IOException {
+        recorder.saveTrace(file, delegate.getGrammarEngine().getGrammarFileName());
+    }
+
+    public void saveProfile(File file) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            recorder.getProfiler().writeCSV(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    public void goToEvent(int position) {
+        recorder.goToEvent(position);
+    }
+
+    public boolean goToToken(int tokenIndex) {
+        return recorder.goToToken(tokenIndex);
+    }
+
     public void showEditTestRig() {
         local.showEditTestRig();
     }
@@ -518,6 +632,8 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         delegate.debuggerStarted();
 
         player.resetPlayEvents(true);
+        if(recorder.isProfiling())
+            profilerPanel.clear();
     }
 
     public void connectionFailed() {
@@ -563,11 +679,39 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
         eventsPanel.addEvent(event, info);
     }
 
-    public void playEvents(List events, int lastEventPosition, boolean reset) {
+    public void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        eventsPanel.setEvents(events);
         player.playEvents(events, lastEventPosition, reset);
+    }
+
+    public void playerDidPlayBatch() {
+        eventsPanel.updateOnBatch();
+    }
+
+    public void playerDidPlayEvents() {
         breaksOnEvent();
     }
 
+    public void playerSaveCheckpoint(DBPlayerCheckpoint checkpoint) {
+        List<DBEventEnterRule> stack = stackPanel.saveState();
+        DBParseTreeModel.State parseTree = parseTreeModel.saveState();
+        DBASTModel.State ast = astModel.saveState();
+
+        checkpoint.stackState = stack;
+        checkpoint.parseTreeState = parseTree;
+        checkpoint.astState = ast;
+        checkpoint.addElements(stack.size());
+        checkpoint.addTreeNodes(parseTree.getNodeCount()+ast.getNodeCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    public void playerRestoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        stackPanel.restoreState((List<DBEventEnterRule>)checkpoint.stackState);
+        eventsPanel.setNumberOfEvents(checkpoint.position);
+        parseTreeModel.restoreState((DBParseTreeModel.State)checkpoint.parseTreeState);
+        astModel.restoreState((DBASTModel.State)checkpoint.astState);
+    }
+
     public void playerSetLocation(DBEventLocation location) {
         parseTreeModel.setLocation(location);
     }
@@ -648,6 +792,11 @@ public class DebuggerTab extends GrammarWindowTab implements DetachablePanelDele
                 inputPanel.stop();
                 running = false;
 
+                if(recorder.isProfiling()) {
+                    profilerPanel.update(recorder.getProfiler());
+                    showProfilerPanel();
+                }
+
                 delegate.debuggerStopped();
                 XJNotificationCenter.defaultCenter().postNotification(this, NOTIF_DEBUG_STOPPED);
             }
@@ -2,6 +2,7 @@ package org.antlr.works.debugger.input;
 
 import org.antlr.runtime.Token;
 import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
 /*
 
 [The "BSD licence"]
@@ -51,4 +52,10 @@ public interface DBInputProcessor {
 
     public int getCurrentTokenIndex();
     public DBInputTextTokenInfo getTokenInfoAtTokenIndex(int index);
+
+    /** Tokens already received are kept when a checkpoint is restored, like
+     * with rewindAll(): only their attributes and the current position are saved.
+     */
+    public void saveCheckpoint(DBPlayerCheckpoint checkpoint);
+    public void restoreCheckpoint(DBPlayerCheckpoint checkpoint);
 }
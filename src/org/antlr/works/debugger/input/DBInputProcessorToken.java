@@ -34,6 +34,7 @@ package org.antlr.works.debugger.input;
 import org.antlr.runtime.Token;
 import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
 import org.antlr.works.dialog.AWPrefsDialog;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.TextPane;
@@ -216,6 +217,27 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
         }
     }
 
+    public void saveCheckpoint(DBPlayerCheckpoint checkpoint) {
+        State state = new State();
+        state.currentTokenIndex = currentTokenIndex;
+        state.consumeAttributes = new HashMap<Integer, AttributeSet>(indexToConsumeAttributeMap);
+        state.lookaheadTokenIndexes = new HashSet<Integer>(lookaheadTokenIndexes);
+        state.locationEvent = locationEvent;
+
+        checkpoint.processorState = state;
+        checkpoint.addElements(state.consumeAttributes.size()+state.lookaheadTokenIndexes.size());
+    }
+
+    public void restoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        State state = (State)checkpoint.processorState;
+        currentTokenIndex = state.currentTokenIndex;
+        indexToConsumeAttributeMap.clear();
+        indexToConsumeAttributeMap.putAll(state.consumeAttributes);
+        lookaheadTokenIndexes.clear();
+        lookaheadTokenIndexes.addAll(state.lookaheadTokenIndexes);
+        locationEvent = state.locationEvent;
+    }
+
     public void addToken(Token token) {
         int index = token.getTokenIndex();
         if(index == -1) {
@@ -465,4 +487,12 @@ public class DBInputProcessorToken implements DBInputProcessor, TextPaneDelegate
             textPane.repaint();
         }
     }
+
+    protected static class State {
+        public int currentTokenIndex;
+        public Map<Integer,AttributeSet> consumeAttributes;
+        public Set<Integer> lookaheadTokenIndexes;
+        public DBEventLocation locationEvent;
+    }
+
 }
@@ -3,6 +3,7 @@ package org.antlr.works.debugger.input;
 import org.antlr.runtime.Token;
 import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.DBEventLocation;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
 import org.antlr.works.debugger.tree.DBTreeNode;
 import org.antlr.works.debugger.tree.DBTreeToken;
 import org.antlr.works.dialog.AWPrefsDialog;
@@ -123,6 +124,39 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         lastNode = currentNode;
     }
 
+    public void saveCheckpoint(DBPlayerCheckpoint checkpoint) {
+        State state = new State();
+        state.currentNode = currentNode;
+        state.lastNode = lastNode;
+        state.location = location;
+        for (Map.Entry<Integer,NodeInfo> entry : nodeInfoForToken.entrySet()) {
+            if(entry.getValue().node != null)
+                state.colors.put(entry.getKey(), entry.getValue().node.getTokenColor());
+        }
+
+        checkpoint.processorState = state;
+        checkpoint.addElements(state.colors.size());
+    }
+
+    public void restoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        State state = (State)checkpoint.processorState;
+
+        /** Nodes received after the checkpoint stay in the tree but are displayed
+         * as not consumed, like with rewindAll()
+         */
+        for (Map.Entry<Integer,NodeInfo> entry : nodeInfoForToken.entrySet()) {
+            InputTreeNode node = entry.getValue().node;
+            if(node == null) continue;
+
+            Color c = state.colors.get(entry.getKey());
+            node.setColor(c == null ? nonConsumedColor : c);
+        }
+
+        currentNode = state.currentNode;
+        lastNode = state.lastNode;
+        location = state.location;
+    }
+
     public void LT(Token token) {
         InputTreeNode node = processToken(token);
         if(node != null) {
@@ -231,6 +265,13 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
         return !(info == null || info.node == null) && info.node.breakpoint;
     }
 
+    protected static class State {
+        public InputTreeNode currentNode;
+        public InputTreeNode lastNode;
+        public DBEventLocation location;
+        public Map<Integer,Color> colors = new HashMap<Integer, Color>();
+    }
+
     public static class NodeInfo {
 
         /** Token */
@@ -266,7 +307,12 @@ public class DBInputProcessorTree implements DBInputProcessor, XJNotificationObs
             if(breakpoint)
                 return Color.red;
             else
-                return super.getColor();
+                return getTokenColor();
+        }
+
+        /** Returns the color of the node regardless of the breakpoint */
+        public Color getTokenColor() {
+            return super.getColor();
         }
 
         public String toString() {
@@ -0,0 +1,257 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.local;
+
+import org.antlr.runtime.misc.Stats;
+import org.antlr.works.grammar.antlr.ANTLRAnalysisCache;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/** On-disk cache of the files generated and compiled by the local debugger. An entry
+ * is a copy of the files, relative to the output path, stored under a key computed from
+ * everything the build depends on: the grammar and its imported grammars, the version
+ * and options of ANTLR, the glue code and the compiler settings. An unchanged grammar
+ * is therefore not generated and compiled again, even after ANTLRWorks is restarted.
+ */
+public class DBBuildCache {
+
+    public static final String CACHE_DIR = "build-cache";
+
+    /** Bump when the content of an entry changes */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int MAX_ENTRIES = 50;
+
+    private static DBBuildCache shared;
+
+    private final File directory;
+
+    public static synchronized DBBuildCache shared() {
+        if(shared == null) {
+            shared = new DBBuildCache(new File(System.getProperty("user.home")+File.separator+
+                    Stats.ANTLRWORKS_DIR+File.separator+CACHE_DIR));
+        }
+        return shared;
+    }
+
+    public DBBuildCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /** Returns the key of the generated and compiled grammar or null if the key cannot
+     * be computed. The grammar file is read from the disk because this is the file
+     * ANTLR generates the recognizers from.
+     */
+    public static String computeGrammarKey(GrammarEngine engine, String grammarFile, String[] options) {
+        String analysisKey = ANTLRAnalysisCache.computeKey(engine);
+        if(analysisKey == null || grammarFile == null) return null;
+
+        List<String> values = new ArrayList<String>();
+        values.add(analysisKey);
+        values.add(readFile(new File(grammarFile)));
+        values.addAll(Arrays.asList(options));
+        return computeKey(values.toArray(new String[values.size()]));
+    }
+
+    /** Returns the key of the values or null if the key cannot be computed */
+    public static String computeKey(String... values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            update(digest, String.valueOf(FORMAT_VERSION));
+            for(String value : values) {
+                update(digest, value == null ? "" : value);
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for(byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /** Copies the files of the entry into the output path. Returns false if there is no entry. */
+    public synchronized boolean restore(String key, File outputPath) {
+        File entry = getEntry(key);
+        if(!entry.isDirectory()) return false;
+
+        try {
+            copy(entry, outputPath);
+        } catch (IOException e) {
+            // Damaged entry: discard it and build again
+            XJUtils.deleteDirectory(entry.getAbsolutePath());
+            return false;
+        }
+        // Keep the most recently used entries when pruning the cache
+        entry.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /** Stores a copy of the files, which must be located inside the output path */
+    public synchronized void store(String key, File outputPath, List<File> files) {
+        if(!directory.exists() && !directory.mkdirs()) return;
+
+        // Copy into a temporary directory first so a reader never sees a partial entry
+        File entry = getEntry(key);
+        File tmp = new File(directory, key+".tmp");
+        XJUtils.deleteDirectory(tmp.getAbsolutePath());
+        try {
+            String root = outputPath.getCanonicalPath();
+            if(!root.endsWith(File.separator))
+                root += File.separator;
+            for(File file : files) {
+                String path = file.getCanonicalPath();
+                if(!path.startsWith(root) || !file.isFile()) continue;
+
+                copyFile(file, new File(tmp, path.substring(root.length())));
+            }
+            XJUtils.deleteDirectory(entry.getAbsolutePath());
+            if(!tmp.renameTo(entry)) {
+                XJUtils.deleteDirectory(tmp.getAbsolutePath());
+            }
+        } catch (IOException e) {
+            XJUtils.deleteDirectory(tmp.getAbsolutePath());
+        }
+
+        prune();
+    }
+
+    public synchronized void clear() {
+        File[] entries = directory.listFiles();
+        if(entries == null) return;
+
+        for(File entry : entries) {
+            XJUtils.deleteDirectory(entry.getAbsolutePath());
+        }
+    }
+
+    /** Returns the files of the directory and of its sub-directories */
+    public static List<File> listFiles(File dir) {
+        List<File> files = new ArrayList<File>();
+        File[] children = dir.listFiles();
+        if(children == null) return files;
+
+        for(File child : children) {
+            if(child.isDirectory())
+                files.addAll(listFiles(child));
+            else
+                files.add(child);
+        }
+        return files;
+    }
+
+    private void prune() {
+        File[] entries = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isDirectory() && !file.getName().endsWith(".tmp");
+            }
+        });
+        if(entries == null || entries.length <= MAX_ENTRIES) return;
+
+        Arrays.sort(entries, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                return Long.valueOf(f1.lastModified()).compareTo(f2.lastModified());
+            }
+        });
+        for(int index = 0; index < entries.length-MAX_ENTRIES; index++) {
+            XJUtils.deleteDirectory(entries[index].getAbsolutePath());
+        }
+    }
+
+    private File getEntry(String key) {
+        return new File(directory, key);
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        File[] children = source.listFiles();
+        if(children == null) return;
+
+        for(File child : children) {
+            File t = new File(target, child.getName());
+            if(child.isDirectory())
+                copy(child, t);
+            else
+                copyFile(child, t);
+        }
+    }
+
+    private static void copyFile(File source, File target) throws IOException {
+        target.getParentFile().mkdirs();
+        InputStream in = new FileInputStream(source);
+        try {
+            OutputStream out = new FileOutputStream(target);
+            try {
+                byte[] buffer = new byte[8192];
+                int count;
+                while((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String readFile(File file) {
+        if(!file.exists()) return "";
+        try {
+            return XJUtils.getStringFromFile(file.getAbsolutePath());
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            digest.update(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            digest.update(s.getBytes());
+        }
+        digest.update((byte)0);
+    }
+}
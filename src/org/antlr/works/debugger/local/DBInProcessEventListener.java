@@ -0,0 +1,267 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.local;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.DebugEventListener;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
+import org.antlr.runtime.tree.CommonTreeAdaptor;
+import org.antlr.runtime.tree.TreeAdaptor;
+
+/** Forwards the events of a parser running inside ANTLRWorks to the debugger listener.
+ * The tokens, tree nodes and exceptions are converted into the same proxy objects that
+ * RemoteDebugEventSocketListener creates so the debugger does not keep any reference to
+ * the objects (and the class loader) of the parser.
+ */
+
+public class DBInProcessEventListener implements DebugEventListener {
+
+    protected final DebugEventListener listener;
+    protected final TreeAdaptor adaptor = new CommonTreeAdaptor();
+
+    protected volatile boolean cancelled = false;
+    protected boolean terminated = false;
+
+    public DBInProcessEventListener(DebugEventListener listener) {
+        this.listener = listener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    /** Stops the parser by unwinding its thread at the next event */
+    protected void check() {
+        if(cancelled)
+            throw new DBInProcessParser.Stopped();
+    }
+
+    public void enterRule(String grammarFileName, String ruleName) {
+        check();
+        listener.enterRule(grammarFileName, ruleName);
+    }
+
+    public void enterAlt(int alt) {
+        check();
+        listener.enterAlt(alt);
+    }
+
+    public void exitRule(String grammarFileName, String ruleName) {
+        check();
+        listener.exitRule(grammarFileName, ruleName);
+    }
+
+    public void enterSubRule(int decisionNumber) {
+        check();
+        listener.enterSubRule(decisionNumber);
+    }
+
+    public void exitSubRule(int decisionNumber) {
+        check();
+        listener.exitSubRule(decisionNumber);
+    }
+
+    public void enterDecision(int decisionNumber, boolean couldBacktrack) {
+        check();
+        listener.enterDecision(decisionNumber, couldBacktrack);
+    }
+
+    public void exitDecision(int decisionNumber) {
+        check();
+        listener.exitDecision(decisionNumber);
+    }
+
+    public void consumeToken(Token t) {
+        check();
+        listener.consumeToken(proxy(t));
+    }
+
+    public void consumeHiddenToken(Token t) {
+        check();
+        listener.consumeHiddenToken(proxy(t));
+    }
+
+    public void LT(int i, Token t) {
+        check();
+        listener.LT(i, proxy(t));
+    }
+
+    public void mark(int marker) {
+        check();
+        listener.mark(marker);
+    }
+
+    public void rewind(int marker) {
+        check();
+        listener.rewind(marker);
+    }
+
+    public void rewind() {
+        check();
+        listener.rewind();
+    }
+
+    public void beginBacktrack(int level) {
+        check();
+        listener.beginBacktrack(level);
+    }
+
+    public void endBacktrack(int level, boolean successful) {
+        check();
+        listener.endBacktrack(level, successful);
+    }
+
+    public void location(int line, int pos) {
+        check();
+        listener.location(line, pos);
+    }
+
+    public void recognitionException(RecognitionException e) {
+        check();
+        listener.recognitionException(proxy(e));
+    }
+
+    public void beginResync() {
+        check();
+        listener.beginResync();
+    }
+
+    public void endResync() {
+        check();
+        listener.endResync();
+    }
+
+    public void semanticPredicate(boolean result, String predicate) {
+        check();
+        listener.semanticPredicate(result, predicate);
+    }
+
+    public void commence() {
+        check();
+        listener.commence();
+    }
+
+    public void terminate() {
+        terminated = true;
+        listener.terminate();
+    }
+
+    public void consumeNode(Object t) {
+        check();
+        listener.consumeNode(proxy(t));
+    }
+
+    public void LT(int i, Object t) {
+        check();
+        listener.LT(i, proxy(t));
+    }
+
+    public void nilNode(Object t) {
+        check();
+        listener.nilNode(proxy(t));
+    }
+
+    public void errorNode(Object t) {
+        check();
+        listener.errorNode(proxy(t));
+    }
+
+    public void createNode(Object t) {
+        check();
+        listener.createNode(proxy(t));
+    }
+
+    public void createNode(Object node, Token token) {
+        check();
+        listener.createNode(proxy(node), proxy(token));
+    }
+
+    public void becomeRoot(Object newRoot, Object oldRoot) {
+        check();
+        listener.becomeRoot(proxy(newRoot), proxy(oldRoot));
+    }
+
+    public void addChild(Object root, Object child) {
+        check();
+        listener.addChild(proxy(root), proxy(child));
+    }
+
+    public void setTokenBoundaries(Object t, int tokenStartIndex, int tokenStopIndex) {
+        check();
+        listener.setTokenBoundaries(proxy(t), tokenStartIndex, tokenStopIndex);
+    }
+
+    /* Conversion (see DebugEventSocketProxy for the remote equivalent) */
+
+    protected Token proxy(Token t) {
+        if(t == null)
+            return null;
+
+        return new RemoteDebugEventSocketListener.ProxyToken(t.getTokenIndex(), t.getType(), t.getChannel(),
+                t.getLine(), t.getCharPositionInLine(), t.getText());
+    }
+
+    protected Object proxy(Object node) {
+        if(node == null)
+            return null;
+
+        int line = -1;
+        int charPos = -1;
+        Token token = adaptor.getToken(node);
+        if(token != null) {
+            line = token.getLine();
+            charPos = token.getCharPositionInLine();
+        }
+        return new RemoteDebugEventSocketListener.ProxyTree(adaptor.getUniqueID(node), adaptor.getType(node),
+                line, charPos, adaptor.getTokenStartIndex(node), adaptor.getText(node));
+    }
+
+    /** Only the class and the position of the exception are kept, like the remote protocol does */
+    protected RecognitionException proxy(RecognitionException e) {
+        RecognitionException copy;
+        try {
+            copy = (RecognitionException)Class.forName(e.getClass().getName()).getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            copy = new RecognitionException();
+        }
+        copy.index = e.index;
+        copy.line = e.line;
+        copy.charPositionInLine = e.charPositionInLine;
+        return copy;
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.local;
+
+import org.antlr.works.utils.StreamWatcherDelegate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/** Sends the standard output and error of an in-process parser thread (the syntax errors
+ * and the output of the actions) to the output panel of the debugger, line by line like the
+ * streams of a remote parser. The other threads still write to the original streams.
+ */
+
+public class DBInProcessOutput extends OutputStream {
+
+    private static final ThreadLocal<ByteArrayOutputStream> buffers = new ThreadLocal<ByteArrayOutputStream>();
+    private static final ThreadLocal<StreamWatcherDelegate> delegates = new ThreadLocal<StreamWatcherDelegate>();
+
+    private static int redirections;
+    private static PrintStream originalOut;
+    private static PrintStream originalErr;
+    private static PrintStream redirectedOut;
+    private static PrintStream redirectedErr;
+
+    protected final PrintStream original;
+
+    protected DBInProcessOutput(PrintStream original) {
+        this.original = original;
+    }
+
+    /** Redirects the output of the current thread to the delegate */
+    public static void redirect(StreamWatcherDelegate delegate) {
+        synchronized(DBInProcessOutput.class) {
+            if(redirections++ == 0) {
+                originalOut = System.out;
+                originalErr = System.err;
+                redirectedOut = new PrintStream(new DBInProcessOutput(originalOut), true);
+                redirectedErr = new PrintStream(new DBInProcessOutput(originalErr), true);
+                System.setOut(redirectedOut);
+                System.setErr(redirectedErr);
+            }
+        }
+        buffers.set(new ByteArrayOutputStream());
+        delegates.set(delegate);
+    }
+
+    /** Sends the last line of the current thread, if not terminated, and restores the
+     * original streams when no other parser is running.
+     */
+    public static void restore() {
+        ByteArrayOutputStream buffer = buffers.get();
+        if(buffer == null) return;
+
+        redirectedOut.flush();
+        redirectedErr.flush();
+        if(buffer.size() > 0)
+            delegates.get().streamWatcherDidReceiveString(buffer.toString()+"\n");
+        buffers.remove();
+        delegates.remove();
+
+        synchronized(DBInProcessOutput.class) {
+            if(--redirections == 0) {
+                // the streams may have been replaced in the meantime
+                if(System.out == redirectedOut)
+                    System.setOut(originalOut);
+                if(System.err == redirectedErr)
+                    System.setErr(originalErr);
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ByteArrayOutputStream buffer = buffers.get();
+        if(buffer == null) {
+            original.write(b);
+        } else if(b == '\n') {
+            delegates.get().streamWatcherDidReceiveString(buffer.toString()+"\n");
+            buffer.reset();
+        } else if(b != '\r') {
+            buffer.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if(buffers.get() == null) {
+            original.write(b, off, len);
+        } else {
+            for(int i = off; i < off+len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // the lines of a parser are sent when they are terminated
+        if(buffers.get() == null)
+            original.flush();
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.local;
+
+import org.antlr.runtime.*;
+import org.antlr.runtime.debug.DebugEventListener;
+import org.antlr.runtime.tree.CommonTreeNodeStream;
+import org.antlr.runtime.tree.TreeNodeStream;
+import org.antlr.works.utils.StreamWatcherDelegate;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Runs the compiled lexer and parser on a worker thread inside ANTLRWorks instead of
+ * launching the __Test__ glue code in another virtual machine. The recognizers are loaded
+ * by their own class loader which is dropped when the parser terminates. The ANTLR runtime
+ * is shared with ANTLRWorks so the parser can talk directly to the debugger listener.
+ */
+
+public class DBInProcessParser implements Runnable {
+
+    /** Thrown through the parser to stop it when the debugger is stopped */
+    public static class Stopped extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+
+    protected ClassLoader loader;
+    protected final String lexerClassName;
+    protected final String parserClassName;
+    protected final String walkerClassName;
+    protected final String startRule;
+    protected final String inputFile;
+
+    protected StreamWatcherDelegate output;
+    protected DBInProcessEventListener listener;
+    protected Thread thread;
+
+    /** The walker class name is only specified for a tree grammar: the parser is then used
+     * to build the tree and the walker is debugged.
+     */
+    public DBInProcessParser(ClassLoader loader, String lexerClassName, String parserClassName, String walkerClassName,
+                             String startRule, String inputFile)
+    {
+        this.loader = loader;
+        this.lexerClassName = lexerClassName;
+        this.parserClassName = parserClassName;
+        this.walkerClassName = walkerClassName;
+        this.startRule = startRule;
+        this.inputFile = inputFile;
+    }
+
+    /** Creates a class loader reading the classes from the compiled classes, if any,
+     * and then from the output directory and the other paths.
+     */
+    public static ClassLoader createClassLoader(Map<String, byte[]> classes, String outputFileDir, List<String> paths)
+            throws MalformedURLException
+    {
+        List<URL> urls = new ArrayList<URL>();
+        urls.add(new File(outputFileDir).toURI().toURL());
+        for (String path : paths) {
+            urls.add(new File(path).toURI().toURL());
+        }
+        return new IsolatedClassLoader(urls.toArray(new URL[urls.size()]), classes, DBInProcessParser.class.getClassLoader());
+    }
+
+    /** Loads the recognizers so a missing class is reported before the debugger starts */
+    public void load() throws ClassNotFoundException {
+        loader.loadClass(lexerClassName);
+        loader.loadClass(parserClassName);
+        if(walkerClassName != null)
+            loader.loadClass(walkerClassName);
+    }
+
+    public void setOutput(StreamWatcherDelegate output) {
+        this.output = output;
+    }
+
+    public synchronized void start(DebugEventListener listener) {
+        this.listener = new DBInProcessEventListener(listener);
+        thread = new Thread(this, "ANTLRWorks Parser");
+        thread.setContextClassLoader(loader);
+        thread.start();
+    }
+
+    /** Stops the parser at its next event, even if it is waiting on a breakpoint */
+    public synchronized void cancel() {
+        if(listener != null)
+            listener.cancel();
+        if(thread != null)
+            thread.interrupt();
+    }
+
+    public synchronized boolean isAlive() {
+        return thread != null && thread.isAlive();
+    }
+
+    public void run() {
+        if(output != null)
+            DBInProcessOutput.redirect(output);
+        try {
+            parse();
+        } catch (InvocationTargetException e) {
+            report(e.getCause());
+        } catch (Stopped e) {
+            // The debugger has been stopped
+        } catch (Throwable e) {
+            report(e);
+        } finally {
+            DBInProcessOutput.restore();
+
+            /* Make sure the debugger does not wait for an event that will never come */
+            if(!listener.isTerminated() && !listener.cancelled)
+                listener.terminate();
+
+            synchronized(this) {
+                loader = null;
+                thread = null;
+            }
+        }
+    }
+
+    protected void parse() throws Exception {
+        Object lexer = loader.loadClass(lexerClassName).getConstructor(CharStream.class).newInstance(
+                new ANTLRFileStream(inputFile, "UTF8"));
+        CommonTokenStream tokens = new CommonTokenStream((TokenSource)lexer);
+
+        Class<?> parserClass = loader.loadClass(parserClassName);
+        if(walkerClassName == null) {
+            Object parser = parserClass.getConstructor(TokenStream.class, DebugEventListener.class).newInstance(tokens, listener);
+            parserClass.getMethod(startRule).invoke(parser);
+        } else {
+            Object parser = parserClass.getConstructor(TokenStream.class).newInstance(tokens);
+            Object r = parserClass.getMethod(startRule).invoke(parser);
+            Object tree = r.getClass().getMethod("getTree").invoke(r);
+
+            Class<?> walkerClass = loader.loadClass(walkerClassName);
+            Object walker = walkerClass.getConstructor(TreeNodeStream.class, DebugEventListener.class).newInstance(
+                    new CommonTreeNodeStream(tree), listener);
+            walkerClass.getMethod(startRule).invoke(walker);
+        }
+    }
+
+    protected void report(Throwable e) {
+        if(e instanceof Stopped)
+            return;
+
+        if(output != null)
+            output.streamWatcherDidReceiveString("Parser: "+e+"\n");
+        else
+            e.printStackTrace();
+    }
+
+    /** Class loader looking up the compiled classes in memory first */
+    protected static class IsolatedClassLoader extends URLClassLoader {
+
+        protected final Map<String, byte[]> classes;
+
+        public IsolatedClassLoader(URL[] urls, Map<String, byte[]> classes, ClassLoader parent) {
+            super(urls, parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes == null ? null : classes.get(name);
+            if(bytes != null)
+                return defineClass(name, bytes, 0, bytes.length);
+            else
+                return super.findClass(name);
+        }
+    }
+
+}
@@ -37,6 +37,7 @@ import org.antlr.stringtemplate.language.DefaultTemplateLexer;
 import org.antlr.works.IDE;
 import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.debugger.DebuggerCompiler;
 import org.antlr.works.debugger.DebuggerEngine;
 import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.tivo.DBRecorder;
@@ -58,9 +59,7 @@ import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatcherDelegate {
 
@@ -78,6 +77,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     public static final String ST_ATTR_START_SYMBOL = "start_symbol";
     public static final String ST_ATTR_GRAMMAR_NAME = "grammar_name";
     public static final String ST_ATTR_DEBUG_PORT = "port";
+    public static final String ST_ATTR_BINARY_PROTOCOL = "binary";
 
     protected String outputFileDir;
 
@@ -90,6 +90,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     protected String lastStartRule;
 
     protected Process remoteParserProcess;
+    protected DBInProcessParser inProcessParser;
 
     protected boolean cancelled;
     protected int options;
@@ -107,6 +108,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     protected String lastInputFile;
     protected String testTemplateText;
     protected String lastTestTemplateText;
+    protected boolean lastBinaryProtocol;
     protected String inputText;
     protected String rawInputText;
 
@@ -144,6 +146,13 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     public void forceStop() {
         if(remoteParserProcess != null)
             remoteParserProcess.destroy();
+        if(inProcessParser != null)
+            inProcessParser.cancel();
+    }
+
+    /** Returns the parser to run inside ANTLRWorks or null if a remote parser has been launched */
+    public DBInProcessParser getInProcessParser() {
+        return inProcessParser;
     }
 
     public synchronized void cancel() {
@@ -217,13 +226,19 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
 
     public void run() {
         resetErrors();
+        inProcessParser = null;
 
         if(prepare()) {
             if(optionBuild()) generateAndCompileGrammar();
             if(!cancelled() && !optionAgain()) askUserForInputText();
             if(!cancelled() && !AWPrefs.TEST_RIG_MODE_CLASS.equals(testTemplateMode)) generateAndCompileGlueCode(optionBuild());
             if(!cancelled()) generateInputText();
-            if(!cancelled()) launchRemoteParser();
+            if(!cancelled()) {
+                if(isInProcess())
+                    prepareInProcessParser();
+                else
+                    launchRemoteParser();
+            }
         }
 
         if(hasErrors())
@@ -367,6 +382,17 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         if(cancelled())
             return;
 
+        String key = getGrammarBuildKey();
+        if(key != null) {
+            clearOutputFileDir();
+            if(DBBuildCache.shared().restore(key, new File(codeGenerator.getOutputPath()))) {
+                codeGenerator.setGenerated();
+                return;
+            }
+        }
+
+        long time = getFileSystemTime(new File(codeGenerator.getOutputPath()));
+
         progress.setInfo("Generating...");
         progress.setProgress(2);
         generateGrammar();
@@ -377,6 +403,60 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         progress.setInfo("Compiling...");
         progress.setProgress(3);
         compileGrammar();
+
+        if(key != null && !cancelled()) {
+            List<File> files = getFilesModifiedSince(new File(codeGenerator.getOutputPath()), time);
+            files.addAll(DBBuildCache.listFiles(new File(outputFileDir)));
+            DBBuildCache.shared().store(key, new File(codeGenerator.getOutputPath()), files);
+        }
+    }
+
+    /** Returns the key of the build cache entry of the grammar, or null if it cannot be computed */
+    protected String getGrammarBuildKey() {
+        List<String> options = new ArrayList<String>();
+        options.add("-debug");
+        options.addAll(Arrays.asList(AWPrefs.getANTLR3Options()));
+        options.addAll(Arrays.asList(getCompilerSettings()));
+        return DBBuildCache.computeGrammarKey(debuggerTab.getDelegate().getGrammarEngine(),
+                debuggerTab.getDelegate().getDocument().getDocumentPath(), options.toArray(new String[options.size()]));
+    }
+
+    protected String[] getCompilerSettings() {
+        return new String[] { AWPrefs.getCompiler(), String.valueOf(AWPrefs.getJavaCCustomPath()), AWPrefs.getJavaCPath(),
+                AWPrefs.getJikesPath(), DebuggerEngine.getClassPath(outputFileDir) };
+    }
+
+    /** Returns the current time as stored by the file system of the directory: some file systems
+     * only store the modification time to the second, and their clock may lag behind the one
+     * of System.currentTimeMillis().
+     */
+    protected static long getFileSystemTime(File dir) {
+        try {
+            dir.mkdirs();
+            File marker = File.createTempFile("build", ".time", dir);
+            long time = marker.lastModified();
+            marker.delete();
+            if(time > 0)
+                return time;
+        } catch (IOException e) {
+            // the directory is not writable: the build will fail anyway
+        }
+        return System.currentTimeMillis();
+    }
+
+    /** Returns the files of the directory (but not of its sub-directories) modified since the time,
+     * which must be obtained from getFileSystemTime() before the files are built.
+     */
+    protected static List<File> getFilesModifiedSince(File dir, long time) {
+        List<File> files = new ArrayList<File>();
+        File[] children = dir.listFiles();
+        if(children == null) return files;
+
+        for (File child : children) {
+            if(child.isFile() && child.lastModified() >= time)
+                files.add(child);
+        }
+        return files;
     }
 
     protected void analyzeGrammar() {
@@ -411,9 +491,24 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
     }
 
     protected void compileGrammar() {
+        clearOutputFileDir();
+        compileFiles(grammarGeneratedFiles.toArray(new String[grammarGeneratedFiles.size()]));
+    }
+
+    protected void clearOutputFileDir() {
         XJUtils.deleteDirectory(outputFileDir);
+        DebuggerCompiler compiler = getInProcessCompiler();
+        if(compiler != null)
+            compiler.clearCompiledClasses(outputFileDir);
         new File(outputFileDir).mkdirs();
-        compileFiles(grammarGeneratedFiles.toArray(new String[grammarGeneratedFiles.size()]));
+    }
+
+    /** Returns the javax.tools compiler if it is the selected compiler */
+    protected DebuggerCompiler getInProcessCompiler() {
+        if(AWPrefs.getCompiler().equalsIgnoreCase(AWPrefs.COMPILER_JAVAX_TOOLS))
+            return DebuggerCompiler.shared();
+        else
+            return null;
     }
 
     protected void generateAndCompileGlueCode(boolean build) {
@@ -423,13 +518,14 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         if(!build && lastStartRule != null && startRule.equals(lastStartRule) &&
                 inputFile.equals(lastInputFile) && lastInputMode == inputMode &&
                 testTemplateClass.equals(lastTestTemplateClass) && lastTestTemplateMode.equals(testTemplateMode) &&
-                testTemplateText.equals(lastTestTemplateText))
+                testTemplateText.equals(lastTestTemplateText) && lastBinaryProtocol == usesBinaryProtocol())
             return;
 
         lastStartRule = startRule;
         lastTestTemplateMode = testTemplateMode;
         lastTestTemplateClass = testTemplateClass;
         lastTestTemplateText = testTemplateText;
+        lastBinaryProtocol = usesBinaryProtocol();
         lastInputMode = inputMode;
         lastInputFile = inputFile;
 
@@ -438,7 +534,34 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         if(cancelled())
             return;
 
+        /* The glue code contains the start rule, the input and the test rig template */
+        String key = null;
+        String grammarKey = getGrammarBuildKey();
+        if(grammarKey != null) {
+            try {
+                key = DBBuildCache.computeKey(grammarKey, XJUtils.getStringFromFile(fileRemoteParser));
+            } catch (IOException e) {
+                key = null;
+            }
+        }
+
+        File outputPath = new File(codeGenerator.getOutputPath());
+        if(key != null && DBBuildCache.shared().restore(key, outputPath)) {
+            /* The classes of the in-process compiler may not match the restored ones */
+            DebuggerCompiler compiler = getInProcessCompiler();
+            if(compiler != null)
+                compiler.clearCompiledClasses(outputFileDir);
+            return;
+        }
+
+        long time = getFileSystemTime(new File(outputFileDir));
         compileGlueCode();
+
+        if(key != null && !cancelled()) {
+            List<File> files = getFilesModifiedSince(new File(outputFileDir), time);
+            files.add(new File(fileRemoteParser));
+            DBBuildCache.shared().store(key, outputPath, files);
+        }
     }
 
     protected String getLexerName() throws Exception {
@@ -484,6 +607,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
             glueCode.setAttribute(ST_ATTR_START_SYMBOL, startRule);
             glueCode.setAttribute(ST_ATTR_DEBUG_PORT, AWPrefs.getDebugDefaultLocalPort());
             glueCode.setAttribute(ST_ATTR_GRAMMAR_NAME, debuggerTab.getDelegate().getGrammarName());
+            glueCode.setAttribute(ST_ATTR_BINARY_PROTOCOL, usesBinaryProtocol());
 
             XJUtils.writeStringToFile(glueCode.toString(), fileRemoteParser);
         } catch(Exception e) {
@@ -496,12 +620,30 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
      * Returns a string of import statement based on the package declaration inside any @header block
      */
     private String getCustomImports() {
-        List<ElementBlock> blocks = debuggerTab.getBlocks();
-        if(blocks == null || blocks.isEmpty()) {
+        Set<String> imports = getCustomPackages();
+        if(imports.isEmpty()) {
             return "";
         }
 
+        StringBuilder importLines = new StringBuilder();
+        for (String importName : imports) {
+            importLines.append("import ");
+            importLines.append(importName);
+            importLines.append(".*;\n");
+        }
+        return importLines.toString();
+    }
+
+    /**
+     * Returns the packages declared inside any @header block
+     */
+    private Set<String> getCustomPackages() {
         Set<String> imports = new HashSet<String>();
+        List<ElementBlock> blocks = debuggerTab.getBlocks();
+        if(blocks == null || blocks.isEmpty()) {
+            return imports;
+        }
+
         for (ElementBlock block : blocks) {
             if (!block.name.equals(GrammarSyntaxParser.PARSER_HEADER_BLOCK_NAME) && !block.name.equals(GrammarSyntaxParser.LEXER_HEADER_BLOCK_NAME))
             {
@@ -526,18 +668,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
                 }
             }
         }
-
-        if(imports.isEmpty()) {
-            return "";
-        }
-
-        StringBuilder importLines = new StringBuilder();
-        for (String importName : imports) {
-            importLines.append("import ");
-            importLines.append(importName);
-            importLines.append(".*;\n");
-        }
-        return importLines.toString();
+        return imports;
     }
 
     protected void compileGlueCode() {
@@ -546,9 +677,7 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
             String lexerName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (getLexerName()+"Lexer.java") : (getLexerName()+".java")));
             String parserName = XJUtils.concatPath(codeGenerator.getOutputPath(), (isTreeGrammar ? (debuggerTab.getDelegate().getTokenVocab()+"Parser.java") :
                     (debuggerTab.getDelegate().getGrammarEngine().getGeneratedClassName(ElementGrammarName.PARSER)+".java")));
-            compileFiles(new String[] { lexerName});
-            compileFiles(new String[] { parserName});
-            compileFiles(new String[] { fileRemoteParser});
+            compileFiles(new String[] { lexerName, parserName, fileRemoteParser });
         } catch (Exception e) {
             debuggerTab.getConsole().println(e);
             reportError("Error :\n"+e.toString());
@@ -603,6 +732,74 @@ public class DBLocal implements Runnable, XJDialogProgressDelegate, StreamWatche
         return true;
     }
 
+    /** The parser runs inside ANTLRWorks only with the default test rig: a custom
+     * test rig is a program that must be launched.
+     */
+    protected boolean isInProcess() {
+        return AWPrefs.getDebuggerInProcess() && AWPrefs.TEST_RIG_MODE_TEXT.equals(testTemplateMode) &&
+                "".equals(testTemplateText);
+    }
+
+    /** Only the default test rig knows how to create the binary protocol proxy */
+    public boolean usesBinaryProtocol() {
+        return AWPrefs.getDebuggerBinaryProtocol() && AWPrefs.TEST_RIG_MODE_TEXT.equals(testTemplateMode) &&
+                "".equals(testTemplateText);
+    }
+
+    protected boolean prepareInProcessParser() {
+        try {
+            Map<String, byte[]> classes = null;
+            DebuggerCompiler compiler = getInProcessCompiler();
+            if(compiler != null)
+                classes = compiler.getCompiledClasses(outputFileDir);
+
+            List<String> paths = new ArrayList<String>();
+            if(AWPrefs.getUseCustomClassPath()) {
+                for (String path : Utils.unquotePath(AWPrefs.getCustomClassPath()).split(File.pathSeparator)) {
+                    if(path.length() > 0)
+                        paths.add(path);
+                }
+            }
+            ClassLoader loader = DBInProcessParser.createClassLoader(classes, outputFileDir, paths);
+
+            boolean isTreeGrammar = debuggerTab.getDelegate().getGrammarEngine().getType() == ElementGrammarName.TREEPARSER;
+            String lexerName = isTreeGrammar ? (getLexerName()+"Lexer") : getLexerName();
+            String parserName = isTreeGrammar ? (debuggerTab.getDelegate().getTokenVocab()+"Parser") :
+                    (debuggerTab.getDelegate().getGrammarEngine().getGeneratedClassName(ElementGrammarName.PARSER));
+            String walkerName = isTreeGrammar ? debuggerTab.getDelegate().getGrammarName() : null;
+
+            Set<String> packages = getCustomPackages();
+            DBInProcessParser parser = new DBInProcessParser(loader,
+                    resolveClassName(loader, lexerName, packages),
+                    resolveClassName(loader, parserName, packages),
+                    walkerName == null ? null : resolveClassName(loader, walkerName, packages),
+                    startRule, inputMode == 0 ? fileRemoteParserInputTextFile : inputFile);
+            parser.load();
+            parser.setOutput(debuggerTab.getOutputPanel());
+            inProcessParser = parser;
+        } catch (Exception e) {
+            debuggerTab.getConsole().println(e);
+            reportError("Cannot load the parser:\n"+e.toString());
+            return false;
+        }
+        return true;
+    }
+
+    /** Returns the name of the class in the default package or in one of the
+     * packages declared in the header blocks.
+     */
+    protected String resolveClassName(ClassLoader loader, String name, Set<String> packages) {
+        for (String p : packages) {
+            try {
+                loader.loadClass(p+"."+name);
+                return p+"."+name;
+            } catch (ClassNotFoundException e) {
+                // try the next package
+            }
+        }
+        return name;
+    }
+
     public boolean checkForLaunch() {
         boolean success = true;
         try {
@@ -85,10 +85,12 @@ public class DBEventsPanel extends DetachablePanel {
     
     public void clear() {
         eventTableDataModel.clear();
+        infoTableView.autoresizeColumns();
     }
 
     public void updateOnBreakEvent() {
         eventTableDataModel.update();
+        infoTableView.autoresizeColumns();
 
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
@@ -97,46 +99,80 @@ public class DBEventsPanel extends DetachablePanel {
         });
     }
 
+    /** Called after each batch of events played: only the number of rows changes */
+    public void updateOnBatch() {
+        eventTableDataModel.update();
+    }
+
+    /** Sets the list of the recorded events the rows are read from */
+    public void setEvents(List<DBEvent> events) {
+        eventTableDataModel.setEvents(events);
+    }
+
     public void addEvent(DBEvent event, DBPlayerContextInfo info) {
-        eventTableDataModel.add(event, info);
+        eventTableDataModel.add(info);
     }
 
-    public String getEventsAsString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(eventTableDataModel.getHeadersAsString());
-        sb.append("\n");
+    /** Removes the events after the specified number of events */
+    public void setNumberOfEvents(int count) {
+        eventTableDataModel.truncate(count);
+    }
 
-        List<EventTableDataModel.EventInfo> events = eventTableDataModel.events;
-        for(int i=0; i<events.size(); i++) {
-            sb.append(i);
-            sb.append(":\t");
-            sb.append(events.get(i).toString());
-            sb.append("\n");
-        }
-        return sb.toString();
+    public EventTableDataModel getModel() {
+        return eventTableDataModel;
     }
 
-    public class EventTableDataModel extends AbstractTableModel {
+    /** Table model that does not copy the events: each row only stores the context
+     * of the player when the event was played and reads the event itself from
+     * the list of recorded events when the row is displayed.
+     */
+    public static class EventTableDataModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
 
-        protected List<EventInfo> events = new ArrayList<EventInfo>();
+        protected static final int CONTEXT_SIZE = 4;
 
-        public void add(DBEvent event, DBPlayerContextInfo info) {
-            events.add(new EventInfo(event, info));
+        protected List<DBEvent> events = new ArrayList<DBEvent>();
+        protected int[] contexts = new int[CONTEXT_SIZE*1024];
+        protected int count = 0;
+
+        public void setEvents(List<DBEvent> events) {
+            this.events = events;
+        }
+
+        public void add(DBPlayerContextInfo info) {
+            int offset = count*CONTEXT_SIZE;
+            if(offset+CONTEXT_SIZE > contexts.length) {
+                int[] newContexts = new int[contexts.length*2];
+                System.arraycopy(contexts, 0, newContexts, 0, contexts.length);
+                contexts = newContexts;
+            }
+            contexts[offset] = info.getSubrule();
+            contexts[offset+1] = info.getDecision();
+            contexts[offset+2] = info.getMark();
+            contexts[offset+3] = info.getBacktrack();
+            count++;
+        }
+
+        public void truncate(int count) {
+            if(count < this.count)
+                this.count = count;
+            fireTableDataChanged();
         }
 
         public void clear() {
-            events.clear();
+            count = 0;
+            if(contexts.length > CONTEXT_SIZE*1024)
+                contexts = new int[CONTEXT_SIZE*1024];
             fireTableDataChanged();
-            infoTableView.autoresizeColumns();
         }
 
         public void update() {
             fireTableDataChanged();
-            infoTableView.autoresizeColumns();
         }
 
         public int getRowCount() {
-            return events.size();
+            return count;
         }
 
         public int getColumnCount() {
@@ -168,74 +204,49 @@ public class DBEventsPanel extends DetachablePanel {
         }
 
         public Object getValueAt(int rowIndex, int columnIndex) {
-            EventInfo info = events.get(rowIndex);
             switch(columnIndex) {
                 case INFO_COLUMN_COUNT: return String.valueOf(rowIndex);
-                case INFO_COLUMN_EVENT: return info.event;
-                case INFO_COLUMN_SUBRULE: return info.getSubrule();
-                case INFO_COLUMN_DECISION: return info.getDecision();
-                case INFO_COLUMN_MARK: return info.getMark();
-                case INFO_COLUMN_BACKTRACK: return info.getBacktrack();
+                case INFO_COLUMN_EVENT: return getEvent(rowIndex);
+                case INFO_COLUMN_SUBRULE: return getContextValue(rowIndex, 0);
+                case INFO_COLUMN_DECISION: return getContextValue(rowIndex, 1);
+                case INFO_COLUMN_MARK: return getContextValue(rowIndex, 2);
+                case INFO_COLUMN_BACKTRACK: return getContextValue(rowIndex, 3);
             }
             return null;
         }
 
-        public String getHeadersAsString() {
-            return "#\tEvent\tSubrule\tDecision\tMark\tBacktrack";
+        public DBEvent getEvent(int rowIndex) {
+            return rowIndex < events.size() ? events.get(rowIndex) : null;
         }
 
-        public class EventInfo {
-
-            public DBEvent event;
-            public int subrule;
-            public int decision;
-            public int mark;
-            public int backtrack;
-
-            public EventInfo(DBEvent event, DBPlayerContextInfo info) {
-                this.event = event;
-                this.subrule = info.getSubrule();
-                this.decision = info.getDecision();
-                this.mark = info.getMark();
-                this.backtrack = info.getBacktrack();
-            }
-
-            public Object getSubrule() {
-                return subrule==-1?null:String.valueOf(subrule);
-            }
-
-            public Object getDecision() {
-                return decision==-1?null:String.valueOf(decision);
-            }
+        public int getContext(int rowIndex, int index) {
+            return contexts[rowIndex*CONTEXT_SIZE+index];
+        }
 
-            public Object getMark() {
-                return mark==-1?null:String.valueOf(mark);
-            }
+        public Object getContextValue(int rowIndex, int index) {
+            int value = getContext(rowIndex, index);
+            return value==-1?null:String.valueOf(value);
+        }
 
-            public Object getBacktrack() {
-                return backtrack==-1?null:String.valueOf(backtrack);
-            }
+        public String getHeadersAsString() {
+            return "#\tEvent\tSubrule\tDecision\tMark\tBacktrack";
+        }
 
-            public String getTextForExport(int value) {
-                if(value == -1)
-                    return "-";
-                else
-                    return String.valueOf(value);
-            }
+        public String getTextForExport(int value) {
+            if(value == -1)
+                return "-";
+            else
+                return String.valueOf(value);
+        }
 
-            public String toString() {
-                StringBuilder sb = new StringBuilder();
-                sb.append(event.toString());
-                sb.append("\t");
-                sb.append(getTextForExport(subrule));
-                sb.append("\t");
-                sb.append(getTextForExport(decision));
-                sb.append("\t");
-                sb.append(getTextForExport(mark));
+        public String getRowAsString(int rowIndex) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(getEvent(rowIndex));
+            for(int i=0; i<CONTEXT_SIZE; i++) {
                 sb.append("\t");
-                sb.append(getTextForExport(backtrack));
-                return sb.toString();
+                sb.append(getTextForExport(getContext(rowIndex, i)));
             }
+            return sb.toString();
         }
     }
 
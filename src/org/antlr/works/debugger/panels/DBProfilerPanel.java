@@ -0,0 +1,191 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.panels;
+
+import org.antlr.works.debugger.DebuggerTab;
+import org.antlr.works.debugger.tivo.DBProfiler;
+import org.antlr.works.utils.DetachablePanel;
+import org.antlr.xjlib.appkit.swing.XJTableAlternateRenderer;
+import org.antlr.xjlib.appkit.swing.XJTableView;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Displays the statistics collected by the profiler in two sortable tables */
+public class DBProfilerPanel extends DetachablePanel {
+
+    private static final long serialVersionUID = 1L;
+
+    protected XJTableView rulesTableView;
+    protected XJTableView decisionsTableView;
+
+    protected RuleTableDataModel ruleTableDataModel;
+    protected DecisionTableDataModel decisionTableDataModel;
+
+    public DBProfilerPanel(DebuggerTab debuggerTab) {
+        super("Profile", debuggerTab);
+
+        ruleTableDataModel = new RuleTableDataModel();
+        decisionTableDataModel = new DecisionTableDataModel();
+
+        rulesTableView = createTableView(ruleTableDataModel);
+        decisionsTableView = createTableView(decisionTableDataModel);
+
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.addTab("Rules", rulesTableView);
+        tabbedPane.addTab("Decisions", decisionsTableView);
+
+        mainPanel.add(tabbedPane, BorderLayout.CENTER);
+    }
+
+    protected XJTableView createTableView(AbstractTableModel model) {
+        XJTableView view = new XJTableView();
+        view.getTable().setModel(model);
+        view.getTable().setAutoCreateRowSorter(true);
+        view.getTable().setDefaultRenderer(Number.class, new XJTableAlternateRenderer());
+        view.autoresizeColumns();
+        return view;
+    }
+
+    public void clear() {
+        ruleTableDataModel.setRules(new ArrayList<DBProfiler.RuleStats>());
+        decisionTableDataModel.setDecisions(new ArrayList<DBProfiler.DecisionStats>());
+    }
+
+    public void update(DBProfiler profiler) {
+        ruleTableDataModel.setRules(profiler.getRules());
+        decisionTableDataModel.setDecisions(profiler.getDecisions());
+        rulesTableView.autoresizeColumns();
+        decisionsTableView.autoresizeColumns();
+    }
+
+    public static class RuleTableDataModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final String[] COLUMNS = { "Rule", "Invocations", "Tokens", "Max recursion", "Time (ms)" };
+
+        protected List<DBProfiler.RuleStats> rules = new ArrayList<DBProfiler.RuleStats>();
+
+        public void setRules(List<DBProfiler.RuleStats> rules) {
+            this.rules = rules;
+            fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return rules.size();
+        }
+
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        public Class<?> getColumnClass(int columnIndex) {
+            switch(columnIndex) {
+                case 0: return String.class;
+                case 4: return Double.class;
+            }
+            return Integer.class;
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            DBProfiler.RuleStats stats = rules.get(rowIndex);
+            switch(columnIndex) {
+                case 0: return stats.name;
+                case 1: return stats.invocations;
+                case 2: return stats.tokens;
+                case 3: return stats.maxRecursion;
+                case 4: return Math.round(stats.getTimeMillis()*1000)/1000.0;
+            }
+            return null;
+        }
+    }
+
+    public static class DecisionTableDataModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final String[] COLUMNS = { "Decision", "Rule", "Line", "Invocations", "Avg lookahead", "Max lookahead",
+                "Backtracks", "Failed backtracks", "Max backtrack level", "Rewinds" };
+
+        protected List<DBProfiler.DecisionStats> decisions = new ArrayList<DBProfiler.DecisionStats>();
+
+        public void setDecisions(List<DBProfiler.DecisionStats> decisions) {
+            this.decisions = decisions;
+            fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return decisions.size();
+        }
+
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        public Class<?> getColumnClass(int columnIndex) {
+            switch(columnIndex) {
+                case 1: return String.class;
+                case 4: return Double.class;
+            }
+            return Integer.class;
+        }
+
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            DBProfiler.DecisionStats stats = decisions.get(rowIndex);
+            switch(columnIndex) {
+                case 0: return stats.decision;
+                case 1: return stats.rule;
+                case 2: return stats.line;
+                case 3: return stats.invocations;
+                case 4: return Math.round(stats.getAverageLookahead()*100)/100.0;
+                case 5: return stats.maxLookahead;
+                case 6: return stats.backtracks;
+                case 7: return stats.failedBacktracks;
+                case 8: return stats.maxBacktrackLevel;
+                case 9: return stats.rewinds;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.debugger.remote;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.DebugEventListener;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Reads the events sent by DBBinaryDebugEventProxy and forwards them to a debug
+ * event listener. This is the binary counterpart of RemoteDebugEventSocketListener:
+ * the tokens and nodes are decoded into the same proxy objects.
+ *
+ * A frame is acknowledged only after all its events have been dispatched, so the
+ * remote parser is stopped when the listener blocks (i.e. on a breakpoint).
+ */
+public class DBBinaryDebugEventListener implements Runnable {
+
+    protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The grammar file name of the first rule entered by the remote parser */
+    public String grammarFileName;
+
+    protected DebugEventListener listener;
+    protected SocketChannel channel;
+
+    protected ByteBuffer header = ByteBuffer.allocate(DBBinaryProtocol.FRAME_HEADER_SIZE);
+    protected ByteBuffer frame = ByteBuffer.allocate(DBBinaryProtocol.BATCH_SIZE*2);
+    protected ByteBuffer ack = ByteBuffer.allocate(4);
+
+    protected List<String> symbols = new ArrayList<String>();
+    protected boolean terminated;
+
+    public DBBinaryDebugEventListener(DebugEventListener listener, String machine, int port) throws IOException {
+        this.listener = listener;
+
+        channel = SocketChannel.open(new InetSocketAddress(machine, port));
+        try {
+            channel.socket().setTcpNoDelay(true);
+            handshake();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    protected void handshake() throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(8);
+        read(b);
+        if(b.getInt() != DBBinaryProtocol.MAGIC)
+            throw new IOException("The remote parser does not use the binary debug protocol");
+
+        int version = b.getInt();
+        if(version != DBBinaryProtocol.VERSION)
+            throw new IOException("Unsupported binary debug protocol version "+version);
+    }
+
+    public void start() {
+        new Thread(this).start();
+    }
+
+    public void run() {
+        try {
+            while(!terminated) {
+                readFrame();
+            }
+        } catch (EOFException e) {
+            // The remote parser closed the connection
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            close();
+        }
+    }
+
+    protected void readFrame() throws IOException {
+        header.clear();
+        read(header);
+        int length = header.getInt();
+        int sequence = header.getInt();
+        int count = header.getInt();
+
+        if(frame.capacity() < length)
+            frame = ByteBuffer.allocate(length);
+        frame.clear();
+        frame.limit(length);
+        read(frame);
+
+        for(int i=0; i<count; i++) {
+            dispatch(frame);
+        }
+
+        ack.clear();
+        ack.putInt(sequence);
+        ack.flip();
+        while(ack.hasRemaining()) {
+            channel.write(ack);
+        }
+    }
+
+    /** Fills the buffer up to its limit and flips it */
+    protected void read(ByteBuffer b) throws IOException {
+        while(b.hasRemaining()) {
+            if(channel.read(b) == -1)
+                throw new EOFException();
+        }
+        b.flip();
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Decodes one event from the buffer */
+    protected void dispatch(ByteBuffer b) {
+        byte opcode = b.get();
+        switch(opcode) {
+            case DBBinaryProtocol.COMMENCE:
+                listener.commence();
+                break;
+
+            case DBBinaryProtocol.TERMINATE:
+                terminated = true;
+                listener.terminate();
+                break;
+
+            case DBBinaryProtocol.ENTER_RULE: {
+                String grammar = readSymbol(b);
+                if(grammarFileName == null)
+                    grammarFileName = grammar;
+                listener.enterRule(grammar, readSymbol(b));
+                break;
+            }
+
+            case DBBinaryProtocol.EXIT_RULE: {
+                String grammar = readSymbol(b);
+                listener.exitRule(grammar, readSymbol(b));
+                break;
+            }
+
+            case DBBinaryProtocol.ENTER_ALT:
+                listener.enterAlt(b.getInt());
+                break;
+
+            case DBBinaryProtocol.ENTER_SUBRULE:
+                listener.enterSubRule(b.getInt());
+                break;
+
+            case DBBinaryProtocol.EXIT_SUBRULE:
+                listener.exitSubRule(b.getInt());
+                break;
+
+            case DBBinaryProtocol.ENTER_DECISION: {
+                int decision = b.getInt();
+                listener.enterDecision(decision, readBoolean(b));
+                break;
+            }
+
+            case DBBinaryProtocol.EXIT_DECISION:
+                listener.exitDecision(b.getInt());
+                break;
+
+            case DBBinaryProtocol.CONSUME_TOKEN:
+                listener.consumeToken(readToken(b));
+                break;
+
+            case DBBinaryProtocol.CONSUME_HIDDEN_TOKEN:
+                listener.consumeHiddenToken(readToken(b));
+                break;
+
+            case DBBinaryProtocol.LT: {
+                int i = b.getInt();
+                listener.LT(i, readToken(b));
+                break;
+            }
+
+            case DBBinaryProtocol.MARK:
+                listener.mark(b.getInt());
+                break;
+
+            case DBBinaryProtocol.REWIND:
+                listener.rewind(b.getInt());
+                break;
+
+            case DBBinaryProtocol.REWIND_LAST:
+                listener.rewind();
+                break;
+
+            case DBBinaryProtocol.BEGIN_BACKTRACK:
+                listener.beginBacktrack(b.getInt());
+                break;
+
+            case DBBinaryProtocol.END_BACKTRACK: {
+                int level = b.getInt();
+                listener.endBacktrack(level, readBoolean(b));
+                break;
+            }
+
+            case DBBinaryProtocol.LOCATION: {
+                int line = b.getInt();
+                listener.location(line, b.getInt());
+                break;
+            }
+
+            case DBBinaryProtocol.RECOGNITION_EXCEPTION:
+                listener.recognitionException(readException(b));
+                break;
+
+            case DBBinaryProtocol.BEGIN_RESYNC:
+                listener.beginResync();
+                break;
+
+            case DBBinaryProtocol.END_RESYNC:
+                listener.endResync();
+                break;
+
+            case DBBinaryProtocol.SEMANTIC_PREDICATE: {
+                boolean result = readBoolean(b);
+                listener.semanticPredicate(result, readString(b));
+                break;
+            }
+
+            case DBBinaryProtocol.CONSUME_NODE:
+                listener.consumeNode(readNode(b));
+                break;
+
+            case DBBinaryProtocol.LT_NODE: {
+                int i = b.getInt();
+                listener.LT(i, readNode(b));
+                break;
+            }
+
+            case DBBinaryProtocol.NIL_NODE:
+                listener.nilNode(readNode(b));
+                break;
+
+            case DBBinaryProtocol.ERROR_NODE:
+                listener.errorNode(readNode(b));
+                break;
+
+            case DBBinaryProtocol.CREATE_NODE:
+                listener.createNode(readNode(b));
+                break;
+
+            case DBBinaryProtocol.CREATE_NODE_FROM_TOKEN: {
+                RemoteDebugEventSocketListener.ProxyTree node = new RemoteDebugEventSocketListener.ProxyTree(b.getInt());
+                listener.createNode(node, new RemoteDebugEventSocketListener.ProxyToken(b.getInt()));
+                break;
+            }
+
+            case DBBinaryProtocol.BECOME_ROOT: {
+                RemoteDebugEventSocketListener.ProxyTree newRoot = new RemoteDebugEventSocketListener.ProxyTree(b.getInt());
+                listener.becomeRoot(newRoot, new RemoteDebugEventSocketListener.ProxyTree(b.getInt()));
+                break;
+            }
+
+            case DBBinaryProtocol.ADD_CHILD: {
+                RemoteDebugEventSocketListener.ProxyTree root = new RemoteDebugEventSocketListener.ProxyTree(b.getInt());
+                listener.addChild(root, new RemoteDebugEventSocketListener.ProxyTree(b.getInt()));
+                break;
+            }
+
+            case DBBinaryProtocol.SET_TOKEN_BOUNDARIES: {
+                RemoteDebugEventSocketListener.ProxyTree node = new RemoteDebugEventSocketListener.ProxyTree(b.getInt());
+                int start = b.getInt();
+                listener.setTokenBoundaries(node, start, b.getInt());
+                break;
+            }
+
+            default:
+                throw new IllegalStateException("Unknown debug event opcode "+opcode);
+        }
+    }
+
+    protected Token readToken(ByteBuffer b) {
+        int index = b.getInt();
+        int type = b.getInt();
+        int channel = b.getInt();
+        int line = b.getInt();
+        int charPos = b.getInt();
+        return new RemoteDebugEventSocketListener.ProxyToken(index, type, channel, line, charPos, readString(b));
+    }
+
+    protected Object readNode(ByteBuffer b) {
+        int id = b.getInt();
+        int type = b.getInt();
+        int line = b.getInt();
+        int charPos = b.getInt();
+        int tokenIndex = b.getInt();
+        return new RemoteDebugEventSocketListener.ProxyTree(id, type, line, charPos, tokenIndex, readString(b));
+    }
+
+    /** Only the class and the position of the exception are sent, like the text protocol does */
+    protected RecognitionException readException(ByteBuffer b) {
+        String name = readSymbol(b);
+        RecognitionException e;
+        try {
+            e = (RecognitionException)Class.forName(name).getDeclaredConstructor().newInstance();
+        } catch (Exception ex) {
+            e = new RecognitionException();
+        }
+        e.index = b.getInt();
+        e.line = b.getInt();
+        e.charPositionInLine = b.getInt();
+        return e;
+    }
+
+    protected String readSymbol(ByteBuffer b) {
+        int index = b.getInt();
+        if(index == DBBinaryProtocol.STRING_NULL)
+            return null;
+
+        if(index == DBBinaryProtocol.STRING_NEW) {
+            String s = readString(b);
+            symbols.add(s);
+            return s;
+        }
+
+        return symbols.get(index);
+    }
+
+    protected String readString(ByteBuffer b) {
+        int length = b.getInt();
+        if(length == DBBinaryProtocol.STRING_NULL)
+            return null;
+
+        String s = new String(b.array(), b.arrayOffset()+b.position(), length, UTF8);
+        b.position(b.position()+length);
+        return s;
+    }
+
+    protected boolean readBoolean(ByteBuffer b) {
+        return b.get() != 0;
+    }
+
+}
@@ -0,0 +1,431 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.debugger.remote;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.BlankDebugEventListener;
+import org.antlr.runtime.tree.CommonTreeAdaptor;
+import org.antlr.runtime.tree.TreeAdaptor;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Debug event listener used by the remote parser to send its events to ANTLRWorks
+ * with the binary protocol (see DBBinaryProtocol). It replaces DebugEventSocketProxy
+ * and is given to the predefined listener constructor of the generated parser.
+ *
+ * The events are encoded in a buffer which is sent when it is full, when the parser
+ * commences and when it terminates. The parser blocks when too many frames are waiting
+ * to be acknowledged, which also pauses it when the debugger stops on a breakpoint.
+ */
+public class DBBinaryDebugEventProxy extends BlankDebugEventListener {
+
+    protected int port;
+    protected ServerSocket serverSocket;
+    protected Socket socket;
+    protected OutputStream out;
+    protected DataInputStream in;
+
+    protected TreeAdaptor adaptor;
+
+    protected byte[] buffer = new byte[DBBinaryProtocol.BATCH_SIZE*2];
+    protected int length;
+    protected int count;
+
+    protected int sequence = 0;
+    protected int acknowledged = 0;
+
+    protected Map<String,Integer> symbols = new HashMap<String,Integer>();
+
+    public DBBinaryDebugEventProxy(int port, TreeAdaptor adaptor) {
+        this.port = port;
+        this.adaptor = adaptor == null?new CommonTreeAdaptor():adaptor;
+        resetBuffer();
+    }
+
+    /** Waits for ANTLRWorks to connect and sends the protocol header */
+    public void handshake() throws IOException {
+        if(serverSocket == null) {
+            serverSocket = new ServerSocket(port);
+            socket = serverSocket.accept();
+            socket.setTcpNoDelay(true);
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            writeInt(DBBinaryProtocol.MAGIC);
+            writeInt(DBBinaryProtocol.VERSION);
+            out.write(buffer, DBBinaryProtocol.FRAME_HEADER_SIZE, 8);
+            out.flush();
+            resetBuffer();
+        }
+    }
+
+    public void setTreeAdaptor(TreeAdaptor adaptor) {
+        this.adaptor = adaptor;
+    }
+
+    public TreeAdaptor getTreeAdaptor() {
+        return adaptor;
+    }
+
+    public void commence() {
+        event(DBBinaryProtocol.COMMENCE);
+        flush();
+    }
+
+    public void terminate() {
+        event(DBBinaryProtocol.TERMINATE);
+        flush();
+        // Make sure the debugger got all the events before closing the connection
+        waitForAcknowledgement(0);
+        close();
+    }
+
+    public void enterRule(String grammarFileName, String ruleName) {
+        event(DBBinaryProtocol.ENTER_RULE);
+        writeSymbol(grammarFileName);
+        writeSymbol(ruleName);
+    }
+
+    public void exitRule(String grammarFileName, String ruleName) {
+        event(DBBinaryProtocol.EXIT_RULE);
+        writeSymbol(grammarFileName);
+        writeSymbol(ruleName);
+    }
+
+    public void enterAlt(int alt) {
+        event(DBBinaryProtocol.ENTER_ALT);
+        writeInt(alt);
+    }
+
+    public void enterSubRule(int decisionNumber) {
+        event(DBBinaryProtocol.ENTER_SUBRULE);
+        writeInt(decisionNumber);
+    }
+
+    public void exitSubRule(int decisionNumber) {
+        event(DBBinaryProtocol.EXIT_SUBRULE);
+        writeInt(decisionNumber);
+    }
+
+    public void enterDecision(int decisionNumber, boolean couldBacktrack) {
+        event(DBBinaryProtocol.ENTER_DECISION);
+        writeInt(decisionNumber);
+        writeBoolean(couldBacktrack);
+    }
+
+    public void exitDecision(int decisionNumber) {
+        event(DBBinaryProtocol.EXIT_DECISION);
+        writeInt(decisionNumber);
+    }
+
+    public void consumeToken(Token t) {
+        event(DBBinaryProtocol.CONSUME_TOKEN);
+        writeToken(t);
+    }
+
+    public void consumeHiddenToken(Token t) {
+        event(DBBinaryProtocol.CONSUME_HIDDEN_TOKEN);
+        writeToken(t);
+    }
+
+    public void LT(int i, Token t) {
+        if(t == null) return;
+
+        event(DBBinaryProtocol.LT);
+        writeInt(i);
+        writeToken(t);
+    }
+
+    public void mark(int marker) {
+        event(DBBinaryProtocol.MARK);
+        writeInt(marker);
+    }
+
+    public void rewind(int marker) {
+        event(DBBinaryProtocol.REWIND);
+        writeInt(marker);
+    }
+
+    public void rewind() {
+        event(DBBinaryProtocol.REWIND_LAST);
+    }
+
+    public void beginBacktrack(int level) {
+        event(DBBinaryProtocol.BEGIN_BACKTRACK);
+        writeInt(level);
+    }
+
+    public void endBacktrack(int level, boolean successful) {
+        event(DBBinaryProtocol.END_BACKTRACK);
+        writeInt(level);
+        writeBoolean(successful);
+    }
+
+    public void location(int line, int pos) {
+        event(DBBinaryProtocol.LOCATION);
+        writeInt(line);
+        writeInt(pos);
+    }
+
+    public void recognitionException(RecognitionException e) {
+        event(DBBinaryProtocol.RECOGNITION_EXCEPTION);
+        writeSymbol(e.getClass().getName());
+        writeInt(e.index);
+        writeInt(e.line);
+        writeInt(e.charPositionInLine);
+    }
+
+    public void beginResync() {
+        event(DBBinaryProtocol.BEGIN_RESYNC);
+    }
+
+    public void endResync() {
+        event(DBBinaryProtocol.END_RESYNC);
+    }
+
+    public void semanticPredicate(boolean result, String predicate) {
+        event(DBBinaryProtocol.SEMANTIC_PREDICATE);
+        writeBoolean(result);
+        writeString(predicate);
+    }
+
+    public void consumeNode(Object t) {
+        event(DBBinaryProtocol.CONSUME_NODE);
+        writeNode(t);
+    }
+
+    public void LT(int i, Object t) {
+        event(DBBinaryProtocol.LT_NODE);
+        writeInt(i);
+        writeNode(t);
+    }
+
+    public void nilNode(Object t) {
+        event(DBBinaryProtocol.NIL_NODE);
+        writeNode(t);
+    }
+
+    public void errorNode(Object t) {
+        event(DBBinaryProtocol.ERROR_NODE);
+        writeNode(t);
+    }
+
+    public void createNode(Object t) {
+        event(DBBinaryProtocol.CREATE_NODE);
+        writeNode(t);
+    }
+
+    public void createNode(Object node, Token token) {
+        event(DBBinaryProtocol.CREATE_NODE_FROM_TOKEN);
+        writeInt(adaptor.getUniqueID(node));
+        writeInt(token.getTokenIndex());
+    }
+
+    public void becomeRoot(Object newRoot, Object oldRoot) {
+        event(DBBinaryProtocol.BECOME_ROOT);
+        writeInt(adaptor.getUniqueID(newRoot));
+        writeInt(adaptor.getUniqueID(oldRoot));
+    }
+
+    public void addChild(Object root, Object child) {
+        event(DBBinaryProtocol.ADD_CHILD);
+        writeInt(adaptor.getUniqueID(root));
+        writeInt(adaptor.getUniqueID(child));
+    }
+
+    public void setTokenBoundaries(Object t, int tokenStartIndex, int tokenStopIndex) {
+        event(DBBinaryProtocol.SET_TOKEN_BOUNDARIES);
+        writeInt(adaptor.getUniqueID(t));
+        writeInt(tokenStartIndex);
+        writeInt(tokenStopIndex);
+    }
+
+    /* Encoding */
+
+    protected void event(byte opcode) {
+        if(length >= DBBinaryProtocol.BATCH_SIZE)
+            flush();
+
+        count++;
+        ensureCapacity(1);
+        buffer[length++] = opcode;
+    }
+
+    protected void writeToken(Token t) {
+        writeInt(t.getTokenIndex());
+        writeInt(t.getType());
+        writeInt(t.getChannel());
+        writeInt(t.getLine());
+        writeInt(t.getCharPositionInLine());
+        writeString(t.getText());
+    }
+
+    protected void writeNode(Object node) {
+        int line = -1;
+        int charPos = -1;
+        Token token = adaptor.getToken(node);
+        if(token != null) {
+            line = token.getLine();
+            charPos = token.getCharPositionInLine();
+        }
+        writeInt(adaptor.getUniqueID(node));
+        writeInt(adaptor.getType(node));
+        writeInt(line);
+        writeInt(charPos);
+        writeInt(adaptor.getTokenStartIndex(node));
+        writeString(adaptor.getText(node));
+    }
+
+    /** The grammar, rule and exception names are sent only once */
+    protected void writeSymbol(String s) {
+        if(s == null) {
+            writeInt(DBBinaryProtocol.STRING_NULL);
+            return;
+        }
+
+        Integer index = symbols.get(s);
+        if(index == null) {
+            symbols.put(s, symbols.size());
+            writeInt(DBBinaryProtocol.STRING_NEW);
+            writeString(s);
+        } else {
+            writeInt(index);
+        }
+    }
+
+    protected void writeString(String s) {
+        if(s == null) {
+            writeInt(DBBinaryProtocol.STRING_NULL);
+            return;
+        }
+
+        byte[] bytes;
+        try {
+            bytes = s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            bytes = s.getBytes();
+        }
+        writeInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    protected void writeBoolean(boolean b) {
+        ensureCapacity(1);
+        buffer[length++] = (byte)(b?1:0);
+    }
+
+    protected void writeInt(int v) {
+        ensureCapacity(4);
+        buffer[length++] = (byte)(v >>> 24);
+        buffer[length++] = (byte)(v >>> 16);
+        buffer[length++] = (byte)(v >>> 8);
+        buffer[length++] = (byte)v;
+    }
+
+    protected void ensureCapacity(int size) {
+        if(length+size > buffer.length) {
+            byte[] b = new byte[Math.max(buffer.length*2, length+size)];
+            System.arraycopy(buffer, 0, b, 0, length);
+            buffer = b;
+        }
+    }
+
+    protected void resetBuffer() {
+        // Leave room for the frame header
+        length = DBBinaryProtocol.FRAME_HEADER_SIZE;
+        count = 0;
+    }
+
+    /* Transmission */
+
+    /** Sends the pending events as one frame */
+    protected void flush() {
+        if(count == 0) return;
+
+        if(out == null) {
+            // Connection closed: the events are dropped
+            resetBuffer();
+            return;
+        }
+
+        int payload = length-DBBinaryProtocol.FRAME_HEADER_SIZE;
+        length = 0;
+        writeInt(payload);
+        writeInt(++sequence);
+        writeInt(count);
+        try {
+            out.write(buffer, 0, DBBinaryProtocol.FRAME_HEADER_SIZE+payload);
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+        }
+        resetBuffer();
+
+        waitForAcknowledgement(DBBinaryProtocol.WINDOW);
+    }
+
+    /** Blocks until at most the specified number of frames are not acknowledged */
+    protected void waitForAcknowledgement(int pending) {
+        try {
+            while(in != null && sequence-acknowledged > pending) {
+                acknowledged = in.readInt();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+        }
+    }
+
+    protected void close() {
+        try {
+            if(socket != null)
+                socket.close();
+            if(serverSocket != null)
+                serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        socket = null;
+        out = null;
+        in = null;
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.debugger.remote;
+
+/** Constants shared by the binary debug protocol sender (DBBinaryDebugEventProxy)
+ * and receiver (DBBinaryDebugEventListener).
+ *
+ * After the connection is accepted, the parser sends MAGIC and VERSION. The events
+ * are then sent in frames: the length of the payload, the sequence number of the frame,
+ * the number of events, followed by the events. Each event is an opcode followed by
+ * its arguments. The debugger acknowledges each frame by sending back its sequence
+ * number and the parser never has more than WINDOW frames waiting to be acknowledged.
+ */
+public class DBBinaryProtocol {
+
+    public static final int MAGIC = 0x41574442; // AWDB
+    public static final int VERSION = 1;
+
+    /** Length, sequence and event count */
+    public static final int FRAME_HEADER_SIZE = 12;
+
+    /** A frame is sent as soon as its payload reaches this size */
+    public static final int BATCH_SIZE = 32*1024;
+
+    /** Number of frames the parser can send before waiting for an acknowledgement */
+    public static final int WINDOW = 4;
+
+    /** String references: a known symbol is sent as its index */
+    public static final int STRING_NULL = -1;
+    public static final int STRING_NEW = -2;
+
+    public static final byte COMMENCE = 1;
+    public static final byte TERMINATE = 2;
+    public static final byte ENTER_RULE = 3;
+    public static final byte EXIT_RULE = 4;
+    public static final byte ENTER_ALT = 5;
+    public static final byte ENTER_SUBRULE = 6;
+    public static final byte EXIT_SUBRULE = 7;
+    public static final byte ENTER_DECISION = 8;
+    public static final byte EXIT_DECISION = 9;
+    public static final byte CONSUME_TOKEN = 10;
+    public static final byte CONSUME_HIDDEN_TOKEN = 11;
+    public static final byte LT = 12;
+    public static final byte MARK = 13;
+    public static final byte REWIND = 14;
+    public static final byte REWIND_LAST = 15;
+    public static final byte BEGIN_BACKTRACK = 16;
+    public static final byte END_BACKTRACK = 17;
+    public static final byte LOCATION = 18;
+    public static final byte RECOGNITION_EXCEPTION = 19;
+    public static final byte BEGIN_RESYNC = 20;
+    public static final byte END_RESYNC = 21;
+    public static final byte SEMANTIC_PREDICATE = 22;
+    public static final byte CONSUME_NODE = 23;
+    public static final byte LT_NODE = 24;
+    public static final byte NIL_NODE = 25;
+    public static final byte ERROR_NODE = 26;
+    public static final byte CREATE_NODE = 27;
+    public static final byte CREATE_NODE_FROM_TOKEN = 28;
+    public static final byte BECOME_ROOT = 29;
+    public static final byte ADD_CHILD = 30;
+    public static final byte SET_TOKEN_BOUNDARIES = 31;
+
+}
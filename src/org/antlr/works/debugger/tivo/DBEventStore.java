@@ -0,0 +1,858 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.RecognitionException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.tree.DBTreeToken;
+import org.antlr.works.utils.Console;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/** This class stores the events received by the recorder in a compact binary form.
+ * Each event is encoded as a sequence of integers (event type, grammar name and
+ * the fields of the event) in segments of SEGMENT_SIZE events. The strings (token text,
+ * rule names, etc) are shared in a table and the objects that cannot be encoded
+ * (recognition exceptions, unknown tokens) are kept as is.
+ *
+ * The events are materialized each time they are accessed. When the segments use
+ * more than the memory limit, the oldest ones are moved to a memory-mapped temporary file.
+ *
+ * The store is append-only: a sub-list stays valid when new events are added.
+ *
+ * The store also indexes the position of the rule events and of the first event
+ * consuming each token. It can be saved as a trace file and opened again later:
+ * the segments of the file are memory-mapped so the events are not reloaded.
+ */
+
+public class DBEventStore extends AbstractList<DBEvent> implements RandomAccess {
+
+    public static final int SEGMENT_BITS = 12;
+    public static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    public static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    protected static final int TOKEN_NONE = 0;
+    protected static final int TOKEN_PROXY = 1;
+    protected static final int TOKEN_TREE = 2;
+    protected static final int TOKEN_OBJECT = 3;
+
+    /** Event that cannot be encoded and is kept in the objects table */
+    protected static final int EVENT_OBJECT = 1 << 16;
+
+    protected static final int NULL_ID = -1;
+
+    protected static final int TRACE_MAGIC = 0x41575452;
+    protected static final int TRACE_VERSION = 1;
+
+    protected static final int OBJECT_EXCEPTION = 1;
+    protected static final int OBJECT_TOKEN = 2;
+    protected static final int OBJECT_EVENT = 3;
+
+    protected List<Segment> segments = new ArrayList<Segment>();
+    protected int size = 0;
+
+    protected List<String> strings = new ArrayList<String>();
+    protected Map<String,Integer> stringIds = new HashMap<String, Integer>();
+    protected List<Object> objects = new ArrayList<Object>();
+
+    protected long memoryLimit;
+    protected long memoryUsed = 0;
+    protected int firstSegmentInMemory = 0;
+
+    protected File spillFile;
+    protected FileChannel spillChannel;
+    protected long spillSize = 0;
+
+    /** Position of the enter and exit rule events */
+    protected int[] ruleEvents = new int[256];
+    protected int ruleEventCount = 0;
+
+    /** Position of the first event consuming each token, sorted by token index */
+    protected int[] tokenIndexes = new int[256];
+    protected int[] tokenEvents = new int[256];
+    protected int tokenCount = 0;
+
+    /** Name of the grammar file when the store is opened from a trace file */
+    protected String grammarFileName;
+    protected boolean readOnly = false;
+
+    /** Console used to report the errors of the temporary file */
+    protected Console console;
+
+    public DBEventStore(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    public void setConsole(Console console) {
+        this.console = console;
+    }
+
+    public synchronized void close() {
+        if(spillChannel != null) {
+            try {
+                spillChannel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            spillChannel = null;
+        }
+        if(spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized DBEvent get(int index) {
+        if(index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+
+        Segment segment = segments.get(index >> SEGMENT_BITS);
+        return decode(segment, segment.getOffset(index & SEGMENT_MASK));
+    }
+
+    @Override
+    public synchronized boolean add(DBEvent event) {
+        if(readOnly)
+            throw new UnsupportedOperationException("Cannot add events to a trace file");
+
+        Segment segment;
+        if((size & SEGMENT_MASK) == 0) {
+            if(!segments.isEmpty())
+                segmentCompleted(segments.get(segments.size()-1));
+            segment = new Segment();
+            segments.add(segment);
+        } else {
+            segment = segments.get(segments.size()-1);
+        }
+
+        segment.addEvent();
+        encode(segment, event);
+        indexEvent(event, size);
+        size++;
+        return true;
+    }
+
+    public String getGrammarFileName() {
+        return grammarFileName;
+    }
+
+    /* Index */
+
+    protected void indexEvent(DBEvent event, int position) {
+        switch(event.getEventType()) {
+            case DBEvent.ENTER_RULE:
+            case DBEvent.EXIT_RULE:
+                ruleEvents = append(ruleEvents, ruleEventCount++, position);
+                break;
+
+            case DBEvent.CONSUME_TOKEN:
+            case DBEvent.CONSUME_HIDDEN_TOKEN: {
+                Token token = event instanceof DBEventConsumeToken ?
+                        ((DBEventConsumeToken)event).token : ((DBEventConsumeHiddenToken)event).token;
+                /* Tokens consumed again after a rewind are already indexed */
+                if(token != null && (tokenCount == 0 || token.getTokenIndex() > tokenIndexes[tokenCount-1])) {
+                    tokenIndexes = append(tokenIndexes, tokenCount, token.getTokenIndex());
+                    tokenEvents = append(tokenEvents, tokenCount, position);
+                    tokenCount++;
+                }
+                break;
+            }
+        }
+    }
+
+    protected static int[] append(int[] array, int index, int value) {
+        if(index == array.length)
+            array = Arrays.copyOf(array, array.length*2);
+        array[index] = value;
+        return array;
+    }
+
+    public synchronized int getRuleEventCount() {
+        return ruleEventCount;
+    }
+
+    /** Returns the position of the nth enter or exit rule event */
+    public synchronized int getRuleEventPosition(int n) {
+        return ruleEvents[n];
+    }
+
+    /** Returns the position of the first event consuming the token or -1 if
+     * the token has not been consumed.
+     */
+    public synchronized int getTokenEventPosition(int tokenIndex) {
+        int i = Arrays.binarySearch(tokenIndexes, 0, tokenCount, tokenIndex);
+        return i < 0 ? -1 : tokenEvents[i];
+    }
+
+    /** Returns the number of bytes moved to the temporary file */
+    public synchronized long getSpilledSize() {
+        return spillSize;
+    }
+
+    public synchronized long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /* Encoding */
+
+    protected void encode(Segment s, DBEvent event) {
+        int type = event.getEventType();
+        int header = type;
+        int start = s.length;
+        s.write(header);
+        s.write(getStringId(event.getGrammarName()));
+
+        switch(type) {
+            case DBEvent.COMMENCE:
+            case DBEvent.TERMINATE:
+            case DBEvent.BEGIN_RESYNC:
+            case DBEvent.END_RESYNC:
+                if(event.getClass() != DBEvent.class)
+                    header = encodeObject(s, event);
+                break;
+
+            case DBEvent.LOCATION: {
+                DBEventLocation e = (DBEventLocation)event;
+                s.write(e.line);
+                s.write(e.pos);
+                break;
+            }
+
+            case DBEvent.CONSUME_TOKEN:
+                header |= encodeToken(s, ((DBEventConsumeToken)event).token);
+                break;
+
+            case DBEvent.CONSUME_HIDDEN_TOKEN:
+                header |= encodeToken(s, ((DBEventConsumeHiddenToken)event).token);
+                break;
+
+            case DBEvent.LT: {
+                DBEventLT e = (DBEventLT)event;
+                s.write(e.index);
+                header |= encodeToken(s, e.token);
+                break;
+            }
+
+            case DBEvent.ENTER_RULE: {
+                DBEventEnterRule e = (DBEventEnterRule)event;
+                s.write(getStringId(e.grammarFileName));
+                s.write(getStringId(e.name));
+                break;
+            }
+
+            case DBEvent.EXIT_RULE: {
+                DBEventExitRule e = (DBEventExitRule)event;
+                s.write(getStringId(e.grammarFileName));
+                s.write(getStringId(e.name));
+                break;
+            }
+
+            case DBEvent.ENTER_SUBRULE:
+                s.write(((DBEventEnterSubRule)event).decision);
+                break;
+
+            case DBEvent.EXIT_SUBRULE:
+                s.write(((DBEventExitSubRule)event).decision);
+                break;
+
+            case DBEvent.ENTER_DECISION:
+                s.write(((DBEventEnterDecision)event).decision);
+                break;
+
+            case DBEvent.EXIT_DECISION:
+                s.write(((DBEventExitDecision)event).decision);
+                break;
+
+            case DBEvent.ENTER_ALT:
+                s.write(((DBEventEnterAlt)event).alt);
+                break;
+
+            case DBEvent.MARK:
+                s.write(((DBEventMark)event).id);
+                break;
+
+            case DBEvent.REWIND:
+                s.write(((DBEventRewind)event).id);
+                break;
+
+            case DBEvent.BEGIN_BACKTRACK:
+                s.write(((DBEventBeginBacktrack)event).level);
+                break;
+
+            case DBEvent.END_BACKTRACK: {
+                DBEventEndBacktrack e = (DBEventEndBacktrack)event;
+                s.write(e.level);
+                s.write(e.successful?1:0);
+                break;
+            }
+
+            case DBEvent.NIL_NODE:
+                s.write(((DBEventNilNode)event).id);
+                break;
+
+            case DBEvent.ERROR_NODE: {
+                DBEventErrorNode e = (DBEventErrorNode)event;
+                s.write(e.id);
+                s.write(getStringId(e.text));
+                s.write(e.type);
+                break;
+            }
+
+            case DBEvent.CREATE_NODE: {
+                DBEventCreateNode e = (DBEventCreateNode)event;
+                s.write(e.id);
+                s.write(e.tokenIndex);
+                s.write(getStringId(e.text));
+                s.write(e.type);
+                break;
+            }
+
+            case DBEvent.BECOME_ROOT: {
+                DBEventBecomeRoot e = (DBEventBecomeRoot)event;
+                s.write(e.newRootID);
+                s.write(e.oldRootID);
+                break;
+            }
+
+            case DBEvent.ADD_CHILD: {
+                DBEventAddChild e = (DBEventAddChild)event;
+                s.write(e.rootID);
+                s.write(e.childID);
+                break;
+            }
+
+            case DBEvent.SET_TOKEN_BOUNDARIES: {
+                DBEventSetTokenBoundaries e = (DBEventSetTokenBoundaries)event;
+                s.write(e.id);
+                s.write(e.startIndex);
+                s.write(e.stopIndex);
+                break;
+            }
+
+            default:
+                /* Recognition exceptions and unknown events */
+                header = encodeObject(s, event);
+                break;
+        }
+        s.set(start, header);
+    }
+
+    protected int encodeObject(Segment s, DBEvent event) {
+        s.write(objects.size());
+        objects.add(event);
+        return EVENT_OBJECT;
+    }
+
+    protected int encodeToken(Segment s, Token token) {
+        if(token instanceof RemoteDebugEventSocketListener.ProxyToken) {
+            s.write(token.getTokenIndex());
+            s.write(token.getType());
+            s.write(token.getChannel());
+            s.write(token.getLine());
+            s.write(token.getCharPositionInLine());
+            s.write(getStringId(token.getText()));
+            return TOKEN_PROXY << 8;
+        } else if(token instanceof DBTreeToken) {
+            DBTreeToken t = (DBTreeToken)token;
+            s.write(t.ID);
+            s.write(t.getTokenIndex());
+            s.write(t.getType());
+            s.write(t.getLine());
+            s.write(t.getCharPositionInLine());
+            s.write(getStringId(t.getText()));
+            return TOKEN_TREE << 8;
+        } else if(token == null) {
+            return TOKEN_NONE << 8;
+        } else {
+            s.write(objects.size());
+            objects.add(token);
+            return TOKEN_OBJECT << 8;
+        }
+    }
+
+    protected int getStringId(String s) {
+        if(s == null)
+            return NULL_ID;
+
+        Integer id = stringIds.get(s);
+        if(id == null) {
+            id = strings.size();
+            strings.add(s);
+            stringIds.put(s, id);
+        }
+        return id;
+    }
+
+    /* Decoding */
+
+    protected DBEvent decode(Segment s, int offset) {
+        int header = s.get(offset++);
+        String grammarName = getString(s.get(offset++));
+        if((header & EVENT_OBJECT) != 0) {
+            DBEvent event = (DBEvent)objects.get(s.get(offset));
+            event.setGrammarName(grammarName);
+            return event;
+        }
+
+        int type = header & 0xFF;
+        int tokenKind = (header >> 8) & 0xFF;
+
+        DBEvent event;
+        switch(type) {
+            case DBEvent.LOCATION:
+                event = new DBEventLocation(s.get(offset), s.get(offset+1));
+                break;
+
+            case DBEvent.CONSUME_TOKEN:
+                event = new DBEventConsumeToken(decodeToken(s, offset, tokenKind));
+                break;
+
+            case DBEvent.CONSUME_HIDDEN_TOKEN:
+                event = new DBEventConsumeHiddenToken(decodeToken(s, offset, tokenKind));
+                break;
+
+            case DBEvent.LT:
+                event = new DBEventLT(s.get(offset), decodeToken(s, offset+1, tokenKind));
+                break;
+
+            case DBEvent.ENTER_RULE:
+                event = new DBEventEnterRule(getString(s.get(offset)), getString(s.get(offset+1)));
+                break;
+
+            case DBEvent.EXIT_RULE:
+                event = new DBEventExitRule(getString(s.get(offset)), getString(s.get(offset+1)));
+                break;
+
+            case DBEvent.ENTER_SUBRULE:
+                event = new DBEventEnterSubRule(s.get(offset));
+                break;
+
+            case DBEvent.EXIT_SUBRULE:
+                event = new DBEventExitSubRule(s.get(offset));
+                break;
+
+            case DBEvent.ENTER_DECISION:
+                event = new DBEventEnterDecision(s.get(offset));
+                break;
+
+            case DBEvent.EXIT_DECISION:
+                event = new DBEventExitDecision(s.get(offset));
+                break;
+
+            case DBEvent.ENTER_ALT:
+                event = new DBEventEnterAlt(s.get(offset));
+                break;
+
+            case DBEvent.MARK:
+                event = new DBEventMark(s.get(offset));
+                break;
+
+            case DBEvent.REWIND:
+                event = new DBEventRewind(s.get(offset));
+                break;
+
+            case DBEvent.BEGIN_BACKTRACK:
+                event = new DBEventBeginBacktrack(s.get(offset));
+                break;
+
+            case DBEvent.END_BACKTRACK:
+                event = new DBEventEndBacktrack(s.get(offset), s.get(offset+1) == 1);
+                break;
+
+            case DBEvent.NIL_NODE:
+                event = new DBEventNilNode(s.get(offset));
+                break;
+
+            case DBEvent.ERROR_NODE:
+                event = new DBEventErrorNode(s.get(offset), getString(s.get(offset+1)), s.get(offset+2));
+                break;
+
+            case DBEvent.CREATE_NODE: {
+                DBEventCreateNode e = new DBEventCreateNode(s.get(offset), s.get(offset+1));
+                e.text = getString(s.get(offset+2));
+                e.type = s.get(offset+3);
+                event = e;
+                break;
+            }
+
+            case DBEvent.BECOME_ROOT:
+                event = new DBEventBecomeRoot(s.get(offset), s.get(offset+1));
+                break;
+
+            case DBEvent.ADD_CHILD:
+                event = new DBEventAddChild(s.get(offset), s.get(offset+1));
+                break;
+
+            case DBEvent.SET_TOKEN_BOUNDARIES:
+                event = new DBEventSetTokenBoundaries(s.get(offset), s.get(offset+1), s.get(offset+2));
+                break;
+
+            default:
+                event = new DBEvent(type);
+                break;
+        }
+        event.setGrammarName(grammarName);
+        return event;
+    }
+
+    protected Token decodeToken(Segment s, int offset, int kind) {
+        switch(kind) {
+            case TOKEN_PROXY:
+                return new RemoteDebugEventSocketListener.ProxyToken(s.get(offset), s.get(offset+1),
+                        s.get(offset+2), s.get(offset+3), s.get(offset+4), getString(s.get(offset+5)));
+
+            case TOKEN_TREE:
+                return new DBTreeToken(new RemoteDebugEventSocketListener.ProxyTree(s.get(offset), s.get(offset+2),
+                        s.get(offset+3), s.get(offset+4), s.get(offset+1), getString(s.get(offset+5))));
+
+            case TOKEN_OBJECT:
+                return (Token)objects.get(s.get(offset));
+        }
+        return null;
+    }
+
+    protected String getString(int id) {
+        return id == NULL_ID ? null : strings.get(id);
+    }
+
+    /* Memory management */
+
+    protected void segmentCompleted(Segment segment) {
+        segment.trim();
+        memoryUsed += segment.getMemorySize();
+
+        while(memoryUsed > memoryLimit && firstSegmentInMemory < segments.size()) {
+            Segment s = segments.get(firstSegmentInMemory);
+            long size = s.getMemorySize();
+            try {
+                spill(s);
+            } catch (IOException e) {
+                /* Keep the events in memory if the temporary file cannot be written */
+                if(console != null)
+                    console.println("Cannot move the debugger events to disk: "+e, Console.LEVEL_WARNING);
+                memoryLimit = Long.MAX_VALUE;
+                break;
+            }
+            memoryUsed -= size;
+            firstSegmentInMemory++;
+        }
+    }
+
+    protected void spill(Segment segment) throws IOException {
+        if(spillChannel == null) {
+            spillFile = File.createTempFile("antlrworks-events", ".bin");
+            spillFile.deleteOnExit();
+            spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+        }
+
+        int count = segment.offsets.length+segment.data.length;
+        ByteBuffer buffer = ByteBuffer.allocate(count*4);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(segment.offsets);
+        ints.put(segment.data);
+
+        long position = spillSize;
+        while(buffer.hasRemaining()) {
+            spillChannel.write(buffer, position+buffer.position());
+        }
+        spillSize += count*4;
+
+        segment.map(spillChannel.map(FileChannel.MapMode.READ_ONLY, position, count*4).asIntBuffer(), segment.offsets.length);
+    }
+
+    /* Trace file */
+
+    /** Saves the events in a trace file. The segments are written first followed by the
+     * strings, the objects and the indexes. The file ends with the position of these tables.
+     */
+    public synchronized void save(File file, String grammarFileName) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(TRACE_MAGIC);
+            out.writeInt(TRACE_VERSION);
+            long position = 8;
+
+            long[] segmentPositions = new long[segments.size()];
+            for(int n=0; n<segments.size(); n++) {
+                Segment segment = segments.get(n);
+                segmentPositions[n] = position;
+                for(int i=0; i<segment.count; i++) {
+                    out.writeInt(segment.getOffset(i));
+                }
+                for(int i=0; i<segment.length; i++) {
+                    out.writeInt(segment.get(i));
+                }
+                position += (segment.count+segment.length)*4L;
+            }
+
+            long tablesPosition = position;
+            writeString(out, grammarFileName);
+            out.writeInt(size);
+            out.writeInt(segments.size());
+            for(int n=0; n<segments.size(); n++) {
+                out.writeLong(segmentPositions[n]);
+                out.writeInt(segments.get(n).count);
+                out.writeInt(segments.get(n).length);
+            }
+
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                writeString(out, string);
+            }
+
+            out.writeInt(objects.size());
+            for (Object object : objects) {
+                writeObject(out, object);
+            }
+
+            writeInts(out, ruleEvents, ruleEventCount);
+            writeInts(out, tokenIndexes, tokenCount);
+            writeInts(out, tokenEvents, tokenCount);
+
+            out.writeLong(tablesPosition);
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Opens a trace file. Only the strings, the objects and the indexes are read:
+     * the events are read from the memory-mapped segments when they are accessed.
+     */
+    public static DBEventStore open(File file) throws IOException {
+        DBEventStore store = new DBEventStore(0);
+        store.readOnly = true;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+        try {
+            if(raf.length() < 16 || raf.readInt() != TRACE_MAGIC)
+                throw new IOException("Not a debugger trace file: "+file);
+            if(raf.readInt() != TRACE_VERSION)
+                throw new IOException("Unsupported debugger trace version: "+file);
+
+            raf.seek(raf.length()-8);
+            long tablesPosition = raf.readLong();
+            raf.seek(tablesPosition);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+            store.grammarFileName = readString(in);
+            store.size = in.readInt();
+            int segmentCount = in.readInt();
+            for(int n=0; n<segmentCount; n++) {
+                long position = in.readLong();
+                Segment segment = new Segment();
+                segment.count = in.readInt();
+                segment.length = in.readInt();
+                segment.map(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        (segment.count+segment.length)*4L).asIntBuffer(), segment.count);
+                store.segments.add(segment);
+            }
+
+            int stringCount = in.readInt();
+            for(int i=0; i<stringCount; i++) {
+                store.getStringId(readString(in));
+            }
+
+            int objectCount = in.readInt();
+            for(int i=0; i<objectCount; i++) {
+                store.objects.add(readObject(in));
+            }
+
+            store.ruleEvents = readInts(in);
+            store.ruleEventCount = store.ruleEvents.length;
+            store.tokenIndexes = readInts(in);
+            store.tokenEvents = readInts(in);
+            store.tokenCount = store.tokenIndexes.length;
+        } finally {
+            /* The mapped segments stay valid after the channel is closed */
+            raf.close();
+        }
+        return store;
+    }
+
+    protected static void writeString(DataOutputStream out, String s) throws IOException {
+        if(s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length == -1)
+            return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    protected static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+        out.writeInt(count);
+        for(int i=0; i<count; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+
+    protected static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for(int i=0; i<values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /** The remote parser only sends the class name and the position of a recognition
+     * exception so only these fields are saved. Other tokens are saved as proxy tokens.
+     */
+    protected static void writeObject(DataOutputStream out, Object object) throws IOException {
+        if(object instanceof DBEventRecognitionException) {
+            RecognitionException e = ((DBEventRecognitionException)object).e;
+            out.writeInt(OBJECT_EXCEPTION);
+            writeString(out, e.getClass().getName());
+            out.writeInt(e.index);
+            out.writeInt(e.line);
+            out.writeInt(e.charPositionInLine);
+        } else if(object instanceof Token) {
+            Token t = (Token)object;
+            out.writeInt(OBJECT_TOKEN);
+            out.writeInt(t.getTokenIndex());
+            out.writeInt(t.getType());
+            out.writeInt(t.getChannel());
+            out.writeInt(t.getLine());
+            out.writeInt(t.getCharPositionInLine());
+            writeString(out, t.getText());
+        } else {
+            out.writeInt(OBJECT_EVENT);
+            out.writeInt(((DBEvent)object).getEventType());
+        }
+    }
+
+    protected static Object readObject(DataInputStream in) throws IOException {
+        switch(in.readInt()) {
+            case OBJECT_EXCEPTION: {
+                String className = readString(in);
+                RecognitionException e;
+                try {
+                    e = (RecognitionException)Class.forName(className).getDeclaredConstructor().newInstance();
+                } catch (Exception ex) {
+                    e = new RecognitionException();
+                }
+                e.index = in.readInt();
+                e.line = in.readInt();
+                e.charPositionInLine = in.readInt();
+                return new DBEventRecognitionException(e);
+            }
+
+            case OBJECT_TOKEN:
+                return new RemoteDebugEventSocketListener.ProxyToken(in.readInt(), in.readInt(), in.readInt(),
+                        in.readInt(), in.readInt(), readString(in));
+
+            default:
+                return new DBEvent(in.readInt());
+        }
+    }
+
+    protected static class Segment {
+
+        /** Offset of each event in the data */
+        public int[] offsets = new int[SEGMENT_SIZE];
+        public int[] data = new int[SEGMENT_SIZE*4];
+        public int length = 0;
+        public int count = 0;
+
+        /** Offsets followed by the data once the segment is on disk */
+        public IntBuffer mapped;
+        public int mappedDataStart;
+
+        public void addEvent() {
+            offsets[count++] = length;
+        }
+
+        public void write(int value) {
+            if(length == data.length)
+                data = Arrays.copyOf(data, data.length*2);
+            data[length++] = value;
+        }
+
+        public void set(int index, int value) {
+            data[index] = value;
+        }
+
+        public int getOffset(int index) {
+            if(mapped == null)
+                return offsets[index];
+            else
+                return mapped.get(index);
+        }
+
+        public int get(int index) {
+            if(mapped == null)
+                return data[index];
+            else
+                return mapped.get(mappedDataStart+index);
+        }
+
+        public void trim() {
+            if(length < data.length)
+                data = Arrays.copyOf(data, length);
+        }
+
+        public long getMemorySize() {
+            return (offsets.length+data.length)*4L;
+        }
+
+        public void map(IntBuffer buffer, int dataStart) {
+            mapped = buffer;
+            mappedDataStart = dataStart;
+            offsets = null;
+            data = null;
+        }
+    }
+
+}
@@ -37,11 +37,23 @@ import org.antlr.works.debugger.events.*;
 import org.antlr.works.debugger.input.DBInputProcessor;
 import org.antlr.works.debugger.input.DBInputTextTokenInfo;
 
+import javax.swing.*;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.TreeMap;
 
 public class DBPlayer {
 
+    /** Initial number of events between two checkpoints */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    /** Maximum duration in ms of a batch of events played on the event dispatch thread
+     * before the panels are updated and the next batch scheduled.
+     */
+    public static final int BATCH_DURATION = 40;
+
     protected DebuggerTab debuggerTab;
     protected DBInputProcessor processor;
 
@@ -51,12 +63,29 @@ public class DBPlayer {
     protected int resyncing = 0;
     protected int eventPlayedCount = 0;
 
+    /** Checkpoints of the replay state indexed by the number of events played */
+    protected TreeMap<Integer,DBPlayerCheckpoint> checkpoints = new TreeMap<Integer,DBPlayerCheckpoint>();
+    protected int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    protected long checkpointMemoryBudget = getDefaultCheckpointMemoryBudget();
+    protected long checkpointMemory = 0;
+    protected long lastCheckpointSize = 0;
+
+    /** Events being played and position to play them to */
+    protected List<DBEvent> events;
+    protected int targetPosition = 0;
+    protected boolean pendingReset = false;
+    protected boolean playing = false;
+
     public DBPlayer(DebuggerTab debuggerTab) {
         this.debuggerTab = debuggerTab;
         contextInfo = new DBPlayerContextInfo();
         markStack = new Stack<Integer>();
     }
 
+    public static long getDefaultCheckpointMemoryBudget() {
+        return Math.min(Runtime.getRuntime().maxMemory()/8, 64*1024*1024L);
+    }
+
     public void close() {
         debuggerTab = null;
     }
@@ -76,9 +105,10 @@ public class DBPlayer {
          the events are reset (when the debugger starts).
          Then, keep rewinding the input text so already received
          tokens are displayed */
-        if(first)
+        if(first) {
             processor.reset();
-        else
+            clearCheckpoints();
+        } else
             processor.rewindAll();
 
         contextInfo.clear();
@@ -86,15 +116,49 @@ public class DBPlayer {
 
         resyncing = 0;
         eventPlayedCount = 0;
+        targetPosition = 0;
+        pendingReset = false;
+        playing = false;
+    }
+
+    /** Plays the events up to the specified position. On the event dispatch thread, the
+     * events are played in batches of BATCH_DURATION ms: the panels are updated once per
+     * batch instead of once per event and a request received while playing only changes
+     * the position to play to.
+     */
+    public synchronized void playEvents(List<DBEvent> events, int lastEventPosition, boolean reset) {
+        this.events = events;
+        this.targetPosition = lastEventPosition;
+        if(reset)
+            pendingReset = true;
+
+        if(!playing)
+            playBatch();
     }
 
-    public void playEvents(List events, int lastEventPosition, boolean reset) {
-        if(reset)
-            resetPlayEvents(false);
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    protected synchronized void playBatch() {
+        if(debuggerTab == null)
+            return;
+
+        if(pendingReset) {
+            pendingReset = false;
+            /** Instead of replaying all the events from the beginning, start
+             from the closest checkpoint before the last event to play */
+            DBPlayerCheckpoint checkpoint = getCheckpointBefore(targetPosition);
+            if(checkpoint == null)
+                resetPlayEvents(false);
+            else
+                restoreCheckpoint(checkpoint);
+        }
 
-        int lastIndex = lastEventPosition - 1;
-        for(int i=eventPlayedCount; i< lastEventPosition; i++) {
-            DBEvent event = (DBEvent)events.get(i);
+        boolean batched = SwingUtilities.isEventDispatchThread();
+        long deadline = System.currentTimeMillis()+BATCH_DURATION;
+        while(eventPlayedCount < targetPosition) {
+            DBEvent event = events.get(eventPlayedCount);
 
             try {
                 playEvent(event);
@@ -103,12 +167,121 @@ public class DBPlayer {
             }
 
             debuggerTab.addEvent(event, contextInfo);
-            if(i == lastIndex) {
+            eventPlayedCount++;
+
+            if(shouldCreateCheckpoint(eventPlayedCount))
+                addCheckpoint(createCheckpoint());
+
+            if(eventPlayedCount == targetPosition) {
                 // Last event, play the location
                 playLocation();
+            } else if(batched && (eventPlayedCount & 0xFF) == 0 && System.currentTimeMillis() > deadline) {
+                playing = true;
+                debuggerTab.playerDidPlayBatch();
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        playBatch();
+                    }
+                });
+                return;
+            }
+        }
+        eventPlayedCount = targetPosition;
+        playing = false;
+        debuggerTab.playerDidPlayEvents();
+    }
+
+    /* Checkpoints */
+
+    public void setCheckpointMemoryBudget(long budget) {
+        this.checkpointMemoryBudget = budget;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    public void clearCheckpoints() {
+        checkpoints.clear();
+        checkpointMemory = 0;
+        lastCheckpointSize = 0;
+        checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    }
+
+    /** Returns true if a checkpoint has to be created at the specified position. If a checkpoint
+     * of the size of the last one would exceed the memory budget, the checkpoints are pruned first
+     * so the checkpoint is only created if the position is still on the interval.
+     */
+    public boolean shouldCreateCheckpoint(int position) {
+        if(position % checkpointInterval != 0 || checkpoints.containsKey(position))
+            return false;
+
+        while(checkpointMemory+lastCheckpointSize > checkpointMemoryBudget && !checkpoints.isEmpty()) {
+            pruneCheckpoints();
+        }
+        return position % checkpointInterval == 0;
+    }
+
+    /** Returns the last checkpoint strictly before the specified position so
+     * at least the last event is replayed (and its location displayed).
+     */
+    public DBPlayerCheckpoint getCheckpointBefore(int position) {
+        Map.Entry<Integer,DBPlayerCheckpoint> entry = checkpoints.lowerEntry(position);
+        return entry == null ? null : entry.getValue();
+    }
+
+    public DBPlayerCheckpoint createCheckpoint() {
+        DBPlayerCheckpoint checkpoint = new DBPlayerCheckpoint(eventPlayedCount);
+        checkpoint.contextInfo.set(contextInfo);
+        checkpoint.markStack.addAll(markStack);
+        checkpoint.resyncing = resyncing;
+        checkpoint.lastLocationEvent = lastLocationEvent;
+        checkpoint.addElements(contextInfo.size()+markStack.size());
+
+        debuggerTab.playerSaveCheckpoint(checkpoint);
+        processor.saveCheckpoint(checkpoint);
+        return checkpoint;
+    }
+
+    public void restoreCheckpoint(DBPlayerCheckpoint checkpoint) {
+        debuggerTab.playerRestoreCheckpoint(checkpoint);
+        processor.restoreCheckpoint(checkpoint);
+
+        contextInfo.set(checkpoint.contextInfo);
+        markStack.clear();
+        markStack.addAll(checkpoint.markStack);
+        resyncing = checkpoint.resyncing;
+        lastLocationEvent = checkpoint.lastLocationEvent;
+        eventPlayedCount = checkpoint.position;
+    }
+
+    /** Adds a checkpoint and, if the checkpoints exceed the memory budget, doubles
+     * the interval between checkpoints and drops the ones that are not on the new interval.
+     */
+    public void addCheckpoint(DBPlayerCheckpoint checkpoint) {
+        checkpoints.put(checkpoint.position, checkpoint);
+        checkpointMemory += checkpoint.getSize();
+        lastCheckpointSize = checkpoint.getSize();
+
+        while(checkpointMemory > checkpointMemoryBudget && !checkpoints.isEmpty()) {
+            pruneCheckpoints();
+        }
+    }
+
+    /** Doubles the interval between checkpoints and drops the ones that are not on the new interval */
+    protected void pruneCheckpoints() {
+        checkpointInterval *= 2;
+        for(Iterator<DBPlayerCheckpoint> iterator = checkpoints.values().iterator(); iterator.hasNext(); ) {
+            DBPlayerCheckpoint c = iterator.next();
+            if(c.position % checkpointInterval != 0) {
+                checkpointMemory -= c.getSize();
+                iterator.remove();
             }
         }
-        eventPlayedCount = lastEventPosition;
     }
 
     public void playEvent(DBEvent event) {
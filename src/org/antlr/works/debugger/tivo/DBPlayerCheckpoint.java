@@ -0,0 +1,88 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.works.debugger.events.DBEventLocation;
+
+import java.util.Stack;
+
+/** Snapshot of the replay state of the player taken after a given number of events.
+ * The states of the debugger panels and of the input processor are opaque to the player:
+ * they are created and restored by the debugger tab.
+ */
+
+public class DBPlayerCheckpoint {
+
+    /** Approximate memory used by each element copied in a checkpoint */
+    public static final int BYTES_PER_ELEMENT = 64;
+
+    /** Approximate memory used by each tree node copied in a checkpoint (the node and its children vector) */
+    public static final int BYTES_PER_TREE_NODE = 128;
+
+    /** Number of events played when the checkpoint was taken */
+    public int position;
+
+    public DBPlayerContextInfo contextInfo = new DBPlayerContextInfo();
+    public Stack<Integer> markStack = new Stack<Integer>();
+    public int resyncing;
+    public DBEventLocation lastLocationEvent;
+
+    public Object stackState;
+    public Object parseTreeState;
+    public Object astState;
+    public Object processorState;
+
+    /** Number of elements (stack entries, tokens) copied in the checkpoint */
+    public int elementCount;
+
+    /** Number of tree nodes copied in the checkpoint. The nodes shared with
+     * the previous checkpoint are not counted.
+     */
+    public int treeNodeCount;
+
+    public DBPlayerCheckpoint(int position) {
+        this.position = position;
+    }
+
+    public void addElements(int count) {
+        elementCount += count;
+    }
+
+    public void addTreeNodes(int count) {
+        treeNodeCount += count;
+    }
+
+    public long getSize() {
+        return (long)elementCount*BYTES_PER_ELEMENT+(long)treeNodeCount*BYTES_PER_TREE_NODE;
+    }
+
+}
@@ -104,4 +104,17 @@ public class DBPlayerContextInfo {
         mark.clear();
         backtrack.clear();
     }
+
+    /** Replace the content of the stacks by a copy of the ones of another context */
+    public void set(DBPlayerContextInfo other) {
+        clear();
+        subrule.addAll(other.subrule);
+        decision.addAll(other.decision);
+        mark.addAll(other.mark);
+        backtrack.addAll(other.backtrack);
+    }
+
+    public int size() {
+        return subrule.size()+decision.size()+mark.size()+backtrack.size();
+    }
 }
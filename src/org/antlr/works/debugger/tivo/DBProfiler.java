@@ -0,0 +1,339 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.debugger.tivo;
+
+import org.antlr.runtime.Token;
+import org.antlr.works.debugger.events.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/** Aggregates per-rule and per-decision statistics from the debugger events
+ * instead of recording the events for replay.
+ */
+public class DBProfiler {
+
+    protected Map<String,RuleStats> rules = new LinkedHashMap<String,RuleStats>();
+    protected Map<String,DecisionStats> decisions = new LinkedHashMap<String,DecisionStats>();
+
+    protected Stack<ActiveRule> ruleStack = new Stack<ActiveRule>();
+    protected Stack<ActiveDecision> decisionStack = new Stack<ActiveDecision>();
+
+    protected int backtrackLevel = 0;
+    protected int markDepth = 0;
+    protected DBEventLocation lastLocation;
+
+    protected int eventCount = 0;
+
+    public synchronized void reset() {
+        rules.clear();
+        decisions.clear();
+        ruleStack.clear();
+        decisionStack.clear();
+        backtrackLevel = 0;
+        markDepth = 0;
+        lastLocation = null;
+        eventCount = 0;
+    }
+
+    public synchronized int getEventCount() {
+        return eventCount;
+    }
+
+    public synchronized List<RuleStats> getRules() {
+        return new ArrayList<RuleStats>(rules.values());
+    }
+
+    public synchronized List<DecisionStats> getDecisions() {
+        return new ArrayList<DecisionStats>(decisions.values());
+    }
+
+    public void addEvent(DBEvent event) {
+        addEvent(event, System.nanoTime());
+    }
+
+    /** Adds the event received at the specified time (in ns) */
+    public synchronized void addEvent(DBEvent event, long time) {
+        eventCount++;
+        switch(event.getEventType()) {
+            case DBEvent.ENTER_RULE:
+                enterRule(((DBEventEnterRule)event).name, event.getGrammarName(), time);
+                break;
+
+            case DBEvent.EXIT_RULE:
+                exitRule(time);
+                break;
+
+            case DBEvent.ENTER_DECISION:
+                enterDecision(((DBEventEnterDecision)event).decision, event.getGrammarName());
+                break;
+
+            case DBEvent.EXIT_DECISION:
+                exitDecision();
+                break;
+
+            case DBEvent.LT: {
+                DBEventLT e = (DBEventLT)event;
+                if(e.index > 0)
+                    lookahead(e.token, e.index);
+                break;
+            }
+
+            case DBEvent.CONSUME_TOKEN:
+                consume(((DBEventConsumeToken)event).token);
+                break;
+
+            case DBEvent.LOCATION:
+                lastLocation = (DBEventLocation)event;
+                break;
+
+            case DBEvent.MARK:
+                markDepth++;
+                break;
+
+            case DBEvent.REWIND:
+                rewind((DBEventRewind)event);
+                break;
+
+            case DBEvent.BEGIN_BACKTRACK:
+                beginBacktrack(((DBEventBeginBacktrack)event).level);
+                break;
+
+            case DBEvent.END_BACKTRACK:
+                endBacktrack((DBEventEndBacktrack)event);
+                break;
+        }
+    }
+
+    protected void enterRule(String name, String grammarName, long time) {
+        String key = grammarName+"."+name;
+        RuleStats stats = rules.get(key);
+        if(stats == null) {
+            stats = new RuleStats(grammarName, name);
+            rules.put(key, stats);
+        }
+        stats.invocations++;
+        stats.active++;
+        stats.maxRecursion = Math.max(stats.maxRecursion, stats.active);
+        ruleStack.push(new ActiveRule(stats, time));
+    }
+
+    protected void exitRule(long time) {
+        if(ruleStack.isEmpty()) return;
+
+        ActiveRule rule = ruleStack.pop();
+        rule.stats.active--;
+        // Only count the outermost invocation of a recursive rule
+        if(rule.stats.active == 0)
+            rule.stats.time += time-rule.start;
+    }
+
+    protected void enterDecision(int decision, String grammarName) {
+        String key = grammarName+":"+decision;
+        DecisionStats stats = decisions.get(key);
+        if(stats == null) {
+            String rule = ruleStack.isEmpty()?null:ruleStack.peek().stats.name;
+            int line = lastLocation == null?-1:lastLocation.line;
+            int pos = lastLocation == null?-1:lastLocation.pos;
+            stats = new DecisionStats(grammarName, decision, rule, line, pos);
+            decisions.put(key, stats);
+        }
+        stats.invocations++;
+        decisionStack.push(new ActiveDecision(stats));
+    }
+
+    protected void exitDecision() {
+        if(decisionStack.isEmpty()) return;
+
+        ActiveDecision decision = decisionStack.pop();
+        decision.stats.totalLookahead += decision.depth;
+        decision.stats.maxLookahead = Math.max(decision.stats.maxLookahead, decision.depth);
+    }
+
+    /** The lookahead depth of a decision is the number of tokens between the first
+     * token it looked at and the farthest one, including the tokens consumed while
+     * backtracking. Nested decisions also count for the enclosing ones.
+     */
+    protected void lookahead(Token token, int i) {
+        int index = token.getTokenIndex();
+        if(index < 0) return;
+
+        for(ActiveDecision decision : decisionStack) {
+            if(decision.start < 0)
+                decision.start = index-i+1;
+            decision.depth = Math.max(decision.depth, index-decision.start+1);
+        }
+    }
+
+    protected void consume(Token token) {
+        if(backtrackLevel == 0 && markDepth == 0 && !ruleStack.isEmpty())
+            ruleStack.peek().stats.tokens++;
+
+        lookahead(token, 1);
+    }
+
+    protected void rewind(DBEventRewind event) {
+        if(!decisionStack.isEmpty())
+            decisionStack.peek().stats.rewinds++;
+        if(!event.rewindToLastMark() && markDepth > 0)
+            markDepth--;
+    }
+
+    protected void beginBacktrack(int level) {
+        backtrackLevel++;
+        if(decisionStack.isEmpty()) return;
+
+        DecisionStats stats = decisionStack.peek().stats;
+        stats.backtracks++;
+        stats.maxBacktrackLevel = Math.max(stats.maxBacktrackLevel, level);
+    }
+
+    protected void endBacktrack(DBEventEndBacktrack event) {
+        if(backtrackLevel > 0)
+            backtrackLevel--;
+        if(!event.successful && !decisionStack.isEmpty())
+            decisionStack.peek().stats.failedBacktracks++;
+    }
+
+    public synchronized void writeCSV(Writer writer) throws IOException {
+        writer.write(RuleStats.getCSVHeader());
+        writer.write("\n");
+        for(RuleStats stats : rules.values()) {
+            writer.write(stats.toCSV());
+            writer.write("\n");
+        }
+        writer.write("\n");
+        writer.write(DecisionStats.getCSVHeader());
+        writer.write("\n");
+        for(DecisionStats stats : decisions.values()) {
+            writer.write(stats.toCSV());
+            writer.write("\n");
+        }
+    }
+
+    protected static String quote(String s) {
+        if(s == null) return "";
+        if(s.indexOf(',') == -1 && s.indexOf('"') == -1) return s;
+        return "\""+s.replace("\"", "\"\"")+"\"";
+    }
+
+    public static class RuleStats {
+
+        public String grammarName;
+        public String name;
+        public int invocations;
+        public int tokens;
+        public int maxRecursion;
+        /** Wall time in ns */
+        public long time;
+
+        protected int active;
+
+        public RuleStats(String grammarName, String name) {
+            this.grammarName = grammarName;
+            this.name = name;
+        }
+
+        public double getTimeMillis() {
+            return time/1000000.0;
+        }
+
+        public static String getCSVHeader() {
+            return "Grammar,Rule,Invocations,Tokens,Max recursion,Time (ms)";
+        }
+
+        public String toCSV() {
+            return quote(grammarName)+","+quote(name)+","+invocations+","+tokens+","+maxRecursion+","+String.format(Locale.US, "%.3f", getTimeMillis());
+        }
+    }
+
+    public static class DecisionStats {
+
+        public String grammarName;
+        public int decision;
+        public String rule;
+        public int line;
+        public int pos;
+
+        public int invocations;
+        public long totalLookahead;
+        public int maxLookahead;
+        public int backtracks;
+        public int failedBacktracks;
+        public int maxBacktrackLevel;
+        public int rewinds;
+
+        public DecisionStats(String grammarName, int decision, String rule, int line, int pos) {
+            this.grammarName = grammarName;
+            this.decision = decision;
+            this.rule = rule;
+            this.line = line;
+            this.pos = pos;
+        }
+
+        public double getAverageLookahead() {
+            return invocations == 0?0:(double)totalLookahead/invocations;
+        }
+
+        public static String getCSVHeader() {
+            return "Grammar,Decision,Rule,Line,Invocations,Avg lookahead,Max lookahead,Backtracks,Failed backtracks,Max backtrack level,Rewinds";
+        }
+
+        public String toCSV() {
+            return quote(grammarName)+","+decision+","+quote(rule)+","+line+","+invocations+","+String.format(Locale.US, "%.2f", getAverageLookahead())
+                    +","+maxLookahead+","+backtracks+","+failedBacktracks+","+maxBacktrackLevel+","+rewinds;
+        }
+    }
+
+    protected static class ActiveRule {
+
+        public RuleStats stats;
+        public long start;
+
+        public ActiveRule(RuleStats stats, long start) {
+            this.stats = stats;
+            this.start = start;
+        }
+    }
+
+    protected static class ActiveDecision {
+
+        public DecisionStats stats;
+        public int start = -1;
+        public int depth = 0;
+
+        public ActiveDecision(DecisionStats stats) {
+            this.stats = stats;
+        }
+    }
+}
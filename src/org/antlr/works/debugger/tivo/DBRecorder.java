@@ -36,6 +36,8 @@ import org.antlr.runtime.debug.DebugEventListener;
 import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
 import org.antlr.works.debugger.DebuggerTab;
 import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.local.DBInProcessParser;
+import org.antlr.works.debugger.remote.DBBinaryDebugEventListener;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.NumberSet;
@@ -45,6 +47,7 @@ import org.antlr.xjlib.appkit.utils.XJDialogProgressDelegate;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import javax.swing.*;
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -89,8 +92,9 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     protected String address;
     protected int port;
+    protected boolean binary;
 
-    protected List<DBEvent> events;
+    protected DBEventStore events;
     protected int position;
     protected NumberSet breakEvents = new NumberSet();
     protected int stoppedOnEvent = DBEvent.NO_EVENT;
@@ -101,8 +105,13 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     protected int currentTokenIndexEventNumber;
     protected int currentTokenIndex;
 
+    /** In profiling mode, the events are aggregated by the profiler instead of being recorded */
+    protected DBProfiler profiler = new DBProfiler();
+    protected boolean profiling = false;
+
     protected DBRecorderEventListener eventListener;
     protected RemoteDebugEventSocketListener listener;
+    protected DBBinaryDebugEventListener binaryListener;
 
     protected XJDialogProgress progress;
 
@@ -129,6 +138,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
     public void close() {
         debuggerTab = null;
+        events.close();
     }
 
     public void showProgress() {
@@ -156,10 +166,27 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
     }
 
     public synchronized void reset() {
-        events = Collections.synchronizedList(new ArrayList<DBEvent>());
+        if(events != null)
+            events.close();
+        events = new DBEventStore(AWPrefs.getDebuggerEventMemory()*1024L*1024L);
+        if(debuggerTab != null)
+            events.setConsole(debuggerTab.getConsole());
         position = -1;
         currentTokenIndex = -1;
         remoteParserStateWarned = false;
+        profiler.reset();
+    }
+
+    public void setProfiling(boolean flag) {
+        this.profiling = flag;
+    }
+
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    public DBProfiler getProfiler() {
+        return profiler;
     }
 
     public synchronized DBEvent getEvent() {
@@ -372,6 +399,30 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         playEvents(true);
     }
 
+    /** Moves to the event at the specified position and replays the events from the
+     * nearest checkpoint.
+     */
+    public synchronized void goToEvent(int position) {
+        if(position < 0 || position >= events.size())
+            return;
+
+        this.position = position;
+        setIgnoreBreakpoints(false);
+        playEvents(true);
+    }
+
+    /** Moves to the first event consuming the specified token. Returns false if the token
+     * has not been consumed yet.
+     */
+    public boolean goToToken(int tokenIndex) {
+        int p = events.getTokenEventPosition(tokenIndex);
+        if(p == -1)
+            return false;
+
+        goToEvent(p);
+        return true;
+    }
+
     public void goToEnd() {
         setIgnoreBreakpoints(true);
         stepContinue(new NumberSet(DBEvent.TERMINATE));
@@ -385,9 +436,59 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         stepForward(new NumberSet(DBEvent.TERMINATE));
     }
 
+    /** Saves the recorded events in a trace file */
+    public synchronized void saveTrace(File file, String grammarFileName) throws IOException {
+        events.save(file, grammarFileName);
+    }
+
+    /** Opens a trace file instead of connecting to a remote parser. The events are
+     * all available so the recorder behaves as if it had received the terminate event.
+     */
+    public synchronized String openTrace(File file) throws IOException {
+        DBEventStore store = DBEventStore.open(file);
+        listener = null;
+        binaryListener = null;
+        reset();
+        events.close();
+        events = store;
+        debuggerReceivedTerminateEvent = true;
+        position = 0;
+        setStatus(STATUS_BREAK);
+        return store.getGrammarFileName();
+    }
+
+    public synchronized int getRuleEventCount() {
+        return events.getRuleEventCount();
+    }
+
+    public synchronized int getRuleEventPosition(int n) {
+        return events.getRuleEventPosition(n);
+    }
+
+    /** Connects the recorder directly to a parser running inside ANTLRWorks */
+    public void connectInProcess(DBInProcessParser parser) {
+        listener = null;
+        binaryListener = null;
+        eventListener = new DBRecorderEventListener(this);
+        cancelled = false;
+
+        setStatus(STATUS_LAUNCHING);
+        debuggerReceivedTerminateEvent = false;
+        reset();
+
+        connectionSuccess();
+        parser.start(eventListener);
+    }
+
     public void connect(String address, int port) {
+        connect(address, port, false);
+    }
+
+    /** Connects to the remote parser using the binary protocol instead of the text one */
+    public void connect(String address, int port, boolean binary) {
         this.address = address;
         this.port = port;
+        this.binary = binary;
 
         new Thread(this).start();
     }
@@ -404,14 +505,20 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
 
         while((System.currentTimeMillis()-t) < timeout && !cancelled) {
             listener = null;
+            binaryListener = null;
             try {
-                listener = new FixBugRemoteDebugEventSocketListener(eventListener,
-                        DBRecorder.this.address, DBRecorder.this.port);
+                if(binary)
+                    binaryListener = new DBBinaryDebugEventListener(eventListener,
+                            DBRecorder.this.address, DBRecorder.this.port);
+                else
+                    listener = new FixBugRemoteDebugEventSocketListener(eventListener,
+                            DBRecorder.this.address, DBRecorder.this.port);
             } catch (IOException e) {
                 listener = null;
+                binaryListener = null;
             }
 
-            if(listener != null) {
+            if(listener != null || binaryListener != null) {
                 connected = true;
                 break;
             }
@@ -443,7 +550,10 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
             debuggerReceivedTerminateEvent = false;
 
             reset();
-            listener.start();
+            if(binaryListener != null)
+                binaryListener.start();
+            else
+                listener.start();
 
             connectionSuccess();
         }
@@ -498,8 +608,21 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
         //Tool.VERSION
         //System.out.println(listener.version);
 
+        /* The parser running inside ANTLRWorks has been generated from this grammar */
+        String remoteGrammarFileName;
+        if(listener != null)
+            remoteGrammarFileName = listener.grammarFileName;
+        else if(binaryListener != null)
+            remoteGrammarFileName = binaryListener.grammarFileName;
+        else
+            return;
+
+        // The binary protocol carries the grammar file name with the rules only
+        if(remoteGrammarFileName == null)
+            return;
+
         String grammarFileName = debuggerTab.getDelegate().getGrammarEngine().getGrammarFileName();
-        String remoteParserGrammarFileName = XJUtils.getLastPathComponent(listener.grammarFileName);
+        String remoteParserGrammarFileName = XJUtils.getLastPathComponent(remoteGrammarFileName);
 
         if(!grammarFileName.equals(remoteParserGrammarFileName)) {
             String message = "Warning: the grammar used by the remote parser is not the same ("+remoteParserGrammarFileName+").";
@@ -511,7 +634,7 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
      to be paused
      */
     public boolean checkRemoteParserState() {
-        if(remoteParserStateWarned)
+        if(remoteParserStateWarned || listener == null)
             return false;
 
         if(listener.tokenIndexesAreInvalid()) {
@@ -568,8 +691,15 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
      * the remote parser. It is running on another thread than the event thread.
      */
     public synchronized void listenerEvent(DBEvent event) {
-        events.add(event);
+        /* The grammar name must be set before the event is encoded in the store */
         handleGrammarName(event);
+
+        if(profiling) {
+            profilerEvent(event);
+            return;
+        }
+
+        events.add(event);
         recordIndexes(event);
         setPositionToEnd();
 
@@ -640,6 +770,20 @@ public class DBRecorder implements Runnable, XJDialogProgressDelegate {
             debuggerTab.playEvents(events, getCurrentEventPosition(), reset);
     }
 
+    /** The profiler never breaks: the parser runs until it terminates or the user stops it */
+    protected void profilerEvent(DBEvent event) {
+        profiler.addEvent(event);
+
+        if(getStatus() == STATUS_LAUNCHING)
+            setStatus(STATUS_RUNNING);
+
+        if(event.getEventType() == DBEvent.TERMINATE) {
+            debuggerReceivedTerminateEvent = true;
+            setStoppedOnEvent(DBEvent.TERMINATE);
+            stop();
+        }
+    }
+
     public void dialogDidCancel() {
         cancelled = true;
     }
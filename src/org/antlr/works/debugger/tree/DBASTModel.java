@@ -72,6 +72,19 @@ public class DBASTModel {
         fireDataChanged();
     }
 
+    /** Returns a copy of the rules with their trees */
+    public State saveState() {
+        return new State(rules, nodesMap);
+    }
+
+    /** Replaces the trees by a copy of the saved ones so the state can be restored again */
+    public void restoreState(State state) {
+        State copy = new State(state.rules, state.nodesMap);
+        rules = copy.rules;
+        nodesMap = copy.nodesMap;
+        fireDataChanged();
+    }
+
     /* Methods used to query the model */
 
     public int getRuleCount() {
@@ -243,6 +256,12 @@ public class DBASTModel {
             }
         }
 
+        /** Add a child as is, without changing its parent node */
+        @SuppressWarnings("unchecked")
+        public void appendChild(ASTNode node) {
+            children.add(node);
+        }
+
         /** Remove a child */
         public void removeChild(ASTNode node) {
             children.remove(node);
@@ -289,4 +308,56 @@ public class DBASTModel {
             }
         }
     }
+
+    public class State {
+
+        public Stack<Rule> rules = new Stack<Rule>();
+        public Map<Integer, ASTNode> nodesMap = new HashMap<Integer, ASTNode>();
+        public int nodeCount;
+
+        protected Map<ASTNode,ASTNode> copies = new IdentityHashMap<ASTNode, ASTNode>();
+
+        public State(Stack<Rule> rules, Map<Integer, ASTNode> nodesMap) {
+            for (Rule rule : rules) {
+                Stack<ASTNode> roots = new Stack<ASTNode>();
+                for (ASTNode root : rule.roots) {
+                    roots.push(copy(root));
+                }
+                this.rules.push(new Rule(rule.name, roots));
+            }
+            for (Map.Entry<Integer, ASTNode> entry : nodesMap.entrySet()) {
+                this.nodesMap.put(entry.getKey(), copy(entry.getValue()));
+            }
+
+            /** Do not keep the original nodes alive */
+            nodeCount = copies.size();
+            copies = null;
+        }
+
+        /** Number of nodes in the trees */
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        /** Copy the node once with its children and its parent: a node
+         * can be moved under another root by becomeRoot() and addChild().
+         */
+        protected ASTNode copy(ASTNode node) {
+            ASTNode copy = copies.get(node);
+            if(copy == null) {
+                copy = new ASTNode(node.id);
+                copies.put(node, copy);
+                copy.nil = node.nil;
+                copy.token = node.token;
+                copy.location = node.location;
+                copy.color = node.color;
+                for(int index=0; index<node.getChildCount(); index++) {
+                    copy.appendChild(copy((ASTNode) node.getChildAt(index)));
+                }
+                if(node.parentNode != null)
+                    copy.parentNode = copy(node.parentNode);
+            }
+            return copy;
+        }
+    }
 }
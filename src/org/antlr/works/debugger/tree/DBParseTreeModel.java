@@ -13,9 +13,13 @@ import org.antlr.xjlib.foundation.notification.XJNotificationObserver;
 import javax.swing.tree.TreeNode;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.Vector;
 /*
 
 [The "BSD licence"]
@@ -56,6 +60,9 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
     public TreeNode lastNode;
     public DBEventLocation location;
 
+    /** Copies of the nodes made by the last saveState(), shared with the next saved state if unchanged */
+    protected Map<TreeNode,ParseTreeNode> savedCopies;
+
     public DebuggerTab debuggerTab;
 
     public List<DBParseTreeModelListener> listeners = new ArrayList<DBParseTreeModelListener>();
@@ -97,6 +104,7 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
 
         initRules();
         backtrackStack.clear();
+        savedCopies = null;
 
         setLastNode(null);
         fireDataChanged();
@@ -177,6 +185,32 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
         setLastNode(b.getLastNode());
     }
 
+    /** Returns a copy of the tree and of the stacks referring to its nodes. The subtrees
+     * that did not change since the last saved state are shared with it.
+     */
+    public State saveState() {
+        Map<TreeNode,ParseTreeNode> shared = savedCopies;
+        if(shared == null)
+            shared = Collections.emptyMap();
+        State state = new State(rules, backtrackStack, lastNode, location, shared);
+        savedCopies = state.copies;
+        state.copies = null;
+        return state;
+    }
+
+    /** Replaces the tree by a copy of the saved one so the state can be restored again */
+    public void restoreState(State state) {
+        State copy = new State(state.rules, state.backtrackStack, state.lastNode, state.location, null);
+        rules = copy.rules;
+        backtrackStack = copy.backtrackStack;
+        lastNode = copy.lastNode;
+        location = copy.location;
+        savedCopies = null;
+
+        clearNewNodes();
+        fireDataChanged();
+    }
+
     public void notificationFire(Object source, String name) {
         if(name.equals(AWPrefsDialog.NOTIF_PREFS_APPLIED)) {
             initColors();
@@ -202,6 +236,24 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
             super(token, location);
         }
 
+        /** Copy the node without its children */
+        public ParseTreeNode(ParseTreeNode node) {
+            super(node.token, node.location);
+            this.s = node.s;
+            this.e = node.e;
+            this.color = node.color;
+        }
+
+        /** Add a child as is, without changing its parent node: the node
+         * can be shared by the trees of several saved states.
+         */
+        @SuppressWarnings("unchecked")
+        public void appendChild(ParseTreeNode node) {
+            if(children == null)
+                children = new Vector<TreeNode>();
+            children.add(node);
+        }
+
         public String toString() {
             if(s != null)
                 return s;
@@ -258,4 +310,96 @@ public class DBParseTreeModel extends AWTreeModel implements XJNotificationObser
 
     }
 
+    public static class State {
+
+        public Stack<ParseTreeNode> rules = new Stack<ParseTreeNode>();
+        public Stack<Backtrack> backtrackStack = new Stack<Backtrack>();
+        public TreeNode lastNode;
+        public DBEventLocation location;
+        public int nodeCount;
+
+        protected Map<TreeNode,ParseTreeNode> copies = new IdentityHashMap<TreeNode, ParseTreeNode>();
+        protected Map<TreeNode,ParseTreeNode> shared;
+
+        /** Copies the tree. If shared is not null, it contains the copies of a previous
+         * saved state: a node is reused if it and its children did not change since then.
+         */
+        public State(Stack<ParseTreeNode> rules, Stack<Backtrack> backtrackStack, TreeNode lastNode, DBEventLocation location,
+                     Map<TreeNode,ParseTreeNode> shared)
+        {
+            this.shared = shared;
+            for (ParseTreeNode rule : rules) {
+                this.rules.push(copy(rule));
+            }
+            for (Backtrack backtrack : backtrackStack) {
+                Backtrack b = new Backtrack(backtrack.level, backtrack.lookaheadTokenColor);
+                for (DBTreeNode node : backtrack.nodes) {
+                    b.nodes.add(copy((ParseTreeNode)node));
+                }
+                this.backtrackStack.push(b);
+            }
+            this.lastNode = lastNode == null ? null : copy((ParseTreeNode)lastNode);
+            this.location = location;
+
+            /** Do not keep the original nodes alive */
+            this.shared = null;
+            if(shared == null)
+                copies = null;
+        }
+
+        /** Number of nodes copied (the shared nodes are not counted) */
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
+        /** Copy the node and its children once. The nodes referenced by the stacks
+         * are all part of the tree (from the root rule) so they are copied with the tree.
+         */
+        protected ParseTreeNode copy(ParseTreeNode node) {
+            ParseTreeNode copy = copies.get(node);
+            if(copy != null)
+                return copy;
+
+            List<ParseTreeNode> children = new ArrayList<ParseTreeNode>(node.getChildCount());
+            for(int index=0; index<node.getChildCount(); index++) {
+                children.add(copy((ParseTreeNode)node.getChildAt(index)));
+            }
+
+            if(shared == null) {
+                copy = new ParseTreeNode(node);
+                for(ParseTreeNode child : children) {
+                    copy.add(child);
+                }
+                nodeCount++;
+            } else {
+                /** Nodes only get new children or a new color: reuse the previous copy if
+                 * neither changed, without changing the parent of the shared children.
+                 */
+                copy = shared.get(node);
+                if(copy == null || !isCopyOf(copy, node, children)) {
+                    copy = new ParseTreeNode(node);
+                    for(ParseTreeNode child : children) {
+                        copy.appendChild(child);
+                    }
+                    nodeCount++;
+                }
+            }
+            copies.put(node, copy);
+            return copy;
+        }
+
+        protected static boolean isCopyOf(ParseTreeNode copy, ParseTreeNode node, List<ParseTreeNode> children) {
+            if(copy.getChildCount() != children.size())
+                return false;
+            if(copy.color == null ? node.color != null : !copy.color.equals(node.color))
+                return false;
+            for(int index=0; index<children.size(); index++) {
+                if(copy.getChildAt(index) != children.get(index))
+                    return false;
+            }
+            return true;
+        }
+
+    }
+
 }
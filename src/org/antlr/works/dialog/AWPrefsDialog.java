@@ -118,6 +118,7 @@ public class AWPrefsDialog extends XJPanel {
         getPreferences().bindToPreferences(outputPathField, AWPrefs.PREF_OUTPUT_PATH, AWPrefs.DEFAULT_OUTPUT_PATH);
         getPreferences().bindToPreferences(dotToolPathField, AWPrefs.PREF_DOT_TOOL_PATH, AWPrefs.DEFAULT_DOT_TOOL_PATH);
         getPreferences().bindToPreferences(antlr3OptionsField, AWPrefs.PREF_ANTLR3_OPTIONS, AWPrefs.DEFAULT_ANTLR3_OPTIONS);
+        getPreferences().bindToPreferences(decisionTimeBudgetField, AWPrefs.PREF_DECISION_TIME_BUDGET, AWPrefs.DEFAULT_DECISION_TIME_BUDGET);
 
         // General - debug only
         //getPreferences().bindToPreferences(debugVerboseButton, AWPrefs.PREF_DEBUG_VERBOSE, false);
@@ -237,8 +238,10 @@ public class AWPrefsDialog extends XJPanel {
         compilerRadioButtonGroup.add(jikesRadio);
         compilerRadioButtonGroup.add(integratedRadio);
         compilerRadioButtonGroup.add(javacRadio);
+        compilerRadioButtonGroup.add(javaxToolsRadio);
 
         integratedRadio.setActionCommand("integrated");
+        javaxToolsRadio.setActionCommand("javaxtools");
         javacRadio.setActionCommand("javac");
         jikesRadio.setActionCommand("jikes");
 
@@ -255,6 +258,7 @@ public class AWPrefsDialog extends XJPanel {
     public void prepareDebuggerTab() {
         getPreferences().bindToPreferences(debugDefaultLocalPortField, AWPrefs.PREF_DEBUG_LOCALPORT, AWPrefs.DEFAULT_DEBUG_LOCALPORT);
         getPreferences().bindToPreferences(debugLaunchTimeoutField, AWPrefs.PREF_DEBUG_LAUNCHTIMEOUT, AWPrefs.DEFAULT_DEBUG_LAUNCHTIMEOUT);
+        getPreferences().bindToPreferences(debugEventMemoryField, AWPrefs.PREF_DEBUGGER_EVENT_MEMORY, AWPrefs.DEFAULT_DEBUGGER_EVENT_MEMORY);
 
         getPreferences().bindToPreferences(debugNonConsumedColorPanel, AWPrefs.PREF_NONCONSUMED_TOKEN_COLOR, AWPrefs.DEFAULT_NONCONSUMED_TOKEN_COLOR);
         getPreferences().bindToPreferences(debugConsumedColorPanel, AWPrefs.PREF_CONSUMED_TOKEN_COLOR, AWPrefs.DEFAULT_CONSUMED_TOKEN_COLOR);
@@ -264,6 +268,8 @@ public class AWPrefsDialog extends XJPanel {
 
         getPreferences().bindToPreferences(detachablePanelChildrenButton, AWPrefs.PREF_DETACHABLE_CHILDREN, AWPrefs.DEFAULT_DETACHABLE_CHILDREN);
         getPreferences().bindToPreferences(askGenButton, AWPrefs.PREF_DEBUGGER_ASK_GEN, AWPrefs.DEFAULT_DEBUGGER_ASK_GEN);
+        getPreferences().bindToPreferences(inProcessButton, AWPrefs.PREF_DEBUGGER_IN_PROCESS, AWPrefs.DEFAULT_DEBUGGER_IN_PROCESS);
+        getPreferences().bindToPreferences(binaryProtocolButton, AWPrefs.PREF_DEBUGGER_BINARY_PROTOCOL, AWPrefs.DEFAULT_DEBUGGER_BINARY_PROTOCOL);
     }
 
     public void prepareAdvancedTab() {
@@ -448,6 +454,9 @@ public class AWPrefsDialog extends XJPanel {
         browseDotToolPathButton = new JButton();
         label37 = new JLabel();
         antlr3OptionsField = new JTextField();
+        label39 = new JLabel();
+        decisionTimeBudgetField = new JTextField();
+        label40 = new JLabel();
         tabEditor = new JPanel();
         label3 = new JLabel();
         editorFontCombo = new JComboBox();
@@ -503,6 +512,7 @@ public class AWPrefsDialog extends XJPanel {
         tabCompiler = new JPanel();
         jikesRadio = new JRadioButton();
         integratedRadio = new JRadioButton();
+        javaxToolsRadio = new JRadioButton();
         javacRadio = new JRadioButton();
         javacCustomPathButton = new JCheckBox();
         javacPathField = new JTextField();
@@ -521,6 +531,9 @@ public class AWPrefsDialog extends XJPanel {
         label34 = new JLabel();
         debugLaunchTimeoutField = new JTextField();
         label35 = new JLabel();
+        label41 = new JLabel();
+        debugEventMemoryField = new JTextField();
+        label42 = new JLabel();
         label12 = new JLabel();
         debugNonConsumedColorPanel = new JPanel();
         label13 = new JLabel();
@@ -534,6 +547,8 @@ public class AWPrefsDialog extends XJPanel {
         label36 = new JLabel();
         detachablePanelChildrenButton = new JCheckBox();
         askGenButton = new JCheckBox();
+        inProcessButton = new JCheckBox();
+        binaryProtocolButton = new JCheckBox();
         panel1 = new JPanel();
         label8 = new JLabel();
         checkGrammarSuccessButton = new JCheckBox();
@@ -671,6 +686,19 @@ public class AWPrefsDialog extends XJPanel {
         				label37.setText("ANTLR options:");
         				tabGeneral.add(label37, cc.xy(3, 15));
         				tabGeneral.add(antlr3OptionsField, cc.xywh(5, 15, 3, 1));
+
+        				//---- label39 ----
+        				label39.setText("Decision time budget:");
+        				tabGeneral.add(label39, cc.xy(3, 17));
+
+        				//---- decisionTimeBudgetField ----
+        				decisionTimeBudgetField.setText("10000");
+        				decisionTimeBudgetField.setToolTipText("Maximum time to analyze a decision (0 for no limit)");
+        				tabGeneral.add(decisionTimeBudgetField, cc.xy(5, 17));
+
+        				//---- label40 ----
+        				label40.setText("ms");
+        				tabGeneral.add(label40, cc.xy(7, 17));
         			}
         			tabbedPane1.addTab("General", tabGeneral);
 
@@ -1055,10 +1083,10 @@ public class AWPrefsDialog extends XJPanel {
         						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC,
         						FormFactory.LINE_GAP_ROWSPEC,
-        						new RowSpec(Sizes.dluY(10)),
-        						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC,
         						FormFactory.LINE_GAP_ROWSPEC,
+        						new RowSpec(Sizes.dluY(10)),
+        						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC,
         						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC
@@ -1073,6 +1101,12 @@ public class AWPrefsDialog extends XJPanel {
         				integratedRadio.setActionCommand("integrated");
         				tabCompiler.add(integratedRadio, cc.xywh(3, 11, 3, 1));
 
+        				//---- javaxToolsRadio ----
+        				javaxToolsRadio.setText("javax.tools (in-process)");
+        				javaxToolsRadio.setActionCommand("javaxtools");
+        				javaxToolsRadio.setToolTipText("Compile the generated files inside ANTLRWorks using the compiler of the running Java runtime");
+        				tabCompiler.add(javaxToolsRadio, cc.xywh(3, 13, 3, 1));
+
         				//---- javacRadio ----
         				javacRadio.setText("javac");
         				javacRadio.setSelected(true);
@@ -1099,20 +1133,20 @@ public class AWPrefsDialog extends XJPanel {
 
         				//---- label9 ----
         				label9.setText("Classpath:");
-        				tabCompiler.add(label9, cc.xy(3, 15));
+        				tabCompiler.add(label9, cc.xy(3, 17));
 
         				//---- classpathSystemButton ----
         				classpathSystemButton.setText("System");
-        				tabCompiler.add(classpathSystemButton, cc.xy(4, 15));
+        				tabCompiler.add(classpathSystemButton, cc.xy(4, 17));
 
         				//---- classpathCustomButton ----
         				classpathCustomButton.setText("Custom:");
-        				tabCompiler.add(classpathCustomButton, cc.xy(4, 17));
-        				tabCompiler.add(customClasspathField, cc.xy(5, 17));
+        				tabCompiler.add(classpathCustomButton, cc.xy(4, 19));
+        				tabCompiler.add(customClasspathField, cc.xy(5, 19));
 
         				//---- browseCustomClassPathButton ----
         				browseCustomClassPathButton.setText("Browse...");
-        				tabCompiler.add(browseCustomClassPathButton, cc.xy(6, 17));
+        				tabCompiler.add(browseCustomClassPathButton, cc.xy(6, 19));
         			}
         			tabbedPane1.addTab("Compiler", tabCompiler);
 
@@ -1158,6 +1192,10 @@ public class AWPrefsDialog extends XJPanel {
         						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC,
         						FormFactory.LINE_GAP_ROWSPEC,
+        						FormFactory.DEFAULT_ROWSPEC,
+        						FormFactory.LINE_GAP_ROWSPEC,
+        						FormFactory.DEFAULT_ROWSPEC,
+        						FormFactory.LINE_GAP_ROWSPEC,
         						FormFactory.DEFAULT_ROWSPEC
         					}));
 
@@ -1181,6 +1219,19 @@ public class AWPrefsDialog extends XJPanel {
         				label35.setText("seconds");
         				tabDebugger.add(label35, cc.xy(13, 3));
 
+        				//---- label41 ----
+        				label41.setText("Events in memory:");
+        				tabDebugger.add(label41, cc.xy(9, 7));
+
+        				//---- debugEventMemoryField ----
+        				debugEventMemoryField.setText("64");
+        				debugEventMemoryField.setToolTipText("Memory used by the recorded events before they are moved to a temporary file");
+        				tabDebugger.add(debugEventMemoryField, cc.xy(11, 7));
+
+        				//---- label42 ----
+        				label42.setText("MB");
+        				tabDebugger.add(label42, cc.xy(13, 7));
+
         				//---- label12 ----
         				label12.setText("Non-consumed token:");
         				label12.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -1267,6 +1318,16 @@ public class AWPrefsDialog extends XJPanel {
         				//---- askGenButton ----
         				askGenButton.setText("Ask before generating and compiling");
         				tabDebugger.add(askGenButton, cc.xywh(5, 21, 5, 1));
+
+        				//---- inProcessButton ----
+        				inProcessButton.setText("Run the parser inside ANTLRWorks");
+        				inProcessButton.setToolTipText("Load the compiled parser in ANTLRWorks instead of launching a remote parser (default test rig only)");
+        				tabDebugger.add(inProcessButton, cc.xywh(5, 23, 5, 1));
+
+        				//---- binaryProtocolButton ----
+        				binaryProtocolButton.setText("Use the binary debug protocol");
+        				binaryProtocolButton.setToolTipText("Send the events of the remote parser in batched binary frames (default test rig only)");
+        				tabDebugger.add(binaryProtocolButton, cc.xywh(5, 25, 5, 1));
         			}
         			tabbedPane1.addTab("Debugger", tabDebugger);
 
@@ -1487,6 +1548,9 @@ public class AWPrefsDialog extends XJPanel {
     private JButton browseDotToolPathButton;
     private JLabel label37;
     private JTextField antlr3OptionsField;
+    private JLabel label39;
+    private JTextField decisionTimeBudgetField;
+    private JLabel label40;
     private JPanel tabEditor;
     private JLabel label3;
     private JComboBox editorFontCombo;
@@ -1542,6 +1606,7 @@ public class AWPrefsDialog extends XJPanel {
     private JPanel tabCompiler;
     private JRadioButton jikesRadio;
     private JRadioButton integratedRadio;
+    private JRadioButton javaxToolsRadio;
     private JRadioButton javacRadio;
     private JCheckBox javacCustomPathButton;
     private JTextField javacPathField;
@@ -1560,6 +1625,9 @@ public class AWPrefsDialog extends XJPanel {
     private JLabel label34;
     private JTextField debugLaunchTimeoutField;
     private JLabel label35;
+    private JLabel label41;
+    private JTextField debugEventMemoryField;
+    private JLabel label42;
     private JLabel label12;
     private JPanel debugNonConsumedColorPanel;
     private JLabel label13;
@@ -1573,6 +1641,8 @@ public class AWPrefsDialog extends XJPanel {
     private JLabel label36;
     private JCheckBox detachablePanelChildrenButton;
     private JCheckBox askGenButton;
+    private JCheckBox inProcessButton;
+    private JCheckBox binaryProtocolButton;
     private JPanel panel1;
     private JLabel label8;
     private JCheckBox checkGrammarSuccessButton;
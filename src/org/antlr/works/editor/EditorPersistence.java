@@ -70,6 +70,10 @@ public class EditorPersistence {
         }
     }
     
+    public void discard() {
+        stored = false;
+    }
+
     public void store(List objects, String key) {
         Map<Object,EditorPersistentObject> m = persistence.get(key);
         if(m == null) {
@@ -40,6 +40,7 @@ import org.antlr.works.grammar.element.ElementGroup;
 import org.antlr.works.grammar.element.ElementReference;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxDiff;
 import org.antlr.works.grammar.syntax.GrammarSyntaxLexer;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.stats.StatisticsAW;
@@ -391,23 +392,14 @@ public class EditorRules implements XJTreeDelegate {
         if(getGrammarEngine().getRules() == null)
             return null;
 
-        List<ElementReference> refs = new ArrayList<ElementReference>();
-        for (ElementReference r : getGrammarEngine().getReferences()) {
-            if (r.rule == rule)
-                refs.add(r);
-        }
-        return refs;
+        return getGrammarEngine().getReferencesInRule(rule);
     }
 
     public ElementRule getEnclosingRuleAtPosition(int pos) {
         if(getGrammarEngine().getRules() == null)
             return null;
 
-        for (ElementRule r : getGrammarEngine().getRules()) {
-            if (r.containsIndex(pos))
-                return r;
-        }
-        return null;
+        return getGrammarEngine().getEnclosingRuleAtPosition(pos);
     }
 
     public ElementRule selectRuleInTreeAtPosition(int pos) {
@@ -532,6 +524,32 @@ public class EditorRules implements XJTreeDelegate {
         restoreExpandedNodes();
     }
 
+    /**
+     * Replaces the rules that have been parsed again without modifying the structure of the grammar
+     */
+    private void updateTreeRules(GrammarSyntaxDiff diff) {
+        Map<String,ElementRule> addedRules = new HashMap<String, ElementRule>();
+        for(ElementRule rule : diff.getAddedRules()) {
+            addedRules.put(rule.name, rule);
+        }
+
+        Enumeration<?> e = rulesTreeRootNode.depthFirstEnumeration();
+        while(e.hasMoreElements()) {
+            DefaultMutableTreeNode node = (DefaultMutableTreeNode)e.nextElement();
+            RuleTreeUserObject n = (RuleTreeUserObject)node.getUserObject();
+            if(n == null || n.rule == null || !diff.getRemovedRules().contains(n.rule)) continue;
+
+            ElementRule rule = addedRules.get(n.rule.name);
+            if(rule == null) {
+                // Should not happen if the structure is not modified
+                rebuildTree();
+                return;
+            }
+            n.rule = rule;
+            rulesTreeModel.nodeChanged(node);
+        }
+    }
+
     public void rememberSelectedTreeItem() {
         DefaultMutableTreeNode node = rulesTree.getSelectedNode();
         selectedObject = null;
@@ -621,7 +639,12 @@ public class EditorRules implements XJTreeDelegate {
     }
 
     public void parserDidParse() {
-        rebuildTree();
+        GrammarSyntaxDiff diff = getGrammarEngine().getSyntaxDiff();
+        if(diff.isStructureModified()) {
+            rebuildTree();
+        } else if(!diff.isEmpty()) {
+            updateTreeRules(diff);
+        }
         if(selectNextRule) {
             // Can be set by RuleMoveDown() class when a rule is moved down. Selection has to occurs here
             // after rules have been parsed. We use this flag to select the next rule instead of the current one.
@@ -32,8 +32,8 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.generate;
 
 import org.antlr.Tool;
-import org.antlr.tool.ErrorManager;
 import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.grammar.antlr.ANTLRAnalysisPool;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.ErrorListener;
@@ -90,7 +90,7 @@ public class CodeGenerate implements Runnable {
 
     public boolean generate() {
         ErrorListener el = ErrorListener.getThreadInstance();
-        ErrorManager.setErrorListener(el);
+        ANTLRAnalysisPool.setErrorListener(el);
 
         String[] params;
         if(debug)
@@ -109,10 +109,15 @@ public class CodeGenerate implements Runnable {
         }
         lastError = el.getFirstErrorMessage();
         el.clear();
-        ErrorManager.removeErrorListener();
+        ANTLRAnalysisPool.removeErrorListener();
         return success;
     }
 
+    /** Called when the generated files have been restored from a cache instead of being generated */
+    public void setGenerated() {
+        dateOfModificationOnDisk = window.getDocument().getDateOfModificationOnDisk();
+    }
+
     public List<String> getGeneratedFileNames() throws Exception {
         List<String> files = new ArrayList<String>();
         for(String name : window.getGrammarEngine().getAllGeneratedNames()) {
@@ -0,0 +1,239 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.Tool;
+import org.antlr.runtime.misc.Stats;
+import org.antlr.works.grammar.element.ElementImport;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/** On-disk cache of the analysis snapshots. A snapshot is stored under a key computed
+ * from everything the analysis depends on: the text of the grammar, the text of the
+ * imported grammars and of the token vocabulary, and the version of ANTLR.
+ */
+public class ANTLRAnalysisCache {
+
+    public static final String CACHE_DIR = "analysis-cache";
+    public static final String EXTENSION = ".snapshot";
+
+    /** Bump when the format of the snapshot changes */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int MAX_ENTRIES = 200;
+
+    private static ANTLRAnalysisCache shared;
+
+    private final File directory;
+
+    public static synchronized ANTLRAnalysisCache shared() {
+        if(shared == null) {
+            shared = new ANTLRAnalysisCache(new File(System.getProperty("user.home")+File.separator+
+                    Stats.ANTLRWORKS_DIR+File.separator+CACHE_DIR));
+        }
+        return shared;
+    }
+
+    public ANTLRAnalysisCache(File directory) {
+        this.directory = directory;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /** Returns the key of the current content of the grammar, or null if
+     * the key cannot be computed.
+     */
+    public static String computeKey(GrammarEngine engine) {
+        String text = engine.getGrammarText();
+        if(text == null) return null;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            update(digest, String.valueOf(FORMAT_VERSION));
+            Tool tool = engine.getANTLRTool();
+            if(tool != null) {
+                update(digest, tool.VERSION);
+                update(digest, String.valueOf(tool.getConversionTimeout()));
+            }
+            update(digest, String.valueOf(engine.getType()));
+            update(digest, text);
+
+            // The imported grammars and the token vocabulary are read by ANTLR from the disk
+            File folder = getFolder(engine.getGrammarFileName());
+            for(ElementImport i : engine.getImports()) {
+                update(digest, i.getName());
+                if(folder != null) {
+                    update(digest, readFile(new File(folder, i.getName()+".g")));
+                }
+            }
+            String tokenVocab = engine.getTokenVocab();
+            if(tokenVocab != null) {
+                update(digest, tokenVocab);
+                String file = engine.getTokenVocabFile(tokenVocab+".tokens");
+                if(file != null) {
+                    update(digest, readFile(new File(file)));
+                }
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for(byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /** Returns the snapshot stored under this key or null if there is none */
+    public synchronized ANTLRAnalysisSnapshot load(String key) {
+        File file = getFile(key);
+        if(!file.exists()) return null;
+
+        ObjectInputStream in = null;
+        try {
+            in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            ANTLRAnalysisSnapshot snapshot = (ANTLRAnalysisSnapshot) in.readObject();
+            // Keep the most recently used entries when pruning the cache
+            file.setLastModified(System.currentTimeMillis());
+            return snapshot;
+        } catch (Exception e) {
+            // Unreadable or written by an incompatible version: discard it
+            close(in);
+            in = null;
+            file.delete();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    public synchronized void store(String key, ANTLRAnalysisSnapshot snapshot) {
+        if(!directory.exists() && !directory.mkdirs()) return;
+
+        // Write into a temporary file first so a reader never sees a partial snapshot
+        File file = getFile(key);
+        File tmp = new File(directory, key+".tmp");
+        ObjectOutputStream out = null;
+        try {
+            out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeObject(snapshot);
+            out.close();
+            out = null;
+            file.delete();
+            if(!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            close(out);
+            out = null;
+            tmp.delete();
+        } finally {
+            close(out);
+        }
+
+        prune();
+    }
+
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if(files == null) return;
+
+        for(File file : files) {
+            if(file.getName().endsWith(EXTENSION))
+                file.delete();
+        }
+    }
+
+    private void prune() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(EXTENSION);
+            }
+        });
+        if(files == null || files.length <= MAX_ENTRIES) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File f1, File f2) {
+                return Long.valueOf(f1.lastModified()).compareTo(f2.lastModified());
+            }
+        });
+        for(int index = 0; index < files.length-MAX_ENTRIES; index++) {
+            files[index].delete();
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key+EXTENSION);
+    }
+
+    private static File getFolder(String fileName) {
+        if(fileName == null) return null;
+        return new File(fileName).getAbsoluteFile().getParentFile();
+    }
+
+    private static String readFile(File file) {
+        if(!file.exists()) return "";
+        try {
+            return XJUtils.getStringFromFile(file.getAbsolutePath());
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            digest.update(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            digest.update(s.getBytes());
+        }
+        digest.update((byte)0);
+    }
+
+    private static void close(Closeable c) {
+        if(c == null) return;
+        try {
+            c.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.misc.BitSet;
+import org.antlr.tool.ANTLRErrorListener;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Message;
+import org.antlr.works.utils.ErrorListener;
+
+import java.util.concurrent.*;
+
+/** Pool of worker threads analyzing grammars concurrently: the implicit lexer of a
+ * combined grammar and the delegates of a composite grammar are independent of the
+ * parser once their NFAs are created, and so are the decisions of a grammar once
+ * their NFAs are created.
+ *
+ * Each task reports to its own ErrorListener; the messages are merged into the
+ * listener of the caller when the task is completed.
+ */
+public class ANTLRAnalysisPool {
+
+    /** The conversion of the NFA to DFA is deeply recursive */
+    private static final long STACK_SIZE = 16*1024*1024;
+
+    /** The error manager of ANTLR keeps the listeners and the error states of the threads
+     * in weak hash maps that are not synchronized: even a lookup modifies them when it
+     * expunges the stale entries. Its accessors are called under this lock.
+     */
+    private static final Object errorManagerLock = new Object();
+
+    private static ANTLRAnalysisPool shared;
+
+    private final ExecutorService executor;
+    private final int poolSize;
+
+    public static synchronized ANTLRAnalysisPool shared() {
+        if(shared == null) {
+            int processors = Runtime.getRuntime().availableProcessors();
+            shared = new ANTLRAnalysisPool(Math.max(2, Math.min(4, processors)));
+        }
+        return shared;
+    }
+
+    public ANTLRAnalysisPool(int poolSize) {
+        this.poolSize = poolSize;
+        this.executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+
+            private int count;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(null, r, "ANTLR Analysis #"+(++count), STACK_SIZE);
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public static ANTLRErrorListener getErrorListener() {
+        synchronized(errorManagerLock) {
+            return ErrorManager.getErrorListener();
+        }
+    }
+
+    public static void setErrorListener(ANTLRErrorListener listener) {
+        synchronized(errorManagerLock) {
+            ErrorManager.setErrorListener(listener);
+        }
+    }
+
+    public static void removeErrorListener() {
+        synchronized(errorManagerLock) {
+            ErrorManager.removeErrorListener();
+        }
+    }
+
+    public static void resetErrorState() {
+        synchronized(errorManagerLock) {
+            ErrorManager.resetErrorState();
+        }
+    }
+
+    public static boolean doNotAttemptAnalysis() {
+        synchronized(errorManagerLock) {
+            return ErrorManager.doNotAttemptAnalysis();
+        }
+    }
+
+    /** Starts the analysis of the grammar on a worker thread. The NFAs of the grammar
+     * are created first if createNFAs is true. This method returns when the worker
+     * is ready, once the ANTLR error manager is set up for the worker thread.
+     */
+    public Job analyze(Grammar grammar, boolean createNFAs) throws InterruptedException {
+        Job job = new Job(grammar, createNFAs);
+        submit(job);
+        job.ready.await();
+        return job;
+    }
+
+    /** Runs the task on a worker thread */
+    public void submit(Task task) {
+        task.future = executor.submit(task);
+    }
+
+    public static abstract class Task implements Callable<Object> {
+
+        protected final ErrorListener listener = new ErrorListener();
+        /** The error state of the task, copied from the one of the worker when the task is completed */
+        private ErrorManager.ErrorState state;
+        private Future<Object> future;
+        private volatile long startTime;
+        private volatile long time = -1;
+
+        public Task() {
+            // messages are printed when merged into the listener of the caller
+            listener.setPrintToConsole(false);
+        }
+
+        protected abstract void run() throws Exception;
+
+        public ErrorListener getErrorListener() {
+            return listener;
+        }
+
+        /** Returns the duration of the task in ms (-1 if not completed) */
+        public long getTime() {
+            return time;
+        }
+
+        /** Returns the time elapsed since the task started in ms (0 if not started) */
+        public long getElapsedTime() {
+            long t = startTime;
+            return t == 0 ? 0 : System.currentTimeMillis() - t;
+        }
+
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        /** Waits for the task to complete. The exception thrown by the task,
+         * if any, is thrown again.
+         */
+        public void waitForCompletion() throws Exception {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw getCause(e);
+            }
+        }
+
+        /** Waits at most timeout ms for the task to complete and returns true if it is completed */
+        public boolean waitForCompletion(long timeout) throws Exception {
+            try {
+                future.get(timeout, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (ExecutionException e) {
+                throw getCause(e);
+            }
+        }
+
+        private static Exception getCause(ExecutionException e) {
+            Throwable cause = e.getCause();
+            return cause instanceof Exception ? (Exception)cause : e;
+        }
+
+        /** Merges the error state of the task into the one of the current thread:
+         * ANTLR uses the error state of the current thread to format the messages.
+         */
+        public void mergeErrorState() {
+            if(state == null) return;
+
+            synchronized(errorManagerLock) {
+                ErrorManager.ErrorState current = ErrorManager.getErrorState();
+                current.errors += state.errors;
+                current.warnings += state.warnings;
+                current.infos += state.infos;
+                current.errorMsgIDs.orInPlace(state.errorMsgIDs);
+                current.warningMsgIDs.orInPlace(state.warningMsgIDs);
+            }
+        }
+
+        /** Merges the messages of the task into the listener (in the order they were reported) */
+        public void mergeInto(ErrorListener el) {
+            mergeErrorState();
+            for (String info : listener.infos) {
+                el.info(info);
+            }
+            for (Message error : listener.errors) {
+                el.error(error);
+            }
+            for (Message warning : listener.warnings) {
+                el.warning(warning);
+            }
+            listener.clear();
+        }
+
+        public Object call() throws Exception {
+            ErrorManager.ErrorState workerState = setUpErrorManager();
+
+            long t = System.currentTimeMillis();
+            startTime = t;
+            try {
+                run();
+            } finally {
+                time = System.currentTimeMillis() - t;
+                state = copyErrorState(workerState);
+            }
+            return null;
+        }
+
+        /** The error manager of ANTLR keeps its per-thread listeners and states in maps that
+         * are not synchronized. A worker thread only adds its entries the first time it runs
+         * a task; then the entries are updated in place. In particular,
+         * ErrorManager.resetErrorState() cannot be used because it removes the listeners
+         * of all the threads.
+         *
+         * The error state of the worker is reset so that it only counts the messages of this task.
+         */
+        protected ErrorManager.ErrorState setUpErrorManager() {
+            ErrorManager.ErrorState workerState;
+            synchronized(errorManagerLock) {
+                ErrorManager.setErrorListener(listener);
+                workerState = ErrorManager.getErrorState();
+            }
+            workerState.errors = 0;
+            workerState.warnings = 0;
+            workerState.infos = 0;
+            workerState.errorMsgIDs = new BitSet();
+            workerState.warningMsgIDs = new BitSet();
+            return workerState;
+        }
+
+        private static ErrorManager.ErrorState copyErrorState(ErrorManager.ErrorState source) {
+            ErrorManager.ErrorState copy = new ErrorManager.ErrorState();
+            copy.errors = source.errors;
+            copy.warnings = source.warnings;
+            copy.infos = source.infos;
+            copy.errorMsgIDs = (BitSet)source.errorMsgIDs.clone();
+            copy.warningMsgIDs = (BitSet)source.warningMsgIDs.clone();
+            return copy;
+        }
+    }
+
+    public static class Job extends Task {
+
+        private final Grammar grammar;
+        private final boolean createNFAs;
+        private final CountDownLatch ready = new CountDownLatch(1);
+
+        public Job(Grammar grammar, boolean createNFAs) {
+            this.grammar = grammar;
+            this.createNFAs = createNFAs;
+        }
+
+        public Grammar getGrammar() {
+            return grammar;
+        }
+
+        public void cancel() {
+            grammar.externallyAbortNFAToDFAConversion();
+        }
+
+        @Override
+        protected ErrorManager.ErrorState setUpErrorManager() {
+            try {
+                return super.setUpErrorManager();
+            } finally {
+                ready.countDown();
+            }
+        }
+
+        protected void run() throws Exception {
+            if(createNFAs) {
+                grammar.composite.createNFAs();
+            }
+            grammar.createLookaheadDFAs();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.tool.Message;
+import org.antlr.tool.Rule;
+
+import java.io.Serializable;
+import java.util.*;
+
+/** Result of the analysis of a grammar that outlives the ANTLR objects it has been
+ * built from: errors and warnings, mutually left-recursive rules, the errors reported
+ * in the editor and the position of each decision.
+ */
+public class ANTLRAnalysisSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Diagnostic> errors = new ArrayList<Diagnostic>();
+    private final List<Diagnostic> warnings = new ArrayList<Diagnostic>();
+    private final List<Diagnostic> grammarErrors = new ArrayList<Diagnostic>();
+    private final List<Set<String>> leftRecursiveRulesSets = new ArrayList<Set<String>>();
+    private final List<GrammarDecision> decisions = new ArrayList<GrammarDecision>();
+
+    public void addErrors(List<Message> messages) {
+        for(Message m : messages) {
+            errors.add(new Diagnostic(m.toString(), m.line, m.column));
+        }
+    }
+
+    public void addWarnings(List<Message> messages) {
+        for(Message m : messages) {
+            warnings.add(new Diagnostic(m.toString(), m.line, m.column));
+        }
+    }
+
+    public void addGrammarErrors(List<GrammarError> errors) {
+        for(GrammarError error : errors) {
+            grammarErrors.add(new Diagnostic(error.messageText, error.line, 0));
+        }
+    }
+
+    /** Adds the sets of mutually left-recursive rules as returned by ANTLR */
+    public void addLeftRecursiveRulesSets(List<?> rulesSets) {
+        for(Object o : rulesSets) {
+            Set<String> names = new LinkedHashSet<String>();
+            for(Object rule : (Set<?>) o) {
+                names.add(((Rule) rule).name);
+            }
+            leftRecursiveRulesSets.add(names);
+        }
+    }
+
+    public void addDecisions(List<GrammarDecision> decisions) {
+        this.decisions.addAll(decisions);
+    }
+
+    public GrammarResult createResult() {
+        GrammarResult result = new GrammarResult();
+        for(Diagnostic d : errors) {
+            result.errors.add(d.createMessage());
+        }
+        for(Diagnostic d : warnings) {
+            result.warnings.add(d.createMessage());
+        }
+        return result;
+    }
+
+    public List<GrammarError> createGrammarErrors() {
+        List<GrammarError> errors = new ArrayList<GrammarError>();
+        for(Diagnostic d : grammarErrors) {
+            GrammarError error = new GrammarError();
+            error.setLine(d.line);
+            error.setMessageText(d.text);
+            error.setMessage(d.createMessage());
+            errors.add(error);
+        }
+        return errors;
+    }
+
+    public List<Set<String>> getLeftRecursiveRulesSets() {
+        return Collections.unmodifiableList(leftRecursiveRulesSets);
+    }
+
+    public List<GrammarDecision> getDecisions() {
+        return Collections.unmodifiableList(decisions);
+    }
+
+    private static class Diagnostic implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        public final String text;
+        public final int line;
+        public final int column;
+
+        public Diagnostic(String text, int line, int column) {
+            this.text = text;
+            this.line = line;
+            this.column = column;
+        }
+
+        public Message createMessage() {
+            return new CachedMessage(text, line, column);
+        }
+    }
+}
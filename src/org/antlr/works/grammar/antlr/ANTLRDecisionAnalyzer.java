@@ -0,0 +1,743 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.analysis.*;
+import org.antlr.tool.*;
+import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.utils.ErrorListener;
+
+import java.util.*;
+
+/** Creates the lookahead DFAs of a grammar, decision by decision, and remembers for
+ * each decision the rules its analysis went through. The next analysis of the grammar
+ * can then skip the decisions whose rules did not change: their previous diagnostics
+ * are reused instead (moved to the new position of their rule).
+ *
+ * A decision is identified by the rule enclosing it and its rank in that rule.
+ * A rule is modified if its text changed. If the text outside of the rules changed
+ * (options, tokens, header, etc.), every decision is analyzed again.
+ */
+public class ANTLRDecisionAnalyzer {
+
+    private String analyzedPrologue;
+    private Map<String,String> analyzedRuleTexts = new HashMap<String, String>();
+    private Map<String,DecisionRecord> records = new HashMap<String, DecisionRecord>();
+
+    private final List<DecisionRecord> analyzedRecords = new ArrayList<DecisionRecord>();
+    private final List<DecisionRecord> reusedRecords = new ArrayList<DecisionRecord>();
+    private final List<GrammarDecision> analyzedDecisions = new ArrayList<GrammarDecision>();
+
+    /** Delay between two checks of the time budget of the decisions being analyzed */
+    private static final int POLL_DELAY = 50;
+
+    private volatile Grammar grammar;
+    private GrammarEngine engine;
+    private final Map<Rule,String> owners = new IdentityHashMap<Rule, String>();
+
+    private ANTLRAnalysisPool pool = ANTLRAnalysisPool.shared();
+    private int timeBudget;
+    private volatile boolean cancelled;
+    private Grammar synchronizedGrammar;
+
+    private final List<Timing> timings = new ArrayList<Timing>();
+    private final List<GrammarError> timeoutErrors = new ArrayList<GrammarError>();
+
+    /** Forgets the previous analysis: the next one will analyze every decision */
+    public void invalidate() {
+        analyzedPrologue = null;
+        analyzedRuleTexts.clear();
+        records.clear();
+        analyzedRecords.clear();
+        reusedRecords.clear();
+        analyzedDecisions.clear();
+    }
+
+    public int getAnalyzedDecisionCount() {
+        return analyzedRecords.size();
+    }
+
+    public int getReusedDecisionCount() {
+        return reusedRecords.size();
+    }
+
+    /** Returns true if some decisions have been reused: their DFAs are not
+     * available in the grammar.
+     */
+    public int getTimeoutCount() {
+        return timeoutErrors.size();
+    }
+
+    /** Returns the time spent on each decision analyzed by the last analysis, the slowest first */
+    public List<Timing> getTimings() {
+        List<Timing> sorted = new ArrayList<Timing>(timings);
+        Collections.sort(sorted, new Comparator<Timing>() {
+            public int compare(Timing t1, Timing t2) {
+                return t1.time < t2.time ? 1 : (t1.time > t2.time ? -1 : t1.decisionNumber - t2.decisionNumber);
+            }
+        });
+        return sorted;
+    }
+
+    public boolean isPartial() {
+        return !reusedRecords.isEmpty();
+    }
+
+    public void setAnalysisPool(ANTLRAnalysisPool pool) {
+        this.pool = pool;
+    }
+
+    /** Sets the maximum time in ms to build the lookahead DFA of a decision (0 for no limit) */
+    public void setTimeBudget(int timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /** Aborts the analysis in progress */
+    public void cancel() {
+        cancelled = true;
+        Grammar g = grammar;
+        if(g != null)
+            g.externallyAbortNFAToDFAConversion();
+    }
+
+    /** Same as Grammar.createLookaheadDFAs() but, if incremental is true, skips the
+     * decisions that are not affected by the modified rules since the previous call.
+     *
+     * The LL(*) DFAs are built in parallel on the analysis pool. A decision exceeding
+     * the time budget is reported as a timeout error and has no DFA.
+     */
+    public void createLookaheadDFAs(Grammar g, GrammarEngine engine, ErrorListener el, boolean incremental) throws Exception {
+        this.grammar = g;
+        this.engine = engine;
+        cancelled = false;
+        owners.clear();
+        analyzedRecords.clear();
+        reusedRecords.clear();
+        analyzedDecisions.clear();
+        timings.clear();
+        timeoutErrors.clear();
+
+        Map<String,String> ruleTexts = new HashMap<String, String>();
+        String prologue = collectTexts(ruleTexts);
+
+        Set<String> modifiedRules = null;
+        if(incremental && prologue != null && prologue.equals(analyzedPrologue)) {
+            modifiedRules = new HashSet<String>();
+            for(Map.Entry<String,String> entry : ruleTexts.entrySet()) {
+                if(!entry.getValue().equals(analyzedRuleTexts.get(entry.getKey())))
+                    modifiedRules.add(entry.getKey());
+            }
+            for(String name : analyzedRuleTexts.keySet()) {
+                if(!ruleTexts.containsKey(name))
+                    modifiedRules.add(name);
+            }
+        }
+
+        Map<String,DecisionRecord> newRecords = new HashMap<String, DecisionRecord>();
+        Map<String,Integer> ranks = new HashMap<String, Integer>();
+        Set<Rule> leftRecursiveRules = g.getLeftRecursiveRules();
+
+        // Same filtering as Grammar.createLookaheadDFAs(). The decisions of the syntactic
+        // predicates are analyzed after the decisions using them (they are filtered out
+        // if no DFA uses them).
+        List<DecisionTask> batch = new ArrayList<DecisionTask>();
+        List<DecisionTask> synPreds = new ArrayList<DecisionTask>();
+        for(int decision = 1; decision <= g.getNumberOfDecisions(); decision++) {
+            NFAState s = g.getDecisionNFAStartState(decision);
+            Rule r = s.enclosingRule;
+            String key = getDecisionKey(r, ranks);
+
+            if(leftRecursiveRules != null && leftRecursiveRules.contains(r)) continue;
+            if(s.getNumberOfTransitions() <= 1) continue;
+
+            DecisionTask task = new DecisionTask(decision, r, key);
+            if(r.isSynPred) {
+                synPreds.add(task);
+            } else {
+                batch.add(task);
+            }
+        }
+
+        synchronizeAnalysisSets(g);
+
+        List<DecisionTask> analyzed = new ArrayList<DecisionTask>();
+        while(!batch.isEmpty()) {
+            List<DecisionTask> tasks = new ArrayList<DecisionTask>();
+            for(DecisionTask task : batch) {
+                DecisionRecord previous = task.key == null ? null : records.get(task.key);
+                if(modifiedRules != null && previous != null && previous.isReusable(modifiedRules, ruleTexts.keySet())) {
+                    DecisionRecord record = previous.moveTo(getRuleStartLine(previous.rule));
+                    newRecords.put(task.key, record);
+                    reusedRecords.add(record);
+                } else {
+                    tasks.add(task);
+                }
+            }
+
+            if(!createLookaheadDFAs(tasks)) {
+                // The records are incomplete: start from scratch next time
+                invalidate();
+                return;
+            }
+            analyzed.addAll(tasks);
+
+            batch = new ArrayList<DecisionTask>();
+            for(Iterator<DecisionTask> iterator = synPreds.iterator(); iterator.hasNext(); ) {
+                DecisionTask task = iterator.next();
+                if(g.synPredNamesUsedInDFA.contains(task.rule.name)) {
+                    batch.add(task);
+                    iterator.remove();
+                }
+            }
+        }
+
+        // Report the messages in the order of the decisions
+        Collections.sort(analyzed, new Comparator<DecisionTask>() {
+            public int compare(DecisionTask t1, DecisionTask t2) {
+                return t1.decision - t2.decision;
+            }
+        });
+        for(DecisionTask task : analyzed) {
+            task.mergeInto(el);
+
+            DecisionRecord record = new DecisionRecord(task.key == null ? null : getOwner(task.rule),
+                    task.decision, task.dependencies);
+            record.addMessages(task.errors, record.errorMessages);
+            record.addMessages(task.warnings, record.warningMessages);
+            if(record.rule != null) {
+                record.ruleStartLine = getRuleStartLine(record.rule);
+                newRecords.put(task.key, record);
+            }
+            analyzedRecords.add(record);
+            timings.add(new Timing(task.decision, record.rule, task.line, task.time, task.timedOut));
+            if(task.timedOut) {
+                timeoutErrors.add(createTimeoutError(task));
+            }
+        }
+
+        records = newRecords;
+        analyzedRuleTexts = ruleTexts;
+        analyzedPrologue = prologue;
+    }
+
+    /** Builds the DFAs of the decisions and returns false if the analysis was cancelled.
+     * The LL(1) analysis is not thread-safe: it is done first on this thread; then the
+     * LL(*) DFAs are built on the pool.
+     */
+    private boolean createLookaheadDFAs(List<DecisionTask> tasks) throws Exception {
+        List<DecisionTask> llStarTasks = new ArrayList<DecisionTask>();
+        ANTLRErrorListener listener = ANTLRAnalysisPool.getErrorListener();
+        try {
+            for(DecisionTask task : tasks) {
+                if(cancelled || grammar.NFAToDFAConversionExternallyAborted()) return false;
+
+                int k = grammar.getUserMaxLookahead(task.decision);
+                if(k == 0 || k == 1) {
+                    ANTLRAnalysisPool.setErrorListener(task.listener);
+                    long t = System.currentTimeMillis();
+                    DFA dfa = grammar.createLL_1_LookaheadDFA(task.decision);
+                    task.time = System.currentTimeMillis() - t;
+                    if(dfa != null) {
+                        if(dfa.startState == null) {
+                            grammar.setLookaheadDFA(task.decision, null);
+                        }
+                        continue;
+                    }
+                }
+                llStarTasks.add(task);
+            }
+        } finally {
+            ANTLRAnalysisPool.setErrorListener(listener);
+        }
+        return createLookaheadDFAsOnPool(llStarTasks);
+    }
+
+    private boolean createLookaheadDFAsOnPool(List<DecisionTask> tasks) throws Exception {
+        List<DecisionTask> remaining = new ArrayList<DecisionTask>();
+        for(DecisionTask task : tasks) {
+            remaining.add(submit(task));
+        }
+
+        // A decision cannot be stopped alone: when some decisions exceed the time budget,
+        // the analysis of the grammar is aborted and the other decisions that were not
+        // completed are analyzed again once it is resumed.
+        boolean resumable = grammar instanceof ANTLRGrammar;
+        while(!remaining.isEmpty()) {
+            if(cancelled || grammar.NFAToDFAConversionExternallyAborted()) {
+                waitForCompletion(remaining);
+                return false;
+            }
+
+            DecisionTask first = remaining.get(0);
+            if(first.current.waitForCompletion(POLL_DELAY)) {
+                remaining.remove(0);
+                continue;
+            }
+            if(timeBudget <= 0 || !resumable) continue;
+
+            List<DecisionTask> completed = new ArrayList<DecisionTask>();
+            List<DecisionTask> slow = new ArrayList<DecisionTask>();
+            for(DecisionTask task : remaining) {
+                if(task.current.isDone()) {
+                    completed.add(task);
+                } else if(task.current.getElapsedTime() > timeBudget) {
+                    slow.add(task);
+                }
+            }
+            if(slow.isEmpty()) continue;
+
+            Map<DecisionTask,Long> elapsed = new HashMap<DecisionTask, Long>();
+            for(DecisionTask task : slow) {
+                elapsed.put(task, task.current.getElapsedTime());
+            }
+
+            grammar.externallyAbortNFAToDFAConversion();
+            waitForCompletion(remaining);
+            if(cancelled) return false;
+            ((ANTLRGrammar)grammar).resumeNFAToDFAConversion();
+
+            remaining.removeAll(completed);
+            for(DecisionTask task : slow) {
+                task.timedOut(elapsed.get(task));
+                remaining.remove(task);
+            }
+            for(DecisionTask task : remaining) {
+                submit(task);
+            }
+        }
+        return true;
+    }
+
+    private DecisionTask submit(DecisionTask task) {
+        task.current = new LookaheadDFATask(task);
+        pool.submit(task.current);
+        return task;
+    }
+
+    private void waitForCompletion(List<DecisionTask> tasks) throws Exception {
+        for(DecisionTask task : tasks) {
+            task.current.waitForCompletion();
+        }
+    }
+
+    private GrammarError createTimeoutError(DecisionTask task) {
+        GrammarError error = new GrammarError();
+        error.setLine(task.line-1);
+        error.setMessageText(getTimeoutText());
+        error.setMessage(task.timeoutMessage);
+        return error;
+    }
+
+    private String getTimeoutText() {
+        return "The analysis of the decision was stopped because it exceeded its time budget of "+timeBudget+" ms";
+    }
+
+    /** Grammar.createLookaheadDFA() updates these sets of the grammar: they are
+     * replaced by synchronized sets before the decisions are analyzed in parallel.
+     */
+    private void synchronizeAnalysisSets(Grammar g) {
+        if(g == synchronizedGrammar) return;
+
+        g.setOfNondeterministicDecisionNumbers = Collections.synchronizedSet(g.setOfNondeterministicDecisionNumbers);
+        g.setOfNondeterministicDecisionNumbersResolvedWithPredicates = Collections.synchronizedSet(g.setOfNondeterministicDecisionNumbersResolvedWithPredicates);
+        g.decisionsWhoseDFAsUsesSynPreds = Collections.synchronizedSet(g.decisionsWhoseDFAsUsesSynPreds);
+        g.decisionsWhoseDFAsUsesSemPreds = Collections.synchronizedSet(g.decisionsWhoseDFAsUsesSemPreds);
+        g.synPredNamesUsedInDFA = Collections.synchronizedSet(g.synPredNamesUsedInDFA);
+        synchronizedGrammar = g;
+    }
+
+    /** Completes the records of the analyzed decisions with the errors built from
+     * their messages and with their position.
+     */
+    public void completed(List<GrammarError> errors) {
+        errors.addAll(timeoutErrors);
+        for(DecisionRecord record : analyzedRecords) {
+            for(GrammarError error : errors) {
+                if(record.contains(error.getMessage()))
+                    record.errors.add(error);
+            }
+        }
+
+        Map<Integer,DecisionRecord> recordsByNumber = new HashMap<Integer, DecisionRecord>();
+        for(DecisionRecord record : analyzedRecords) {
+            recordsByNumber.put(record.decisionNumber, record);
+        }
+        for(GrammarDecision decision : GrammarDecision.collect(grammar)) {
+            DecisionRecord record = recordsByNumber.get(decision.decisionNumber);
+            if(record != null) {
+                record.decision = decision;
+            }
+            analyzedDecisions.add(decision);
+        }
+    }
+
+    /** Returns the decisions of the grammar, analyzed and reused */
+    public List<GrammarDecision> getDecisions() {
+        List<GrammarDecision> decisions = new ArrayList<GrammarDecision>(analyzedDecisions);
+        for(DecisionRecord record : reusedRecords) {
+            if(record.decision != null)
+                decisions.add(record.decision);
+        }
+        return decisions;
+    }
+
+    public List<GrammarError> getReusedErrors() {
+        List<GrammarError> errors = new ArrayList<GrammarError>();
+        for(DecisionRecord record : reusedRecords) {
+            errors.addAll(record.errors);
+        }
+        return errors;
+    }
+
+    public List<Message> getReusedErrorMessages() {
+        List<Message> messages = new ArrayList<Message>();
+        for(DecisionRecord record : reusedRecords) {
+            messages.addAll(record.errorMessages);
+        }
+        return messages;
+    }
+
+    public List<Message> getReusedWarningMessages() {
+        List<Message> messages = new ArrayList<Message>();
+        for(DecisionRecord record : reusedRecords) {
+            messages.addAll(record.warningMessages);
+        }
+        return messages;
+    }
+
+    /** Fills the text of each rule and returns the text outside of the rules, or
+     * null if the rules cannot be compared with the previous analysis.
+     */
+    private String collectTexts(Map<String,String> ruleTexts) {
+        String text = engine.getGrammarText();
+        List<ElementRule> rules = engine.getRules();
+        if(text == null || rules == null || !engine.getImports().isEmpty() || !engine.getDuplicateRules().isEmpty())
+            return null;
+
+        StringBuilder prologue = new StringBuilder();
+        prologue.append(engine.getType());
+        int position = 0;
+        for(ElementRule rule : rules) {
+            if(rule.start == null || rule.end == null) return null;
+
+            int start = rule.getStartIndex();
+            int end = rule.getEndIndex();
+            if(start < position || end > text.length()) return null;
+
+            appendPrologue(prologue, text.substring(position, start));
+            ruleTexts.put(rule.name, text.substring(start, end));
+            position = end;
+        }
+        appendPrologue(prologue, text.substring(position));
+        return prologue.toString();
+    }
+
+    private static void appendPrologue(StringBuilder prologue, String text) {
+        // Blank lines between rules do not matter
+        text = text.trim();
+        if(text.length() > 0) {
+            prologue.append('\n').append(text);
+        }
+    }
+
+    private String getDecisionKey(Rule r, Map<String,Integer> ranks) {
+        String owner = getOwner(r);
+        if(owner == null) return null;
+
+        String prefix = r.isSynPred ? owner+":synpred" : owner;
+        Integer rank = ranks.get(prefix);
+        rank = rank == null ? 0 : rank+1;
+        ranks.put(prefix, rank);
+        return prefix+":"+rank;
+    }
+
+    /** Returns the name of the rule of the editor that contains the ANTLR rule
+     * (a syntactic predicate is contained in the rule where it is written).
+     */
+    private String getOwner(Rule r) {
+        // the dependencies of the decisions are collected by the workers of the pool
+        synchronized(owners) {
+            return getOwnerOfRule(r);
+        }
+    }
+
+    private String getOwnerOfRule(Rule r) {
+        if(owners.containsKey(r)) return owners.get(r);
+
+        String owner = null;
+        if(!r.isSynPred) {
+            if(engine.getRuleWithName(r.name) != null)
+                owner = r.name;
+        } else if(r.tree != null) {
+            int line = r.tree.getLine()-1;
+            for(ElementRule rule : engine.getRules()) {
+                if(line >= rule.start.startLineNumber && line <= rule.end.startLineNumber) {
+                    owner = rule.name;
+                    break;
+                }
+            }
+        }
+        owners.put(r, owner);
+        return owner;
+    }
+
+    private int getRuleStartLine(String name) {
+        ElementRule rule = engine.getRuleWithName(name);
+        return rule == null ? 0 : rule.start.startLineNumber;
+    }
+
+    /** Returns the rules the analysis of the decision went through (including the rules
+     * of the invocation stacks) or null if one of them is unknown. Releases the
+     * analysis data of the DFA states, like Grammar.createLookaheadDFA() does.
+     */
+    private Set<String> collectDependencies(Rule r, DFA dfa) {
+        Set<String> dependencies = new HashSet<String>();
+        boolean known = addDependency(dependencies, r);
+        for(DFAState state : dfa.getUniqueStates().values()) {
+            if(state.nfaConfigurations != null) {
+                for(NFAConfiguration c : state.nfaConfigurations) {
+                    known &= addDependency(dependencies, grammar.nfa.getState(c.state).enclosingRule);
+                    for(NFAContext context = c.context; context != null; context = context.parent) {
+                        if(context.invokingState != null)
+                            known &= addDependency(dependencies, context.invokingState.enclosingRule);
+                    }
+                }
+            }
+            state.reset();
+        }
+        return known ? dependencies : null;
+    }
+
+    private boolean addDependency(Set<String> dependencies, Rule r) {
+        if(r == null) return true;
+
+        String owner = getOwner(r);
+        if(owner == null) return false;
+
+        dependencies.add(owner);
+        return true;
+    }
+
+    /** Time spent on the analysis of a decision */
+    public static class Timing {
+
+        public final int decisionNumber;
+        /** Rule of the editor containing the decision (null if unknown) */
+        public final String rule;
+        /** Line of the decision (1-based) */
+        public final int line;
+        /** Time in ms */
+        public final long time;
+        public final boolean timedOut;
+
+        public Timing(int decisionNumber, String rule, int line, long time, boolean timedOut) {
+            this.decisionNumber = decisionNumber;
+            this.rule = rule;
+            this.line = line;
+            this.time = time;
+            this.timedOut = timedOut;
+        }
+
+        @Override
+        public String toString() {
+            return "decision "+decisionNumber+(rule == null ? "" : " in rule "+rule)+" at line "+line+": "+time+" ms"+(timedOut ? " (timed out)" : "");
+        }
+    }
+
+    private class DecisionTask {
+
+        public final int decision;
+        public final Rule rule;
+        public final String key;
+        public final int line;
+        public final int column;
+
+        /** Listener of the LL(1) analysis */
+        public final ErrorListener listener = new ErrorListener();
+        /** Analysis of the LL(*) DFA on the pool (null if not needed or timed out) */
+        public LookaheadDFATask current;
+
+        public Set<String> dependencies;
+        public long time;
+        public boolean timedOut;
+        public CachedMessage timeoutMessage;
+
+        public final List<Message> errors = new ArrayList<Message>();
+        public final List<Message> warnings = new ArrayList<Message>();
+
+        public DecisionTask(int decision, Rule rule, String key) {
+            this.decision = decision;
+            this.rule = rule;
+            this.key = key;
+            GrammarAST ast = grammar.getDecisionBlockAST(decision);
+            this.line = ast == null ? 0 : ast.getLine();
+            this.column = ast == null ? 0 : ast.getCharPositionInLine();
+            listener.setPrintToConsole(false);
+        }
+
+        public void timedOut(long time) {
+            this.timedOut = true;
+            this.time = time;
+            this.current = null;
+            grammar.setLookaheadDFA(decision, null);
+
+            String text = "error: "+grammar.getFileName()+":"+line+":"+column+": "+getTimeoutText();
+            timeoutMessage = new CachedMessage(text, line, column);
+        }
+
+        /** Merges the messages of the analysis into the listener */
+        public void mergeInto(ErrorListener el) {
+            ErrorListener source = listener;
+            if(current != null) {
+                current.mergeErrorState();
+                source = current.getErrorListener();
+                time = current.getTime();
+                dependencies = current.dependencies;
+            }
+            errors.addAll(source.errors);
+            warnings.addAll(source.warnings);
+            if(timeoutMessage != null) {
+                errors.add(timeoutMessage);
+            }
+
+            for(String info : source.infos) {
+                el.info(info);
+            }
+            for(Message error : errors) {
+                el.error(error);
+            }
+            for(Message warning : warnings) {
+                el.warning(warning);
+            }
+            source.clear();
+        }
+    }
+
+    private class LookaheadDFATask extends ANTLRAnalysisPool.Task {
+
+        private final DecisionTask task;
+        public Set<String> dependencies;
+
+        public LookaheadDFATask(DecisionTask task) {
+            this.task = task;
+        }
+
+        protected void run() throws Exception {
+            // Keep the DFA states until the rules they went through are known
+            DFA dfa = grammar.createLookaheadDFA(task.decision, false);
+            dependencies = collectDependencies(task.rule, dfa);
+            if(dfa.startState == null) {
+                grammar.setLookaheadDFA(task.decision, null);
+            }
+        }
+    }
+
+    private static class DecisionRecord {
+
+        public final String rule;
+        public final int decisionNumber;
+        /** Rules that the analysis went through (null if the decision must always be analyzed) */
+        public final Set<String> dependencies;
+
+        public int ruleStartLine;
+        public GrammarDecision decision;
+        /** Messages of the analysis (as text because ANTLR messages can only be
+         * formatted while their grammar is being analyzed)
+         */
+        public final List<CachedMessage> errorMessages = new ArrayList<CachedMessage>();
+        public final List<CachedMessage> warningMessages = new ArrayList<CachedMessage>();
+        public final List<GrammarError> errors = new ArrayList<GrammarError>();
+
+        private final List<Message> analyzedMessages = new ArrayList<Message>();
+
+        public DecisionRecord(String rule, int decisionNumber, Set<String> dependencies) {
+            this.rule = rule;
+            this.decisionNumber = decisionNumber;
+            this.dependencies = dependencies;
+        }
+
+        public boolean isReusable(Set<String> modifiedRules, Set<String> rules) {
+            if(dependencies == null) return false;
+
+            for(String name : dependencies) {
+                if(modifiedRules.contains(name) || !rules.contains(name))
+                    return false;
+            }
+            return true;
+        }
+
+        public void addMessages(List<Message> messages, List<CachedMessage> target) {
+            for(Message m : messages) {
+                // toString() updates the location of some messages
+                String text = m.toString();
+                target.add(new CachedMessage(text, m.line, m.column));
+                analyzedMessages.add(m);
+            }
+        }
+
+        public boolean contains(Message message) {
+            for(Message m : analyzedMessages) {
+                if(m == message) return true;
+            }
+            return false;
+        }
+
+        /** Returns a copy of this record with its positions moved to the new start line of its rule */
+        public DecisionRecord moveTo(int startLine) {
+            int delta = startLine-ruleStartLine;
+
+            DecisionRecord record = new DecisionRecord(rule, decisionNumber, dependencies);
+            record.ruleStartLine = startLine;
+            if(decision != null) {
+                record.decision = new GrammarDecision(decision.line+delta, decision.column, decision.decisionNumber,
+                        decision.usesSemPreds, decision.usesSynPreds, decision.info);
+            }
+            for(CachedMessage m : errorMessages) {
+                record.errorMessages.add(m.move(delta));
+            }
+            for(CachedMessage m : warningMessages) {
+                record.warningMessages.add(m.move(delta));
+            }
+            for(GrammarError error : errors) {
+                GrammarError e = new GrammarError();
+                e.setLine(error.line+delta);
+                e.setMessageText(error.messageText);
+                e.setMessage(error.getMessage());
+                e.setLabels(error.getLabels());
+                record.errors.add(e);
+            }
+            return record;
+        }
+    }
+}
@@ -3,7 +3,9 @@ package org.antlr.works.grammar.antlr;
 import org.antlr.analysis.NFAState;
 import org.antlr.tool.Grammar;
 import org.antlr.works.grammar.element.ElementRule;
-import org.antlr.works.grammar.engine.GrammarEngine;/*
+import org.antlr.works.grammar.engine.GrammarEngine;
+
+import java.util.List;/*
 
 [The "BSD licence"]
 Copyright (c) 2005-07 Jean Bovet
@@ -41,6 +43,7 @@ public interface ANTLRGrammarEngine {
 
     void close();
     void markDirty();
+    void parserCompleted();
 
     boolean hasGrammar();
 
@@ -55,6 +58,9 @@ public interface ANTLRGrammarEngine {
     void computeRuleErrors(ElementRule rule);
 
     GrammarResult analyze() throws Exception;
+    GrammarResult analyzeIncrementally() throws Exception;
+    GrammarResult restoreAnalysis(boolean report) throws Exception;
+    List<GrammarDecision> getCachedDecisions();
     void cancel();
 
 }
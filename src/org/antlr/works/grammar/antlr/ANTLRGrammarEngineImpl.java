@@ -40,6 +40,7 @@ import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.element.ElementGrammarName;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.grammar.engine.GrammarEngine;
+import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.ErrorListener;
 
 import javax.swing.*;
@@ -63,6 +64,19 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
 
     private GrammarEngine engine;
 
+    private final ANTLRDecisionAnalyzer decisionAnalyzer = new ANTLRDecisionAnalyzer();
+    private boolean partialAnalysis;
+
+    private ANTLRAnalysisCache cache = ANTLRAnalysisCache.shared();
+    private String snapshotKey;
+    private String grammarKey;
+    private boolean grammarKeyComputed;
+    private ANTLRAnalysisSnapshot snapshot;
+
+    private ANTLRAnalysisPool analysisPool = ANTLRAnalysisPool.shared();
+    private final List<ANTLRAnalysisPool.Job> jobs = new ArrayList<ANTLRAnalysisPool.Job>();
+    private int decisionTimeBudget = -1;
+
     public ANTLRGrammarEngineImpl() {
         errors = new ArrayList<GrammarError>();
         markDirty();
@@ -78,6 +92,49 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
 
     public void close() {
         errors = null;
+        snapshot = null;
+    }
+
+    public ANTLRDecisionAnalyzer getDecisionAnalyzer() {
+        return decisionAnalyzer;
+    }
+
+    public void setAnalysisCache(ANTLRAnalysisCache cache) {
+        this.cache = cache;
+    }
+
+    public void setAnalysisPool(ANTLRAnalysisPool pool) {
+        this.analysisPool = pool;
+        decisionAnalyzer.setAnalysisPool(pool);
+    }
+
+    /** Sets the maximum time in ms to build the lookahead DFA of a decision (0 for no
+     * limit). By default, the time budget is the one of the preferences.
+     */
+    public void setDecisionTimeBudget(int timeBudget) {
+        this.decisionTimeBudget = timeBudget;
+    }
+
+    /** Returns the time spent on each decision of the last analysis, the slowest first */
+    public List<ANTLRDecisionAnalyzer.Timing> getDecisionTimings() {
+        return decisionAnalyzer.getTimings();
+    }
+
+    /** The grammar has been parsed again: its cache key is computed again on the next use */
+    public synchronized void parserCompleted() {
+        grammarKey = null;
+        grammarKeyComputed = false;
+    }
+
+    /** Returns the analysis cache key of the grammar, computed once per parsing of the grammar
+     * because it hashes the text and reads the imported grammars and the token vocabulary from the disk.
+     */
+    public synchronized String getGrammarKey() {
+        if(!grammarKeyComputed) {
+            grammarKey = ANTLRAnalysisCache.computeKey(engine);
+            grammarKeyComputed = true;
+        }
+        return grammarKey;
     }
 
     public void markDirty() {
@@ -152,7 +209,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         }
 
         ErrorListener el = ErrorListener.getThreadInstance();
-        ErrorManager.setErrorListener(el);
+        ANTLRAnalysisPool.setErrorListener(el);
 
         parserGrammar = null;
         lexerGrammar = null;
@@ -181,12 +238,12 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             createGrammarResult.setWarnings(el.warnings);
 
             el.clear();
-            ErrorManager.removeErrorListener();
+            ANTLRAnalysisPool.removeErrorListener();
         }
     }
 
     private Grammar createNewGrammar() throws TokenStreamException, RecognitionException, IOException {
-        Grammar g = new Grammar();
+        Grammar g = new ANTLRGrammar();
         g.setTool(engine.getANTLRTool());
         g.setFileName(engine.getGrammarFileName());
         g.setGrammarContent(engine.getGrammarText());
@@ -195,7 +252,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         // don't want errors from a previous grammar to interfere with this new grammar.
         // must reset error state otherwise analysis will not proceed if
         // there were previous errors.
-        ErrorManager.resetErrorState();
+        ANTLRAnalysisPool.resetErrorState();
         return g;
     }
 
@@ -209,7 +266,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         if(lexerGrammarStr == null)
             return null;
 
-        Grammar lexerGrammar = new Grammar();
+        Grammar lexerGrammar = new ANTLRGrammar();
         lexerGrammar.implicitLexer = true;
         lexerGrammar.setTool(engine.getANTLRTool());
         lexerGrammar.setFileName("<internally-generated-lexer>");
@@ -241,12 +298,12 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     private void markLeftRecursiveRules(List rules) {
-        // 'rules' is a list of set of rules given by ANTLR
+        // 'rules' is a list of set of rules given by ANTLR (or of rule names if restored from the cache)
         for (Object ruleSet : rules) {
             final Set rulesSet = (Set) ruleSet;
             for (Object rule : rulesSet) {
-                final Rule aRule = (Rule) rule;
-                final ElementRule r = engine.getRuleWithName(aRule.name);
+                final String name = rule instanceof Rule ? ((Rule) rule).name : rule.toString();
+                final ElementRule r = engine.getRuleWithName(name);
                 if (r == null)
                     continue;
                 r.setLeftRecursiveRulesSet(rulesSet);
@@ -255,6 +312,24 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
     }
 
     public GrammarResult analyze() throws Exception {
+        return analyze(false);
+    }
+
+    /** Same as analyze() but only the decisions affected by the rules modified since
+     * the previous analysis are analyzed again. The DFAs of the other decisions are
+     * not available in the grammar.
+     */
+    public GrammarResult analyzeIncrementally() throws Exception {
+        return analyze(true);
+    }
+
+    private GrammarResult analyze(boolean incremental) throws Exception {
+        if(partialAnalysis && !incremental) {
+            // some DFAs are missing: the grammar has to be analyzed again from scratch
+            needsToCreateGrammar = true;
+            needsToAnalyzeGrammar = true;
+        }
+
         // if there is no need to analyze the grammar, return the previous result
         if(!needsToAnalyzeGrammar) {
             GrammarResult r = analyzeCompleted(null);
@@ -267,9 +342,11 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
 
         // Set the error listener
         ErrorListener el = ErrorListener.getThreadInstance();
-        ErrorManager.setErrorListener(el);
+        ANTLRAnalysisPool.setErrorListener(el);
 
         createGrammars();
+        // creating the grammars removes the error listener when done
+        ANTLRAnalysisPool.setErrorListener(el);
 
         Grammar g = getDefaultGrammar();
         if(g == null) {
@@ -282,7 +359,11 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             markLeftRecursiveRules(rules);
         }
 
-        if(ErrorManager.doNotAttemptAnalysis()) {
+        if(ANTLRAnalysisPool.doNotAttemptAnalysis()) {
+            errors.clear();
+            decisionAnalyzer.invalidate();
+            partialAnalysis = false;
+            storeSnapshot(el, rules);
             return analyzeCompleted(el);
         }
 
@@ -290,24 +371,135 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
             if ( g.nfa==null ) {
                 g.composite.createNFAs();
             }
-            g.createLookaheadDFAs();
-            if(engine.isCombinedGrammar()) {
-                // If the grammar is combined, analyze also the lexer
-                if(lexerGrammar != null) {
-                    lexerGrammar.composite.createNFAs();
-                    lexerGrammar.createLookaheadDFAs();
+            // The lexer of a combined grammar and the delegates are analyzed
+            // on the worker pool while the parser is analyzed on this thread
+            List<ANTLRAnalysisPool.Job> delegateJobs = new ArrayList<ANTLRAnalysisPool.Job>();
+            ANTLRAnalysisPool.Job lexerJob = null;
+
+            partialAnalysis = false;
+            try {
+                for(Grammar delegate : g.getDelegates()) {
+                    delegateJobs.add(startJob(delegate, false));
+                }
+                if(engine.isCombinedGrammar() && lexerGrammar != null) {
+                    lexerJob = startJob(lexerGrammar, true);
                 }
+                decisionAnalyzer.setTimeBudget(decisionTimeBudget >= 0 ? decisionTimeBudget : AWPrefs.getDecisionTimeBudget());
+                decisionAnalyzer.createLookaheadDFAs(g, engine, el, incremental);
+            } finally {
+                waitForJobs();
             }
+            partialAnalysis = decisionAnalyzer.isPartial();
 
+            if(lexerJob != null) {
+                lexerJob.mergeInto(el);
+            }
             buildNonDeterministicErrors(el);
+            decisionAnalyzer.completed(errors);
+
+            // The messages of the delegates are reported but not displayed in the rules
+            // of this grammar: they refer to the lines of the other grammars
+            for(ANTLRAnalysisPool.Job job : delegateJobs) {
+                job.mergeInto(el);
+            }
+
+            // Add the diagnostics of the decisions that were not analyzed again
+            errors.addAll(decisionAnalyzer.getReusedErrors());
+            el.errors.addAll(decisionAnalyzer.getReusedErrorMessages());
+            el.warnings.addAll(decisionAnalyzer.getReusedWarningMessages());
+
             markRulesWithWarningsOrErrors();
+
+            // the decisions that timed out depend on the machine: the result is not cached
+            if(!g.NFAToDFAConversionExternallyAborted() && decisionAnalyzer.getTimeoutCount() == 0) {
+                storeSnapshot(el, rules);
+            }
         } catch(Exception e) {
-            // ignore
+            // the records of the decisions may be incomplete
+            decisionAnalyzer.invalidate();
+            partialAnalysis = false;
         }
 
         return analyzeCompleted(el);
     }
 
+    /** Restores the result of a previous analysis of the same grammar content from
+     * the analysis cache: the rules are marked with their errors and left-recursion
+     * and the result is returned. Returns null if the cache has no result for this
+     * content, in which case analyze() must be used.
+     *
+     * The ANTLR grammars are not restored: analyze() is still needed to get the DFAs.
+     */
+    public GrammarResult restoreAnalysis(boolean report) throws Exception {
+        ANTLRAnalysisSnapshot s = getSnapshot();
+        if(s == null) return null;
+
+        List<Set<String>> rules = s.getLeftRecursiveRulesSets();
+        if(!rules.isEmpty()) {
+            if(report) {
+                printLeftRecursionToConsole(rules);
+            }
+            markLeftRecursiveRules(rules);
+        }
+
+        errors.clear();
+        errors.addAll(s.createGrammarErrors());
+        markRulesWithWarningsOrErrors();
+
+        if(SwingUtilities.isEventDispatchThread()) {
+            engine.antlrGrammarEngineAnalyzeCompleted();
+        } else {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                public void run() {
+                    engine.antlrGrammarEngineAnalyzeCompleted();
+                }
+            });
+        }
+
+        return s.createResult();
+    }
+
+    public List<GrammarDecision> getCachedDecisions() {
+        ANTLRAnalysisSnapshot s = getSnapshot();
+        return s == null ? null : s.getDecisions();
+    }
+
+    private ANTLRAnalysisSnapshot getSnapshot() {
+        if(cache == null) return null;
+
+        String key = getGrammarKey();
+        if(key == null) return null;
+
+        if(!key.equals(snapshotKey)) {
+            snapshot = cache.load(key);
+            snapshotKey = snapshot == null ? null : key;
+        }
+        return snapshot;
+    }
+
+    private void storeSnapshot(ErrorListener el, List<?> leftRecursiveRules) {
+        if(cache == null) return;
+
+        String key = getGrammarKey();
+        if(key == null) return;
+
+        ANTLRAnalysisSnapshot s = new ANTLRAnalysisSnapshot();
+        s.addErrors(createGrammarResult.errors);
+        s.addErrors(el.errors);
+        s.addWarnings(createGrammarResult.warnings);
+        s.addWarnings(el.warnings);
+        s.addLeftRecursiveRulesSets(leftRecursiveRules);
+        s.addGrammarErrors(errors);
+        s.addDecisions(decisionAnalyzer.getDecisions());
+        if(engine.isCombinedGrammar()) {
+            s.addDecisions(GrammarDecision.collect(lexerGrammar));
+        }
+
+        cache.store(key, s);
+        snapshotKey = key;
+        snapshot = s;
+    }
+
     private GrammarResult analyzeCompleted(ErrorListener el) throws InvocationTargetException, InterruptedException {
         if(SwingUtilities.isEventDispatchThread()) {
             engine.antlrGrammarEngineAnalyzeCompleted();
@@ -337,7 +529,7 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
 
             // clear the error listener
             el.clear();
-            ErrorManager.removeErrorListener();
+            ANTLRAnalysisPool.removeErrorListener();
         }
 
         return getCompleteResult();
@@ -356,10 +548,46 @@ public class ANTLRGrammarEngineImpl implements ANTLRGrammarEngine {
         return result;
     }
 
+    private ANTLRAnalysisPool.Job startJob(Grammar grammar, boolean createNFAs) throws InterruptedException {
+        ANTLRAnalysisPool.Job job = analysisPool.analyze(grammar, createNFAs);
+        synchronized(jobs) {
+            jobs.add(job);
+        }
+        return job;
+    }
+
+    private void waitForJobs() throws Exception {
+        List<ANTLRAnalysisPool.Job> pending;
+        synchronized(jobs) {
+            pending = new ArrayList<ANTLRAnalysisPool.Job>(jobs);
+        }
+        // wait for all the jobs even if one of them failed
+        Exception exception = null;
+        for(ANTLRAnalysisPool.Job job : pending) {
+            try {
+                job.waitForCompletion();
+            } catch(Exception e) {
+                if(exception == null) exception = e;
+            }
+        }
+        synchronized(jobs) {
+            jobs.clear();
+        }
+        if(exception != null) {
+            throw exception;
+        }
+    }
+
     public void cancel() {
         Grammar g = getDefaultGrammar();
         if(g != null)
             g.externallyAbortNFAToDFAConversion();
+        decisionAnalyzer.cancel();
+        synchronized(jobs) {
+            for(ANTLRAnalysisPool.Job job : jobs) {
+                job.cancel();
+            }
+        }
     }
 
     private void buildNonDeterministicErrors(ErrorListener el) {
@@ -0,0 +1,68 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.tool.Message;
+
+/** Message restored from the analysis cache: only the text and
+ * the location of the original ANTLR message are available.
+ */
+public class CachedMessage extends Message {
+
+    private final String text;
+
+    public CachedMessage(String text, int line, int column) {
+        this.text = text;
+        this.line = line;
+        this.column = column;
+    }
+
+    /** Returns the same message moved by delta lines */
+    public CachedMessage move(int delta) {
+        if(delta == 0) return this;
+
+        // Update the location in the text of the message (i.e. "file:line:column: ...")
+        String moved = text;
+        String location = ":"+line+":";
+        int index = text.indexOf(location);
+        if(index != -1) {
+            moved = text.substring(0, index)+":"+(line+delta)+":"+text.substring(index+location.length());
+        }
+        return new CachedMessage(moved, line+delta, column);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
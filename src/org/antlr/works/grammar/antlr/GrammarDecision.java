@@ -0,0 +1,126 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.grammar.antlr;
+
+import org.antlr.analysis.DFA;
+import org.antlr.analysis.NFAState;
+import org.antlr.tool.Grammar;
+import org.antlr.tool.Rule;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Position and description of a lookahead DFA decision. Unlike the DFA itself,
+ * a decision can be stored in the analysis cache.
+ */
+public class GrammarDecision implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Line (starting at 1) and column of the decision in the grammar file */
+    public final int line;
+    public final int column;
+
+    public final int decisionNumber;
+    public final boolean usesSemPreds;
+    public final boolean usesSynPreds;
+    public final String info;
+
+    public GrammarDecision(int line, int column, int decisionNumber,
+                           boolean usesSemPreds, boolean usesSynPreds, String info) {
+        this.line = line;
+        this.column = column;
+        this.decisionNumber = decisionNumber;
+        this.usesSemPreds = usesSemPreds;
+        this.usesSynPreds = usesSynPreds;
+        this.info = info;
+    }
+
+    public boolean usesPredicates() {
+        return usesSemPreds || usesSynPreds;
+    }
+
+    /** Returns the decisions of an analyzed grammar, except the decision of the
+     * artificial Tokens rule of a lexer.
+     */
+    public static List<GrammarDecision> collect(Grammar g) {
+        List<GrammarDecision> decisions = new ArrayList<GrammarDecision>();
+        if(g == null) return decisions;
+
+        int tokensDecision = -1;
+        Rule r = g.getRule(Grammar.ARTIFICIAL_TOKENS_RULENAME);
+        if(r != null) {
+            NFAState s = (NFAState)r.startState.transition(0).target;
+            if(s != null) {
+                tokensDecision = s.getDecisionNumber();
+            }
+        }
+
+        for(Map.Entry<String,DFA> entry : g.getLineColumnToLookaheadDFAMap().entrySet()) {
+            DFA dfa = entry.getValue();
+            if(dfa == null || dfa.getDecisionNumber() == tokensDecision) continue;
+
+            String key = entry.getKey();
+            int separator = key.indexOf(':');
+            int line = Integer.parseInt(key.substring(0, separator));
+            int column = Integer.parseInt(key.substring(separator+1));
+
+            boolean semPreds = g.decisionsWhoseDFAsUsesSemPreds != null && g.decisionsWhoseDFAsUsesSemPreds.contains(dfa);
+            boolean synPreds = g.decisionsWhoseDFAsUsesSynPreds != null && g.decisionsWhoseDFAsUsesSynPreds.contains(dfa);
+
+            String info = "";
+            if(semPreds) {
+                info += "uses semantic predicate";
+            } else if(synPreds) {
+                info += "uses syntactic predicate";
+            }
+            if(dfa.isCyclic()) {
+                if(info.length() > 0) info += ", ";
+                info += "cyclic";
+            }
+            if(info.length() > 0) info += ", ";
+
+            if (dfa.getNumberOfStates() != 0) {
+                info += dfa.getNumberOfStates()+" states";
+            }
+            else {
+                info += "<=" + dfa.getMaxStateNumber() + " states";
+            }
+
+            decisions.add(new GrammarDecision(line, column, dfa.getDecisionNumber(), semPreds, synPreds, info));
+        }
+        return decisions;
+    }
+}
@@ -66,6 +66,7 @@ public class DecisionDFA extends GrammarDOTTab {
     @Override
     public String getDOTString() throws Exception {
         DecisionDFAEngine engine = window.decisionDFAEngine;
+        engine.discoverGrammars();
         Grammar g;
 
         int adjustedColumn = getDecisionColumn(g = engine.getDiscoveredParserGrammar());
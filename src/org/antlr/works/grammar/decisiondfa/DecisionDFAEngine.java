@@ -1,12 +1,11 @@
 package org.antlr.works.grammar.decisiondfa;
 
 import org.antlr.analysis.DFA;
-import org.antlr.analysis.NFAState;
 import org.antlr.tool.Grammar;
-import org.antlr.tool.Rule;
 import org.antlr.works.ate.ATEOverlayManager;
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
+import org.antlr.works.grammar.antlr.GrammarDecision;
 
 import java.awt.*;
 import java.util.*;
@@ -47,9 +46,7 @@ public class DecisionDFAEngine {
 
     private GrammarWindow window;
 
-    private Set<Integer> usesSemPreds = new HashSet<Integer>();
-    private Set<Integer> usesSynPreds = new HashSet<Integer>();
-
+    private List<GrammarDecision> decisions = new ArrayList<GrammarDecision>();
     private Map<Integer,List<Integer>> decisionDFA = new HashMap<Integer, List<Integer>>();
 
     private Grammar discoveredLexerGrammar;
@@ -64,7 +61,10 @@ public class DecisionDFAEngine {
     }
 
     public void reset() {
+        decisions.clear();
         decisionDFA.clear();
+        discoveredLexerGrammar = null;
+        discoveredParserGrammar = null;
     }
 
     public int getDecisionDFACount() {
@@ -80,53 +80,42 @@ public class DecisionDFAEngine {
     }
 
     public void discoverAllDecisions() throws Exception {
-        discover(0, window.getTextEditor().getText().length());
+        // Use the decisions of the analysis cache if the grammar has not changed since
+        List<GrammarDecision> discovered = window.getGrammarEngine().getANTLRGrammarEngine().getCachedDecisions();
+        if(discovered == null) {
+            discoverGrammars();
+            discovered = new ArrayList<GrammarDecision>();
+            discovered.addAll(GrammarDecision.collect(discoveredLexerGrammar));
+            discovered.addAll(GrammarDecision.collect(discoveredParserGrammar));
+        }
+
+        decisions.clear();
+        decisionDFA.clear();
+        addDecisions(discovered);
     }
 
-    private void discover(int start, int end) throws Exception {
-        Set<Integer> lineIndexes = new HashSet<Integer>();
-        for(int index = start; index < end; index++) {
-            lineIndexes.add(window.getTextEditor().getLineIndexAtTextPosition(index));
-        }
+    /** Makes sure the analyzed grammars are available: they are not if the
+     * decisions have been restored from the analysis cache.
+     */
+    public void discoverGrammars() throws Exception {
+        if(discoveredLexerGrammar != null || discoveredParserGrammar != null) return;
 
         ANTLRGrammarEngine antlrEngineGrammar = window.getGrammarEngine().getANTLRGrammarEngine();
         antlrEngineGrammar.analyze();
         discoveredLexerGrammar = antlrEngineGrammar.getLexerGrammar();
         discoveredParserGrammar = antlrEngineGrammar.getParserGrammar();
-
-        decisionDFA.clear();
-        usesSynPreds.clear();
-        usesSemPreds.clear();
-
-        discover(discoveredLexerGrammar, lineIndexes, usesSemPreds, usesSynPreds);
-        discover(discoveredParserGrammar, lineIndexes, usesSemPreds, usesSynPreds);
     }
 
-    private void discover(Grammar g, Set<Integer> lineIndexes, Set<Integer> usesSemPreds, Set<Integer> usesSynPreds) {
-        if(g == null) return;
-
-        if(g.decisionsWhoseDFAsUsesSemPreds != null) {
-            for(DFA dfa : g.decisionsWhoseDFAsUsesSemPreds) {
-                usesSemPreds.add(dfa.getDecisionNumber());
+    private void addDecisions(List<GrammarDecision> decisions) {
+        this.decisions.addAll(decisions);
+        for(GrammarDecision decision : decisions) {
+            List<Integer> columns = decisionDFA.get(decision.line);
+            if(columns == null) {
+                columns = new ArrayList<Integer>();
+                decisionDFA.put(decision.line, columns);
             }
+            columns.add(decision.column);
         }
-
-        if(g.decisionsWhoseDFAsUsesSynPreds != null) {
-            for(DFA dfa : g.decisionsWhoseDFAsUsesSynPreds) {
-                usesSynPreds.add(dfa.getDecisionNumber());
-            }
-        }
-
-        // Get the position information about each DFA decision
-        for(Integer lineIndex : lineIndexes) {
-            addPositions(lineIndex, g.getLookaheadDFAColumnsForLineInFile(lineIndex));
-        }
-    }
-
-    public void addPositions(Integer line, List<Integer> columnsForLineInFile) {
-        if(columnsForLineInFile.isEmpty()) return;
-
-        decisionDFA.put(line, columnsForLineInFile);
     }
 
     public boolean isDecisionPointAroundLocation(int line, int column) {
@@ -136,56 +125,16 @@ public class DecisionDFAEngine {
 
     public List<DecisionDFAItem> getDecisionDFAItems() {
         List<DecisionDFAItem> items = new ArrayList<DecisionDFAItem>();
-        for(int lineIndex : decisionDFA.keySet()) {
-            for(int columnIndex : decisionDFA.get(lineIndex)) {
-                DFA dfa = getDFAAtPosition(lineIndex, columnIndex);
-                if(dfa == null) {
-                    System.err.println("DFA is null for line "+lineIndex+" and column "+columnIndex);
-                    continue;
-                }
-
-                Grammar g = discoveredLexerGrammar;
-                if(g != null) {
-                    Rule r = g.getRule(Grammar.ARTIFICIAL_TOKENS_RULENAME);
-                    NFAState s = (NFAState)r.startState.transition(0).target;
-                    if(s == null) {
-                        System.err.println("NFAState s is null for rule "+r.name);
-                        continue;
-                    }
-                    // Ignore tokens DFA
-                    if(dfa.getDecisionNumber() == s.getDecisionNumber()) continue;
-                }
-
-                Color c = new Color(0, 128, 64);
-                String title = "DFA decision "+dfa.getDecisionNumber();
-                String info = "";
-                if(usesSemPreds.contains(dfa.getDecisionNumber())) {
-                    info += "uses semantic predicate";
-                    c = new Color(255, 220, 0);
-                } else if(usesSynPreds.contains(dfa.getDecisionNumber())) {
-                    info += "uses syntactic predicate";
-                    c = new Color(255, 220, 0);
-                }
-                if(dfa.isCyclic()) {
-                    if(info.length() > 0) info += ", ";
-                    info += "cyclic";
-                }
-                if(info.length() > 0) info += ", ";
-
-                if (dfa.getNumberOfStates() != 0) {
-                    info += dfa.getNumberOfStates()+" states";
-                }
-                else {
-                    info += "<=" + dfa.getMaxStateNumber() + " states";
-                }
-
-                Point p = window.textEditor.getLineTextPositionsAtLineIndex(lineIndex-1);
-                if(p != null) {
-                    DecisionDFAItem item = new DecisionDFAItem(window);
-                    item.setAttributes(null, p.x+columnIndex-1, p.x+columnIndex, lineIndex-1, c, title+" ("+info+")");
-                    item.shape = ATEOverlayManager.SHAPE_RECT;
-                    items.add(item);                    
-                }
+        for(GrammarDecision decision : decisions) {
+            Color c = decision.usesPredicates() ? new Color(255, 220, 0) : new Color(0, 128, 64);
+            String title = "DFA decision "+decision.decisionNumber;
+
+            Point p = window.textEditor.getLineTextPositionsAtLineIndex(decision.line-1);
+            if(p != null) {
+                DecisionDFAItem item = new DecisionDFAItem(window);
+                item.setAttributes(null, p.x+decision.column-1, p.x+decision.column, decision.line-1, c, title+" ("+decision.info+")");
+                item.shape = ATEOverlayManager.SHAPE_RECT;
+                items.add(item);
             }
         }
         return items;
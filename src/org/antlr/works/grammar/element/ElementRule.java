@@ -70,6 +70,11 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
     public List<GrammarError> errors;
     public boolean needsToBuildErrors = true;
 
+    // Farthest tokens examined by the parser before the beginning and at the end
+    // of the rule (used to decide if the rule can be kept by an incremental parsing)
+    public ATEToken lookaheadBefore;
+    public ATEToken lookaheadAfter;
+
     protected GrammarSyntaxParser parser;
 
     protected int refsStartIndex = -1;
@@ -127,6 +132,24 @@ public class ElementRule extends ElementScopable implements Comparable, EditorPe
             return null;
     }
 
+    /** Called when the rule is kept by an incremental parsing and the elements
+     * preceding it in the parser lists have changed.
+     */
+    public void shiftIndexes(int refsDelta, int blocksDelta, int actionsDelta) {
+        if(refsStartIndex != -1) {
+            refsStartIndex += refsDelta;
+            refsEndIndex += refsDelta;
+        }
+        if(blocksStartIndex != -1) {
+            blocksStartIndex += blocksDelta;
+            blocksEndIndex += blocksDelta;
+        }
+        if(actionsStartIndex != -1) {
+            actionsStartIndex += actionsDelta;
+            actionsEndIndex += actionsDelta;
+        }
+    }
+
     public void setBlocksIndexes(int startIndex, int endIndex) {
         this.blocksStartIndex = Math.max(0, startIndex);
         this.blocksEndIndex = endIndex;
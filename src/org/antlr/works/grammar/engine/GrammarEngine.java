@@ -5,6 +5,7 @@ import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxDiff;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 
 import java.util.List;
@@ -84,19 +85,26 @@ public interface GrammarEngine {
     String getGeneratedClassName(int type) throws Exception;
 
     int getFirstDeclarationPosition(String name);
+    boolean hasDeclaration(String name);
     List<String> getGrammarsOverriddenByRule(String name);
     List<String> getGrammarsOverridingRule(String name);
+    void collectImportedDeclarations(Set<String> names);
+
+    ElementRule getEnclosingRuleAtPosition(int pos);
+    List<ElementReference> getReferencesInRule(ElementRule rule);
 
     List<ATEToken> getTokens();
 
     void updateHierarchy(Map<String, GrammarEngine> engines, Set<GrammarEngine> alreadyVisitedEngines);
 
     GrammarResult analyze() throws Exception;
+    boolean restoreAnalysis();
     void cancelAnalyze();
 
     void computeRuleErrors(ElementRule rule);
 
     void parserCompleted();
+    GrammarSyntaxDiff getSyntaxDiff();
     void updateAll();
 
     void markDirty();
@@ -7,6 +7,7 @@ import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngineImpl;
 import org.antlr.works.grammar.antlr.GrammarResult;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxDiff;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 
 import java.util.ArrayList;
@@ -258,6 +259,18 @@ public class GrammarEngineImpl implements GrammarEngine {
         return properties.getFirstDeclarationPosition(name);
     }
 
+    public boolean hasDeclaration(String name) {
+        return properties.hasDeclaration(name);
+    }
+
+    public ElementRule getEnclosingRuleAtPosition(int pos) {
+        return properties.getEnclosingRuleAtPosition(pos);
+    }
+
+    public List<ElementReference> getReferencesInRule(ElementRule rule) {
+        return properties.getReferencesInRule(rule);
+    }
+
     /**
      * Returns the list of grammars that overrides the rule specified
      * in parameter. Overrides has the same meaning than in Java: the rule
@@ -266,28 +279,34 @@ public class GrammarEngineImpl implements GrammarEngine {
     public List<String> getGrammarsOverriddenByRule(String name) {
         List<String> grammars = new ArrayList<String>();
         for(GrammarEngine child : importedEngines) {
-            for(ATEToken decl : child.getDecls()) {
-                if(decl.getAttribute().equals(name)) {
-                    grammars.add(child.getGrammarName());
-                    break;
-                }
+            if(child.hasDeclaration(name)) {
+                grammars.add(child.getGrammarName());
             }
             grammars.addAll(child.getGrammarsOverriddenByRule(name));
         }
         return grammars;
     }
 
+    /**
+     * Adds the names declared by all the imported grammars (recursively).
+     */
+    public void collectImportedDeclarations(Set<String> names) {
+        for(GrammarEngine child : importedEngines) {
+            for(ATEToken decl : child.getDecls()) {
+                names.add(decl.getAttribute());
+            }
+            child.collectImportedDeclarations(names);
+        }
+    }
+
     /**
      * Returns the list of grammars that this rule overrides.
      */
     public List<String> getGrammarsOverridingRule(String name) {
         List<String> grammars = new ArrayList<String>();
         if(parent != null) {
-            for(ATEToken decl : parent.getDecls()) {
-                if(decl.getAttribute().equals(name)) {
-                    grammars.add(parent.getGrammarName());
-                    break;
-                }
+            if(parent.hasDeclaration(name)) {
+                grammars.add(parent.getGrammarName());
             }
             grammars.addAll(parent.getGrammarsOverridingRule(name));
         }
@@ -322,7 +341,19 @@ public class GrammarEngineImpl implements GrammarEngine {
     }
 
     public GrammarResult analyze() throws Exception {
-        return antlrEngine.analyze();
+        GrammarResult result = antlrEngine.restoreAnalysis(true);
+        if(result == null) {
+            result = antlrEngine.analyzeIncrementally();
+        }
+        return result;
+    }
+
+    public boolean restoreAnalysis() {
+        try {
+            return antlrEngine.restoreAnalysis(false) != null;
+        } catch (Exception e) {
+            return false;
+        }
     }
 
     public void cancelAnalyze() {
@@ -335,6 +366,11 @@ public class GrammarEngineImpl implements GrammarEngine {
 
     public void parserCompleted() {
         properties.parserCompleted();
+        antlrEngine.parserCompleted();
+    }
+
+    public GrammarSyntaxDiff getSyntaxDiff() {
+        return properties.getSyntaxDiff();
     }
 
     public void updateAll() {
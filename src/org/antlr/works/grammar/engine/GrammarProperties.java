@@ -3,6 +3,7 @@ package org.antlr.works.grammar.engine;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxDiff;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 
 import java.util.List;
@@ -69,6 +70,10 @@ public interface GrammarProperties {
     int getNumberOfErrors();
 
     int getFirstDeclarationPosition(String name);
+    boolean hasDeclaration(String name);
+
+    ElementRule getEnclosingRuleAtPosition(int pos);
+    List<ElementReference> getReferencesInRule(ElementRule rule);
 
     int getType();
 
@@ -80,5 +85,6 @@ public interface GrammarProperties {
     void reset();
     void updateAll();
     void parserCompleted();
+    GrammarSyntaxDiff getSyntaxDiff();
 
 }
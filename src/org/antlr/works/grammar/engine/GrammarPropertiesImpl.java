@@ -6,6 +6,7 @@ import org.antlr.works.ate.syntax.generic.ATESyntaxParser;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxDiff;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 import org.antlr.works.grammar.syntax.GrammarSyntaxLexer;
 import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
@@ -59,6 +60,14 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     private final List<ElementRule> duplicateRules = new ArrayList<ElementRule>();
     private final List<ElementReference> undefinedReferences = new ArrayList<ElementReference>();
 
+    // Indexes of the elements rebuilt after each parsing
+    private Map<String,ElementRule> rulesByName = new HashMap<String, ElementRule>();
+    private Map<String,ATEToken> declsByName = new HashMap<String, ATEToken>();
+    private Map<ElementRule,List<ElementReference>> referencesByRule = new HashMap<ElementRule, List<ElementReference>>();
+
+    // Rules modified by the parser since the previous update
+    private GrammarSyntaxDiff syntaxDiff = new GrammarSyntaxDiff();
+
     private final Set<String> tokenVocabNames = new HashSet<String>();
     private String tokenVocabName;
 
@@ -86,14 +95,37 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     public ElementRule getRuleWithName(String name) {
+        return rulesByName.get(name);
+    }
+
+    public ElementRule getEnclosingRuleAtPosition(int pos) {
+        // The rules are sorted by position and do not overlap
         List<ElementRule> rules = getRules();
-        for (ElementRule r : rules) {
-            if (r.name.equals(name))
+        int low = 0;
+        int high = rules.size()-1;
+        while(low <= high) {
+            int middle = (low+high) >>> 1;
+            ElementRule r = rules.get(middle);
+            if(r.getStartIndex() > pos) {
+                high = middle-1;
+            } else if(r.getEndIndex() < pos) {
+                low = middle+1;
+            } else {
                 return r;
+            }
         }
         return null;
     }
 
+    public List<ElementReference> getReferencesInRule(ElementRule rule) {
+        List<ElementReference> refs = referencesByRule.get(rule);
+        if(refs == null) {
+            return new ArrayList<ElementReference>();
+        } else {
+            return new ArrayList<ElementReference>(refs);
+        }
+    }
+
     public List<ElementGroup> getGroups() {
         return groups;
     }
@@ -333,7 +365,7 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     private void rebuildUndefinedReferencesList() {
-        List<String> existingReferences = getRuleNames();
+        Set<String> existingReferences = new HashSet<String>(rulesByName.keySet());
         existingReferences.addAll(getDeclaredTokenNames());
         existingReferences.addAll(getPredefinedReferences());
 
@@ -341,6 +373,12 @@ public class GrammarPropertiesImpl implements GrammarProperties {
         existingReferences.addAll(tokenVocabNames);
         syntaxEngine.resolveReferencesWithExternalNames(tokenVocabNames);
 
+        // The rules can also be declared by the imported grammars, including the ones of the root grammar
+        engine.collectImportedDeclarations(existingReferences);
+        if(engine.getRootEngine() != engine) {
+            engine.getRootEngine().collectImportedDeclarations(existingReferences);
+        }
+
         undefinedReferences.clear();
         List<ElementReference> references = getReferences();
         if(references == null)
@@ -348,9 +386,6 @@ public class GrammarPropertiesImpl implements GrammarProperties {
 
         for (ElementReference ref : references) {
             if (existingReferences.contains(ref.token.getAttribute())) continue;
-            if (!engine.getGrammarsOverriddenByRule(ref.token.getAttribute()).isEmpty()) continue;
-            // also check from the root grammar
-            if (!engine.getRootEngine().getGrammarsOverriddenByRule(ref.token.getAttribute()).isEmpty()) continue;
             undefinedReferences.add(ref);
         }
     }
@@ -362,11 +397,20 @@ public class GrammarPropertiesImpl implements GrammarProperties {
     }
 
     public void parserCompleted() {
-        update((GrammarSyntaxParser) syntaxEngine.getParser());
-        resetTokenVocab();
+        // The parser may be running in the background
+        synchronized(syntaxEngine.getProcessLock()) {
+            update((GrammarSyntaxParser) syntaxEngine.getParser());
+            resetTokenVocab();
+        }
+    }
+
+    public GrammarSyntaxDiff getSyntaxDiff() {
+        return syntaxDiff;
     }
 
     private void update(GrammarSyntaxParser parser) {
+        syntaxDiff = parser.consumeDiff();
+
         rules.clear();
         rules.addAll(parser.rules);
 
@@ -390,7 +434,10 @@ public class GrammarPropertiesImpl implements GrammarProperties {
 
         this.name = parser.getName();
 
-        for(ElementRule r : rules) {
+        rebuildIndexes();
+
+        // Only the rules created by the parser need to be attached to the engine
+        for(ElementRule r : syntaxDiff.isComplete() ? rules : syntaxDiff.getAddedRules()) {
             r.setEngine(engine);
         }
     }
@@ -424,13 +471,42 @@ public class GrammarPropertiesImpl implements GrammarProperties {
         }
     }
 
+    public boolean hasDeclaration(String name) {
+        return declsByName.containsKey(name);
+    }
+
     private ATEToken getFirstDeclaration(String name) {
-        for(ATEToken decl : getDecls()) {
-            if(decl.getAttribute().equals(name)) {
-                return decl;
+        return declsByName.get(name);
+    }
+
+    private void rebuildIndexes() {
+        Map<String,ElementRule> rulesByName = new HashMap<String, ElementRule>();
+        for(ElementRule r : rules) {
+            if(!rulesByName.containsKey(r.name)) {
+                rulesByName.put(r.name, r);
             }
         }
-        return null;
+
+        Map<String,ATEToken> declsByName = new HashMap<String, ATEToken>();
+        for(ATEToken decl : decls) {
+            if(!declsByName.containsKey(decl.getAttribute())) {
+                declsByName.put(decl.getAttribute(), decl);
+            }
+        }
+
+        Map<ElementRule,List<ElementReference>> referencesByRule = new HashMap<ElementRule, List<ElementReference>>();
+        for(ElementReference ref : references) {
+            List<ElementReference> refs = referencesByRule.get(ref.rule);
+            if(refs == null) {
+                refs = new ArrayList<ElementReference>();
+                referencesByRule.put(ref.rule, refs);
+            }
+            refs.add(ref);
+        }
+
+        this.rulesByName = rulesByName;
+        this.declsByName = declsByName;
+        this.referencesByRule = referencesByRule;
     }
 
 }
\ No newline at end of file
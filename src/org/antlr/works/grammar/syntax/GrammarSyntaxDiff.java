@@ -0,0 +1,130 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+package org.antlr.works.grammar.syntax;
+
+import org.antlr.works.grammar.element.ElementRule;
+
+import java.util.*;
+
+/**
+ * This class describes the rules modified by one or more parsing of the grammar. A complete parsing
+ * replaces all the rules; an incremental parsing only replaces the rules affected by the modification
+ * and keeps the other rules untouched.
+ */
+public class GrammarSyntaxDiff {
+
+    private boolean complete;
+    private boolean structureModified;
+
+    private final Set<ElementRule> addedRules = new LinkedHashSet<ElementRule>();
+    private final Set<ElementRule> removedRules = new LinkedHashSet<ElementRule>();
+
+    public GrammarSyntaxDiff() {
+    }
+
+    public GrammarSyntaxDiff(GrammarSyntaxDiff other) {
+        complete = other.complete;
+        structureModified = other.structureModified;
+        addedRules.addAll(other.addedRules);
+        removedRules.addAll(other.removedRules);
+    }
+
+    public void clear() {
+        complete = false;
+        structureModified = false;
+        addedRules.clear();
+        removedRules.clear();
+    }
+
+    /**
+     * Marks all the rules as being replaced
+     */
+    public void setComplete() {
+        complete = true;
+        structureModified = true;
+        addedRules.clear();
+        removedRules.clear();
+    }
+
+    /**
+     * Returns true if all the rules have been replaced (in which case the added and
+     * removed rules are not recorded)
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Marks the structure of the grammar as modified: a rule has been added, removed or renamed,
+     * the order of the rules has changed or a group has been modified.
+     */
+    public void setStructureModified() {
+        structureModified = true;
+    }
+
+    public boolean isStructureModified() {
+        return structureModified;
+    }
+
+    public void ruleAdded(ElementRule rule) {
+        if(!complete) {
+            addedRules.add(rule);
+        }
+    }
+
+    public void ruleRemoved(ElementRule rule) {
+        if(complete) return;
+
+        // A rule added and removed since the last time the diff was consumed is simply forgotten
+        if(!addedRules.remove(rule)) {
+            removedRules.add(rule);
+        }
+    }
+
+    public boolean isEmpty() {
+        return !complete && !structureModified && addedRules.isEmpty() && removedRules.isEmpty();
+    }
+
+    public Set<ElementRule> getAddedRules() {
+        return addedRules;
+    }
+
+    public Set<ElementRule> getRemovedRules() {
+        return removedRules;
+    }
+
+    @Override
+    public String toString() {
+        return "Diff complete = "+complete+", structure modified = "+structureModified+", added = "+addedRules.size()+", removed = "+removedRules.size();
+    }
+
+}
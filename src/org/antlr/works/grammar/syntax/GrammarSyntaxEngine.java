@@ -141,6 +141,8 @@ public class GrammarSyntaxEngine extends ATESyntaxEngine {
     }
 
     public void resolveReferencesWithExternalNames(Set<String> names) {
-        ((GrammarSyntaxParser)getParser()).resolveReferencesWithExternalNames(names);
+        synchronized(processLock) {
+            ((GrammarSyntaxParser)getParser()).resolveReferencesWithExternalNames(names);
+        }
     }
 }
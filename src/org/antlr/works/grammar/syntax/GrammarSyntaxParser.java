@@ -35,6 +35,7 @@ import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
 import org.antlr.works.ate.syntax.generic.ATESyntaxParser;
 import org.antlr.works.ate.syntax.misc.ATEScope;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.editor.EditorPersistentObject;
 import org.antlr.works.grammar.element.*;
 
 import java.util.*;
@@ -74,13 +75,23 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
     public final List<ATEToken> decls = new ArrayList<ATEToken>();
 
     private final LabelTable labels = new LabelTable();
+    private final List<ATEToken> internalReferences = new ArrayList<ATEToken>();
     private final List<ATEToken> unresolvedReferences = new ArrayList<ATEToken>();
     private final Set<String> declaredReferenceNames = new HashSet<String>();
     private final Map<ATEToken,ElementRule> refsToRules = new HashMap<ATEToken,ElementRule>();
 
+    // Number of references found by the parser itself (the other ones have been resolved later)
+    private int parsedReferencesCount;
+
+    // Rules modified since the last time the diff has been consumed
+    private final GrammarSyntaxDiff diff = new GrammarSyntaxDiff();
+
     private ElementGrammarName name;
     private ElementRule currentRule;
 
+    // Farthest position examined by the parser before the current top-level element
+    private int lookaheadBeforeElement;
+
     static {
         blockIdentifiers = new ArrayList<String>();
         blockIdentifiers.add(OPTIONS_BLOCK_NAME);
@@ -120,30 +131,299 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         clear();
     }
 
+    /**
+     * Returns the rules modified since the last invocation of this method
+     *
+     * @return The diff of the rules
+     */
+    public GrammarSyntaxDiff consumeDiff() {
+        synchronized(diff) {
+            GrammarSyntaxDiff d = new GrammarSyntaxDiff(diff);
+            diff.clear();
+            return d;
+        }
+    }
+
     @Override
     public void parseTokens() {
+        synchronized(diff) {
+            diff.setComplete();
+        }
+
         clear();
 
         if(!nextToken()) return;
 
+        while(parseNextElement()) {
+            // parse all the elements
+        }
+
+        resolveReferences();
+    }
+
+    /**
+     * Parses the next top-level element of the grammar
+     *
+     * @return false if there are no more tokens to parse
+     */
+    private boolean parseNextElement() {
+        lookaheadBeforeElement = getLookahead();
+
+        if(matchName()) return true;
+        if(matchScope()) return true; // scope before block
+        if(matchBlock()) return true;
+        if(matchImport()) return true;
+        if(matchRule()) return true;
+
+        if(matchRuleGroup()) return true; // before single comment
+
+        if(matchSingleComment(0)) return true;
+        if(matchComplexComment(0)) return true;
+
+        // Nothing matches, go to next token
+        return nextToken();
+    }
+
+    /**
+     * Parses only the rules affected by the modification of the tokens. The rules located before and after
+     * the modification are kept and the other elements (references, actions, etc) are updated accordingly.
+     * If the modification cannot be handled incrementally (e.g. it affects the header of the grammar),
+     * all the tokens are parsed again.
+     *
+     * @param tokens The tokens
+     * @param modifiedStart The index of the first modified token
+     * @param modifiedEnd The index following the last modified token
+     */
+    @Override
+    public void parse(List<ATEToken> tokens, int modifiedStart, int modifiedEnd) {
+        if(!parseIncrementally(tokens, modifiedStart, modifiedEnd)) {
+            parse(tokens);
+        }
+    }
+
+    private boolean parseIncrementally(List<ATEToken> tokens, int modifiedStart, int modifiedEnd) {
+        if(getTokens() == null || rules.isEmpty()) return false;
+
+        // Find the rules located before the modification. The token following the end of a rule
+        // is examined by the parser so it must not be modified either.
+        int prefixRulesCount = 0;
+        int low = 0;
+        int high = rules.size()-1;
+        while(low <= high) {
+            int middle = (low+high) >>> 1;
+            ATEToken end = rules.get(middle).end;
+            if(isLive(tokens, end) && end.index+1 < modifiedStart) {
+                prefixRulesCount = middle+1;
+                low = middle+1;
+            } else {
+                high = middle-1;
+            }
+        }
+
+        // A rule can be kept only if the parser did not examine any token after its end
+        while(prefixRulesCount > 0 && !isClosedRule(tokens, rules.get(prefixRulesCount-1))) {
+            prefixRulesCount--;
+        }
+
+        // The header of the grammar is always parsed completely
+        if(prefixRulesCount == 0) return false;
+
+        ElementRule previousRule = rules.get(prefixRulesCount-1);
+        int regionStart = previousRule.end.index+1;
+        if(name != null && (!isLive(tokens, name.end) || name.end.index >= regionStart)) return false;
+
+        // Remove the references resolved after the parsing: they will be resolved again
+        List<ElementReference> resolvedReferences = references.subList(parsedReferencesCount, references.size());
+        for(ElementReference ref : resolvedReferences) {
+            ref.token.type = ref.token.lexerType;
+        }
+        resolvedReferences.clear();
+
+        Splice<ElementRule> rulesSplice = new Splice<ElementRule>(rules) {
+            public ATEToken getAnchor(ElementRule element) { return element.start; }
+        };
+        Splice<ElementGroup> groupsSplice = new Splice<ElementGroup>(groups) {
+            public ATEToken getAnchor(ElementGroup element) { return element.token; }
+        };
+        Splice<ElementBlock> blocksSplice = new Splice<ElementBlock>(blocks) {
+            public ATEToken getAnchor(ElementBlock element) { return element.start; }
+        };
+        Splice<ElementAction> actionsSplice = new Splice<ElementAction>(actions) {
+            public ATEToken getAnchor(ElementAction element) { return element.start; }
+        };
+        Splice<ElementReference> referencesSplice = new Splice<ElementReference>(references) {
+            public ATEToken getAnchor(ElementReference element) { return element.token; }
+        };
+        Splice<ElementImport> importsSplice = new Splice<ElementImport>(imports) {
+            public ATEToken getAnchor(ElementImport element) { return element.token; }
+        };
+        Splice<ATEToken> declsSplice = new Splice<ATEToken>(decls) {
+            public ATEToken getAnchor(ATEToken element) { return element; }
+        };
+        Splice<ATEToken> internalReferencesSplice = new Splice<ATEToken>(internalReferences) {
+            public ATEToken getAnchor(ATEToken element) { return element; }
+        };
+        List<Splice<?>> splices = Arrays.<Splice<?>>asList(rulesSplice, groupsSplice, blocksSplice, actionsSplice,
+                referencesSplice, importsSplice, declsSplice, internalReferencesSplice);
+
+        for(Splice<?> splice : splices) {
+            splice.cut(tokens, regionStart);
+        }
+
+        // Parse the tokens until the next rule that can be kept. If the parser examined any
+        // token of that rule, parse again until the following one.
+        int regionEnd = getRegionEnd(tokens, rulesSplice.getTail(), modifiedEnd);
         while(true) {
+            setTokens(tokens, regionStart);
+            setLookahead(previousRule.lookaheadAfter == null ? -1 : previousRule.lookaheadAfter.index);
+            resetTokens(regionStart, regionEnd);
+            restoreLabels(tokens, previousRule);
+            currentRule = null;
 
-            if(matchName()) continue;
-            if(matchScope()) continue; // scope before block
-            if(matchBlock()) continue;
-            if(matchImport()) continue;
-            if(matchRule()) continue;
+            if(nextToken()) {
+                while(getPosition() < regionEnd && parseNextElement()) {
+                    // parse all the elements of the region
+                }
+            }
 
-            if(matchRuleGroup()) continue; // before single comment
+            if(regionEnd == tokens.size() || getPosition() == regionEnd && getLookahead()+1 < regionEnd) break;
 
-            if(matchSingleComment(0)) continue;
-            if(matchComplexComment(0)) continue;
+            regionEnd = getRegionEnd(tokens, rulesSplice.getTail(), Math.max(getPosition(), getLookahead()+2));
+            for(Splice<?> splice : splices) {
+                splice.truncate();
+            }
+        }
 
-            // Nothing matches, go to next token
-            if(!nextToken()) break;
+        for(Splice<?> splice : splices) {
+            splice.paste(tokens, regionEnd);
         }
 
+        // Update the indexes of the elements kept after the region
+        for(ElementRule rule : rules.subList(rulesSplice.getSuffixStart(), rules.size())) {
+            rule.shiftIndexes(referencesSplice.getDelta(), blocksSplice.getDelta(), actionsSplice.getDelta());
+        }
+        for(ElementGroup group : groups.subList(groupsSplice.getSuffixStart(), groups.size())) {
+            group.ruleIndex += rulesSplice.getDelta();
+        }
+        for(int index = actionsSplice.getSuffixStart(); index < actions.size(); index++) {
+            actions.get(index).actionNum = index;
+        }
+        for(ATEToken ref : internalReferencesSplice.getRemoved()) {
+            // The references still present have been added again by the parsing of the region
+            if(!isLive(tokens, ref)) {
+                refsToRules.remove(ref);
+            }
+        }
+
+        declaredReferenceNames.clear();
+        for(ATEToken decl : decls) {
+            declaredReferenceNames.add(decl.getAttribute());
+        }
         resolveReferences();
+
+        // Transfer the state (expanded, ignored, etc) of the elements that have been parsed again
+        transferPersistentState(rulesSplice.getRemoved(), rulesSplice.getAdded());
+        transferPersistentState(actionsSplice.getRemoved(), actionsSplice.getAdded());
+
+        updateDiff(rulesSplice, groupsSplice);
+        return true;
+    }
+
+    private static void transferPersistentState(List<? extends EditorPersistentObject> oldObjects,
+                                                List<? extends EditorPersistentObject> newObjects)
+    {
+        if(oldObjects.isEmpty()) return;
+
+        Map<Object,EditorPersistentObject> oldObjectsByID = new HashMap<Object, EditorPersistentObject>();
+        for(EditorPersistentObject o : oldObjects) {
+            oldObjectsByID.put(o.getPersistentID(), o);
+        }
+        for(EditorPersistentObject o : newObjects) {
+            EditorPersistentObject oldObject = oldObjectsByID.get(o.getPersistentID());
+            if(oldObject != null) {
+                o.persistentAssign(oldObject);
+            }
+        }
+    }
+
+    private void updateDiff(Splice<ElementRule> rulesSplice, Splice<ElementGroup> groupsSplice) {
+        List<ElementRule> removedRules = rulesSplice.getRemoved();
+        List<ElementRule> addedRules = rulesSplice.getAdded();
+
+        synchronized(diff) {
+            for(ElementRule rule : removedRules) {
+                diff.ruleRemoved(rule);
+            }
+            for(ElementRule rule : addedRules) {
+                diff.ruleAdded(rule);
+            }
+            if(!isSameStructure(removedRules, addedRules, groupsSplice.getRemoved(), groupsSplice.getAdded())) {
+                diff.setStructureModified();
+            }
+        }
+    }
+
+    private static boolean isSameStructure(List<ElementRule> oldRules, List<ElementRule> newRules,
+                                           List<ElementGroup> oldGroups, List<ElementGroup> newGroups)
+    {
+        // Any group parsed again modifies the structure
+        if(oldRules.size() != newRules.size() || !oldGroups.isEmpty() || !newGroups.isEmpty()) return false;
+
+        for(int index=0; index<oldRules.size(); index++) {
+            if(!oldRules.get(index).name.equals(newRules.get(index).name)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the parser did not examine any token after the end of the rule
+     */
+    private static boolean isClosedRule(List<ATEToken> tokens, ElementRule rule) {
+        ATEToken lookahead = rule.lookaheadAfter;
+        return lookahead == null || isLive(tokens, lookahead) && lookahead.index <= rule.end.index;
+    }
+
+    /**
+     * Returns the index of the first token of the first rule that can be kept after the specified position. Such
+     * a rule must not have been examined by the parser before its beginning.
+     */
+    private static int getRegionEnd(List<ATEToken> tokens, List<ElementRule> rules, int position) {
+        for(ElementRule rule : rules) {
+            if(!isLive(tokens, rule.start) || rule.start.index < position) continue;
+
+            ATEToken lookahead = rule.lookaheadBefore;
+            if(lookahead == null || !isLive(tokens, lookahead) || lookahead.index+1 < rule.start.index) {
+                return rule.start.index;
+            }
+        }
+        return tokens.size();
+    }
+
+    /**
+     * Restores the labels as they were at the end of the specified rule
+     */
+    private void restoreLabels(List<ATEToken> tokens, ElementRule rule) {
+        labels.clear();
+        for(int index=rule.colon.index; index<=rule.end.index; index++) {
+            ATEToken t = tokens.get(index);
+            if(t.type == GrammarSyntaxLexer.TOKEN_LABEL) {
+                labels.add(t.getAttribute());
+            }
+        }
+    }
+
+    /**
+     * Returns true if the token belongs to the list of tokens (that is, it has been kept by the lexer)
+     */
+    private static boolean isLive(List<ATEToken> tokens, ATEToken t) {
+        return t != null && t.index >= 0 && t.index < tokens.size() && tokens.get(t.index) == t;
+    }
+
+    private ATEToken getLookaheadToken(int position) {
+        if(position < 0) return null;
+
+        List<ATEToken> tokens = getTokens();
+        return tokens.get(Math.min(position, tokens.size()-1));
     }
 
     private void clear() {
@@ -156,8 +436,10 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         decls.clear();
         currentRule = null;
         declaredReferenceNames.clear();
+        internalReferences.clear();
         unresolvedReferences.clear();
         refsToRules.clear();
+        parsedReferencesCount = 0;
     }
 
     /**
@@ -182,6 +464,9 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
      * Resolves the unresolved references by looking at the set of declared references
      */
     private void resolveReferences() {
+        parsedReferencesCount = references.size();
+        unresolvedReferences.clear();
+        unresolvedReferences.addAll(internalReferences);
         for(int i=unresolvedReferences.size()-1; i >= 0; i--) {
             ATEToken ref = unresolvedReferences.get(i);
             if(declaredReferenceNames.contains(ref.getAttribute())) {
@@ -407,6 +692,9 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         mark();
         try {
             if(tryMatchRule()) {
+                ElementRule rule = rules.get(rules.size()-1);
+                rule.lookaheadBefore = getLookaheadToken(lookaheadBeforeElement);
+                rule.lookaheadAfter = getLookaheadToken(getLookahead());
                 return true;
             } else {
                 rewind();
@@ -852,7 +1140,6 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
      * @return True if the reference is a label reference
      */
     private boolean addReference(ATEToken ref, boolean addOnlyIfKnownLabel) {
-        refsToRules.put(ref, currentRule);
         if(labels.lookup(ref.getAttribute())) {
             // Reference is to a label, not a lexer/parser rule
             ref.type = GrammarSyntaxLexer.TOKEN_LABEL;
@@ -860,7 +1147,7 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         } else {
             if(!addOnlyIfKnownLabel) {
                 ref.type = GrammarSyntaxLexer.TOKEN_REFERENCE;
-                references.add(new ElementReference(refsToRules.get(ref), ref));
+                references.add(new ElementReference(currentRule, ref));
             }
             return false;
         }
@@ -919,7 +1206,8 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
                 // after parsing if they are listed as a lexer or parser declaration. Otherwise, we
                 // skip these references.
 
-                unresolvedReferences.add(ref);
+                refsToRules.put(ref, currentRule);
+                internalReferences.add(ref);
             }
         }
     }
@@ -1030,6 +1318,101 @@ public class GrammarSyntaxParser extends ATESyntaxParser {
         return isTokenType(index, ATESyntaxLexer.TOKEN_LCURLY);
     }
 
+    /**
+     * This class is used by the incremental parsing to replace the elements of a list
+     * located in the parsed region. The elements of each list are ordered by position.
+     */
+    private static abstract class Splice<T> {
+
+        private final List<T> elements;
+        private final List<T> tail = new ArrayList<T>();
+        private int prefixSize;
+        private int tailSuffixStart;
+        private int suffixStart;
+
+        public Splice(List<T> elements) {
+            this.elements = elements;
+        }
+
+        public abstract ATEToken getAnchor(T element);
+
+        /**
+         * Removes from the list all the elements that are not located before the specified token index
+         */
+        public void cut(List<ATEToken> tokens, int regionStart) {
+            int low = 0;
+            int high = elements.size()-1;
+            prefixSize = 0;
+            while(low <= high) {
+                int middle = (low+high) >>> 1;
+                ATEToken anchor = getAnchor(elements.get(middle));
+                if(isLive(tokens, anchor) && anchor.index < regionStart) {
+                    prefixSize = middle+1;
+                    low = middle+1;
+                } else {
+                    high = middle-1;
+                }
+            }
+            List<T> removed = elements.subList(prefixSize, elements.size());
+            tail.addAll(removed);
+            removed.clear();
+        }
+
+        /**
+         * Removes the elements added since the cut
+         */
+        public void truncate() {
+            elements.subList(prefixSize, elements.size()).clear();
+        }
+
+        /**
+         * Appends the elements of the tail located at or after the specified token index
+         */
+        public void paste(List<ATEToken> tokens, int regionEnd) {
+            int low = 0;
+            int high = tail.size()-1;
+            tailSuffixStart = tail.size();
+            while(low <= high) {
+                int middle = (low+high) >>> 1;
+                ATEToken anchor = getAnchor(tail.get(middle));
+                if(isLive(tokens, anchor) && anchor.index >= regionEnd) {
+                    tailSuffixStart = middle;
+                    high = middle-1;
+                } else {
+                    low = middle+1;
+                }
+            }
+            suffixStart = elements.size();
+            elements.addAll(tail.subList(tailSuffixStart, tail.size()));
+        }
+
+        public List<T> getTail() {
+            return tail;
+        }
+
+        /**
+         * Returns the index of the first element kept after the region
+         */
+        public int getSuffixStart() {
+            return suffixStart;
+        }
+
+        /**
+         * Returns the shift of the index of the elements kept after the region
+         */
+        public int getDelta() {
+            return suffixStart - (prefixSize + tailSuffixStart);
+        }
+
+        public List<T> getRemoved() {
+            return tail.subList(0, tailSuffixStart);
+        }
+
+        public List<T> getAdded() {
+            return elements.subList(prefixSize, suffixStart);
+        }
+    }
+
     private static class LabelTable {
 
         Set<String> labels = new HashSet<String>();
@@ -2,9 +2,16 @@ package org.antlr.works.menu;
 
 import org.antlr.works.components.GrammarWindow;
 import org.antlr.works.debugger.DebuggerTab;
+import org.antlr.works.debugger.panels.DBEventsPanel;
 import org.antlr.works.stats.StatisticsAW;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.StreamWatcher;
+import org.antlr.xjlib.appkit.utils.XJFileChooser;
+
+import javax.swing.tree.TreeNode;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 /*
 
@@ -74,10 +81,25 @@ public class DebugMenu {
         window.getDebuggerTab().launchLocalDebugger(DebuggerTab.OPTION_AGAIN);
     }
 
+    public void profile() {
+        window.getDebuggerTab().launchLocalDebugger(DebuggerTab.OPTION_PROFILE);
+    }
+
     public void debugRemote() {
         window.getDebuggerTab().launchRemoteDebugger();
     }
 
+    public void debugTrace() {
+        if(!XJFileChooser.shared().displayOpenDialog(window.getJavaContainer(), "awtrace", "Debugger trace", false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        window.getDebuggerTab().launchTraceDebugger(new File(file));
+    }
+
     public void toggleInputTokens() {
         window.getDebuggerTab().toggleInputTokensBox();
         StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_DEBUGGER_TOGGLE_INPUT_TOKENS);
@@ -99,7 +121,23 @@ public class DebugMenu {
         return window.getDebuggerTab().canDebugAgain();
     }
 
-    public String getEventsAsString() {
-        return window.getDebuggerTab().getEventsAsString();
+    public DBEventsPanel.EventTableDataModel getEventsModel() {
+        return window.getDebuggerTab().getEventsModel();
+    }
+
+    public List<TreeNode> getParseTreeRoots() {
+        return window.getDebuggerTab().getParseTreeRoots();
+    }
+
+    public List<TreeNode> getASTRoots() {
+        return window.getDebuggerTab().getASTRoots();
+    }
+
+    public void saveTrace(File file) throws IOException {
+        window.getDebuggerTab().saveTrace(file);
+    }
+
+    public void saveProfile(File file) throws IOException {
+        window.getDebuggerTab().saveProfile(file);
     }
 }
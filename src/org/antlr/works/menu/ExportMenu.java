@@ -32,6 +32,8 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package org.antlr.works.menu;
 
 import org.antlr.works.components.GrammarWindow;
+import org.antlr.works.debugger.DebuggerExporter;
+import org.antlr.works.debugger.panels.DBEventsPanel;
 import org.antlr.works.editor.GrammarWindowTab;
 import org.antlr.works.grammar.element.ElementRule;
 import org.antlr.works.stats.StatisticsAW;
@@ -43,14 +45,20 @@ import org.antlr.works.visualization.graphics.GEnginePS;
 import org.antlr.works.visualization.graphics.graph.GGraphAbstract;
 import org.antlr.xjlib.appkit.gview.GView;
 import org.antlr.xjlib.appkit.utils.XJAlert;
+import org.antlr.xjlib.appkit.utils.XJDialogProgress;
+import org.antlr.xjlib.appkit.utils.XJDialogProgressDelegate;
 import org.antlr.xjlib.appkit.utils.XJFileChooser;
 import org.antlr.xjlib.foundation.XJUtils;
 
 import javax.imageio.ImageIO;
+import javax.swing.*;
+import javax.swing.tree.TreeNode;
 import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -65,7 +73,50 @@ public class ExportMenu {
     public void exportEventsAsTextFile() {
         StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_EXPORT_EVENTS_AS_TEXT);
 
-        if(!XJFileChooser.shared().displaySaveDialog(window.getJavaContainer(), "txt", "Text file", false))
+        if(!XJFileChooser.shared().displaySaveDialog(window.getJavaContainer(), DebuggerExporter.EXTENSIONS, DebuggerExporter.DESCRIPTIONS, false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        final DBEventsPanel.EventTableDataModel model = window.getDebugMenu().getEventsModel();
+        new ExportTask(file, XJFileChooser.shared().getSelectedFileExtension()) {
+            public boolean export(Writer writer) throws IOException {
+                return DebuggerExporter.exportEvents(model, format, writer, this);
+            }
+        }.start("Exporting events...");
+    }
+
+    public void exportParseTree() {
+        exportTrees(window.getDebugMenu().getParseTreeRoots(), "Exporting parse tree...");
+    }
+
+    public void exportAST() {
+        exportTrees(window.getDebugMenu().getASTRoots(), "Exporting AST...");
+    }
+
+    protected void exportTrees(final List<TreeNode> roots, String info) {
+        StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_EXPORT_TREE);
+
+        if(!XJFileChooser.shared().displaySaveDialog(window.getJavaContainer(), DebuggerExporter.EXTENSIONS, DebuggerExporter.DESCRIPTIONS, false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        new ExportTask(file, XJFileChooser.shared().getSelectedFileExtension()) {
+            public boolean export(Writer writer) throws IOException {
+                return DebuggerExporter.exportTrees(roots, format, writer, this);
+            }
+        }.start(info);
+    }
+
+    public void exportEventsAsTrace() {
+        StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_EXPORT_EVENTS_AS_TRACE);
+
+        if(!XJFileChooser.shared().displaySaveDialog(window.getJavaContainer(), "awtrace", "Debugger trace", false))
             return;
 
         String file = XJFileChooser.shared().getSelectedFilePath();
@@ -73,11 +124,26 @@ public class ExportMenu {
             return;
 
         try {
-            FileWriter writer = new FileWriter(file);
-            writer.write(window.getDebugMenu().getEventsAsString());
-            writer.close();
+            window.getDebugMenu().saveTrace(new File(file));
         } catch (IOException e) {
-            XJAlert.display(window.getJavaContainer(), "Error", "Cannot save text file: "+file+"\nError: "+e);
+            XJAlert.display(window.getJavaContainer(), "Error", "Cannot save trace file: "+file+"\nError: "+e);
+        }
+    }
+
+    public void exportProfileAsCSV() {
+        StatisticsAW.shared().recordEvent(StatisticsAW.EVENT_EXPORT_PROFILE_AS_CSV);
+
+        if(!XJFileChooser.shared().displaySaveDialog(window.getJavaContainer(), "csv", "CSV file", false))
+            return;
+
+        String file = XJFileChooser.shared().getSelectedFilePath();
+        if(file == null)
+            return;
+
+        try {
+            window.getDebugMenu().saveProfile(new File(file));
+        } catch (IOException e) {
+            XJAlert.display(window.getJavaContainer(), "Error", "Cannot save CSV file: "+file+"\nError: "+e);
         }
     }
 
@@ -250,4 +316,94 @@ public class ExportMenu {
         }
     }
 
+
+    /** Writes a file on a background thread while displaying the progress. The
+     * partial file is removed if the user cancels the export or if it fails.
+     *
+     * The debugger models are read by the background thread: the export is not
+     * available while the debugger is running and the progress dialog is modal so
+     * the player cannot change the models until the export is completed.
+     */
+    protected abstract class ExportTask implements Runnable, DebuggerExporter.Monitor, XJDialogProgressDelegate {
+
+        protected String file;
+        protected int format;
+
+        protected XJDialogProgress progress;
+        protected volatile boolean cancelled = false;
+        protected boolean completed = false;
+        protected Exception error;
+
+        public ExportTask(String file, String extension) {
+            this.file = file;
+            this.format = DebuggerExporter.getFormat(extension);
+        }
+
+        public abstract boolean export(Writer writer) throws IOException;
+
+        public void start(String info) {
+            if(window.getDebugMenu().isRunning()) {
+                XJAlert.display(window.getJavaContainer(), "Export", "The debugger must be stopped before exporting.");
+                return;
+            }
+
+            progress = new XJDialogProgress(window.getJavaContainer(), true);
+            progress.setDelegate(this);
+            progress.setCancellable(true);
+            progress.setIndeterminate(false);
+            progress.setProgressMax(100);
+            progress.setInfo(info);
+
+            // the modal dialog returns when the task is finished
+            new Thread(this).start();
+            progress.display();
+        }
+
+        public void run() {
+            try {
+                Writer writer = new BufferedWriter(new FileWriter(file));
+                try {
+                    completed = export(writer);
+                } finally {
+                    writer.close();
+                }
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        finished();
+                    }
+                });
+            }
+        }
+
+        public void finished() {
+            progress.close();
+            if(!completed) {
+                new File(file).delete();
+            }
+            if(error != null) {
+                window.consoleTab.println(error);
+                XJAlert.display(window.getJavaContainer(), "Error", "Cannot save file: "+file+"\nError: "+error);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void progress(int done, int total) {
+            final int value = total == 0?100:(int)(100L*done/total);
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    progress.setProgress(value);
+                }
+            });
+        }
+
+        public void dialogDidCancel() {
+            cancelled = true;
+        }
+    }
 }
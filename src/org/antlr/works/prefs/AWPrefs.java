@@ -57,6 +57,7 @@ public class AWPrefs {
 
     public static final String PREF_DOT_TOOL_PATH = "PREF_DOT_TOOL_PATH";
     public static final String PREF_ANTLR3_OPTIONS = "PREF_ANTLR3_OPTIONS";
+    public static final String PREF_DECISION_TIME_BUDGET = "PREF_DECISION_TIME_BUDGET";
 
     public static final String PREF_TOOLBAR_SORT = "PREF_TOOLBAR_SORT";
     public static final String PREF_TOOLBAR_ST_SORT = "PREF_TOOLBAR_ST_SORT";
@@ -69,6 +70,7 @@ public class AWPrefs {
     public static final boolean DEFAULT_DESKTOP_MODE;
     public static final String DEFAULT_DOT_TOOL_PATH;
     public static final String DEFAULT_ANTLR3_OPTIONS="";
+    public static final int DEFAULT_DECISION_TIME_BUDGET = 10000;
     public static final boolean DEFAULT_RESTORE_WINDOWS = true;
 
     // Editor
@@ -184,6 +186,7 @@ public class AWPrefs {
     public static final String COMPILER_JAVAC = "javac";
     public static final String COMPILER_JIKES = "jikes";
     public static final String COMPILER_INTEGRATED = "integrated";
+    public static final String COMPILER_JAVAX_TOOLS = "javaxtools";
 
     // Updates
     public static final String PREF_UPDATE_TYPE = "PREF_UPDATE_TYPE";
@@ -227,6 +230,15 @@ public class AWPrefs {
     public static final String PREF_DEBUGGER_ASK_GEN = "PREF_DEBUGGER_ASK_GEN";
     public static final boolean DEFAULT_DEBUGGER_ASK_GEN = false;
 
+    public static final String PREF_DEBUGGER_EVENT_MEMORY = "PREF_DEBUGGER_EVENT_MEMORY";
+    public static final int DEFAULT_DEBUGGER_EVENT_MEMORY = 64;
+
+    public static final String PREF_DEBUGGER_IN_PROCESS = "PREF_DEBUGGER_IN_PROCESS";
+    public static final boolean DEFAULT_DEBUGGER_IN_PROCESS = false;
+
+    public static final String PREF_DEBUGGER_BINARY_PROTOCOL = "PREF_DEBUGGER_BINARY_PROTOCOL";
+    public static final boolean DEFAULT_DEBUGGER_BINARY_PROTOCOL = false;
+
     // Avanced
 
     public static final String PREF_ALERT_CHECK_GRAMMAR_SUCCESS = "PREF_ALERT_CHECK_GRAMMAR_SUCCESS";
@@ -301,6 +313,11 @@ public class AWPrefs {
         return getPreferences().getBoolean(PREF_DEBUG_DONT_OPTIMIZE_NFA, false);
     }
 
+    /** Returns the maximum time in ms to build the lookahead DFA of a decision (0 for no limit) */
+    public static int getDecisionTimeBudget() {
+        return getPreferences().getInt(PREF_DECISION_TIME_BUDGET, DEFAULT_DECISION_TIME_BUDGET);
+    }
+
     public static int getDebugDefaultLocalPort() {
         return getPreferences().getInt(PREF_DEBUG_LOCALPORT, DEFAULT_DEBUG_LOCALPORT);
     }
@@ -538,6 +555,21 @@ public class AWPrefs {
         return getPreferences().getBoolean(PREF_DEBUGGER_ASK_GEN, DEFAULT_DEBUGGER_ASK_GEN);
     }
 
+    /** Returns the memory in MB used by the recorded events before they are moved to disk */
+    public static int getDebuggerEventMemory() {
+        return getPreferences().getInt(PREF_DEBUGGER_EVENT_MEMORY, DEFAULT_DEBUGGER_EVENT_MEMORY);
+    }
+
+    /** Returns true if the local debugger runs the parser inside ANTLRWorks */
+    public static boolean getDebuggerInProcess() {
+        return getPreferences().getBoolean(PREF_DEBUGGER_IN_PROCESS, DEFAULT_DEBUGGER_IN_PROCESS);
+    }
+
+    /** Returns true if the remote parser sends its events using the binary protocol */
+    public static boolean getDebuggerBinaryProtocol() {
+        return getPreferences().getBoolean(PREF_DEBUGGER_BINARY_PROTOCOL, DEFAULT_DEBUGGER_BINARY_PROTOCOL);
+    }
+
     public static XJPreferences getPreferences() {
         return XJApplication.shared().getPreferences();
     }
@@ -49,6 +49,9 @@ public class StatisticsAW {
     public static final int EVENT_EXPORT_AS_EPS = 1;
     public static final int EVENT_EXPORT_AS_DOT = 2;
     public static final int EVENT_EXPORT_EVENTS_AS_TEXT = 3;
+    public static final int EVENT_EXPORT_EVENTS_AS_TRACE = 4;
+    public static final int EVENT_EXPORT_PROFILE_AS_CSV = 5;
+    public static final int EVENT_EXPORT_TREE = 6;
 
     /* Menu Find */
     public static final int EVENT_FIND_DIALOG = 10;
@@ -102,6 +105,8 @@ public class StatisticsAW {
     public static final int EVENT_LOCAL_DEBUGGER = 92;
     public static final int EVENT_LOCAL_DEBUGGER_BUILD = 93;
     public static final int EVENT_REMOTE_DEBUGGER = 94;
+    public static final int EVENT_DEBUGGER_OPEN_TRACE = 95;
+    public static final int EVENT_LOCAL_PROFILER = 96;
 
     /* Toolbar toggle */
     public static final int EVENT_TOGGLE_SYNTAX_COLORING = 120;
@@ -140,6 +145,9 @@ public class StatisticsAW {
         register(EVENT_EXPORT_AS_EPS, "Export as EPS");
         register(EVENT_EXPORT_AS_DOT, "Export as DOT");
         register(EVENT_EXPORT_EVENTS_AS_TEXT, "Export events as text");
+        register(EVENT_EXPORT_EVENTS_AS_TRACE, "Export events as trace");
+        register(EVENT_EXPORT_PROFILE_AS_CSV, "Export profile as CSV");
+        register(EVENT_EXPORT_TREE, "Export tree");
 
         register(EVENT_FIND_DIALOG, "Find dialog");
         register(EVENT_FIND_NEXT, "Find next");
@@ -185,6 +193,8 @@ public class StatisticsAW {
         register(EVENT_LOCAL_DEBUGGER, "Debug");
         register(EVENT_LOCAL_DEBUGGER_BUILD, "Build and debug");
         register(EVENT_REMOTE_DEBUGGER, "Remote debug");
+        register(EVENT_DEBUGGER_OPEN_TRACE, "Open debugger trace");
+        register(EVENT_LOCAL_PROFILER, "Profile");
 
         register(EVENT_TOGGLE_SYNTAX_COLORING, "Toggle syntax coloring");
         register(EVENT_TOGGLE_SYNTAX_DIAGRAM, "Toggle syntax diagram");
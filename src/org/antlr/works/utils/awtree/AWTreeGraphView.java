@@ -13,7 +13,9 @@ import org.antlr.xjlib.appkit.gview.shape.SLinkElbow;
 import javax.swing.*;
 import javax.swing.tree.TreeNode;
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /*
@@ -56,6 +58,12 @@ public class AWTreeGraphView extends GView {
 
     public static final int MARGIN = 10;
 
+    /** Below this zoom factor, the labels are not drawn and the links are simple lines */
+    public static final float DETAIL_ZOOM = 0.4f;
+
+    /** Size of the marker drawn below a collapsed node */
+    public static final int COLLAPSED_MARKER_SIZE = 8;
+
     public static final Color HIGHLIGHTED_COLOR = new Color(0, 0.5f, 1, 0.4f);
     public static final Font DEFAULT_FONT = new Font("Monospaced", Font.PLAIN, 11);
 
@@ -73,6 +81,9 @@ public class AWTreeGraphView extends GView {
 
     protected boolean dirty = true;
 
+    protected AWTreeLayout layout = new AWTreeLayout(HORIZONTAL_GAP, VERTICAL_GAP);
+    protected Rect treeBounds;
+
     public AWTreeGraphView(AWTreePanel panel) {
         this.panel = panel;
         setPreferredSize(new Dimension(0, 0));
@@ -95,6 +106,7 @@ public class AWTreeGraphView extends GView {
         if(model != null)
             model.clear();
         clearMaps();
+        treeBounds = null;
     }
 
     public void refresh() {
@@ -144,6 +156,22 @@ public class AWTreeGraphView extends GView {
             return (GElementNode)treeNodeToGElementMap.get(node);
     }
 
+    /** Returns the element of the node or, if the node is inside a collapsed
+     * subtree, the element of the outermost collapsed ancestor.
+     */
+    public GElementNode getVisibleGElementForNode(TreeNode node) {
+        GElementNode element = getGElementForNode(node);
+        if(element == null)
+            return null;
+
+        GElementNode visible = element;
+        for(GElementNode parent = element.parentNode; parent != null; parent = parent.parentNode) {
+            if(parent.isCollapsed())
+                visible = parent;
+        }
+        return visible;
+    }
+
     /** This method rebuild the tree completely. This can be expensive if the tree
      * contains many node. Use a AWTreeModel instead (see rebuildWithModel)
      */
@@ -151,8 +179,8 @@ public class AWTreeGraphView extends GView {
     public void rebuildNoModel() {
         clearMaps();
 
-        GElement element = buildGraph(null);
-        element.move(MARGIN, MARGIN);
+        GElementNode element = buildGraph(null);
+        treeBounds = layout.layout(element, MARGIN, MARGIN);
 
         setSizeMargin(MARGIN);
         setRootElement(element);
@@ -177,16 +205,12 @@ public class AWTreeGraphView extends GView {
             buildGraph(child);
         }
 
-        /** Adjust the parent element position after adding all its children */
-        adjustElementPositionRelativeToItsChildren(node, false);
-
         return nodeElement;
     }
 
     /** This method rebuild the tree incrementally using the information provided
-     * by the tree model. This method is faster than rebuildNoModel() for large tree.
-     *
-     * Note: actually it is slower because of the adjustElement...() method which is called too often
+     * by the tree model. This method is faster than rebuildNoModel() for large tree
+     * because only the new nodes and their ancestors are laid out again.
      */
     public void rebuildWithModel() {
         for(int n=0; n<model.getNewNodesCount(); n++) {
@@ -196,21 +220,35 @@ public class AWTreeGraphView extends GView {
             GElementNode parentElement = getGElementForNode(parent);
             if(parentElement == null) {
                 parentElement = createGElement(root);
-                parentElement.move(MARGIN, MARGIN);
                 setSizeMargin(MARGIN);
                 setRootElement(parentElement);
             }
 
             GElementNode childElement = createGElement(child);
             addChildElement(parentElement, childElement);
-            adjustElementPositionRelativeToItsChildren(parent, true);
         }
 
+        layoutTree();
         autoAdjustSize();
 
         model.clearNewNodes();
     }
 
+    /** Lays out the nodes that have been added, collapsed or expanded since the last layout */
+    public void layoutTree() {
+        GElementNode element = getGElementForNode(root);
+        if(element != null)
+            treeBounds = layout.layout(element, MARGIN, MARGIN);
+    }
+
+    @Override
+    public Rect getContentBounds() {
+        if(treeBounds == null)
+            return super.getContentBounds();
+        else
+            return treeBounds;
+    }
+
     public void paintComponent(Graphics g) {
         if(g2d != g) {
             g2d = (Graphics2D)g;
@@ -218,25 +256,15 @@ public class AWTreeGraphView extends GView {
             g2d.setFont(DEFAULT_FONT);
             fontMetrics = g2d.getFontMetrics();
         }
-        rebuild();
+        if(dirty)
+            rebuild();
         super.paintComponent(g);
     }
 
+    /** Adds a child to a node. The position of the child is set by the next layout. */
     public void addChildElement(GElementNode parent, GElementNode child) {
-        /** Get the far right position of the last child */
-        double x = parent.getLastChildRightSpan();
-
-        /** Add a gap if there is already a child otherwise use the parent left coordinate */
-        if(x > 0)
-            x += HORIZONTAL_GAP;
-        else
-            x = parent.getLeft();
-
-        /** Set the child position */
-        child.setPositionOfUpperLeftCorner(x, parent.getBottom()+VERTICAL_GAP);
-
         /** Create the link from the parent to this child */
-        GLink link = new GLink(parent, GLink.ANCHOR_BOTTOM,
+        GLink link = new GLinkNode(parent, GLink.ANCHOR_BOTTOM,
                 child, GLink.ANCHOR_TOP,
                 GLink.SHAPE_ELBOW, "", 0);
         link.setDraggable(DRAGGABLE);
@@ -247,50 +275,7 @@ public class AWTreeGraphView extends GView {
         l.getArrow().setLength(6);
 
         /** Add the link and the child */
-        parent.addElement(link);
-        parent.addElement(child);
-    }
-
-    /** This method recursively adjusts a node position relative to its children */
-
-    public void adjustElementPositionRelativeToItsChildren(TreeNode node, boolean recursive) {
-        GElementNode element = getGElementForNode(node);
-        if(element == null)
-            return;
-
-        double elementWidth = element.getWidth();
-        double childrenWidth = element.getLastChildRightSpan()-element.getFirstChildLeftSpan();
-
-        /** Nothing to adjust if there is no children */
-        if(childrenWidth == 0)
-            return;
-
-        /** x and y are the coordinates of the upper-left corner of the frame enclosing
-         * the element and all its children.
-         */
-        double x = Math.min(element.getLeft(), element.getFirstChildLeftSpan());
-        double y = element.getTop();
-        double spanWidth = Math.max(elementWidth, childrenWidth);
-
-        /** First move the children if needed. To move all the children at once, we move
-         * the element itself (which will cause all the children to be moved recursively).
-         * The element position is set after this operation.
-         */
-        double childrenOffset = spanWidth*0.5-childrenWidth*0.5;
-
-        /** Compute the offset to move the children given their current position */
-        double offset = x+childrenOffset-element.getFirstChildLeftSpan();
-        element.move(offset, 0);
-
-        /** Set the element position */
-        element.setPositionOfUpperLeftCorner(x+spanWidth*0.5-elementWidth*0.5, y);
-
-        /** Set the span (children width) of the element */
-        element.setSpanWidth(spanWidth);
-
-        /** Recursively adjust the parent node */
-        if(recursive)
-            adjustElementPositionRelativeToItsChildren(node.getParent(), recursive);
+        parent.addChildNode(link, child);
     }
 
     public String getNodeLabel(TreeNode node) {
@@ -339,13 +324,36 @@ public class AWTreeGraphView extends GView {
         return element;
     }
 
+    public boolean isNodeCollapsed(TreeNode node) {
+        GElementNode element = getGElementForNode(node);
+        return element != null && element.isCollapsed();
+    }
+
+    /** Collapses or expands the subtree of a node. The children of a collapsed node
+     * are neither laid out nor drawn.
+     */
+    public void setNodeCollapsed(TreeNode node, boolean flag) {
+        GElementNode element = getGElementForNode(node);
+        if(element == null || element.isCollapsed() == flag)
+            return;
+
+        element.setCollapsed(flag);
+        layoutTree();
+        autoAdjustSize();
+        repaint();
+    }
+
+    public void toggleNodeCollapsed(TreeNode node) {
+        setNodeCollapsed(node, !isNodeCollapsed(node));
+    }
+
     public void highlightNode(TreeNode node) {
         if(highlightedNode != null) {
             highlightedNode.setHighlighted(false);
             highlightedNode = null;
         }
 
-        GElementNode element = getGElementForNode(node);
+        GElementNode element = getVisibleGElementForNode(node);
         if(element == null)
             return;
 
@@ -373,7 +381,7 @@ public class AWTreeGraphView extends GView {
     }
 
     public void scrollNodeToVisible(TreeNode node) {
-        GElementNode element = getGElementForNode(node);
+        GElementNode element = getVisibleGElementForNode(node);
         if(element == null)
             return;
 
@@ -385,80 +393,205 @@ public class AWTreeGraphView extends GView {
         return panel.getContextualMenu();
     }
 
+    public static boolean isDetailVisible(GView view) {
+        return view == null || view.getZoom() >= DETAIL_ZOOM;
+    }
+
     public static class GElementNode extends GElementRect {
 
         public boolean highlighted = false;
-        public double spanWidth = 0;
+        public boolean collapsed = false;
+
+        /** The child nodes and the links to them. The elements of the node contain
+         * the same links and nodes unless the node is collapsed.
+         */
+        protected GElementNode parentNode;
+        protected List<GElementNode> children = new ArrayList<GElementNode>();
+        protected List<GLink> links = new ArrayList<GLink>();
+
+        /** Index of the node in the children of its parent */
+        protected int number;
+
+        /** Layout state (see AWTreeLayout) */
+        protected boolean layoutDirty = true;
+        protected int layoutFrom = 0;
+        protected double prelim;
+        protected double mod;
+        protected double mid;
+        protected double shift;
+        protected double change;
+        protected double executedShift;
+        protected int height;
+        protected GElementNode thread;
+        protected AWTreeLayout.Owner owners;
+
+        /** The leaves threaded and the left siblings moved when this node was placed */
+        protected List<GElementNode> threadedLeaves;
+        protected int[] moveFrom;
+        protected double[] moveShift;
+        protected int moveCount;
 
         public void setHighlighted(boolean flag) {
             this.highlighted = flag;
         }
 
-        @Override
-        public void draw(Graphics2D g) {
-            if(highlighted && isVisibleInClip(g)) {
-                Rectangle r = getFrame().rectangle();
-                g.setColor(HIGHLIGHTED_COLOR);
-                g.fillRect(r.x, r.y, r.width, r.height);
-            }
+        public GElementNode getParentNode() {
+            return parentNode;
+        }
 
-            super.draw(g);
+        public List<GElementNode> getChildNodes() {
+            return children;
         }
 
-        /** Methods to retrieve the span width of the node. The span width
-         * is the maximum width of the node and its children.
-         */
-        public void setSpanWidth(double width) {
-            spanWidth = width;
+        public void addChildNode(GLink link, GElementNode child) {
+            child.parentNode = this;
+            child.number = children.size();
+            children.add(child);
+            links.add(link);
+
+            if(!collapsed) {
+                addElement(link);
+                addElement(child);
+            }
+
+            markLayoutDirty(child.number);
         }
 
-        public double getLeftSpan() {
-            if(spanWidth <= getWidth())
-                return getLeft();
-            else
-                return getLeft()-(spanWidth-getWidth())*0.5;
+        public boolean hasVisibleChildren() {
+            return !collapsed && !children.isEmpty();
         }
 
-        public double getRightSpan() {
-            if(spanWidth <= getWidth())
-                return getRight();
-            else
-                return getRight()+(spanWidth-getWidth())*0.5;
+        public boolean isCollapsed() {
+            return collapsed;
         }
 
-        /** Return the last children right coordinate of this node. Note that links are
-         * also in the list of children so we must skip them.
-         */
-        public double getLastChildRightSpan() {
-            if(elements == null)
-                return 0;
-
-            for (int i = elements.size()-1; i >= 0; i--) {
-                GElement element = (GElement) elements.get(i);
-                if(element instanceof GElementNode) {
-                    GElementNode n = (GElementNode)element;
-                    return n.getRightSpan();
+        public void setCollapsed(boolean flag) {
+            if(collapsed == flag)
+                return;
+
+            collapsed = flag;
+
+            List<GElement> visible = new ArrayList<GElement>();
+            if(!collapsed) {
+                for(int index=0; index<children.size(); index++) {
+                    GLink link = links.get(index);
+                    GElementNode child = children.get(index);
+                    link.setPanel(view);
+                    child.setPanel(view);
+                    visible.add(link);
+                    visible.add(child);
                 }
             }
+            setElements(visible);
+
+            /** The extent includes the collapsed marker */
+            elementDimensionDidChange();
 
-            return 0;
+            markLayoutDirty(0);
         }
 
-        /** Return the first children left coordinate of this node. Note that links are
-         * also in the list of children so we must skip them.
+        /** Marks the node and its ancestors so they are laid out again. The children
+         * of the node are placed again starting at the child at the given index.
          */
-        public double getFirstChildLeftSpan() {
-            if(elements == null)
-                return 0;
-
-            for (GElement element : elements) {
-                if (element instanceof GElementNode) {
-                    GElementNode n = (GElementNode) element;
-                    return n.getLeftSpan();
+        public void markLayoutDirty(int index) {
+            GElementNode node = this;
+            while(node != null) {
+                node.layoutFrom = Math.min(node.layoutFrom, index);
+                if(node.layoutDirty)
+                    break;
+
+                node.layoutDirty = true;
+                index = node.number;
+                node = node.parentNode;
+            }
+        }
+
+        protected void addThreadedLeaf(GElementNode leaf) {
+            if(threadedLeaves == null)
+                threadedLeaves = new ArrayList<GElementNode>();
+            threadedLeaves.add(leaf);
+        }
+
+        protected void addMove(int from, double shift) {
+            if(moveFrom == null) {
+                moveFrom = new int[2];
+                moveShift = new double[2];
+            } else if(moveCount == moveFrom.length) {
+                int[] f = new int[moveCount*2];
+                double[] s = new double[moveCount*2];
+                System.arraycopy(moveFrom, 0, f, 0, moveCount);
+                System.arraycopy(moveShift, 0, s, 0, moveCount);
+                moveFrom = f;
+                moveShift = s;
+            }
+            moveFrom[moveCount] = from;
+            moveShift[moveCount] = shift;
+            moveCount++;
+        }
+
+        /** Removes the threads and the moves recorded when this node was placed */
+        protected void clearApportion() {
+            if(threadedLeaves != null) {
+                for(GElementNode leaf : threadedLeaves) {
+                    leaf.thread = null;
                 }
+                threadedLeaves = null;
             }
+            moveCount = 0;
+        }
 
-            return 0;
+        /** The anchors are only used by the links which update them before
+         * drawing (see GLink.update()), so they are not updated each time the
+         * layout moves the node.
+         */
+        @Override
+        public void elementPositionDidChange() {
+            if(view != null)
+                view.elementDidChange(this);
+        }
+
+        @Override
+        public void elementDimensionDidChange() {
+            if(view != null)
+                view.elementDidChange(this);
+        }
+
+        @Override
+        public Rect getExtent() {
+            Rect frame = getFrame();
+            if(collapsed && !children.isEmpty())
+                frame.r.height += COLLAPSED_MARKER_SIZE+2;
+            return frame;
+        }
+
+        @Override
+        public void draw(Graphics2D g) {
+            if(highlighted && isVisibleInClip(g)) {
+                Rectangle r = getFrame().rectangle();
+                g.setColor(HIGHLIGHTED_COLOR);
+                g.fillRect(r.x, r.y, r.width, r.height);
+            }
+
+            if(isDetailVisible(view)) {
+                super.draw(g);
+            } else if(isVisibleInClip(g)) {
+                /** Skip the label which is not readable anyway */
+                g.setColor(color);
+                drawShape(g);
+            }
+
+            if(collapsed && !children.isEmpty())
+                drawCollapsedMarker(g);
+        }
+
+        /** Draws a small triangle below the node to show that it has hidden children */
+        public void drawCollapsedMarker(Graphics2D g) {
+            int x = (int)getPositionX();
+            int y = (int)getBottom()+2;
+            int s = COLLAPSED_MARKER_SIZE/2;
+
+            g.setColor(color);
+            g.fillPolygon(new int[] { x-s, x+s, x }, new int[] { y, y, y+COLLAPSED_MARKER_SIZE }, 3);
         }
 
         /** Methods used to retrieve the coordinate of the frame. Note that
@@ -487,4 +620,35 @@ public class AWTreeGraphView extends GView {
             position.y = top+getHeight()*0.5;
         }
     }
+
+    /** Link between a node and one of its children. When the view is zoomed out,
+     * the link is drawn as a simple line.
+     */
+    public static class GLinkNode extends GLink {
+
+        public GLinkNode(GElement source, String sourceAnchorKey, GElement target, String targetAnchorKey, int shape, String pattern, double flateness) {
+            super(source, sourceAnchorKey, target, targetAnchorKey, shape, pattern, flateness);
+        }
+
+        @Override
+        public void draw(Graphics2D g) {
+            if(isDetailVisible(view)) {
+                super.draw(g);
+                return;
+            }
+
+            GElementNode parent = (GElementNode)source;
+            GElementNode child = (GElementNode)target;
+            double x1 = parent.getPositionX();
+            double y1 = parent.getBottom();
+            double x2 = child.getPositionX();
+            double y2 = child.getTop();
+
+            Rectangle clip = g.getClipBounds();
+            if(clip == null || clip.intersectsLine(x1, y1, x2, y2)) {
+                g.setColor(color == null?Color.black:color);
+                g.drawLine((int)x1, (int)y1, (int)x2, (int)y2);
+            }
+        }
+    }
 }
@@ -0,0 +1,382 @@
+package org.antlr.works.utils.awtree;
+
+import org.antlr.works.utils.awtree.AWTreeGraphView.GElementNode;
+import org.antlr.xjlib.appkit.gview.base.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+/** Tidy layout of the nodes of an AWTreeGraphView (Reingold-Tilford, using the linear
+ * time version of Walker's algorithm described by Buchheim, Junger and Leipert).
+ *
+ * The layout is incremental: only the nodes marked as dirty (the nodes added, collapsed
+ * or expanded since the last layout, and their ancestors) are laid out again. The children
+ * of a dirty node are placed again starting at the first child whose subtree changed, so
+ * appending a node does not walk the contours of its left siblings again. A clean subtree
+ * keeps its relative layout and is only translated if its root has moved. Both walks are
+ * iterative so deep trees do not overflow the stack.
+ *
+ * Instead of the ancestor pointers of Buchheim et al., the sibling owning the right contour
+ * of the left siblings at each depth is found with a list of owners as described by
+ * van der Ploeg. The list is immutable so it can be kept with each child and used again
+ * when the next children are placed.
+ */
+
+public class AWTreeLayout {
+
+    /** Positions closer than this value are considered equal */
+    public static final double EPSILON = 0.01;
+
+    protected final double horizontalGap;
+    protected final double verticalGap;
+
+    public AWTreeLayout(double horizontalGap, double verticalGap) {
+        this.horizontalGap = horizontalGap;
+        this.verticalGap = verticalGap;
+    }
+
+    /** Lays out the visible nodes of the tree so the upper-left corner of the tree
+     * is at (left, top) and returns the bounds of the tree.
+     */
+    public Rect layout(GElementNode root, double left, double top) {
+        List<GElementNode> dirty = getDirtyNodes(root);
+
+        /** Remove the threads of the children placed again before walking any contour */
+        for(GElementNode node : dirty) {
+            if(!node.hasVisibleChildren())
+                continue;
+
+            for(int index=Math.min(node.layoutFrom, node.children.size()); index<node.children.size(); index++) {
+                node.children.get(index).clearApportion();
+            }
+        }
+
+        /** Children are always after their parent in the list */
+        for(int index=dirty.size()-1; index>=0; index--) {
+            firstWalk(dirty.get(index));
+        }
+
+        root.prelim = root.mid;
+        root.mod = 0;
+
+        secondWalk(root, root.prelim+left-getLeftmost(root), top);
+
+        for(GElementNode node : dirty) {
+            node.layoutDirty = false;
+            node.layoutFrom = Integer.MAX_VALUE;
+        }
+
+        return getBounds(root, left, top);
+    }
+
+    /** Returns the dirty visible nodes, each node being before its children */
+    protected List<GElementNode> getDirtyNodes(GElementNode root) {
+        List<GElementNode> nodes = new ArrayList<GElementNode>();
+        if(!root.layoutDirty)
+            return nodes;
+
+        List<GElementNode> stack = new ArrayList<GElementNode>();
+        stack.add(root);
+        while(!stack.isEmpty()) {
+            GElementNode node = stack.remove(stack.size()-1);
+            nodes.add(node);
+            if(!node.hasVisibleChildren())
+                continue;
+
+            for(GElementNode child : node.children) {
+                if(child.layoutDirty)
+                    stack.add(child);
+            }
+        }
+        return nodes;
+    }
+
+    /** Places the children of the node relative to each other. The children
+     * subtrees have already been laid out.
+     */
+    protected void firstWalk(GElementNode v) {
+        if(!v.hasVisibleChildren()) {
+            v.mid = 0;
+            v.height = 0;
+            return;
+        }
+
+        List<GElementNode> children = v.children;
+        int from = Math.min(v.layoutFrom, children.size());
+
+        /** The children before the first changed one keep their place: only the
+         * shifts applied at the end of the previous layout are removed.
+         */
+        for(int index=0; index<from; index++) {
+            GElementNode w = children.get(index);
+            w.prelim -= w.executedShift;
+            w.mod -= w.executedShift;
+        }
+
+        Owner owners = from == 0?null:children.get(from-1).owners;
+        for(int index=from; index<children.size(); index++) {
+            GElementNode w = children.get(index);
+            GElementNode left = index == 0?null:children.get(index-1);
+            if(left == null)
+                w.prelim = w.mid;
+            else
+                w.prelim = left.prelim+distance(left, w);
+
+            /** The mod of a leaf is only used by its thread */
+            w.mod = w.hasVisibleChildren()?w.prelim-w.mid:0;
+
+            if(left != null)
+                apportion(v, w, left, owners);
+
+            /** The subtree of w hides the subtrees of its left siblings up to its height */
+            while(owners != null && w.height >= owners.depth) {
+                owners = owners.next;
+            }
+            owners = new Owner(w.height, index, owners);
+            w.owners = owners;
+        }
+
+        executeShifts(v);
+
+        int height = 0;
+        for(GElementNode w : children) {
+            height = Math.max(height, w.height);
+        }
+
+        v.mid = (children.get(0).prelim+children.get(children.size()-1).prelim)*0.5;
+        v.height = height+1;
+    }
+
+    /** Moves the subtree of w to the right until it does not overlap the subtrees
+     * of its left siblings. The threads and the moves are recorded in w so they
+     * can be undone when w is placed again.
+     */
+    protected void apportion(GElementNode v, GElementNode w, GElementNode left, Owner owners) {
+        GElementNode vip = w;
+        GElementNode vop = w;
+        GElementNode vim = left;
+        GElementNode vom = v.children.get(0);
+
+        double sip = vip.mod;
+        double sop = vop.mod;
+        double sim = vim.mod;
+        double som = vom.mod;
+
+        int depth = 0;
+        GElementNode nextRight = nextRight(vim);
+        GElementNode nextLeft = nextLeft(vip);
+        while(nextRight != null && nextLeft != null) {
+            vim = nextRight;
+            vip = nextLeft;
+            vom = nextLeft(vom);
+            vop = nextRight(vop);
+
+            depth++;
+            while(depth > owners.depth) {
+                owners = owners.next;
+            }
+
+            double shift = (vim.prelim+sim)-(vip.prelim+sip)+distance(vim, vip);
+            if(shift > 0) {
+                moveSubtree(v.children.get(owners.index), w, shift);
+                sip += shift;
+                sop += shift;
+            }
+
+            sim += vim.mod;
+            sip += vip.mod;
+            som += vom.mod;
+            sop += vop.mod;
+
+            nextRight = nextRight(vim);
+            nextLeft = nextLeft(vip);
+        }
+
+        if(nextRight != null && nextRight(vop) == null) {
+            vop.thread = nextRight;
+            vop.mod += sim-sop;
+            w.addThreadedLeaf(vop);
+        }
+
+        if(nextLeft != null && nextLeft(vom) == null) {
+            vom.thread = nextLeft;
+            vom.mod += sip-som;
+            w.addThreadedLeaf(vom);
+        }
+    }
+
+    protected void moveSubtree(GElementNode wm, GElementNode wp, double shift) {
+        wp.prelim += shift;
+        wp.mod += shift;
+        wp.addMove(wm.number, shift);
+    }
+
+    /** Spreads the moves of the children over the siblings between the moved
+     * subtrees, as recorded by moveSubtree().
+     */
+    protected void executeShifts(GElementNode v) {
+        List<GElementNode> children = v.children;
+        for(GElementNode w : children) {
+            w.shift = 0;
+            w.change = 0;
+        }
+
+        for(GElementNode wp : children) {
+            for(int index=0; index<wp.moveCount; index++) {
+                GElementNode wm = children.get(wp.moveFrom[index]);
+                double shift = wp.moveShift[index];
+                double subtrees = wp.number-wm.number;
+                wp.change -= shift/subtrees;
+                wp.shift += shift;
+                wm.change += shift/subtrees;
+            }
+        }
+
+        double shift = 0;
+        double change = 0;
+        for(int index=children.size()-1; index>=0; index--) {
+            GElementNode w = children.get(index);
+            w.prelim += shift;
+            w.mod += shift;
+            w.executedShift = shift;
+            change += w.change;
+            shift += w.shift+change;
+        }
+    }
+    protected GElementNode nextLeft(GElementNode v) {
+        return v.hasVisibleChildren()?v.children.get(0):v.thread;
+    }
+
+    protected GElementNode nextRight(GElementNode v) {
+        return v.hasVisibleChildren()?v.children.get(v.children.size()-1):v.thread;
+    }
+
+    /** Returns the minimum horizontal distance between the centers of two adjacent nodes */
+    protected double distance(GElementNode left, GElementNode right) {
+        return (left.getWidth()+right.getWidth())*0.5+horizontalGap;
+    }
+
+    /** Returns the left coordinate of the tree relative to its layout, by following
+     * its left contour.
+     */
+    protected double getLeftmost(GElementNode root) {
+        double leftmost = Double.MAX_VALUE;
+        double sum = 0;
+        for(GElementNode v = root; v != null; v = nextLeft(v)) {
+            leftmost = Math.min(leftmost, v.prelim+sum-v.getWidth()*0.5);
+            sum += v.mod;
+        }
+        return leftmost;
+    }
+
+    /** Sets the position of the dirty nodes and translates the clean subtrees
+     * whose root has moved.
+     */
+    protected void secondWalk(GElementNode root, double x, double top) {
+        List<GElementNode> stack = new ArrayList<GElementNode>();
+        if(root.layoutDirty) {
+            root.setPositionOfUpperLeftCorner(x-root.getWidth()*0.5, top);
+            stack.add(root);
+        } else {
+            translate(root, x-root.getPositionX());
+        }
+
+        while(!stack.isEmpty()) {
+            GElementNode v = stack.remove(stack.size()-1);
+            if(!v.hasVisibleChildren())
+                continue;
+
+            /** The children x are relative to the position of their parent */
+            double base = v.getPositionX()-v.prelim+v.mod;
+            double childTop = v.getBottom()+verticalGap;
+            for(GElementNode w : v.children) {
+                double childX = w.prelim+base;
+                if(w.layoutDirty) {
+                    w.setPositionOfUpperLeftCorner(childX-w.getWidth()*0.5, childTop);
+                    stack.add(w);
+                } else {
+                    translate(w, childX-w.getPositionX());
+                }
+            }
+        }
+    }
+
+    /** Moves horizontally the visible nodes of a subtree */
+    protected void translate(GElementNode node, double dx) {
+        if(Math.abs(dx) < EPSILON)
+            return;
+
+        List<GElementNode> stack = new ArrayList<GElementNode>();
+        stack.add(node);
+        while(!stack.isEmpty()) {
+            GElementNode v = stack.remove(stack.size()-1);
+            v.setPosition(v.getPositionX()+dx, v.getPositionY());
+            if(v.hasVisibleChildren())
+                stack.addAll(v.children);
+        }
+    }
+
+    /** Returns the bounds of the tree. The right contour of the tree contains
+     * the rightmost node of each level, including the deepest one.
+     */
+    protected Rect getBounds(GElementNode root, double left, double top) {
+        double right = left;
+        double bottom = top;
+        for(GElementNode v = root; v != null; v = nextRight(v)) {
+            Rect r = v.getExtent();
+            right = Math.max(right, r.r.x+r.r.width);
+            bottom = Math.max(bottom, r.r.y+r.r.height);
+        }
+        return new Rect(left, top, right-left, bottom-top);
+    }
+
+    /** Element of the list of the siblings owning the right contour of the left
+     * siblings: the sibling at index owns the contour down to depth (relative to the
+     * siblings), the next elements own the deeper parts of the contour.
+     */
+    public static class Owner {
+
+        public final int depth;
+        public final int index;
+        public final Owner next;
+
+        public Owner(int depth, int index, Owner next) {
+            this.depth = depth;
+            this.index = index;
+            this.next = next;
+        }
+    }
+
+}
@@ -306,6 +306,10 @@ public class AWTreePanel extends JPanel {
                     delegate.awTreeDidSelectTreeNode(node, shiftKey);
 
                 selectNode(node);
+
+                /** Double-click collapses or expands the subtree of the node */
+                if(e.getClickCount() == 2)
+                    treeGraphView.toggleNodeCollapsed(node);
             }
 
             origin = SwingUtilities.convertPoint(treeGraphView, e.getPoint(), null);
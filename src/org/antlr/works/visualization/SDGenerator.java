@@ -1,6 +1,8 @@
 package org.antlr.works.visualization;
 
+import org.antlr.tool.Grammar;
 import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngine;
 import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
 import org.antlr.works.prefs.AWPrefs;
@@ -51,6 +53,11 @@ public class SDGenerator implements GContextProvider {
     public GrammarEngine engine;
     public GContext context;
 
+    /** Grammars created once by createGrammars() or null to get them from the engine */
+    private Grammar parserGrammar;
+    private Grammar lexerGrammar;
+    private boolean grammarsCreated;
+
     public SDGenerator(GrammarEngine engine) {
         this.engine = engine;
 
@@ -59,6 +66,28 @@ public class SDGenerator implements GContextProvider {
         context.setProvider(this);
     }
 
+    /** Creates a generator rendering the same grammars as the specified generator
+     * but with its own context, so both can be used by different threads.
+     */
+    public SDGenerator(SDGenerator generator) {
+        this(generator.engine);
+        this.parserGrammar = generator.parserGrammar;
+        this.lexerGrammar = generator.lexerGrammar;
+        this.grammarsCreated = generator.grammarsCreated;
+    }
+
+    /** Creates the ANTLR grammars once and renders all the rules from them. The ANTLR engine
+     * creates its grammars again on each access when they have errors or warnings: this
+     * method must be called before sharing the engine between several generators.
+     */
+    public void createGrammars() throws Exception {
+        ANTLRGrammarEngine antlrEngine = engine.getANTLRGrammarEngine();
+        antlrEngine.createGrammars();
+        parserGrammar = antlrEngine.getParserGrammar();
+        lexerGrammar = antlrEngine.getLexerGrammar();
+        grammarsCreated = true;
+    }
+
     public void serializeRule(String name, SEncoder encoder) throws Exception {
         GGraph graph = createGraph(name);
         encoder.write(graph);
@@ -96,7 +125,15 @@ public class SDGenerator implements GContextProvider {
     }
 
     private GGraph createGraph(String ruleName) throws Exception {
-        GGraph graph = new GFactory().buildGraphsForRule(engine.getANTLRGrammarEngine(), ruleName);
+        GGraph graph;
+        if(grammarsCreated) {
+            Grammar g = ATEToken.isLexerName(ruleName) ? lexerGrammar : parserGrammar;
+            graph = new GFactory().buildGraphsForRule(g, ruleName);
+        } else {
+            graph = new GFactory().buildGraphsForRule(engine.getANTLRGrammarEngine(), ruleName);
+        }
+        if(graph == null)
+            throw new Exception("Cannot find the start state of rule \""+ruleName+"\"");
         graph.setContext(context);
         graph.render(0,0);
         return graph;
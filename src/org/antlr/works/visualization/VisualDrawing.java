@@ -33,16 +33,25 @@ package org.antlr.works.visualization;
 
 import org.antlr.analysis.NFAState;
 import org.antlr.works.ate.syntax.misc.ATEThread;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.antlr.GrammarError;
+import org.antlr.works.grammar.element.ElementReference;
 import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.engine.GrammarEngine;
 import org.antlr.works.prefs.AWPrefs;
 import org.antlr.works.utils.Console;
 import org.antlr.works.utils.ErrorListener;
 import org.antlr.works.visualization.graphics.GFactory;
 
 import javax.swing.*;
-import java.util.HashMap;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class VisualDrawing extends ATEThread {
 
@@ -57,7 +66,23 @@ public class VisualDrawing extends ATEThread {
     protected ElementRule threadRule;
     protected ElementRule threadLastProcessedRule;
 
-    protected Map<ElementRule,List> cacheGraphs = new HashMap<ElementRule, List>();
+    /** Maximum number of rules whose graphs are kept in memory */
+    public static final int MAX_CACHED_RULES = 64;
+
+    /** Graphs of the most recently displayed rules, keyed by the content of the rule
+     * (see computeKey()) so they survive the re-parsing of the text.
+     */
+    protected Map<String,List<?>> cacheGraphs = new LinkedHashMap<String, List<?>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<?>> eldest) {
+            return size() > MAX_CACHED_RULES;
+        }
+    };
+
+    protected int cacheHits;
+    protected int cacheMisses;
 
     public VisualDrawing(SyntaxDiagramTab syntaxDiagramTab) {
         this.syntaxDiagramTab = syntaxDiagramTab;
@@ -71,8 +96,8 @@ public class VisualDrawing extends ATEThread {
     }
 
     public void toggleNFAOptimization() {
+        // The optimize flag is part of the key of the cache: no need to flush it
         factory.toggleNFAOptimization();
-        clearCacheGraphs();
     }
 
     public synchronized void setText(String text) {
@@ -89,11 +114,22 @@ public class VisualDrawing extends ATEThread {
         cacheGraphs.clear();
     }
 
+    public synchronized int getCacheHits() {
+        return cacheHits;
+    }
+
+    public synchronized int getCacheMisses() {
+        return cacheMisses;
+    }
+
     /**
      * Tries to refresh the current graph in cache. If the graphs are not in cache, return false.
      */
     public synchronized boolean refresh() {
-        final List graphs = cacheGraphs.get(threadLastProcessedRule);
+        if(threadLastProcessedRule == null)
+            return false;
+
+        final List<?> graphs = cacheGraphs.get(computeKey(threadLastProcessedRule, factory.isOptimize()));
         if(graphs == null || graphs.isEmpty()) {
             return false;
         } else {
@@ -111,7 +147,7 @@ public class VisualDrawing extends ATEThread {
         }
     }
 
-    private void refreshVisualPanel(List graphs) {
+    private void refreshVisualPanel(List<?> graphs) {
         syntaxDiagramTab.panel.setRule(threadLastProcessedRule);
         syntaxDiagramTab.panel.setGraphs(graphs);
         syntaxDiagramTab.panel.update();
@@ -129,19 +165,27 @@ public class VisualDrawing extends ATEThread {
         rule = null;
     }
 
+    private synchronized boolean postponeRule() {
+        if(text == null)
+            return false;
+
+        if(rule == null)
+            rule = threadRule;
+        return true;
+    }
+
     private void threadProcessText() {
         if(threadText == null)
             return;
 
         ErrorListener.getThreadInstance().setPrintToConsole(false);
 
+        // The graphs in cache are not flushed: a rule whose content (or the content of the rules
+        // it references) has changed gets a new key and is rebuilt the next time it is displayed.
         try {
             syntaxDiagramTab.getEngineGrammar().createGrammars();
         } catch (Exception e) {
             // ignore
-        } finally {
-            // Flush all caches in cache because the grammar has changed
-            clearCacheGraphs();
         }
     }
 
@@ -183,16 +227,89 @@ public class VisualDrawing extends ATEThread {
     }
 
     protected synchronized void createGraphsForRule(ElementRule rule) throws Exception {
-        List graphs = cacheGraphs.get(rule);
+        factory.setOptimize(!AWPrefs.getDebugDontOptimizeNFA());
+        String key = computeKey(rule, factory.isOptimize());
+        List<?> graphs = cacheGraphs.get(key);
         if(graphs == null) {
-            factory.setOptimize(!AWPrefs.getDebugDontOptimizeNFA());
+            cacheMisses++;
             factory.setConsole(syntaxDiagramTab.getConsole());
             graphs = factory.buildGraphsForRule(syntaxDiagramTab.getEngineGrammar(), rule.name, rule.errors);
             if(graphs != null)
-                cacheGraphs.put(rule, graphs);
+                cacheGraphs.put(key, graphs);
+        } else {
+            cacheHits++;
         }
     }
 
+    /** Returns the key of the graphs of a rule: the name of the rule followed by a digest
+     * of its tokens, of its errors, of the optimize flag and of the tokens of the rules
+     * it references.
+     */
+    public static String computeKey(ElementRule rule, boolean optimize) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            update(digest, String.valueOf(optimize));
+            GrammarEngine engine = rule.getEngine();
+            if(engine != null) {
+                update(digest, String.valueOf(engine.getType()));
+            }
+            updateTokens(digest, rule);
+
+            if(rule.errors != null) {
+                for(GrammarError error : rule.errors) {
+                    update(digest, error.line+":"+error.messageText);
+                }
+            }
+
+            List<ElementReference> refs = rule.getReferences();
+            if(refs != null) {
+                Set<String> names = new HashSet<String>();
+                for(ElementReference ref : refs) {
+                    String name = ref.getName();
+                    if(!names.add(name)) continue;
+
+                    update(digest, name);
+                    ElementRule r = engine == null ? null : engine.getRuleWithName(name);
+                    if(r == null || r == rule) {
+                        update(digest, r == null ? "?" : "=");
+                    } else {
+                        updateTokens(digest, r);
+                    }
+                }
+            }
+
+            StringBuilder sb = new StringBuilder(rule.name);
+            sb.append('@');
+            for(byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // The rule object itself is the only key left
+            return rule.name+"@"+System.identityHashCode(rule);
+        }
+    }
+
+    private static void updateTokens(MessageDigest digest, ElementRule rule) {
+        if(rule.start == null || rule.end == null) {
+            update(digest, rule.name);
+            return;
+        }
+        for(ATEToken token : rule.getTokens()) {
+            update(digest, token.type+" "+token.getAttribute());
+        }
+        update(digest, ";");
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        try {
+            digest.update(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            digest.update(s.getBytes());
+        }
+        digest.update((byte)0);
+    }
+
     public void threadReportException(Exception e) {
         syntaxDiagramTab.getConsole().println(e);
     }
@@ -206,6 +323,11 @@ public class VisualDrawing extends ATEThread {
             // Process any text
             threadProcessText();
 
+            // If a newer text is already pending, the graphs would be built from a
+            // grammar that is going to be replaced: postpone the rule to the next run
+            if(cancel() && postponeRule())
+                return;
+
             // Process any rule
             threadProcessRule();
         }
@@ -41,20 +41,20 @@ import java.util.Stack;
 
 public class GContext {
 
-    public static final String EPSILON_WIDTH = "w";
-    public static final String EPSILON_UP = "u";
-    public static final String EPSILON_DOWN = "d";
+    public static final GLiteral EPSILON_WIDTH = GLiteral.symbol("w");
+    public static final GLiteral EPSILON_UP = GLiteral.symbol("u");
+    public static final GLiteral EPSILON_DOWN = GLiteral.symbol("d");
 
-    public static final String BOX_WIDTH = "W";
-    public static final String BOX_UP = "U";
-    public static final String BOX_DOWN = "D";
+    public static final GLiteral BOX_WIDTH = GLiteral.symbol("W");
+    public static final GLiteral BOX_UP = GLiteral.symbol("U");
+    public static final GLiteral BOX_DOWN = GLiteral.symbol("D");
 
-    public static final String NODE_WIDTH = "m";
-    public static final String NODE_UP = "y";
-    public static final String NODE_DOWN = "z";
+    public static final GLiteral NODE_WIDTH = GLiteral.symbol("m");
+    public static final GLiteral NODE_UP = GLiteral.symbol("y");
+    public static final GLiteral NODE_DOWN = GLiteral.symbol("z");
 
-    public static final String CHAR_WIDTH = "c";
-    public static final String LINE_SPACE = "L";
+    public static final GLiteral CHAR_WIDTH = GLiteral.symbol("c");
+    public static final GLiteral LINE_SPACE = GLiteral.symbol("L");
 
     public static final int ALIGN_CENTER = 0;
     public static final int ALIGN_CENTER_UP = 1;
@@ -197,27 +197,19 @@ public class GContext {
         return titleFont;
     }
 
-    public static String getStringWidth(String label) {
-        StringBuilder w = new StringBuilder();
-        for(int i=0; i<label.length(); i++) {
-            w.append(CHAR_WIDTH);
-        }
-        return GLiteral.max(w.toString(), GContext.BOX_WIDTH);
+    public static GLiteral getStringWidth(String label) {
+        return GLiteral.max(GLiteral.repeat(CHAR_WIDTH, label.length()), GContext.BOX_WIDTH);
     }
 
-    public static String getBoxWidth(String label) {
-        StringBuilder w = new StringBuilder();
-        for(int i=0; i<label.length()+2; i++) {
-            w.append(CHAR_WIDTH);
-        }
-        return GLiteral.max(w.toString(), GContext.BOX_WIDTH);
+    public static GLiteral getBoxWidth(String label) {
+        return GLiteral.max(GLiteral.repeat(CHAR_WIDTH, label.length()+2), GContext.BOX_WIDTH);
     }
 
-    public float getPixelValue(String s) {
-        if(s == null || s.length() == 0)
+    public float getPixelValue(GLiteral l) {
+        if(GLiteral.isZero(l))
             return 0;
 
-        return GLiteral.evaluate(s, skin.getValuesMap())*value_factor;
+        return l.evaluate(skin.getValuesMap())*value_factor;
     }
 
     public void setColor(Color color) {
@@ -58,6 +58,10 @@ public class GFactory {
         this.optimize = flag;
     }
 
+    public boolean isOptimize() {
+        return optimize;
+    }
+
     public void toggleNFAOptimization() {
         optimize = !optimize;
     }
@@ -77,11 +81,18 @@ public class GFactory {
     }
 
     public GGraph buildGraphsForRule(ANTLRGrammarEngine antlrEngineGrammar, String rule) throws Exception {
-        NFAState startState = antlrEngineGrammar.getRuleStartState(rule);
+        return buildGraphsForRule(antlrEngineGrammar.getGrammarForRule(rule), rule);
+    }
+
+    /** Builds the graph of a rule from an already created grammar: the grammar is only read,
+     * so several factories can build the graphs of the same grammar concurrently.
+     */
+    public GGraph buildGraphsForRule(Grammar grammar, String rule) {
+        NFAState startState = grammar == null ? null : grammar.getRuleStartState(rule);
         if(startState == null)
             return null;
 
-        FAState state = new FAFactory(antlrEngineGrammar.getGrammarForRule(rule)).buildNFA(startState, optimize);
+        FAState state = new FAFactory(grammar).buildNFA(startState, optimize);
         GGraph graph = renderer.render(state);
         graph.setName(rule);
 
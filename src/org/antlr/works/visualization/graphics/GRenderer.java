@@ -36,6 +36,7 @@ import org.antlr.works.visualization.fa.FAState;
 import org.antlr.works.visualization.fa.FATransition;
 import org.antlr.works.visualization.graphics.graph.GGraph;
 import org.antlr.works.visualization.graphics.primitive.GDimension;
+import org.antlr.works.visualization.graphics.primitive.GLiteral;
 import org.antlr.works.visualization.graphics.primitive.GPoint;
 import org.antlr.works.visualization.graphics.shape.GLink;
 import org.antlr.works.visualization.graphics.shape.GNode;
@@ -93,9 +94,9 @@ public class GRenderer {
 
             if(state != null && state.isAlternative()) {
                 state = recursiveRenderPositionAlternative(state, basePoint);
-                basePoint.addX(node.nodeDimension.width+node.linkDimension.width);
+                basePoint.addX(GLiteral.add(node.nodeDimension.width, node.linkDimension.width));
             } else if(state != null && state.isSingle()) {
-                basePoint.addX(node.nodeDimension.width+node.linkDimension.width);
+                basePoint.addX(GLiteral.add(node.nodeDimension.width, node.linkDimension.width));
                 state = state.getNextFirstState();
             } else {
                 state = null;
@@ -108,7 +109,7 @@ public class GRenderer {
 
         // This point is used to position each transition
         GPoint point = new GPoint(basePoint);
-        point.addX(GContext.NODE_WIDTH+GContext.EPSILON_WIDTH);
+        point.addX(GLiteral.add(GContext.NODE_WIDTH, GContext.EPSILON_WIDTH));
 
         GDimension firstAlternativeDimension = null;
 
@@ -171,7 +172,7 @@ public class GRenderer {
         while(state != endState && state != null) {
             if(state.isAlternative()) {
                 GDimension altDim = recursiveRenderSizeAlternative(state);
-                dimension.addWidth(GContext.NODE_WIDTH+altDim.width);
+                dimension.addWidth(GLiteral.add(GContext.NODE_WIDTH, altDim.width));
                 dimension.maxUp(altDim.up);
                 dimension.maxDown(altDim.down);
                 state = alternativeEndState(state);
@@ -191,7 +192,7 @@ public class GRenderer {
                     n1.linkDimension.down = GContext.BOX_DOWN;
                 }
 
-                dimension.addWidth(GContext.NODE_WIDTH+n1.linkDimension.width);
+                dimension.addWidth(GLiteral.add(GContext.NODE_WIDTH, n1.linkDimension.width));
                 dimension.maxUp(n1.linkDimension.up);
                 dimension.maxDown(n1.linkDimension.down);
 
@@ -258,7 +259,7 @@ public class GRenderer {
 
                 if(transition.loop) {
                     link.setBranchDimension(transitionDimension);
-                    dimension.maxUp(firstTransitionDimension.up+transitionDimension.up+transitionDimension.down);
+                    dimension.maxUp(GLiteral.add(GLiteral.add(firstTransitionDimension.up, transitionDimension.up), transitionDimension.down));
                 } else {
                     link.setBranchDimension(transitionDimension);
                     if(t == 0) {
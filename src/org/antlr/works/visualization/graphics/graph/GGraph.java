@@ -34,6 +34,7 @@ package org.antlr.works.visualization.graphics.graph;
 import org.antlr.analysis.NFAState;
 import org.antlr.works.visualization.graphics.GContext;
 import org.antlr.works.visualization.graphics.primitive.GDimension;
+import org.antlr.works.visualization.graphics.primitive.GLiteral;
 import org.antlr.works.visualization.graphics.shape.GLink;
 import org.antlr.works.visualization.graphics.shape.GNode;
 import org.antlr.works.visualization.serializable.SEncoder;
@@ -48,7 +49,7 @@ public class GGraph extends GGraphAbstract implements SSerializable {
     public List<GNode> nodes;
 
     public String name;
-    public String nameWidth;
+    public GLiteral nameWidth;
 
     public float offsetX = 0;
     public float offsetY = 0;
@@ -37,9 +37,9 @@ import org.antlr.works.visualization.serializable.SSerializable;
 
 public class GDimension implements SSerializable {
 
-    public String width = "";
-    public String up = "";
-    public String down = "";
+    public GLiteral width = GLiteral.ZERO;
+    public GLiteral up = GLiteral.ZERO;
+    public GLiteral down = GLiteral.ZERO;
 
     private float cacheWidth = Float.MIN_VALUE;
     private float cacheUp = Float.MIN_VALUE;
@@ -54,33 +54,33 @@ public class GDimension implements SSerializable {
         this.down = dimension.down;
     }
 
-    public GDimension(String width, String up, String down) {
+    public GDimension(GLiteral width, GLiteral up, GLiteral down) {
         this.width = width;
         this.up = up;
         this.down = down;
     }
 
-    public void addWidth(String width) {
+    public void addWidth(GLiteral width) {
         this.width = GLiteral.add(this.width, width);
     }
 
-    public void addUp(String up) {
+    public void addUp(GLiteral up) {
         this.up = GLiteral.add(this.up, up);
     }
 
-    public void addDown(String down) {
+    public void addDown(GLiteral down) {
         this.down = GLiteral.add(this.down, down);
     }
 
-    public void maxWidth(String width) {
+    public void maxWidth(GLiteral width) {
         this.width = GLiteral.max(this.width, width);
     }
 
-    public void maxUp(String height) {
+    public void maxUp(GLiteral height) {
         this.up = GLiteral.max(this.up, height);
     }
 
-    public void maxDown(String height) {
+    public void maxDown(GLiteral height) {
         this.down = GLiteral.max(this.down, height);
     }
 
@@ -120,9 +120,9 @@ public class GDimension implements SSerializable {
     }
 
     public void encode(SEncoder encoder) {
-        encoder.write(width);
-        encoder.write(up);
-        encoder.write(down);
+        encoder.write(width.toString());
+        encoder.write(up.toString());
+        encoder.write(down.toString());
     }
 
 }
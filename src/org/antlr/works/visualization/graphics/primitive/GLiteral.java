@@ -31,12 +31,18 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.works.visualization.graphics.primitive;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /** This class is used to manipulate literal value in position/dimension.
  * Very useful in order to quickly redraw a graph without having to walk recursively
  * the NFA (this allows to remove the associated NFA and to be more independant of it)
  *
+ * A literal is an immutable expression of the skin values (symbols): the operations
+ * return a new literal that references its operands, so the positions and dimensions
+ * of a graph share their sub-expressions. Each literal caches its value for the skin
+ * values it has been evaluated with.
  */
 
 public class GLiteral {
@@ -46,105 +52,197 @@ public class GLiteral {
     public static final String OP_LPAREN = "(";
     public static final String OP_RPAREN = ")";
     public static final String OP_COMA = ",";
-    public static final String OP_NULL = "!";
 
-    public static String substract(String a, String b) {
-        return a+OP_SUB+OP_LPAREN+b+OP_RPAREN;
+    private static final int ZERO_LITERAL = 0;
+    private static final int SYMBOL_LITERAL = 1;
+    private static final int REPEAT_LITERAL = 2;
+    private static final int ADD_LITERAL = 3;
+    private static final int SUB_LITERAL = 4;
+    private static final int MAX_LITERAL = 5;
+
+    public static final GLiteral ZERO = new GLiteral(ZERO_LITERAL, null, null, null, 0);
+
+    private final int type;
+    private final String name;
+    private final GLiteral a;
+    private final GLiteral b;
+    private final int count;
+
+    private Value cache;
+
+    private GLiteral(int type, String name, GLiteral a, GLiteral b, int count) {
+        this.type = type;
+        this.name = name;
+        this.a = a;
+        this.b = b;
+        this.count = count;
     }
 
-    public static String add(String a, String b) {
-        return a+b;
+    /** Returns the literal of the skin value with the specified name */
+    public static GLiteral symbol(String name) {
+        return new GLiteral(SYMBOL_LITERAL, name, null, null, 0);
     }
 
-    public static String max(String a, String b) {
-        boolean anull = a == null || a.length() == 0;
-        boolean bnull = b == null || b.length() == 0;
+    /** Returns count times the specified literal */
+    public static GLiteral repeat(GLiteral a, int count) {
+        if(isZero(a) || count == 0)
+            return ZERO;
+        if(count == 1)
+            return a;
+        return new GLiteral(REPEAT_LITERAL, null, a, null, count);
+    }
+
+    public static GLiteral substract(GLiteral a, GLiteral b) {
+        return new GLiteral(SUB_LITERAL, null, a == null?ZERO:a, b == null?ZERO:b, 0);
+    }
+
+    public static GLiteral add(GLiteral a, GLiteral b) {
+        if(isZero(a))
+            return b == null?ZERO:b;
+        else if(isZero(b))
+            return a;
+        else
+            return new GLiteral(ADD_LITERAL, null, a, b, 0);
+    }
+
+    public static GLiteral max(GLiteral a, GLiteral b) {
+        boolean anull = isZero(a);
+        boolean bnull = isZero(b);
         if(anull && bnull)
-            return "";
+            return ZERO;
         else if(anull)
             return b;
         else if(bnull)
             return a;
         else
-            return OP_MAX+OP_LPAREN+a+OP_COMA+b+OP_RPAREN;
+            return new GLiteral(MAX_LITERAL, null, a, b, 0);
     }
 
-    public static float evaluate(String s, Map<String,Float> values) {
-        if(s == null)
-            return 0;
-
-        return new Evaluator(s, values).evaluate();
+    public static boolean isZero(GLiteral l) {
+        return l == null || l.type == ZERO_LITERAL;
     }
 
-    private static class Evaluator {
-
-        public String s;
-        public Map<String,Float> values;
-        public int position;
+    public String getName() {
+        return name;
+    }
 
-        public Evaluator(String s, Map<String,Float> values) {
-            this.s = s;
-            this.values = values;
+    public float evaluate(Map<String,Float> values) {
+        Value c = cache;
+        if(c != null && c.values == values)
+            return c.value;
+
+        float value = 0;
+        switch(type) {
+            case ZERO_LITERAL:
+                return 0;
+
+            case SYMBOL_LITERAL: {
+                Float v = values.get(name);
+                if(v == null)
+                    System.err.println("** Evaluator: unexpected token \""+name+"\"");
+                else
+                    value = v;
+                break;
+            }
+
+            case REPEAT_LITERAL:
+                value = count*a.evaluate(values);
+                break;
+
+            case ADD_LITERAL:
+                value = evaluateSum(values);
+                break;
+
+            case SUB_LITERAL:
+                value = a.evaluate(values)-b.evaluate(values);
+                break;
+
+            case MAX_LITERAL:
+                value = Math.max(a.evaluate(values), b.evaluate(values));
+                break;
         }
+        cache = new Value(values, value);
+        return value;
+    }
 
-        public float evaluate() {
-            position = 0;
-            return eval();
+    /** The sums are built by appending to a dimension or a position: walk the
+     * left operands iteratively and stop at the first one already evaluated.
+     */
+    private float evaluateSum(Map<String,Float> values) {
+        float value = 0;
+        GLiteral l = this;
+        while(l.type == ADD_LITERAL) {
+            Value c = l.cache;
+            if(l != this && c != null && c.values == values)
+                return value+c.value;
+
+            value += l.b.evaluate(values);
+            l = l.a;
         }
+        return value+l.evaluate(values);
+    }
 
-        private float eval() {
-            float _value = 0;
-
-            do {
-                Float v = values.get(c());
-                if(v != null) {
-                    _value += v;
-                } else {
-                    if(c().equals(OP_SUB))
-                        _value -= evaluate_sub();
-                    else if(c().equals(OP_MAX))
-                        _value += evaluate_max();
-                    else if(c().equals(OP_RPAREN))
-                        break;
-                    else if(c().equals(OP_COMA))
-                        break;
-                    else
-                        System.err.println("** Evaluator: unexpected token \""+c()+"\"");
-                }
-            } while(nextChar());
-
-            return _value;
-        }
+    /** Returns the literal using the textual notation (i.e. "m#(cc,W)w-(u)") */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        append(sb);
+        return sb.toString();
+    }
 
-        private float evaluate_sub() {
-            match(OP_SUB);
-            match(OP_LPAREN);
-            return eval();
-        }
+    private void append(StringBuilder sb) {
+        switch(type) {
+            case SYMBOL_LITERAL:
+                sb.append(name);
+                break;
 
-        private float evaluate_max() {
-            match(OP_MAX);
-            match(OP_LPAREN);
-            float a = eval();
-            match(OP_COMA);
-            float b = eval();
-            return Math.max(a,b);
+            case REPEAT_LITERAL:
+                for(int i=0; i<count; i++) {
+                    a.append(sb);
+                }
+                break;
+
+            case ADD_LITERAL: {
+                List<GLiteral> terms = new ArrayList<GLiteral>();
+                GLiteral l = this;
+                while(l.type == ADD_LITERAL) {
+                    terms.add(l.b);
+                    l = l.a;
+                }
+                l.append(sb);
+                for(int i=terms.size()-1; i>=0; i--) {
+                    terms.get(i).append(sb);
+                }
+                break;
+            }
+
+            case SUB_LITERAL:
+                a.append(sb);
+                sb.append(OP_SUB).append(OP_LPAREN);
+                b.append(sb);
+                sb.append(OP_RPAREN);
+                break;
+
+            case MAX_LITERAL:
+                sb.append(OP_MAX).append(OP_LPAREN);
+                a.append(sb);
+                sb.append(OP_COMA);
+                b.append(sb);
+                sb.append(OP_RPAREN);
+                break;
         }
+    }
 
-        private boolean nextChar() {
-            position++;
-            return position<s.length();
-        }
+    /** The value is replaced as a whole so the literals of a graph can be evaluated
+     * by several threads.
+     */
+    private static class Value {
 
-        private void match(String token) {
-            if(c().equals(token))
-                nextChar();
-            else
-                System.err.println("** Evaluator: unexpected token \""+c()+"\"");
-        }
+        public final Map<String,Float> values;
+        public final float value;
 
-        private String c() {
-            return s.substring(position, position+1);
+        public Value(Map<String,Float> values, float value) {
+            this.values = values;
+            this.value = value;
         }
     }
 }
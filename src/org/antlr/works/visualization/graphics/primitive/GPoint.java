@@ -35,8 +35,8 @@ import org.antlr.works.visualization.graphics.GContext;
 
 public class GPoint {
 
-    public String x = "";
-    public String y = "";
+    public GLiteral x = GLiteral.ZERO;
+    public GLiteral y = GLiteral.ZERO;
 
     private float cacheX = Float.MIN_VALUE;
     private float cacheY = Float.MIN_VALUE;
@@ -50,15 +50,15 @@ public class GPoint {
         this.y = point.y;
     }
 
-    public void addX(String x) {
+    public void addX(GLiteral x) {
         this.x = GLiteral.add(this.x, x);
     }
 
-    public void addY(String y) {
+    public void addY(GLiteral y) {
         this.y = GLiteral.add(this.y, y);
     }
 
-    public void subY(String y) {
+    public void subY(GLiteral y) {
         this.y = GLiteral.substract(this.y, y);
     }
 
@@ -154,7 +154,7 @@ public class GNode extends GObject implements SSerializable {
 
     private void cacheGlobalDimension(GContext context) {
         globalDimension = new GDimension();
-        globalDimension.addWidth(nodeDimension.width+linkDimension.width);
+        globalDimension.addWidth(GLiteral.add(nodeDimension.width, linkDimension.width));
         globalDimension.addUp(GLiteral.max(nodeDimension.up, linkDimension.up));
         globalDimension.addDown(GLiteral.max(nodeDimension.down, linkDimension.down));
         globalDimension.cache(context);
@@ -66,20 +66,20 @@ public abstract class Skin {
         if(values == null) {
             values = new HashMap<String, Float>();
 
-            values.put(GContext.EPSILON_WIDTH, value_epsilon_width);
-            values.put(GContext.EPSILON_UP, value_epsilon_up);
-            values.put(GContext.EPSILON_DOWN, value_epsilon_down);
+            values.put(GContext.EPSILON_WIDTH.getName(), value_epsilon_width);
+            values.put(GContext.EPSILON_UP.getName(), value_epsilon_up);
+            values.put(GContext.EPSILON_DOWN.getName(), value_epsilon_down);
 
-            values.put(GContext.BOX_WIDTH, value_box_width);
-            values.put(GContext.BOX_UP, value_box_up);
-            values.put(GContext.BOX_DOWN, value_box_down);
+            values.put(GContext.BOX_WIDTH.getName(), value_box_width);
+            values.put(GContext.BOX_UP.getName(), value_box_up);
+            values.put(GContext.BOX_DOWN.getName(), value_box_down);
 
-            values.put(GContext.NODE_WIDTH, value_node_width);
-            values.put(GContext.NODE_UP, value_node_up);
-            values.put(GContext.NODE_DOWN, value_node_down);
+            values.put(GContext.NODE_WIDTH.getName(), value_node_width);
+            values.put(GContext.NODE_UP.getName(), value_node_up);
+            values.put(GContext.NODE_DOWN.getName(), value_node_down);
 
-            values.put(GContext.CHAR_WIDTH, value_char_width);
-            values.put(GContext.LINE_SPACE, value_line_space);
+            values.put(GContext.CHAR_WIDTH.getName(), value_char_width);
+            values.put(GContext.LINE_SPACE.getName(), value_line_space);
         }
         return values;
     }
@@ -41,6 +41,7 @@ import org.antlr.xjlib.appkit.gview.timer.GTimer;
 import org.antlr.xjlib.appkit.gview.timer.GTimerDelegate;
 import org.antlr.xjlib.appkit.gview.utils.GAlphaVariator;
 import org.antlr.xjlib.appkit.gview.utils.GMagnetic;
+import org.antlr.xjlib.appkit.gview.utils.GSpatialIndex;
 import org.antlr.xjlib.appkit.menu.XJMenu;
 import org.antlr.xjlib.appkit.menu.XJMenuItem;
 import org.antlr.xjlib.appkit.menu.XJMenuItemDelegate;
@@ -52,6 +53,7 @@ import javax.swing.event.PopupMenuListener;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.image.*;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -64,6 +66,7 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
     protected GEventManager eventManager = new GEventManager(this);
 
     protected GElement rootElement = null;
+    protected GSpatialIndex spatialIndex = new GSpatialIndex();
 
     protected Point lastMousePosition = null;
     protected boolean smoothGraphics = true;
@@ -113,6 +116,7 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
 
     public void setRootElement(GElement element) {
         this.rootElement = element;
+        spatialIndex.setRootElement(element);
         if(rootElement != null) {
             this.rootElement.setPanel(this);
             autoAdjustSize();
@@ -210,7 +214,7 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
         if(rootElement == null || !autoAdjustSize)
             return;
 
-        Rect bounds = rootElement.bounds();
+        Rect bounds = getContentBounds();
         setRealSize((int) ((bounds.r.x+bounds.r.width)*zoom),
                 (int) ((bounds.r.y+bounds.r.height)*zoom));
 
@@ -218,6 +222,13 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
             delegate.viewSizeDidChange();
     }
 
+    /** Returns the bounds of all the elements. Subclasses that know the bounds
+     * of their elements can override this method to avoid visiting every element.
+     */
+    public Rect getContentBounds() {
+        return rootElement.bounds();
+    }
+
     public void centerAll() {
         if(rootElement == null)
             return;
@@ -393,11 +404,33 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
 
         drawMagnetics(g2d);
         if(rootElement != null)
-            rootElement.drawRecursive(g2d);
+            drawElements(g2d);
 
         eventManager.performEventObjects(GEventManager.EVENT_DRAW, null, null, g);
     }
 
+    /** Draws only the elements visible in the clip of the graphics */
+    public void drawElements(Graphics2D g2d) {
+        Rectangle clip = g2d.getClipBounds();
+        if(clip == null) {
+            rootElement.drawRecursive(g2d);
+        } else {
+            for(GElement element : spatialIndex.getElementsInRect(clip)) {
+                element.drawElement(g2d);
+            }
+        }
+    }
+
+    /** Called by an element when its position or its size has changed */
+    public void elementDidChange(GElement element) {
+        spatialIndex.elementDidChange(element);
+    }
+
+    /** Called by an element when children have been added or removed */
+    public void elementsDidChange() {
+        spatialIndex.invalidate();
+    }
+
     public void addMenuItem(JPopupMenu menu, String title, int tag, Object object) {
         XJMenuItem item = new XJMenuItem();
         item.setTitle(title);
@@ -422,7 +455,7 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
 
     public GElement getElementAtPoint(Point p) {
         if(rootElement != null)
-            return rootElement.match(p);
+            return spatialIndex.match(p);
         else
             return null;
     }
@@ -439,13 +472,17 @@ public class GView extends XJView implements XJMenuItemDelegate, GTimerDelegate,
         if(rootElement == null || rootElement.getElements() == null)
             return;
 
-        for (GElement element : rootElement.getElements()) {
-            boolean selected = Rect.intersect(rectangle, element.bounds());
-            element.setSelected(selected);
-            if (selected)
-                addSelectedElement(element);
-            else
+        // Only the elements inside the rectangle and the elements currently selected can change
+        Set<GElement> selected = spatialIndex.getRootElementsInRect(rectangle.rectangle());
+        for (GElement element : new ArrayList<GElement>(selectionTimer.getElements())) {
+            if (!selected.contains(element) && spatialIndex.isRootChild(element)) {
+                element.setSelected(false);
                 removeSelectedElement(element);
+            }
+        }
+        for (GElement element : selected) {
+            element.setSelected(true);
+            addSelectedElement(element);
         }
     }
 
@@ -85,6 +85,22 @@ public class Path2D {
         return false;
     }
 
+    /** Returns the rectangle containing all the points or null if the path is empty */
+    public Rect getBounds() {
+        if(points.isEmpty())
+            return null;
+
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for(Vector2D v : points) {
+            x0 = Math.min(x0, v.getX());
+            y0 = Math.min(y0, v.getY());
+            x1 = Math.max(x1, v.getX());
+            y1 = Math.max(y1, v.getY());
+        }
+        return new Rect(x0, y0, x1-x0, y1-y0);
+    }
+
     public Vector2D getEndDirection() {
         if(points.size()<2)
             return null;
@@ -91,6 +91,8 @@ public abstract class GElement implements XJXMLSerializable {
 
     public void setLabel(String label) {
         this.label = label;
+        if(view != null)
+            view.elementDidChange(this);
     }
 
     public String getLabel() {
@@ -146,6 +148,7 @@ public abstract class GElement implements XJXMLSerializable {
 
     public void setElements(List<GElement> elements) {
         this.elements = elements;
+        elementsDidChange();
     }
 
     public List<GElement> getElements() {
@@ -157,12 +160,14 @@ public abstract class GElement implements XJXMLSerializable {
         synchronized(lock) {
             elements.add(element);
         }
+        elementsDidChange();
     }
 
     public void removeElement(GElement element) {
         synchronized(lock) {
             elements.remove(element);
         }
+        elementsDidChange();
     }
 
     public GElement getFirstElement() {
@@ -266,6 +271,13 @@ public abstract class GElement implements XJXMLSerializable {
         return null;
     }
 
+    /** Returns the rectangle outside of which this element (without its children) neither
+     * draws nor matches a point, or null if it is unknown. Used by the spatial index of the view.
+     */
+    public Rect getExtent() {
+        return getFrame();
+    }
+
     public void setFocused(boolean flag) {
         focused = flag;
     }
@@ -382,6 +394,11 @@ public abstract class GElement implements XJXMLSerializable {
             }
         }
 
+        drawElement(g);
+    }
+
+    /** Draws this element without its children */
+    public void drawElement(Graphics2D g) {
         draw(g);
         if(isSelected())
             drawSelected(g);
@@ -435,10 +452,19 @@ public abstract class GElement implements XJXMLSerializable {
 
     public void elementPositionDidChange() {
         updateAnchors();
+        if(view != null)
+            view.elementDidChange(this);
     }
 
     public void elementDimensionDidChange() {
         updateAnchors();
+        if(view != null)
+            view.elementDidChange(this);
+    }
+
+    public void elementsDidChange() {
+        if(view != null)
+            view.elementsDidChange();
     }
 
     /**
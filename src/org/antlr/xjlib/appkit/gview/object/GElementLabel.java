@@ -50,6 +50,12 @@ public class GElementLabel extends GElement implements XJXMLSerializable {
         return SLabel.getFrame(getLabel(), getPositionX(), getPositionY(), g);
     }
 
+    @Override
+    public Rect getExtent() {
+        // The frame is known only once the label has been drawn
+        return g == null ? null : getFrame();
+    }
+
     @Override
     public boolean isInside(Point p) {
         return getFrame().contains(p);
@@ -59,7 +65,10 @@ public class GElementLabel extends GElement implements XJXMLSerializable {
     public void draw(Graphics2D g) {
         super.draw(g);
 
+        boolean firstDraw = this.g == null;
         this.g = g;
+        if(firstDraw)
+            elementDimensionDidChange();
         if(labelVisible && isVisibleInClip(g)) {
             g.setColor(labelColor);
             SLabel.drawCenteredString(getLabel(), (int)getPositionX(), (int)getPositionY(), g);
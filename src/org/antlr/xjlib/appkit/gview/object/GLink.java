@@ -240,11 +240,13 @@ public class GLink extends GElement implements XJXMLSerializable {
         link = createLinkInstance();
         link.setFlateness(flateness);
         link.setDirection(direction);
+        elementDimensionDidChange();
     }
 
     public void setMousePosition(Point mouse) {
         link.setDirection(Vector2D.vector(mouse).sub(target.getPosition()));
         link.setMousePosition(Vector2D.vector(mouse));
+        elementDimensionDidChange();
     }
 
     @Override
@@ -253,6 +255,12 @@ public class GLink extends GElement implements XJXMLSerializable {
         return link.getFrame();
     }
 
+    @Override
+    public Rect getExtent() {
+        update();
+        return link.getExtent();
+    }
+
     @Override
     public boolean isInside(Point p) {
         return link != null && link.contains(p.x, p.y);
@@ -251,6 +251,11 @@ public abstract class SLink implements XJXMLSerializable {
         return new Rect(start, end);
     }
 
+    /** Returns the rectangle containing the whole path of the link */
+    public Rect getExtent() {
+        return getFrame();
+    }
+
     public void setMousePosition(Vector2D position) {
 
     }
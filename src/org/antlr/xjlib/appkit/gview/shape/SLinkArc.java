@@ -31,6 +31,7 @@ THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package org.antlr.xjlib.appkit.gview.shape;
 
+import org.antlr.xjlib.appkit.gview.base.Rect;
 import org.antlr.xjlib.appkit.gview.base.Vector2D;
 import org.antlr.xjlib.foundation.XJXMLSerializable;
 
@@ -123,6 +124,15 @@ public class SLinkArc extends SLink implements XJXMLSerializable {
         return false;
     }
 
+    @Override
+    public Rect getExtent() {
+        Rect frame = getFrame();
+        if(shape == null)
+            return frame;
+        else
+            return frame.union(new Rect(shape.getBounds()));
+    }
+
     public boolean contains(double x, double y) {
         if(selfLoop && cubic != null)
             return contains(cubic.getPathIterator(null), x, y);
@@ -33,6 +33,7 @@ package org.antlr.xjlib.appkit.gview.shape;
 
 import org.antlr.xjlib.appkit.gview.base.Anchor2D;
 import org.antlr.xjlib.appkit.gview.base.Path2D;
+import org.antlr.xjlib.appkit.gview.base.Rect;
 import org.antlr.xjlib.appkit.gview.base.Vector2D;
 import org.antlr.xjlib.foundation.XJXMLSerializable;
 
@@ -82,6 +83,16 @@ public class SLinkElbow extends SLink implements XJXMLSerializable {
         return offsetToMouse;
     }
 
+    @Override
+    public Rect getExtent() {
+        Rect frame = getFrame();
+        Rect bounds = path.getBounds();
+        if(bounds == null)
+            return frame;
+        else
+            return frame.union(bounds);
+    }
+
     public boolean contains(double x, double y) {
         return path.contains(x, y);
     }
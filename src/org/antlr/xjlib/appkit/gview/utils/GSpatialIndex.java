@@ -0,0 +1,354 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.xjlib.appkit.gview.utils;
+
+import org.antlr.xjlib.appkit.gview.base.Rect;
+import org.antlr.xjlib.appkit.gview.object.GElement;
+import org.antlr.xjlib.appkit.gview.object.GLink;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/** Spatial index of the elements of a view, used to find the elements under a point or
+ * inside a rectangle without walking the whole tree of elements.
+ *
+ * The elements are stored in a hierarchical grid: each element goes into the level whose
+ * cells are at least as large as the element, so it is stored in at most four cells whatever
+ * its size. The index is rebuilt lazily when elements are added or removed. An element that
+ * moves or changes its size is re-inserted before the next query, together with the links
+ * attached to it.
+ */
+public class GSpatialIndex {
+
+    /** Margin added around each element: a link matches a point a few pixels away
+     * from its path and a selected element is drawn with a thicker stroke.
+     */
+    public static final int MARGIN = 10;
+
+    private static final int MIN_CELL_SIZE = 64;
+    private static final int MAX_LEVEL = 24;
+
+    private static final Comparator<Entry> DRAWING_ORDER = new Comparator<Entry>() {
+        public int compare(Entry e1, Entry e2) {
+            return e1.order < e2.order ? -1 : (e1.order == e2.order ? 0 : 1);
+        }
+    };
+
+    private GElement root;
+    private boolean valid;
+
+    /** Entries in the order the elements are drawn and matched (children before their parent) */
+    private final List<Entry> entries = new ArrayList<Entry>();
+    private final Map<GElement,Entry> entryOfElement = new IdentityHashMap<GElement, Entry>();
+    private final Map<GElement,List<Entry>> linksOfElement = new IdentityHashMap<GElement, List<Entry>>();
+
+    /** Entries of the elements without extent: they are always drawn and matched */
+    private final List<Entry> unbounded = new ArrayList<Entry>();
+
+    private final Map<Long,List<Entry>> cells = new HashMap<Long, List<Entry>>();
+    private final int[] levelCount = new int[MAX_LEVEL+1];
+    private final List<Entry> dirty = new ArrayList<Entry>();
+
+    private int stamp;
+
+    public synchronized void setRootElement(GElement root) {
+        this.root = root;
+        invalidate();
+    }
+
+    /** Rebuilds the index before the next query. Called when elements are added or removed. */
+    public synchronized void invalidate() {
+        valid = false;
+    }
+
+    /** Called when the position or the size of an element has changed */
+    public synchronized void elementDidChange(GElement element) {
+        if(!valid) return;
+
+        Entry entry = entryOfElement.get(element);
+        if(entry == null) {
+            // Element not indexed yet
+            valid = false;
+            return;
+        }
+
+        markDirty(entry);
+        List<Entry> links = linksOfElement.get(element);
+        if(links != null) {
+            for(Entry link : links) {
+                markDirty(link);
+            }
+        }
+    }
+
+    /** Returns the element matching the point, the same way GElement.match() does
+     * on the root element.
+     */
+    public synchronized GElement match(Point p) {
+        for(Entry entry : query(new Rectangle(p.x, p.y, 1, 1))) {
+            if(entry.element.isInside(p))
+                return entry.element;
+        }
+        return null;
+    }
+
+    /** Returns the elements that can draw inside the rectangle, in drawing order */
+    public synchronized List<GElement> getElementsInRect(Rectangle r) {
+        List<Entry> result = query(r);
+        List<GElement> elements = new ArrayList<GElement>(result.size());
+        for(Entry entry : result) {
+            elements.add(entry.element);
+        }
+        return elements;
+    }
+
+    /** Returns the children of the root element that have at least one part
+     * (the child itself or one of its descendants) intersecting the rectangle.
+     */
+    public synchronized Set<GElement> getRootElementsInRect(Rectangle r) {
+        Set<GElement> elements = new LinkedHashSet<GElement>();
+        for(Entry entry : query(r)) {
+            if(entry.top != null && entry.extent != null && entry.extent.intersects(r))
+                elements.add(entry.top);
+        }
+        return elements;
+    }
+
+    /** Returns true if the element is a child of the root element */
+    public synchronized boolean isRootChild(GElement element) {
+        update();
+        Entry entry = entryOfElement.get(element);
+        return entry != null && entry.top == element;
+    }
+
+    private void markDirty(Entry entry) {
+        if(!entry.dirty) {
+            entry.dirty = true;
+            dirty.add(entry);
+        }
+    }
+
+    private List<Entry> query(Rectangle r) {
+        update();
+
+        // Count the cells covered by the rectangle: when there are more cells than
+        // entries, it is faster to test all the entries
+        long count = 0;
+        for(int level=0; level<=MAX_LEVEL; level++) {
+            if(levelCount[level] == 0) continue;
+
+            int size = MIN_CELL_SIZE << level;
+            count += (long)(floor(r.x+r.width, size)-floor(r.x, size)+1)*(floor(r.y+r.height, size)-floor(r.y, size)+1);
+        }
+
+        if(count > entries.size()) {
+            List<Entry> result = new ArrayList<Entry>();
+            for(Entry entry : entries) {
+                if(entry.bounds == null || entry.bounds.intersects(r))
+                    result.add(entry);
+            }
+            return result;
+        }
+
+        List<Entry> result = new ArrayList<Entry>(unbounded);
+        stamp++;
+        for(int level=0; level<=MAX_LEVEL; level++) {
+            if(levelCount[level] == 0) continue;
+
+            int size = MIN_CELL_SIZE << level;
+            for(int cx=floor(r.x, size); cx<=floor(r.x+r.width, size); cx++) {
+                for(int cy=floor(r.y, size); cy<=floor(r.y+r.height, size); cy++) {
+                    List<Entry> cell = cells.get(key(level, cx, cy));
+                    if(cell == null) continue;
+
+                    for(Entry entry : cell) {
+                        if(entry.stamp != stamp && entry.bounds.intersects(r)) {
+                            entry.stamp = stamp;
+                            result.add(entry);
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(result, DRAWING_ORDER);
+        return result;
+    }
+
+    private void update() {
+        if(!valid) {
+            rebuild();
+            return;
+        }
+
+        for(Entry entry : dirty) {
+            remove(entry);
+            insert(entry);
+            entry.dirty = false;
+        }
+        dirty.clear();
+    }
+
+    private void rebuild() {
+        entries.clear();
+        entryOfElement.clear();
+        linksOfElement.clear();
+        unbounded.clear();
+        cells.clear();
+        dirty.clear();
+        Arrays.fill(levelCount, 0);
+
+        if(root != null)
+            add(root, null);
+
+        valid = true;
+    }
+
+    private void add(GElement element, GElement top) {
+        List<GElement> children = element.getElements();
+        if(children != null) {
+            for(GElement child : children) {
+                add(child, element == root ? child : top);
+            }
+        }
+
+        Entry entry = new Entry(element, top, entries.size());
+        entries.add(entry);
+        entryOfElement.put(element, entry);
+        if(element instanceof GLink) {
+            GLink link = (GLink)element;
+            addLink(link.source, entry);
+            addLink(link.target, entry);
+        }
+        insert(entry);
+    }
+
+    private void addLink(GElement element, Entry link) {
+        if(element == null) return;
+
+        List<Entry> links = linksOfElement.get(element);
+        if(links == null) {
+            links = new ArrayList<Entry>();
+            linksOfElement.put(element, links);
+        }
+        links.add(link);
+    }
+
+    private void insert(Entry entry) {
+        Rect extent = entry.element.getExtent();
+        if(extent == null) {
+            entry.extent = null;
+            entry.bounds = null;
+            unbounded.add(entry);
+            return;
+        }
+
+        entry.extent = new Rectangle(extent.rectangle());
+        Rectangle bounds = new Rectangle(extent.rectangle());
+        bounds.grow(MARGIN, MARGIN);
+        entry.bounds = bounds;
+
+        int level = 0;
+        int max = Math.max(bounds.width, bounds.height);
+        while(level < MAX_LEVEL && (MIN_CELL_SIZE << level) < max) {
+            level++;
+        }
+        entry.level = level;
+        levelCount[level]++;
+
+        int size = MIN_CELL_SIZE << level;
+        for(int cx=floor(bounds.x, size); cx<=floor(bounds.x+bounds.width, size); cx++) {
+            for(int cy=floor(bounds.y, size); cy<=floor(bounds.y+bounds.height, size); cy++) {
+                Long key = key(level, cx, cy);
+                List<Entry> cell = cells.get(key);
+                if(cell == null) {
+                    cell = new ArrayList<Entry>(4);
+                    cells.put(key, cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        Rectangle bounds = entry.bounds;
+        if(bounds == null) {
+            unbounded.remove(entry);
+            return;
+        }
+
+        levelCount[entry.level]--;
+
+        int size = MIN_CELL_SIZE << entry.level;
+        for(int cx=floor(bounds.x, size); cx<=floor(bounds.x+bounds.width, size); cx++) {
+            for(int cy=floor(bounds.y, size); cy<=floor(bounds.y+bounds.height, size); cy++) {
+                Long key = key(entry.level, cx, cy);
+                List<Entry> cell = cells.get(key);
+                if(cell == null) continue;
+
+                cell.remove(entry);
+                if(cell.isEmpty())
+                    cells.remove(key);
+            }
+        }
+    }
+
+    private static int floor(int value, int size) {
+        return value >= 0 ? value/size : -((-value+size-1)/size);
+    }
+
+    private static long key(int level, int cx, int cy) {
+        return ((long)level << 56) | ((cx & 0xFFFFFFFL) << 28) | (cy & 0xFFFFFFFL);
+    }
+
+    private static class Entry {
+
+        public final GElement element;
+        /** Child of the root element containing this element or null for the root itself */
+        public final GElement top;
+        public final int order;
+
+        public Rectangle extent;
+        /** Extent with the margin */
+        public Rectangle bounds;
+        public int level;
+        public boolean dirty;
+        public int stamp;
+
+        public Entry(GElement element, GElement top, int order) {
+            this.element = element;
+            this.top = top;
+            this.order = order;
+        }
+    }
+}
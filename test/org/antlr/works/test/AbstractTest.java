@@ -57,7 +57,11 @@ public abstract class AbstractTest extends TestCase {
     }
 
     public void parseFile(String fileName) throws IOException {
-        this.text = getTextFromFile(fileName);
+        parseText(getTextFromFile(fileName));
+    }
+
+    public void parseText(String text) {
+        this.text = text;
         engine.getSyntaxEngine().setDelegate(new MySyntaxEngineDelegate());
         engine.getSyntaxEngine().processSyntax();
         engine.parserCompleted();
@@ -96,11 +100,11 @@ public abstract class AbstractTest extends TestCase {
         }
 
         public Tool getANTLRTool() {
-            return null;
+            return new Tool();
         }
 
         public String getGrammarFileName() {
-            return null;
+            return "<notsaved>";
         }
 
         public String getGrammarText() {
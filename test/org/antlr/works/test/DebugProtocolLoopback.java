@@ -0,0 +1,237 @@
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+
+package org.antlr.works.test;
+
+import org.antlr.runtime.*;
+import org.antlr.runtime.debug.BlankDebugEventListener;
+import org.antlr.runtime.debug.DebugEventListener;
+import org.antlr.runtime.debug.DebugEventSocketProxy;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
+import org.antlr.works.debugger.remote.DBBinaryDebugEventListener;
+import org.antlr.works.debugger.remote.DBBinaryDebugEventProxy;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/** Sends a synthetic stream of debug events over a loopback connection using the
+ * text or the binary protocol and measures the number of events per second received
+ * by the debugger side.
+ */
+public class DebugProtocolLoopback {
+
+    public static final String GRAMMAR_FILE_NAME = "T.g";
+
+    /** Number of events sent for each rule */
+    public static final int EVENTS_PER_RULE = 8;
+
+    public static void main(String[] args) throws Exception {
+        int rules = args.length > 0?Integer.parseInt(args[0]):100000;
+
+        // Warm up both implementations before measuring
+        run(false, rules/10);
+        run(true, rules/10);
+
+        Result text = run(false, rules);
+        Result binary = run(true, rules);
+        System.out.println("Text:   "+text);
+        System.out.println("Binary: "+binary);
+    }
+
+    public static Result run(boolean binary, int rules) throws Exception {
+        int port = getFreePort();
+        Sender sender = new Sender(binary, port, rules);
+        Thread thread = new Thread(sender);
+        thread.start();
+
+        Result result = new Result(binary);
+        long t = System.nanoTime();
+        receive(binary, port, result);
+        result.time = System.nanoTime()-t;
+
+        thread.join();
+        if(sender.error != null)
+            throw sender.error;
+        result.sent = sender.sent;
+        return result;
+    }
+
+    protected static void receive(boolean binary, int port, final Result result) throws Exception {
+        DebugEventListener counter = new BlankDebugEventListener() {
+            public void commence() { result.received++; }
+            public void enterRule(String grammarFileName, String ruleName) { result.received++; }
+            public void exitRule(String grammarFileName, String ruleName) { result.received++; }
+            public void enterAlt(int alt) { result.received++; }
+            public void enterDecision(int d, boolean couldBacktrack) { result.received++; }
+            public void exitDecision(int d) { result.received++; }
+            public void location(int line, int pos) { result.received++; }
+            public void LT(int i, Token t) { result.received++; }
+            public void consumeToken(Token t) {
+                result.received++;
+                result.lastToken = t;
+            }
+            public void terminate() {
+                result.received++;
+                synchronized(result) {
+                    result.terminated = true;
+                    result.notifyAll();
+                }
+            }
+        };
+
+        Runnable listener = null;
+        long timeout = System.currentTimeMillis()+10000;
+        while(listener == null) {
+            try {
+                if(binary) {
+                    DBBinaryDebugEventListener l = new DBBinaryDebugEventListener(counter, "localhost", port);
+                    l.start();
+                    listener = l;
+                } else {
+                    RemoteDebugEventSocketListener l = new RemoteDebugEventSocketListener(counter, "localhost", port);
+                    l.start();
+                    listener = l;
+                }
+            } catch (IOException e) {
+                if(System.currentTimeMillis() > timeout)
+                    throw e;
+                Thread.sleep(10);
+            }
+        }
+
+        synchronized(result) {
+            while(!result.terminated && System.currentTimeMillis() < timeout+60000) {
+                result.wait(1000);
+            }
+        }
+    }
+
+    protected static int getFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        return port;
+    }
+
+    public static class Result {
+
+        public boolean binary;
+        public int sent;
+        public int received;
+        public long time;
+        public Token lastToken;
+        public boolean terminated;
+
+        public Result(boolean binary) {
+            this.binary = binary;
+        }
+
+        public double getEventsPerSecond() {
+            return time == 0?0:received*1e9/time;
+        }
+
+        public String toString() {
+            return received+"/"+sent+" events in "+(time/1000000)+" ms ("+(long)getEventsPerSecond()+" events/s)";
+        }
+    }
+
+    protected static class Sender implements Runnable {
+
+        public boolean binary;
+        public int port;
+        public int rules;
+        public int sent;
+        public Exception error;
+
+        public Sender(boolean binary, int port, int rules) {
+            this.binary = binary;
+            this.port = port;
+            this.rules = rules;
+        }
+
+        public void run() {
+            try {
+                DebugEventListener proxy;
+                if(binary) {
+                    DBBinaryDebugEventProxy p = new DBBinaryDebugEventProxy(port, null);
+                    p.handshake();
+                    proxy = p;
+                } else {
+                    DebugEventSocketProxy p = new DebugEventSocketProxy(new Recognizer(), port, null);
+                    p.handshake();
+                    proxy = p;
+                }
+                send(proxy);
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+
+        /** Sends the events of a parser matching one token per rule */
+        protected void send(DebugEventListener proxy) {
+            for(int i=0; i<rules; i++) {
+                CommonToken token = new CommonToken(4, "token"+i);
+                token.setTokenIndex(i);
+                token.setLine(1);
+                token.setCharPositionInLine(i);
+
+                proxy.enterRule(GRAMMAR_FILE_NAME, "rule");
+                if(i == 0) {
+                    proxy.commence();
+                    sent++;
+                }
+                proxy.location(1, 5);
+                proxy.enterDecision(1, false);
+                proxy.LT(1, token);
+                proxy.exitDecision(1);
+                proxy.enterAlt(1);
+                proxy.consumeToken(token);
+                proxy.exitRule(GRAMMAR_FILE_NAME, "rule");
+                sent += EVENTS_PER_RULE;
+            }
+            proxy.terminate();
+            sent++;
+        }
+    }
+
+    /** The text protocol sends the grammar file name of the recognizer in its handshake */
+    protected static class Recognizer extends BaseRecognizer {
+
+        public String getSourceName() {
+            return GRAMMAR_FILE_NAME;
+        }
+
+        public String getGrammarFileName() {
+            return GRAMMAR_FILE_NAME;
+        }
+    }
+}
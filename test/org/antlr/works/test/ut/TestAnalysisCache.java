@@ -0,0 +1,88 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.tool.Message;
+import org.antlr.works.grammar.antlr.*;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.test.TestConstants;
+
+import java.io.File;
+import java.util.Arrays;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestAnalysisCache extends AbstractTest {
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestAnalysisCache.class));
+    }
+
+    public void testAnalysisCache() throws Exception {
+        File directory = File.createTempFile("analysis", "cache");
+        directory.delete();
+        ANTLRAnalysisCache cache = new ANTLRAnalysisCache(directory);
+
+        parseFile(TestConstants.PREFIX+"calc.g");
+        String key = ANTLRAnalysisCache.computeKey(getEngine());
+        assertNotNull("key", key);
+        assertNull("empty cache", cache.load(key));
+
+        ANTLRAnalysisSnapshot snapshot = new ANTLRAnalysisSnapshot();
+        snapshot.addWarnings(Arrays.<Message>asList(new CachedMessage("warning", 3, 4)));
+        snapshot.addDecisions(Arrays.asList(new GrammarDecision(5, 6, 1, false, true, "2 states")));
+        cache.store(key, snapshot);
+
+        ANTLRAnalysisSnapshot restored = cache.load(key);
+        assertNotNull("restored", restored);
+        GrammarResult result = restored.createResult();
+        assertEquals("errors", 0, result.getErrorCount());
+        assertEquals("warning", "warning", result.getFirstWarningMessage());
+        assertEquals("warning line", 3, result.getWarnings().get(0).line);
+        assertEquals("decisions", 1, restored.getDecisions().size());
+        assertEquals("decision column", 6, restored.getDecisions().get(0).column);
+        assertTrue("decision predicate", restored.getDecisions().get(0).usesPredicates());
+
+        ANTLRGrammarEngineImpl antlrEngine = (ANTLRGrammarEngineImpl) getEngine().getANTLRGrammarEngine();
+        String grammarKey = antlrEngine.getGrammarKey();
+        assertEquals("grammar key", key, grammarKey);
+        assertSame("memoized key", grammarKey, antlrEngine.getGrammarKey());
+
+        parseFile(TestConstants.PREFIX+"blocks.g");
+        assertFalse("key depends on the text", key.equals(ANTLRAnalysisCache.computeKey(getEngine())));
+        assertEquals("key invalidated by the parser", ANTLRAnalysisCache.computeKey(getEngine()), antlrEngine.getGrammarKey());
+
+        cache.clear();
+        assertNull("cleared", cache.load(key));
+        directory.delete();
+    }
+
+}
@@ -0,0 +1,516 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.Tool;
+import org.antlr.runtime.CommonToken;
+import org.antlr.runtime.MismatchedTokenException;
+import org.antlr.runtime.Token;
+import org.antlr.runtime.debug.BlankDebugEventListener;
+import org.antlr.runtime.debug.RemoteDebugEventSocketListener;
+import org.antlr.tool.ErrorManager;
+import org.antlr.works.debugger.DebuggerCompiler;
+import org.antlr.works.debugger.DebuggerExporter;
+import org.antlr.works.debugger.events.*;
+import org.antlr.works.debugger.local.DBBuildCache;
+import org.antlr.works.debugger.local.DBInProcessParser;
+import org.antlr.works.debugger.panels.DBEventsPanel;
+import org.antlr.works.debugger.tivo.DBEventStore;
+import org.antlr.works.debugger.tivo.DBPlayer;
+import org.antlr.works.debugger.tivo.DBPlayerCheckpoint;
+import org.antlr.works.debugger.tivo.DBPlayerContextInfo;
+import org.antlr.works.debugger.tivo.DBProfiler;
+import org.antlr.works.debugger.tree.DBASTModel;
+import org.antlr.works.debugger.tree.DBParseTreeModel;
+import org.antlr.works.debugger.tree.DBTreeToken;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.test.DebugProtocolLoopback;
+import org.antlr.works.utils.StreamWatcherDelegate;
+import org.antlr.xjlib.foundation.XJUtils;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestDebugger extends AbstractTest {
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestDebugger.class));
+    }
+
+    public void testDebuggerTreeCheckpoint() throws Exception {
+        DBASTModel ast = new DBASTModel(null);
+        ast.pushRule("a");
+        ast.nilNode(1);
+        ast.createNode(2, new CommonToken(4, "x"));
+        ast.addChild(1, 2);
+        DBASTModel.State state = ast.saveState();
+        assertEquals("nodes", 2, state.getNodeCount());
+
+        ast.createNode(3, new CommonToken(5, "y"));
+        ast.becomeRoot(3, 1);
+        assertEquals("new root", "y", ast.getRuleAtIndex(0).getRootAtIndex(0).toString());
+
+        ast.restoreState(state);
+        DBASTModel.ASTNode root = ast.getRuleAtIndex(0).getRootAtIndex(0);
+        assertEquals("restored root", "nil", root.toString());
+        assertEquals("restored child", "x", root.getChildAt(0).toString());
+        assertSame("restored parent", root, ((DBASTModel.ASTNode)root.getChildAt(0)).parentNode);
+
+        /* The state can be restored more than once */
+        ast.addChild(1, 2);
+        assertEquals("children", 2, root.getChildCount());
+        ast.restoreState(state);
+        assertEquals("restored twice", 1, ast.getRuleAtIndex(0).getRootAtIndex(0).getChildCount());
+
+        DBParseTreeModel parseTree = new DBParseTreeModel(null);
+        parseTree.pushRule("a");
+        parseTree.addToken(new CommonToken(4, "x"));
+        DBParseTreeModel.State treeState = parseTree.saveState();
+        assertEquals("tree nodes", 3, treeState.getNodeCount());
+
+        parseTree.pushRule("b");
+        parseTree.addToken(new CommonToken(5, "y"));
+        parseTree.restoreState(treeState);
+        assertEquals("restored rule", "a", parseTree.peekRule().toString());
+        assertEquals("restored tree", 1, parseTree.getRootRule().getChildAt(0).getChildCount());
+        assertEquals("restored last node", "x", parseTree.getLastNode().toString());
+
+        /* The unchanged subtrees are shared with the previous saved state */
+        DBParseTreeModel.State first = parseTree.saveState();
+        parseTree.addToken(new CommonToken(5, "z"));
+        DBParseTreeModel.State second = parseTree.saveState();
+        assertEquals("copied nodes", 3, second.getNodeCount());
+        TreeNode x = first.rules.peek().getChildAt(0);
+        assertSame("shared node", x, second.rules.peek().getChildAt(0));
+        assertEquals("new node", "z", second.rules.peek().getChildAt(1).toString());
+
+        parseTree.restoreState(first);
+        assertEquals("restored first", 1, parseTree.getRootRule().getChildAt(0).getChildCount());
+        parseTree.restoreState(second);
+        assertEquals("restored second", 2, parseTree.getRootRule().getChildAt(0).getChildCount());
+        assertEquals("restored copy", 1, first.rules.peek().getChildCount());
+        parseTree.close();
+    }
+
+    public void testDebuggerCheckpointInterval() throws Exception {
+        DBPlayer player = new DBPlayer(null);
+        int interval = DBPlayer.DEFAULT_CHECKPOINT_INTERVAL;
+        player.setCheckpointMemoryBudget(3*10*DBPlayerCheckpoint.BYTES_PER_TREE_NODE);
+
+        for(int position = interval; position <= 3*interval; position += interval) {
+            assertTrue("on the interval", player.shouldCreateCheckpoint(position));
+            DBPlayerCheckpoint checkpoint = new DBPlayerCheckpoint(position);
+            checkpoint.addTreeNodes(10);
+            player.addCheckpoint(checkpoint);
+        }
+        assertEquals("checkpoints", 3, player.getCheckpointCount());
+        assertFalse("between two checkpoints", player.shouldCreateCheckpoint(3*interval+1));
+        assertFalse("existing checkpoint", player.shouldCreateCheckpoint(3*interval));
+
+        /* Another checkpoint would exceed the budget: the checkpoints are pruned
+        before creating it and the position is no longer on the interval */
+        assertFalse("pruned interval", player.shouldCreateCheckpoint(5*interval));
+        assertEquals("interval", 2*interval, player.getCheckpointInterval());
+        assertEquals("remaining checkpoints", 1, player.getCheckpointCount());
+        assertTrue("on the new interval", player.shouldCreateCheckpoint(4*interval));
+    }
+
+    public void testDebuggerEventStore() throws Exception {
+        DBEventStore store = new DBEventStore(64*1024);
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        for(int i=0; i<20000; i++) {
+            events.add(DBEventFactory.createEnterRule("T.g", "r"+(i%10)));
+            events.add(DBEventFactory.createLocation(i, 3));
+            events.add(DBEventFactory.createLT(1, new RemoteDebugEventSocketListener.ProxyToken(i, 4, 0, 1, i, "id"+(i%50))));
+            events.add(DBEventFactory.createConsumeToken(new DBTreeToken(new RemoteDebugEventSocketListener.ProxyTree(i, 5, 2, 7, i, "x"))));
+            events.add(DBEventFactory.createEndBacktrack(2, i%2 == 0));
+            events.add(DBEventFactory.createRewind());
+            events.add(DBEventFactory.createExitRule("T.g", "r"+(i%10)));
+        }
+        events.add(DBEventFactory.createRecognitionException(new MismatchedTokenException()));
+        events.add(DBEventFactory.createTerminate());
+
+        for (DBEvent event : events) {
+            event.setGrammarName("T");
+            store.add(event);
+        }
+
+        assertEquals("size", events.size(), store.size());
+        assertTrue("spilled", store.getSpilledSize() > 0);
+        assertTrue("memory limit", store.getMemoryUsed() <= 64*1024);
+
+        List<DBEvent> current = store.subList(0, 10);
+        store.add(DBEventFactory.createCommence());
+        assertEquals("sub list", events.get(9).toString(), current.get(9).toString());
+
+        for(int i=0; i<events.size(); i++) {
+            DBEvent expected = events.get(i);
+            DBEvent event = store.get(i);
+            assertEquals("type "+i, expected.getEventType(), event.getEventType());
+            assertEquals("event "+i, expected.toString(), event.toString());
+            assertEquals("grammar "+i, "T", event.getGrammarName());
+        }
+        assertTrue("rewind", ((DBEventRewind)store.get(5)).rewindToLastMark());
+        assertSame("exception", events.get(events.size()-2), store.get(events.size()-2));
+        store.close();
+    }
+
+    public void testDebuggerTrace() throws Exception {
+        DBEventStore store = new DBEventStore(64*1024);
+        List<DBEvent> events = new ArrayList<DBEvent>();
+        events.add(DBEventFactory.createCommence());
+        for(int i=0; i<10000; i++) {
+            events.add(DBEventFactory.createEnterRule("T.g", "r"));
+            events.add(DBEventFactory.createConsumeToken(new RemoteDebugEventSocketListener.ProxyToken(i, 4, 0, 1, i, "id"+i)));
+            events.add(DBEventFactory.createRewind(0));
+            /* Consumed again after the rewind: only the first consume is indexed */
+            events.add(DBEventFactory.createConsumeToken(new RemoteDebugEventSocketListener.ProxyToken(i, 4, 0, 1, i, "id"+i)));
+            events.add(DBEventFactory.createExitRule("T.g", "r"));
+        }
+        events.add(DBEventFactory.createRecognitionException(new MismatchedTokenException()));
+        events.add(DBEventFactory.createTerminate());
+
+        for (DBEvent event : events) {
+            event.setGrammarName("T");
+            store.add(event);
+        }
+        assertTrue("spilled", store.getSpilledSize() > 0);
+
+        File file = File.createTempFile("trace", ".awtrace");
+        try {
+            store.save(file, "T.g");
+            store.close();
+
+            DBEventStore trace = DBEventStore.open(file);
+            assertEquals("grammar file", "T.g", trace.getGrammarFileName());
+            assertEquals("size", events.size(), trace.size());
+            for(int i=0; i<events.size(); i++) {
+                assertEquals("event "+i, events.get(i).toString(), trace.get(i).toString());
+                assertEquals("grammar "+i, "T", trace.get(i).getGrammarName());
+            }
+            assertTrue("exception", ((DBEventRecognitionException)trace.get(events.size()-2)).e instanceof MismatchedTokenException);
+
+            assertEquals("rule events", 20000, trace.getRuleEventCount());
+            assertEquals("enter rule", 5*1234+1, trace.getRuleEventPosition(2*1234));
+            assertEquals("exit rule", 5*1234+5, trace.getRuleEventPosition(2*1234+1));
+            assertEquals("token", 5*1234+2, trace.getTokenEventPosition(1234));
+            assertEquals("missing token", -1, trace.getTokenEventPosition(10000));
+
+            try {
+                trace.add(DBEventFactory.createTerminate());
+                fail("read-only");
+            } catch(UnsupportedOperationException e) {
+                // expected
+            }
+            trace.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testDebuggerCompiler() throws Exception {
+        DebuggerCompiler compiler = DebuggerCompiler.shared();
+        assertNotNull("compiler", compiler);
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "aw-compiler-test");
+        XJUtils.deleteDirectory(dir.getAbsolutePath());
+        dir.mkdirs();
+        try {
+            String a = XJUtils.concatPath(dir.getAbsolutePath(), "A.java");
+            String b = XJUtils.concatPath(dir.getAbsolutePath(), "B.java");
+            XJUtils.writeStringToFile("public class A { B b = new B(); java.util.List l = new java.util.ArrayList(); { l.add(b); } }", a);
+            XJUtils.writeStringToFile("public class B { }", b);
+
+            final StringBuilder output = new StringBuilder();
+            StreamWatcherDelegate delegate = new StreamWatcherDelegate() {
+                public void streamWatcherDidStart() { }
+                public void streamWatcherDidReceiveString(String string) { output.append(string); }
+                public void streamWatcherException(Exception e) { output.append(e); }
+            };
+
+            assertNull("compile", compiler.compile(new String[] { a, b }, dir.getAbsolutePath(), dir.getAbsolutePath(), delegate));
+            assertTrue("class file", new File(dir, "A.class").exists());
+            assertEquals("classes", new HashSet<String>(Arrays.asList("A", "B")), compiler.getCompiledClasses(dir.getAbsolutePath()).keySet());
+            assertTrue("note", output.indexOf("Compiler[note]") != -1);
+            assertTrue("no error", output.indexOf("Compiler[error]") == -1);
+
+            XJUtils.writeStringToFile("public class B { C c; }", b);
+            assertNotNull("error", compiler.compile(new String[] { b }, dir.getAbsolutePath(), dir.getAbsolutePath(), delegate));
+            assertTrue("diagnostic", output.indexOf("B.java") != -1);
+            assertTrue("error", output.indexOf("Compiler[error]") != -1);
+        } finally {
+            compiler.clearCompiledClasses(dir.getAbsolutePath());
+            XJUtils.deleteDirectory(dir.getAbsolutePath());
+        }
+    }
+
+    public void testDebuggerInProcessParser() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "aw-inprocess-test");
+        XJUtils.deleteDirectory(dir.getAbsolutePath());
+        dir.mkdirs();
+        try {
+            String grammar = XJUtils.concatPath(dir.getAbsolutePath(), "T.g");
+            XJUtils.writeStringToFile("grammar T;\na : ID+ {System.out.println(\"parsed\");} ;\nID : 'a'..'z'+ ;\nWS : ' '+ {skip();} ;\n", grammar);
+            String input = XJUtils.concatPath(dir.getAbsolutePath(), "input.txt");
+            XJUtils.writeStringToFile("abc de f 9", input);
+
+            /* The error state of the previous tests is kept by the thread */
+            ErrorManager.resetErrorState();
+            Tool tool = new Tool(new String[] { "-debug", "-o", dir.getAbsolutePath(), grammar });
+            tool.process();
+
+            String[] files = new String[] { XJUtils.concatPath(dir.getAbsolutePath(), "TLexer.java"),
+                    XJUtils.concatPath(dir.getAbsolutePath(), "TParser.java") };
+            DebuggerCompiler compiler = DebuggerCompiler.shared();
+            assertNull("compile", compiler.compile(files, dir.getAbsolutePath(), System.getProperty("java.class.path"), null));
+
+            ClassLoader loader = DBInProcessParser.createClassLoader(compiler.getCompiledClasses(dir.getAbsolutePath()),
+                    dir.getAbsolutePath(), new ArrayList<String>());
+            DBInProcessParser parser = new DBInProcessParser(loader, "TLexer", "TParser", null, "a", input);
+            PrintStream originalOut = System.out;
+            parser.load();
+
+            final StringBuilder output = new StringBuilder();
+            parser.setOutput(new StreamWatcherDelegate() {
+                public void streamWatcherDidStart() { }
+                public void streamWatcherDidReceiveString(String string) { output.append(string); }
+                public void streamWatcherException(Exception e) { output.append(e); }
+            });
+
+            final List<String> events = new ArrayList<String>();
+            parser.start(new BlankDebugEventListener() {
+                public void commence() { events.add("commence"); }
+                public void consumeToken(Token t) { events.add(t.getText()); }
+                public void terminate() { events.add("terminate"); }
+            });
+            while(parser.isAlive()) {
+                Thread.sleep(10);
+            }
+            assertEquals("events", Arrays.asList("commence", "abc", "de", "f", "terminate"), events);
+
+            // The syntax errors and the output of the actions go to the output of the debugger
+            assertTrue("syntax error", output.indexOf("line 1:9") != -1);
+            assertTrue("action", output.indexOf("parsed\n") != -1);
+            assertSame("original stream", System.out, originalOut);
+        } finally {
+            DebuggerCompiler.shared().clearCompiledClasses(dir.getAbsolutePath());
+            XJUtils.deleteDirectory(dir.getAbsolutePath());
+        }
+    }
+
+    public void testBuildCache() throws Exception {
+        File directory = File.createTempFile("build", "cache");
+        directory.delete();
+        DBBuildCache cache = new DBBuildCache(directory);
+
+        File output = File.createTempFile("build", "output");
+        output.delete();
+        new File(output, "classes").mkdirs();
+        XJUtils.writeStringToFile("class T {}", new File(output, "T.java").getAbsolutePath());
+        XJUtils.writeStringToFile("bytes", new File(output, "classes/T.class").getAbsolutePath());
+
+        String key = DBBuildCache.computeKey("grammar", "-debug");
+        assertFalse("key depends on the values", key.equals(DBBuildCache.computeKey("grammar", "-trace")));
+        assertFalse("empty cache", cache.restore(key, output));
+
+        // A file of a sibling directory whose name starts with the name of the output is not stored
+        File sibling = new File(output.getAbsolutePath()+"2");
+        sibling.mkdirs();
+        XJUtils.writeStringToFile("bytes", new File(sibling, "X.class").getAbsolutePath());
+        List<File> files = DBBuildCache.listFiles(output);
+        files.add(new File(sibling, "X.class"));
+
+        cache.store(key, output, files);
+        XJUtils.deleteDirectory(output.getAbsolutePath());
+        XJUtils.deleteDirectory(sibling.getAbsolutePath());
+
+        assertTrue("restored", cache.restore(key, output));
+        assertEquals("java", "class T {}", XJUtils.getStringFromFile(new File(output, "T.java").getAbsolutePath()));
+        assertEquals("class", "bytes", XJUtils.getStringFromFile(new File(output, "classes/T.class").getAbsolutePath()));
+        assertFalse("outside the output", new File(output, "2").exists());
+
+        cache.clear();
+        assertFalse("cleared", cache.restore(key, output));
+        XJUtils.deleteDirectory(output.getAbsolutePath());
+        directory.delete();
+    }
+
+    public void testDebuggerEventsModel() throws Exception {
+        DBEventStore store = new DBEventStore(64*1024);
+        DBEventsPanel.EventTableDataModel model = new DBEventsPanel.EventTableDataModel();
+        model.setEvents(store);
+
+        DBPlayerContextInfo info = new DBPlayerContextInfo();
+        for(int i=0; i<5000; i++) {
+            store.add(DBEventFactory.createEnterRule("T.g", "r"+i));
+            info.enterDecision(i);
+            model.add(info);
+        }
+        assertEquals("rows", 5000, model.getRowCount());
+        assertEquals("event", "r4321", ((DBEventEnterRule)model.getValueAt(4321, DBEventsPanel.INFO_COLUMN_EVENT)).name);
+        assertEquals("decision", "4321", model.getValueAt(4321, DBEventsPanel.INFO_COLUMN_DECISION));
+        assertNull("no subrule", model.getValueAt(4321, DBEventsPanel.INFO_COLUMN_SUBRULE));
+        assertTrue("row", model.getRowAsString(0).endsWith("\t-\t0\t-\t-"));
+
+        model.truncate(10);
+        assertEquals("truncated", 10, model.getRowCount());
+        model.clear();
+        assertEquals("cleared", 0, model.getRowCount());
+        store.close();
+    }
+
+    public void testProfiler() throws Exception {
+        Token[] tokens = new Token[3];
+        for(int i=0; i<tokens.length; i++) {
+            tokens[i] = new CommonToken(4, "t"+i);
+            tokens[i].setTokenIndex(i);
+        }
+
+        DBProfiler profiler = new DBProfiler();
+        profiler.addEvent(DBEventFactory.createEnterRule("T.g", "a"), 0);
+        profiler.addEvent(DBEventFactory.createLocation(3, 4), 0);
+        profiler.addEvent(DBEventFactory.createEnterDecision(1), 0);
+        for(int i=0; i<tokens.length; i++)
+            profiler.addEvent(DBEventFactory.createLT(i+1, tokens[i]), 0);
+        profiler.addEvent(DBEventFactory.createMark(1), 0);
+        profiler.addEvent(DBEventFactory.createBeginBacktrack(1), 0);
+        profiler.addEvent(DBEventFactory.createConsumeToken(tokens[0]), 0);
+        profiler.addEvent(DBEventFactory.createRewind(1), 0);
+        profiler.addEvent(DBEventFactory.createEndBacktrack(1, false), 0);
+        profiler.addEvent(DBEventFactory.createExitDecision(1), 0);
+        profiler.addEvent(DBEventFactory.createConsumeToken(tokens[0]), 0);
+
+        profiler.addEvent(DBEventFactory.createEnterRule("T.g", "a"), 10);
+        profiler.addEvent(DBEventFactory.createEnterDecision(1), 10);
+        profiler.addEvent(DBEventFactory.createLT(1, tokens[1]), 10);
+        profiler.addEvent(DBEventFactory.createExitDecision(1), 10);
+        profiler.addEvent(DBEventFactory.createExitRule("T.g", "a"), 20);
+        profiler.addEvent(DBEventFactory.createExitRule("T.g", "a"), 100);
+
+        DBProfiler.RuleStats rule = profiler.getRules().get(0);
+        assertEquals("rule invocations", 2, rule.invocations);
+        assertEquals("tokens outside backtracking", 1, rule.tokens);
+        assertEquals("recursion", 2, rule.maxRecursion);
+        assertEquals("outermost time only", 100, rule.time);
+
+        DBProfiler.DecisionStats decision = profiler.getDecisions().get(0);
+        assertEquals("decision rule", "a", decision.rule);
+        assertEquals("decision line", 3, decision.line);
+        assertEquals("decision invocations", 2, decision.invocations);
+        assertEquals("max lookahead", 3, decision.maxLookahead);
+        assertEquals("average lookahead", 2.0, decision.getAverageLookahead(), 0.001);
+        assertEquals("backtracks", 1, decision.backtracks);
+        assertEquals("failed backtracks", 1, decision.failedBacktracks);
+        assertEquals("rewinds", 1, decision.rewinds);
+
+        StringWriter writer = new StringWriter();
+        profiler.writeCSV(writer);
+        String[] lines = writer.toString().split("\n");
+        assertEquals("csv lines", 5, lines.length);
+        assertEquals("csv rule", "T,a,2,1,2,0.000", lines[1]);
+        assertEquals("csv decision", ",1,a,3,2,2.00,3,1,1,1,1", lines[4]);
+    }
+
+    public void testDebuggerExporter() throws Exception {
+        DBEventStore store = new DBEventStore(64*1024);
+        DBEventsPanel.EventTableDataModel model = new DBEventsPanel.EventTableDataModel();
+        model.setEvents(store);
+        DBPlayerContextInfo info = new DBPlayerContextInfo();
+        store.add(DBEventFactory.createEnterRule("T.g", "a"));
+        model.add(info);
+        info.enterDecision(3);
+        store.add(DBEventFactory.createLocation(1, 2));
+        model.add(info);
+
+        StringWriter writer = new StringWriter();
+        assertTrue(DebuggerExporter.exportEvents(model, DebuggerExporter.FORMAT_CSV, writer, null));
+        String[] lines = writer.toString().split("\n");
+        assertEquals("csv lines", 3, lines.length);
+        assertEquals("csv row", "1,\"Location (1,2)\",,3,,", lines[2]);
+
+        writer = new StringWriter();
+        DebuggerExporter.exportEvents(model, DebuggerExporter.FORMAT_JSON, writer, null);
+        lines = writer.toString().split("\n");
+        assertEquals("json lines", 2, lines.length);
+        assertTrue("json row", lines[1].startsWith("{\"index\":1,\"type\":"));
+        assertTrue("json context", lines[1].endsWith(",\"decision\":3}"));
+        store.close();
+
+        /* Deep trees are exported without recursion */
+        DefaultMutableTreeNode node = new DefaultMutableTreeNode("n49999");
+        for(int i=49998; i>=0; i--) {
+            DefaultMutableTreeNode parent = new DefaultMutableTreeNode("n"+i);
+            parent.add(node);
+            node = parent;
+        }
+        DefaultMutableTreeNode root = new DefaultMutableTreeNode("r\"oot");
+        root.add(node);
+        root.add(new DefaultMutableTreeNode("last"));
+        writer = new StringWriter();
+        assertTrue(DebuggerExporter.exportTrees(Arrays.<TreeNode>asList(root), DebuggerExporter.FORMAT_JSON, writer, null));
+        lines = writer.toString().split("\n");
+        assertEquals("tree nodes", 50002, lines.length);
+        assertEquals("root", "{\"depth\":0,\"node\":\"r\\\"oot\"}", lines[0]);
+        assertEquals("pre-order", "{\"depth\":1,\"node\":\"n0\"}", lines[1]);
+        assertEquals("last", "{\"depth\":1,\"node\":\"last\"}", lines[50001]);
+
+        final int[] progress = new int[1];
+        assertFalse("cancelled", DebuggerExporter.exportTrees(Arrays.<TreeNode>asList(root), DebuggerExporter.FORMAT_TEXT, new StringWriter(), new DebuggerExporter.Monitor() {
+            public boolean isCancelled() {
+                return progress[0] > 0;
+            }
+
+            public void progress(int done, int total) {
+                progress[0]++;
+            }
+        }));
+    }
+
+    public void testDebugProtocolLoopback() throws Exception {
+        for(boolean binary : new boolean[] { false, true }) {
+            DebugProtocolLoopback.Result result = DebugProtocolLoopback.run(binary, 5000);
+            assertTrue("terminated", result.terminated);
+            assertEquals("events", result.sent, result.received);
+            assertEquals("last token", 4999, result.lastToken.getTokenIndex());
+            assertEquals("last token text", "token4999", result.lastToken.getText());
+        }
+    }
+
+}
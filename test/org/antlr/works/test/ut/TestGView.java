@@ -0,0 +1,212 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.utils.awtree.AWTreeGraphView;
+import org.antlr.works.utils.awtree.AWTreeModel;
+import org.antlr.works.utils.awtree.AWTreeNode;
+import org.antlr.xjlib.appkit.gview.GView;
+import org.antlr.xjlib.appkit.gview.object.GElement;
+import org.antlr.xjlib.appkit.gview.object.GElementRect;
+import org.antlr.xjlib.appkit.gview.object.GLink;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestGView extends AbstractTest {
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestGView.class));
+    }
+
+    public void testSpatialIndex() throws Exception {
+        /* A tree of nodes linked to their parent, like the parse tree view */
+        Random random = new Random(1);
+        List<GElementRect> nodes = new ArrayList<GElementRect>();
+        GElementRect root = new GElementRect();
+        root.setPosition(1000, 20);
+        nodes.add(root);
+        for(int i=1; i<300; i++) {
+            GElementRect parent = nodes.get(random.nextInt(nodes.size()));
+            GElementRect node = new GElementRect();
+            node.setSize(20+random.nextInt(40), 20);
+            node.setPosition(random.nextInt(2000), parent.getPositionY()+40);
+            parent.addElement(new GLink(parent, GElement.ANCHOR_BOTTOM, node, GElement.ANCHOR_TOP,
+                    i % 2 == 0 ? GLink.SHAPE_ELBOW : GLink.SHAPE_ARC, "", 20));
+            parent.addElement(node);
+            nodes.add(node);
+        }
+
+        GView view = new GView();
+        view.setRootElement(root);
+        for(int round=0; round<3; round++) {
+            /* The old path of the links is used until they are updated */
+            root.bounds();
+            Rectangle bounds = root.bounds().rectangle();
+            for(int x=bounds.x; x<bounds.x+bounds.width; x+=11) {
+                for(int y=bounds.y; y<bounds.y+bounds.height; y+=5) {
+                    Point p = new Point(x, y);
+                    assertSame("match at "+p, root.match(p), view.getElementAtPoint(p));
+                }
+            }
+
+            Rectangle clip = new Rectangle(random.nextInt(1500), 0, 500, bounds.height);
+            assertEquals("drawing in "+clip, drawElements(root, null, clip), drawElements(root, view, clip));
+
+            /* Drag a few nodes with their children */
+            for(int i=0; i<5; i++) {
+                nodes.get(random.nextInt(nodes.size())).move(random.nextInt(200)-100, random.nextInt(100)-50);
+            }
+        }
+    }
+
+    public void testTreeLayout() throws Exception {
+        Random random = new Random(1);
+        Graphics2D g = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB).createGraphics();
+        TestTreeNode root = new TestTreeNode("root");
+        List<TestTreeNode> nodes = new ArrayList<TestTreeNode>();
+        nodes.add(root);
+
+        /* The incremental view receives the new nodes in batches, like the debugger */
+        AWTreeModel model = new AWTreeModel();
+        AWTreeGraphView view = new AWTreeGraphView(null);
+        view.setAutoAdjustSize(true);
+        view.setModel(model);
+        view.setRoot(root);
+        view.paintComponent(g);
+
+        for(int i=1; i<400; i++) {
+            TestTreeNode parent = nodes.get(random.nextInt(nodes.size()));
+            TestTreeNode node = new TestTreeNode(random.nextBoolean() ? "n"+i : "long_node_"+i);
+            model.addNode(parent, node);
+            nodes.add(node);
+            if(random.nextInt(10) == 0) {
+                view.refresh();
+                if(random.nextInt(3) == 0)
+                    view.toggleNodeCollapsed(nodes.get(random.nextInt(nodes.size())));
+            }
+        }
+        view.refresh();
+
+        /* The view rebuilt from scratch must have the same layout. The nodes
+         * inside a collapsed subtree are not laid out. */
+        AWTreeGraphView full = new AWTreeGraphView(null);
+        full.setAutoAdjustSize(true);
+        full.setRoot(root);
+        full.paintComponent(g);
+        for(TestTreeNode node : nodes) {
+            if(view.isNodeCollapsed(node))
+                full.toggleNodeCollapsed(node);
+        }
+        for(TestTreeNode node : nodes) {
+            AWTreeGraphView.GElementNode e1 = view.getGElementForNode(node);
+            AWTreeGraphView.GElementNode e2 = full.getGElementForNode(node);
+            if(view.getVisibleGElementForNode(node) != e1)
+                continue;
+            assertEquals("left of "+node, e2.getLeft(), e1.getLeft(), 0.1);
+            assertEquals("top of "+node, e2.getTop(), e1.getTop(), 0.1);
+        }
+
+        /* Expand everything and check the layout itself */
+        for(TestTreeNode node : nodes) {
+            if(view.isNodeCollapsed(node))
+                view.toggleNodeCollapsed(node);
+        }
+        double left = Double.MAX_VALUE;
+        Map<Double,List<AWTreeGraphView.GElementNode>> levels = new HashMap<Double,List<AWTreeGraphView.GElementNode>>();
+        for(TestTreeNode node : nodes) {
+            AWTreeGraphView.GElementNode element = view.getGElementForNode(node);
+            left = Math.min(left, element.getLeft());
+            List<AWTreeGraphView.GElementNode> children = element.getChildNodes();
+            if(!children.isEmpty()) {
+                double first = children.get(0).getPositionX();
+                double last = children.get(children.size()-1).getPositionX();
+                assertEquals("centered "+node, (first+last)/2, element.getPositionX(), 0.1);
+                assertEquals("below "+node, element.getBottom()+AWTreeGraphView.VERTICAL_GAP, children.get(0).getTop(), 0.1);
+            }
+            List<AWTreeGraphView.GElementNode> level = levels.get(element.getTop());
+            if(level == null)
+                levels.put(element.getTop(), level = new ArrayList<AWTreeGraphView.GElementNode>());
+            level.add(element);
+        }
+        assertEquals("left", (double)AWTreeGraphView.MARGIN, left, 0.1);
+        for(List<AWTreeGraphView.GElementNode> level : levels.values()) {
+            for(int i=0; i<level.size(); i++) {
+                for(int j=i+1; j<level.size(); j++) {
+                    AWTreeGraphView.GElementNode a = level.get(i);
+                    AWTreeGraphView.GElementNode b = level.get(j);
+                    assertTrue("overlap", a.getRight() <= b.getLeft()+0.1 || b.getRight() <= a.getLeft()+0.1);
+                }
+            }
+        }
+    }
+
+    private static class TestTreeNode extends AWTreeNode {
+
+        public TestTreeNode(String label) {
+            setUserObject(label);
+        }
+
+        public String getInfoString() {
+            return "";
+        }
+
+        public Color getColor() {
+            return Color.black;
+        }
+    }
+    private List<Integer> drawElements(GElement root, GView view, Rectangle clip) {
+        BufferedImage image = new BufferedImage(clip.width, clip.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.translate(-clip.x, -clip.y);
+        g.clipRect(clip.x, clip.y, clip.width, clip.height);
+        if(view == null)
+            root.drawRecursive(g);
+        else
+            view.drawElements(g);
+        g.dispose();
+
+        List<Integer> pixels = new ArrayList<Integer>();
+        for(int rgb : image.getRGB(0, 0, clip.width, clip.height, null, 0, clip.width)) {
+            pixels.add(rgb);
+        }
+        return pixels;
+    }
+
+}
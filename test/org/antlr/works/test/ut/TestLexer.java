@@ -0,0 +1,274 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngine;
+import org.antlr.works.ate.syntax.generic.ATESyntaxEngineDelegate;
+import org.antlr.works.ate.syntax.generic.ATESyntaxLexer;
+import org.antlr.works.ate.syntax.java.ATEJavaSyntaxLexer;
+import org.antlr.works.ate.syntax.misc.ATELine;
+import org.antlr.works.ate.syntax.misc.ATEScope;
+import org.antlr.works.ate.syntax.misc.ATEToken;
+import org.antlr.works.grammar.element.ElementBlock;
+import org.antlr.works.grammar.syntax.GrammarSyntaxEngine;
+import org.antlr.works.grammar.syntax.GrammarSyntaxLexer;
+import org.antlr.works.stringtemplate.syntax.ATEStringTemplateSyntaxLexer;
+import org.antlr.works.test.AbstractTest;
+import org.antlr.works.test.TestConstants;
+
+import java.util.List;
+import java.util.Random;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestLexer extends AbstractTest {
+
+    private static final String[] SNIPPETS = {
+            "a", "rule", "\n", " ", "'", "\"", "/*", "*/", "//", "\\", "->", "<<", ">>", ":", ";", "{", "}", "\r\n"
+    };
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestLexer.class));
+    }
+
+    public void testIncrementalGrammar() throws Exception {
+        assertIncremental(new GrammarSyntaxLexer(), new GrammarSyntaxLexer(), getTextFromFile(TestConstants.MANTRA));
+        assertIncremental(new GrammarSyntaxLexer(), new GrammarSyntaxLexer(), getTextFromFile(TestConstants.BLOCKS));
+    }
+
+    public void testIncrementalJava() throws Exception {
+        assertIncremental(new ATEJavaSyntaxLexer(), new ATEJavaSyntaxLexer(),
+                "class A {\n  /* comment */\n  String s = \"a\\\"b\";\n  char c = '\\'';\n  // end\n}\n");
+    }
+
+    public void testIncrementalStringTemplate() throws Exception {
+        assertIncremental(new ATEStringTemplateSyntaxLexer(), new ATEStringTemplateSyntaxLexer(),
+                "group g;\n\nt(a,b) ::= <<\n  <a:{x | <x>}; separator=\",\"> $b$ <! comment !>\n>>\n\nm ::= [\"a\":\"b\"]\n");
+    }
+
+    public void testTokenAttributes() throws Exception {
+        String text = getTextFromFile(TestConstants.MANTRA);
+        Random random = new Random(3);
+        ATESyntaxLexer incremental = new GrammarSyntaxLexer();
+        ATESyntaxLexer reference = new GrammarSyntaxLexer();
+        ATEScope scope = new ElementBlock("tokens", null);
+        incremental.tokenize(text);
+        for(int i=0; i<200; i++) {
+            /* Query some attributes and change some tokens like the parser does before the edit */
+            for(ATEToken token : incremental.getTokens()) {
+                if(random.nextInt(4) == 0) {
+                    token.getAttribute();
+                }
+                if(random.nextInt(4) == 0) {
+                    token.type = -1;
+                    token.scope = scope;
+                }
+            }
+
+            int offset = random.nextInt(text.length()+1);
+            String snippet = SNIPPETS[random.nextInt(SNIPPETS.length)];
+            text = text.substring(0, offset)+snippet+text.substring(offset);
+            incremental.tokenize(text, offset, snippet.length());
+            reference.tokenize(text);
+
+            List<ATEToken> expectedTokens = reference.getTokens();
+            List<ATEToken> actualTokens = incremental.getTokens();
+            assertEquals("token count", expectedTokens.size(), actualTokens.size());
+            for(int t=0; t<expectedTokens.size(); t++) {
+                ATEToken e = expectedTokens.get(t);
+                ATEToken a = actualTokens.get(t);
+                String attribute = e.getText().substring(e.start, e.end);
+                String message = "edit "+i+", token "+t;
+
+                /* Compare before and after the attribute is created */
+                assertTrue(message, a.attributeEquals(attribute));
+                assertFalse(message, a.attributeEquals(attribute+"x"));
+                assertEquals(message, attribute, a.getAttribute());
+                assertEquals(message, attribute, e.getAttribute());
+                assertTrue(message, a.attributeEquals(attribute));
+                assertFalse(message, a.attributeEquals(attribute+"x"));
+                if(attribute.length() == 1 && attribute.charAt(0) < 128) {
+                    assertSame(message, e.getAttribute(), a.getAttribute());
+                }
+
+                a.reset();
+                assertEquals(message, e.type, a.type);
+                assertNull(message, a.scope);
+            }
+        }
+    }
+
+    public void testLineIndex() throws Exception {
+        final StringBuilder text = new StringBuilder(getTextFromFile(TestConstants.MANTRA));
+        ATESyntaxEngine engine = new GrammarSyntaxEngine();
+        engine.setDelegate(new ATESyntaxEngineDelegate() {
+            public void ateEngineBeforeParsing() { }
+            public void ateEngineAfterParsing() { }
+            public String getText() { return text.toString(); }
+        });
+        engine.processSyntax();
+
+        Random random = new Random(4);
+        String[] snippets = { "a", "\n", "rule\n", "\n\n", "x;\n  y" };
+        ATESyntaxLexer reference = new GrammarSyntaxLexer();
+        for(int i=0; i<300; i++) {
+            int offset = random.nextInt(text.length()+1);
+            if(random.nextBoolean() && offset < text.length()) {
+                int length = Math.min(text.length()-offset, 1+random.nextInt(40));
+                text.delete(offset, offset+length);
+                engine.textChanged(offset, -length, null);
+            } else {
+                String snippet = snippets[random.nextInt(snippets.length)];
+                text.insert(offset, snippet);
+                engine.textChanged(offset, snippet.length(), snippet);
+            }
+
+            /* The lines must be up to date before the text is processed again */
+            reference.tokenize(text.toString());
+            List<ATELine> lines = reference.getLines();
+            assertEquals("edit "+i+": line count", lines.size(), engine.getLineCount());
+            for(int position=0; position<=text.length(); position+=7) {
+                assertEquals("edit "+i+": line at "+position, getLineIndexByScan(lines, position), engine.getLineIndexAtPosition(position));
+            }
+
+            if(random.nextInt(5) == 0) {
+                engine.processSyntax();
+            }
+        }
+    }
+
+    public void testProcessIfModified() throws Exception {
+        final StringBuilder text = new StringBuilder(getTextFromFile(TestConstants.MANTRA));
+        final ATESyntaxEngine engine = new GrammarSyntaxEngine();
+        final String edit = "\nrule : 'x' ;\n";
+        final boolean[] editWhileReading = new boolean[1];
+        engine.setDelegate(new ATESyntaxEngineDelegate() {
+            public void ateEngineBeforeParsing() { }
+            public void ateEngineAfterParsing() { }
+            public String getText() {
+                String current = text.toString();
+                if(editWhileReading[0]) {
+                    // The user types while the text is being processed
+                    editWhileReading[0] = false;
+                    text.insert(0, edit);
+                    engine.textChanged(0, edit.length(), edit);
+                }
+                return current;
+            }
+        });
+
+        assertTrue(engine.processIfModified());
+        assertFalse(engine.processIfModified());
+
+        /* The edit made while the text is read is not part of the processed text */
+        String processedText = text.toString();
+        editWhileReading[0] = true;
+        engine.processSyntax();
+        assertSameTokens(processedText, engine);
+
+        assertTrue(engine.processIfModified());
+        assertFalse(engine.processIfModified());
+        assertSameTokens(text.toString(), engine);
+
+        editWhileReading[0] = true;
+        text.append(edit);
+        engine.textChanged(text.length()-edit.length(), edit.length(), edit);
+        assertTrue(engine.processIfModified());
+        assertTrue(engine.processIfModified());
+        assertFalse(engine.processIfModified());
+        assertSameTokens(text.toString(), engine);
+    }
+
+    private void assertSameTokens(String text, ATESyntaxEngine engine) {
+        ATESyntaxLexer reference = new GrammarSyntaxLexer();
+        reference.tokenize(text);
+        assertEquals("token count", reference.getTokens().size(), engine.getTokens().size());
+        for(int i=0; i<reference.getTokens().size(); i++) {
+            ATEToken e = reference.getTokens().get(i);
+            ATEToken a = engine.getTokens().get(i);
+            assertEquals("token "+i, e.getAttribute()+" "+e.lexerType+" "+e.start, a.getAttribute()+" "+a.lexerType+" "+a.start);
+        }
+    }
+
+    /** Returns the line of a position by looking at every line */
+    private int getLineIndexByScan(List<ATELine> lines, int position) {
+        for(int i=0; i<lines.size(); i++) {
+            if(lines.get(i).position > position) {
+                return i-1;
+            }
+        }
+        return lines.size()-1;
+    }
+
+    private void assertIncremental(ATESyntaxLexer incremental, ATESyntaxLexer reference, String text) {
+        Random random = new Random(text.length());
+        incremental.tokenize(text);
+        for(int i=0; i<300; i++) {
+            int offset = random.nextInt(text.length()+1);
+            int length;
+            if(random.nextBoolean() && offset < text.length()) {
+                length = -Math.min(text.length()-offset, 1+random.nextInt(8));
+                text = text.substring(0, offset)+text.substring(offset-length);
+            } else {
+                String snippet = SNIPPETS[random.nextInt(SNIPPETS.length)];
+                length = snippet.length();
+                text = text.substring(0, offset)+snippet+text.substring(offset);
+            }
+
+            incremental.tokenize(text, offset, length);
+            reference.tokenize(text);
+            assertSameTokens("edit "+i+" at "+offset, reference, incremental);
+        }
+    }
+
+    private void assertSameTokens(String message, ATESyntaxLexer expected, ATESyntaxLexer actual) {
+        List<ATEToken> expectedTokens = expected.getTokens();
+        List<ATEToken> actualTokens = actual.getTokens();
+        assertEquals(message+": token count", expectedTokens.size(), actualTokens.size());
+        for(int i=0; i<expectedTokens.size(); i++) {
+            ATEToken e = expectedTokens.get(i);
+            ATEToken a = actualTokens.get(i);
+            assertEquals(message+": token "+i, e.toString(), a.toString());
+            assertEquals(message+": token index "+i, i, a.index);
+            assertEquals(message+": token line "+i, e.startLineNumber, a.startLineNumber);
+            assertEquals(message+": token line index "+i, e.startLineIndex, a.startLineIndex);
+            assertEquals(message+": token attribute "+i, e.getText().substring(e.start, e.end), a.getText().substring(a.start, a.end));
+        }
+
+        List<ATELine> expectedLines = expected.getLines();
+        List<ATELine> actualLines = actual.getLines();
+        assertEquals(message+": line count", expectedLines.size(), actualLines.size());
+        assertEquals(message+": line number", expected.getLineNumber(), actual.getLineNumber());
+        for(int i=0; i<expectedLines.size(); i++) {
+            assertEquals(message+": line "+i, expectedLines.get(i).position, actualLines.get(i).position);
+        }
+    }
+}
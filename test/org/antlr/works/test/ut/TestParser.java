@@ -2,13 +2,21 @@ package org.antlr.works.test.ut;
 
 import junit.framework.TestSuite;
 import junit.textui.TestRunner;
+import org.antlr.tool.ErrorManager;
+import org.antlr.tool.Message;
+import org.antlr.works.ate.syntax.misc.ATEScope;
 import org.antlr.works.ate.syntax.misc.ATEToken;
 import org.antlr.works.editor.EditorInspector;
 import org.antlr.works.editor.EditorRules;
-import org.antlr.works.grammar.element.ElementBlock;
-import org.antlr.works.grammar.element.ElementGrammarName;
-import org.antlr.works.grammar.element.ElementReference;
-import org.antlr.works.grammar.element.ElementRule;
+import org.antlr.works.grammar.antlr.ANTLRAnalysisPool;
+import org.antlr.works.grammar.antlr.ANTLRDecisionAnalyzer;
+import org.antlr.works.grammar.antlr.ANTLRGrammarEngineImpl;
+import org.antlr.works.grammar.antlr.GrammarDecision;
+import org.antlr.works.grammar.antlr.GrammarError;
+import org.antlr.works.grammar.antlr.GrammarResult;
+import org.antlr.works.grammar.element.*;
+import org.antlr.works.grammar.syntax.GrammarSyntaxLexer;
+import org.antlr.works.grammar.syntax.GrammarSyntaxParser;
 import org.antlr.works.test.AbstractTest;
 import org.antlr.works.test.TestConstants;
 
@@ -171,8 +179,142 @@ public class TestParser extends AbstractTest {
         assertInspector(0);
     }
 
+    public void testIncrementalParsing() throws Exception {
+        assertIncrementalParsing(getTextFromFile(TestConstants.MANTRA));
+        assertIncrementalParsing(getTextFromFile(TestConstants.BLOCKS));
+        assertIncrementalParsing(getTextFromFile(TestConstants.PREFIX+"groups.g"));
+        assertIncrementalParsing(getTextFromFile(TestConstants.PREFIX+"calc.g"));
+    }
+
+    public void testSymbolIndex() throws Exception {
+        parseFile(TestConstants.MANTRA);
+        for(ElementRule r : getEngine().getRules()) {
+            assertEquals("rule with name "+r.name, r, getEngine().getRuleWithName(r.name));
+            assertEquals("rule at start of "+r.name, r, getEngine().getEnclosingRuleAtPosition(r.getStartIndex()));
+            assertEquals("rule at end of "+r.name, r, getEngine().getEnclosingRuleAtPosition(r.getEndIndex()));
+            List<ElementReference> refs = new ArrayList<ElementReference>();
+            for(ElementReference ref : getEngine().getReferences()) {
+                if(ref.rule == r) refs.add(ref);
+            }
+            assertEquals("references of "+r.name, refs, getEngine().getReferencesInRule(r));
+            assertTrue("declaration of "+r.name, getEngine().hasDeclaration(r.name));
+        }
+        assertNull("rule before the first rule", getEngine().getEnclosingRuleAtPosition(0));
+    }
+
     /*********************** HELPER ***************************************/
 
+    private static final String[] SNIPPETS = {
+            "a", "b ", "rule", "\n", " ", "'", "/*", "*/", "//", ":", ";", "{", "}", "$", "$a", "x=", "(", ")",
+            "->", "catch", "fragment ", "r : A ;", "// $<g\n", "// $>\n"
+    };
+
+    private void assertIncrementalParsing(String text) {
+        Random random = new Random(text.length());
+        GrammarSyntaxLexer lexer = new GrammarSyntaxLexer();
+        GrammarSyntaxParser parser = new GrammarSyntaxParser();
+        lexer.tokenize(text);
+        parser.parse(new ArrayList<ATEToken>(lexer.getTokens()));
+        for(int i=0; i<300; i++) {
+            int offset = random.nextInt(text.length()+1);
+            int length;
+            if(random.nextBoolean() && offset < text.length()) {
+                length = -Math.min(text.length()-offset, 1+random.nextInt(8));
+                text = text.substring(0, offset)+text.substring(offset-length);
+            } else {
+                String snippet = SNIPPETS[random.nextInt(SNIPPETS.length)];
+                length = snippet.length();
+                text = text.substring(0, offset)+snippet+text.substring(offset);
+            }
+
+            List<ATEToken> tokens;
+            if(lexer.tokenize(text, offset, length)) {
+                tokens = new ArrayList<ATEToken>(lexer.getTokens());
+                parser.parse(tokens, lexer.getModifiedTokensStart(), lexer.getModifiedTokensEnd());
+            } else {
+                tokens = new ArrayList<ATEToken>(lexer.getTokens());
+                parser.parse(tokens);
+            }
+
+            GrammarSyntaxLexer referenceLexer = new GrammarSyntaxLexer();
+            referenceLexer.tokenize(text);
+            GrammarSyntaxParser reference = new GrammarSyntaxParser();
+            reference.parse(new ArrayList<ATEToken>(referenceLexer.getTokens()));
+
+            assertSameParsing("edit "+i+" at "+offset, reference, parser);
+        }
+    }
+
+    private void assertSameParsing(String message, GrammarSyntaxParser expected, GrammarSyntaxParser actual) {
+        assertEquals(message+": rules", describeRules(expected.rules), describeRules(actual.rules));
+        assertEquals(message+": references", describeReferences(expected.references), describeReferences(actual.references));
+        assertEquals(message+": decls", describeTokens(expected.decls), describeTokens(actual.decls));
+        assertEquals(message+": tokens", describeTokens(expected.getTokens()), describeTokens(actual.getTokens()));
+
+        assertEquals(message+": elements", describeElements(expected), describeElements(actual));
+    }
+
+    private List<String> describeElements(GrammarSyntaxParser parser) {
+        List<String> descriptions = new ArrayList<String>();
+        for(ElementGroup g : parser.groups) {
+            descriptions.add(g.toString()+" at "+g.token.start);
+        }
+        for(ElementBlock b : parser.blocks) {
+            descriptions.add(b.name+" at "+b.start.start+"-"+(b.end == null ? -1 : b.end.end));
+        }
+        for(ElementAction a : parser.actions) {
+            descriptions.add("action "+a.actionNum+" at "+a.start.start+"-"+a.end.end+" in "+a.rule.name);
+        }
+        for(ElementImport im : parser.imports) {
+            descriptions.add("import "+im.token.start);
+        }
+        return descriptions;
+    }
+
+    private List<String> describeRules(List<ElementRule> rules) {
+        List<String> descriptions = new ArrayList<String>();
+        for(ElementRule r : rules) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(r.name).append(" at ").append(r.start.start).append("-").append(r.end.end);
+            sb.append(" refs ").append(describeReferences(r.getReferences()));
+            sb.append(" blocks ").append(r.getBlocks() == null ? 0 : r.getBlocks().size());
+            sb.append(" actions ").append(r.getActions() == null ? 0 : r.getActions().size());
+            descriptions.add(sb.toString());
+        }
+        return descriptions;
+    }
+
+    private List<String> describeReferences(List<ElementReference> references) {
+        List<String> descriptions = new ArrayList<String>();
+        if(references != null) {
+            for(ElementReference ref : references) {
+                descriptions.add(ref.token.getAttribute()+" at "+ref.token.start+" in "+(ref.rule == null ? null : ref.rule.name));
+            }
+        }
+        return descriptions;
+    }
+
+    private List<String> describeTokens(List<ATEToken> tokens) {
+        List<String> descriptions = new ArrayList<String>();
+        for(ATEToken t : tokens) {
+            descriptions.add(t.getAttribute()+" at "+t.start+" type "+t.type+" scope "+describeScope(t.scope));
+        }
+        return descriptions;
+    }
+
+    private String describeScope(ATEScope scope) {
+        if(scope instanceof ElementAction) {
+            return "action at "+((ElementAction)scope).start.start;
+        } else if(scope instanceof ElementBlock) {
+            return "block at "+((ElementBlock)scope).start.start;
+        } else if(scope instanceof ElementRule) {
+            return "rule at "+((ElementRule)scope).start.start;
+        } else {
+            return scope == null ? "none" : scope.getClass().getSimpleName();
+        }
+    }
+
+
     private void printParserProperties() {
         System.out.println("Rules="+getEngine().getNumberOfRules());
         System.out.println("Actions="+getEngine().getActions().size());
@@ -210,4 +352,139 @@ public class TestParser extends AbstractTest {
         return names;
     }
 
+    public void testIncrementalAnalysis() throws Exception {
+        String rules = "a : 'i'* 'x' | 'i'* 'y' ;\n\nb : 'c' 'e' | 'c' 'e' ;\n\nc : 'd' ;\n";
+        parseText("grammar T;\n\n"+rules);
+        ANTLRGrammarEngineImpl antlrEngine = (ANTLRGrammarEngineImpl) getEngine().getANTLRGrammarEngine();
+        antlrEngine.setAnalysisCache(null);
+        antlrEngine.analyzeIncrementally();
+        assertEquals("nothing reused", 0, antlrEngine.getDecisionAnalyzer().getReusedDecisionCount());
+
+        // Add a rule before the others and modify the last one
+        parseText("grammar T;\n\nz : 'z' ;\n\n"+rules.replace("c : 'd'", "c : 'd' 'd'"));
+        getEngine().markDirty();
+        GrammarResult incremental = antlrEngine.analyzeIncrementally();
+        assertEquals("reused decisions", 2, antlrEngine.getDecisionAnalyzer().getReusedDecisionCount());
+        List<String> incrementalWarnings = describeMessages(incremental.getWarnings());
+        List<String> incrementalErrors = describeGrammarErrors(antlrEngine.getErrors());
+        List<String> incrementalDecisions = describeDecisions(antlrEngine.getDecisionAnalyzer().getDecisions());
+
+        // A complete analysis must give the same diagnostics
+        GrammarResult complete = antlrEngine.analyze();
+        assertEquals("all analyzed", 0, antlrEngine.getDecisionAnalyzer().getReusedDecisionCount());
+        assertFalse("warnings", incrementalWarnings.isEmpty());
+        assertEquals("warnings", describeMessages(complete.getWarnings()), incrementalWarnings);
+        assertEquals("errors", describeGrammarErrors(antlrEngine.getErrors()), incrementalErrors);
+        assertEquals("decisions", describeDecisions(antlrEngine.getDecisionAnalyzer().getDecisions()), incrementalDecisions);
+    }
+
+    public void testParallelLexerAnalysis() throws Exception {
+        parseText("grammar T;\n\na : 'c' 'e' | 'c' 'e' ;\n\nX : 'u'* 'v' | 'u'* 'v' ;\n");
+        ANTLRGrammarEngineImpl antlrEngine = (ANTLRGrammarEngineImpl) getEngine().getANTLRGrammarEngine();
+        antlrEngine.setAnalysisCache(null);
+        antlrEngine.setAnalysisPool(new ANTLRAnalysisPool(1));
+        GrammarResult result = antlrEngine.analyze();
+
+        // The warnings of the lexer, analyzed on the pool, are merged after the ones of the parser
+        List<Message> warnings = result.getWarnings();
+        assertEquals("warnings", 2, warnings.size());
+        assertTrue("parser warning", warnings.get(0).toString().contains(":3:"));
+        assertTrue("lexer warning", warnings.get(1).toString().contains(":5:"));
+        assertEquals("errors", 2, result.getErrorCount());
+        assertEquals("grammar errors", 4, antlrEngine.getErrors().size());
+
+        // Analyzing again gives the same result
+        getEngine().markDirty();
+        assertEquals("warnings", describeMessages(warnings), describeMessages(antlrEngine.analyze().getWarnings()));
+    }
+
+    public void testMergedErrorState() throws Exception {
+        parseText("grammar T;\n\na : 'c' 'e' | 'c' 'e' ;\n\nb : 'd' 'f' | 'd' 'f' ;\n\nX : 'u'* 'v' | 'u'* 'v' ;\n");
+        ANTLRGrammarEngineImpl antlrEngine = (ANTLRGrammarEngineImpl) getEngine().getANTLRGrammarEngine();
+        antlrEngine.setAnalysisCache(null);
+        antlrEngine.setAnalysisPool(new ANTLRAnalysisPool(1));
+
+        // The worker runs several tasks: the error state of each task only counts its own messages
+        for(int i = 0; i < 2; i++) {
+            getEngine().markDirty();
+            GrammarResult result = antlrEngine.analyze();
+            ErrorManager.ErrorState state = ErrorManager.getErrorState();
+            assertEquals("errors", result.getErrorCount(), state.errors);
+            assertEquals("warnings", result.getWarnings().size(), state.warnings);
+        }
+    }
+
+    public void testDecisionTimeBudget() throws Exception {
+        // The DFA of the decisions of 'a' has an exponential number of states
+        StringBuilder rule = new StringBuilder("a : ('a'|'b')* 'a'");
+        for(int i = 0; i < 12; i++) {
+            rule.append(" ('a'|'b')");
+        }
+        rule.append(" 'c' | ('a'|'b')* 'd' ;");
+        parseText("grammar T;\n\n"+rule+"\n\nb : 'e' 'f' | 'e' 'g' ;\n");
+        ANTLRGrammarEngineImpl antlrEngine = (ANTLRGrammarEngineImpl) getEngine().getANTLRGrammarEngine();
+        antlrEngine.setAnalysisCache(null);
+        antlrEngine.setDecisionTimeBudget(200);
+        GrammarResult result = antlrEngine.analyze();
+
+        int timeouts = 0;
+        boolean analyzedB = false;
+        for(ANTLRDecisionAnalyzer.Timing timing : antlrEngine.getDecisionTimings()) {
+            analyzedB |= timing.rule.equals("b") && !timing.timedOut;
+            if(timing.timedOut) {
+                timeouts++;
+                assertEquals("rule", "a", timing.rule);
+                assertEquals("line", 3, timing.line);
+            } else {
+                assertTrue("time", timing.time < 200);
+            }
+        }
+        assertTrue("timeouts", timeouts > 0);
+        assertEquals("timeout count", timeouts, antlrEngine.getDecisionAnalyzer().getTimeoutCount());
+        assertTrue("decision of b analyzed", analyzedB);
+
+        int timeoutErrors = 0;
+        for(GrammarError error : antlrEngine.getErrors()) {
+            if(error.messageText.contains("time budget")) {
+                timeoutErrors++;
+                assertEquals("line", 2, error.line);
+            }
+        }
+        assertEquals("timeout errors", timeouts, timeoutErrors);
+        assertEquals("timeout messages", timeouts, result.getErrorCount());
+
+        // The timings are sorted, the slowest first
+        List<ANTLRDecisionAnalyzer.Timing> timings = antlrEngine.getDecisionTimings();
+        for(int i = 1; i < timings.size(); i++) {
+            assertTrue("sorted", timings.get(i-1).time >= timings.get(i).time);
+        }
+    }
+
+    private List<String> describeMessages(List<Message> messages) {
+        List<String> s = new ArrayList<String>();
+        for(Message m : messages) {
+            s.add(m.toString());
+        }
+        Collections.sort(s);
+        return s;
+    }
+
+    private List<String> describeGrammarErrors(List<GrammarError> errors) {
+        List<String> s = new ArrayList<String>();
+        for(GrammarError e : errors) {
+            s.add(e.line+": "+e.messageText);
+        }
+        Collections.sort(s);
+        return s;
+    }
+
+    private List<String> describeDecisions(List<GrammarDecision> decisions) {
+        List<String> s = new ArrayList<String>();
+        for(GrammarDecision d : decisions) {
+            s.add(d.line+":"+d.column+" "+d.info);
+        }
+        Collections.sort(s);
+        return s;
+    }
+
 }
@@ -0,0 +1,119 @@
+package org.antlr.works.test.ut;
+
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import org.antlr.works.ate.syntax.misc.ATEScheduler;
+import org.antlr.works.ate.syntax.misc.ATEThread;
+import org.antlr.works.test.AbstractTest;
+/*
+
+[The "BSD licence"]
+Copyright (c) 2005-2006 Jean Bovet
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+1. Redistributions of source code must retain the above copyright
+notice, this list of conditions and the following disclaimer.
+2. Redistributions in binary form must reproduce the above copyright
+notice, this list of conditions and the following disclaimer in the
+documentation and/or other materials provided with the distribution.
+3. The name of the author may not be used to endorse or promote products
+derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+(INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+*/
+
+public class TestScheduler extends AbstractTest {
+
+    public static void main(String[] args) {
+        new TestRunner().doRun(new TestSuite(TestScheduler.class));
+    }
+
+    public void testSchedulerCoalescing() throws Exception {
+        final ATEScheduler scheduler = new ATEScheduler(2);
+        final int[] runs = new int[1];
+        ATEThread task = new ATEThread() {
+            {
+                start();
+            }
+
+            @Override
+            protected ATEScheduler getScheduler() {
+                return scheduler;
+            }
+
+            protected void threadRun() throws Exception {
+                synchronized(runs) {
+                    runs[0]++;
+                }
+            }
+        };
+
+        for(int i=0; i<10; i++) {
+            task.awakeThread(50);
+        }
+        long t = System.currentTimeMillis();
+        while(scheduler.getRunCount() == 0 && System.currentTimeMillis()-t < 5000) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        assertEquals("coalesced runs", 1, runs[0]);
+
+        task.stop();
+        task.awakeThread(0);
+        Thread.sleep(100);
+        assertEquals("no run after stop", 1, runs[0]);
+    }
+
+    public void testSchedulerError() throws Exception {
+        final ATEScheduler scheduler = new ATEScheduler(1);
+        final int[] runs = new int[1];
+        ATEThread task = new ATEThread() {
+            {
+                start();
+            }
+
+            @Override
+            protected ATEScheduler getScheduler() {
+                return scheduler;
+            }
+
+            protected void threadRun() throws Exception {
+                synchronized(runs) {
+                    runs[0]++;
+                }
+                if(runs[0] == 1)
+                    throw new StackOverflowError("expected by the test");
+            }
+        };
+
+        task.awakeThread(0);
+        long t = System.currentTimeMillis();
+        while(scheduler.getRunCount() < 1 && System.currentTimeMillis()-t < 5000) {
+            Thread.sleep(10);
+        }
+
+        /* The only worker survived the error and runs the task again */
+        task.awakeThread(0);
+        t = System.currentTimeMillis();
+        while(scheduler.getRunCount() < 2 && System.currentTimeMillis()-t < 5000) {
+            Thread.sleep(10);
+        }
+        assertEquals("runs after the error", 2, runs[0]);
+        task.stop();
+    }
+
+}
@@ -2,9 +2,14 @@ package org.antlr.works.test.ut;
 
 import org.antlr.works.test.AbstractTest;
 import org.antlr.works.test.TestConstants;
+import org.antlr.works.visualization.VisualDrawing;
+import org.antlr.works.visualization.graphics.GContext;
+import org.antlr.works.visualization.graphics.primitive.GLiteral;
 import org.antlr.xjlib.foundation.XJUtils;
 
-import java.io.File;/*
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;/*
 
 [The "BSD licence"]
 Copyright (c) 2005-07 Jean Bovet
@@ -47,6 +52,74 @@ public class TestSyntaxDiagram extends AbstractTest {
   //      assertSD("expr", "expr");
     }
 
+    public void testParallelSerialization() throws Exception {
+        String expr = getResourceFile(TestConstants.PREFIX+"sd/expr/expr.g");
+        String calc = getResourceFile(TestConstants.PREFIX+"calc.g");
+
+        String sequential = serialize("-f", expr, "-f", calc);
+        String parallel = serialize("-f", expr, "-f", calc, "-j", "4");
+        assertEquals("parallel", sequential, parallel);
+
+        // the rules of each grammar are serialized in order after the name of the grammar
+        assertTrue("grammars", sequential.indexOf("======expr.g======") < sequential.indexOf("======calc.g======"));
+        assertTrue("expr", sequential.contains(serialize("-f", expr)));
+        assertTrue("calc", sequential.endsWith(serialize("-f", calc)));
+    }
+
+    public void testSyntaxDiagramKey() throws Exception {
+        parseText("grammar t;\na : b C ;\nb : 'x' ;\nc : 'y' ;\nC : 'z' ;\n");
+        String a = VisualDrawing.computeKey(getEngine().getRuleWithName("a"), true);
+        String b = VisualDrawing.computeKey(getEngine().getRuleWithName("b"), true);
+        String c = VisualDrawing.computeKey(getEngine().getRuleWithName("c"), true);
+        assertFalse("optimize flag", a.equals(VisualDrawing.computeKey(getEngine().getRuleWithName("a"), false)));
+
+        // Editing a rule changes its key only and the key of the rules referencing it
+        parseText("grammar t;\na : b C ;\nb : 'x' ;\nc : 'y' 'w' ;\nC : 'z' ;\n");
+        assertEquals("a", a, VisualDrawing.computeKey(getEngine().getRuleWithName("a"), true));
+        assertEquals("b", b, VisualDrawing.computeKey(getEngine().getRuleWithName("b"), true));
+        assertFalse("c", c.equals(VisualDrawing.computeKey(getEngine().getRuleWithName("c"), true)));
+
+        parseText("grammar t;\na : b C ;\nb : 'x'+ ;\nc : 'y' 'w' ;\nC : 'z' ;\n");
+        assertFalse("a", a.equals(VisualDrawing.computeKey(getEngine().getRuleWithName("a"), true)));
+        assertFalse("b", b.equals(VisualDrawing.computeKey(getEngine().getRuleWithName("b"), true)));
+    }
+
+    public void testLiteral() throws Exception {
+        Map<String,Float> values = new HashMap<String,Float>();
+        values.put(GContext.NODE_WIDTH.getName(), 1f);
+        values.put(GContext.CHAR_WIDTH.getName(), 2f);
+        values.put(GContext.BOX_WIDTH.getName(), 5f);
+        values.put(GContext.EPSILON_UP.getName(), 3f);
+
+        GLiteral box = GContext.getBoxWidth("abc");
+        GLiteral l = GLiteral.add(GLiteral.add(GContext.NODE_WIDTH, box), GLiteral.ZERO);
+        l = GLiteral.substract(l, GLiteral.max(GContext.EPSILON_UP, GLiteral.ZERO));
+        assertEquals("text", "m#(ccccc,W)-(u)", l.toString());
+        assertEquals("value", 1+10-3f, l.evaluate(values));
+
+        /* Sums built by appending must not be evaluated recursively */
+        GLiteral sum = GLiteral.ZERO;
+        for(int i=0; i<100000; i++) {
+            sum = GLiteral.add(sum, GContext.NODE_WIDTH);
+        }
+        assertEquals("sum", 100000f, sum.evaluate(values));
+
+        /* A new map of values is a new skin: the cached values are not used */
+        values = new HashMap<String,Float>(values);
+        values.put(GContext.NODE_WIDTH.getName(), 2f);
+        assertEquals("sum", 200000f, sum.evaluate(values));
+        assertEquals("value", 2+10-3f, l.evaluate(values));
+    }
+    private String serialize(String... args) throws Exception {
+        String target = File.createTempFile("parallel-sd", ".txt").getAbsolutePath();
+        String[] a = new String[args.length+2];
+        System.arraycopy(args, 0, a, 0, args.length);
+        a[args.length] = "-serialize";
+        a[args.length+1] = target;
+        org.antlr.works.Console.main(a);
+        return XJUtils.getStringFromFile(target);
+    }
+
     private void assertSD(String folder, String name) throws Exception {
         // Read the grammar file
         String source = getResourceFile(TestConstants.PREFIX+"sd/"+folder+"/"+name+".g");